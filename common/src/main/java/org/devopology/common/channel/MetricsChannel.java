@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.common.channel;
+
+/**
+ * Class to define the metrics channel file layout
+ * <p>
+ * header (64 bytes)
+ * <ul>
+ *     <li>0 int magic (written last)</li>
+ *     <li>4 byte byte order (0 = big endian, 1 = little endian)</li>
+ *     <li>5 byte version</li>
+ *     <li>8 long writer pid</li>
+ *     <li>16 int slot capacity</li>
+ *     <li>20 int metadata capacity</li>
+ *     <li>24 int slot count (published after the metadata record)</li>
+ *     <li>28 int metadata length</li>
+ * </ul>
+ * slots (slot capacity * 8 bytes), one double value per metric
+ * <p>
+ * metadata (append only), one record per slot
+ * <ul>
+ *     <li>int record length</li>
+ *     <li>int slot</li>
+ *     <li>byte type</li>
+ *     <li>string name, string help, short label count, label name/value strings</li>
+ * </ul>
+ * strings are a short length followed by UTF-8 bytes
+ */
+public final class MetricsChannel {
+
+    /**
+     * Metric type
+     */
+    public enum Type { COUNTER, GAUGE }
+
+    public static final String FILENAME_SUFFIX = ".metrics";
+
+    static final int MAGIC = 0x4D434831;
+    static final byte VERSION = 1;
+
+    static final int MAGIC_OFFSET = 0;
+    static final int BYTE_ORDER_OFFSET = 4;
+    static final int VERSION_OFFSET = 5;
+    static final int PID_OFFSET = 8;
+    static final int SLOT_CAPACITY_OFFSET = 16;
+    static final int METADATA_CAPACITY_OFFSET = 20;
+    static final int SLOT_COUNT_OFFSET = 24;
+    static final int METADATA_LENGTH_OFFSET = 28;
+    static final int HEADER_SIZE = 64;
+
+    static final int SLOT_SIZE = 8;
+
+    static final byte BYTE_ORDER_BIG_ENDIAN = 0;
+    static final byte BYTE_ORDER_LITTLE_ENDIAN = 1;
+
+    private MetricsChannel() {
+        // DO NOTHING
+    }
+
+    static int getSlotOffset(int slot) {
+        return HEADER_SIZE + (slot * SLOT_SIZE);
+    }
+
+    static int getMetadataOffset(int slotCapacity) {
+        return HEADER_SIZE + (slotCapacity * SLOT_SIZE);
+    }
+}
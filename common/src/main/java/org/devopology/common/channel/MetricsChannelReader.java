@@ -0,0 +1,260 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.common.channel;
+
+import org.devopology.common.precondition.Precondition;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class to read a memory mapped metrics channel file written by a MetricsChannelWriter
+ * <p>
+ * The file is mapped read only. Metadata records are parsed as they are published,
+ * values are read directly from the mapped slots
+ */
+public class MetricsChannelReader {
+
+    /**
+     * Class to describe a metric
+     */
+    public static final class Metric {
+
+        private final MetricsChannel.Type type;
+        private final String name;
+        private final String help;
+        private final List<String> labelNames;
+        private final List<String> labelValues;
+        private final int offset;
+
+        private Metric(MetricsChannel.Type type, String name, String help, List<String> labelNames, List<String> labelValues, int offset) {
+            this.type = type;
+            this.name = name;
+            this.help = help;
+            this.labelNames = labelNames;
+            this.labelValues = labelValues;
+            this.offset = offset;
+        }
+
+        public MetricsChannel.Type getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+
+        public List<String> getLabelNames() {
+            return labelNames;
+        }
+
+        public List<String> getLabelValues() {
+            return labelValues;
+        }
+    }
+
+    private final File file;
+    private final MappedByteBuffer mappedByteBuffer;
+    private final long pid;
+    private final int slotCapacity;
+    private final int metadataOffset;
+    private final int metadataCapacity;
+    private final List<Metric> metricList;
+    private int metadataPosition;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     * @throws IOException if the file can't be read, or isn't a valid metrics channel file
+     */
+    public MetricsChannelReader(File file) throws IOException {
+        Precondition.notNull(file, "file is null");
+
+        this.file = file;
+
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            if (size < MetricsChannel.HEADER_SIZE) {
+                throw new IOException(String.format("[%s] is too small", file));
+            }
+
+            // The mapping remains valid after the channel is closed
+            mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        if (mappedByteBuffer.get(MetricsChannel.BYTE_ORDER_OFFSET) == MetricsChannel.BYTE_ORDER_LITTLE_ENDIAN) {
+            mappedByteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (mappedByteBuffer.getInt(MetricsChannel.MAGIC_OFFSET) != MetricsChannel.MAGIC) {
+            throw new IOException(String.format("[%s] isn't a metrics channel file", file));
+        }
+
+        if (mappedByteBuffer.get(MetricsChannel.VERSION_OFFSET) != MetricsChannel.VERSION) {
+            throw new IOException(String.format("[%s] version [%d] isn't supported", file, mappedByteBuffer.get(MetricsChannel.VERSION_OFFSET)));
+        }
+
+        this.pid = mappedByteBuffer.getLong(MetricsChannel.PID_OFFSET);
+        this.slotCapacity = mappedByteBuffer.getInt(MetricsChannel.SLOT_CAPACITY_OFFSET);
+        this.metadataCapacity = mappedByteBuffer.getInt(MetricsChannel.METADATA_CAPACITY_OFFSET);
+        this.metadataOffset = MetricsChannel.getMetadataOffset(slotCapacity);
+
+        if ((slotCapacity < 1) || (metadataCapacity < 1) || ((long) metadataOffset + metadataCapacity > mappedByteBuffer.capacity())) {
+            throw new IOException(String.format("[%s] header is invalid", file));
+        }
+
+        this.metricList = new ArrayList<>();
+    }
+
+    /**
+     * Method to get the metrics channel file
+     *
+     * @return
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Method to get the writer's pid
+     *
+     * @return the pid, or -1 if unknown
+     */
+    public long getPid() {
+        return pid;
+    }
+
+    /**
+     * Method to get the metrics, including metrics published since the last call
+     *
+     * @return
+     */
+    public List<Metric> getMetricList() {
+        int slotCount = Math.min(mappedByteBuffer.getInt(MetricsChannel.SLOT_COUNT_OFFSET), slotCapacity);
+
+        while (metricList.size() < slotCount) {
+            Metric metric = readMetric();
+            if (metric == null) {
+                // Not completely published yet, read on the next call
+                break;
+            }
+
+            metricList.add(metric);
+        }
+
+        return Collections.unmodifiableList(metricList);
+    }
+
+    /**
+     * Method to get a metric value
+     *
+     * @param metric
+     * @return
+     */
+    public double getValue(Metric metric) {
+        return mappedByteBuffer.getDouble(metric.offset);
+    }
+
+    /**
+     * Method to read the next metadata record
+     *
+     * @return the Metric, or null if the record isn't valid
+     */
+    private Metric readMetric() {
+        int limit = metadataOffset + metadataCapacity;
+        int position = metadataOffset + metadataPosition;
+        if (position + 11 > limit) {
+            return null;
+        }
+
+        int recordLength = mappedByteBuffer.getInt(position);
+        int slot = mappedByteBuffer.getInt(position + 4);
+        byte type = mappedByteBuffer.get(position + 8);
+
+        if ((recordLength < 11) || (position + recordLength > limit) || (slot != metricList.size())
+                || (type < 0) || (type >= MetricsChannel.Type.values().length)) {
+            return null;
+        }
+
+        limit = position + recordLength;
+        int[] cursor = new int[] { position + 9 };
+
+        String name = readString(cursor, limit);
+        String help = readString(cursor, limit);
+        if ((name == null) || (help == null) || (cursor[0] + 2 > limit)) {
+            return null;
+        }
+
+        int labelCount = mappedByteBuffer.getShort(cursor[0]);
+        cursor[0] += 2;
+
+        String[] labelNames = new String[Math.max(labelCount, 0)];
+        String[] labelValues = new String[labelNames.length];
+        for (int i = 0; i < labelNames.length; i++) {
+            labelNames[i] = readString(cursor, limit);
+            labelValues[i] = readString(cursor, limit);
+            if ((labelNames[i] == null) || (labelValues[i] == null)) {
+                return null;
+            }
+        }
+
+        metadataPosition += recordLength;
+
+        return new Metric(
+                MetricsChannel.Type.values()[type],
+                name,
+                help,
+                Collections.unmodifiableList(Arrays.asList(labelNames)),
+                Collections.unmodifiableList(Arrays.asList(labelValues)),
+                MetricsChannel.getSlotOffset(slot));
+    }
+
+    private String readString(int[] cursor, int limit) {
+        if (cursor[0] + 2 > limit) {
+            return null;
+        }
+
+        int length = mappedByteBuffer.getShort(cursor[0]);
+        cursor[0] += 2;
+        if ((length < 0) || (cursor[0] + length > limit)) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mappedByteBuffer.get(cursor[0] + i);
+        }
+
+        cursor[0] += length;
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.common.channel;
+
+import org.devopology.common.precondition.Precondition;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Class to publish counters and gauges to a memory mapped metrics channel file,
+ * read by the standalone exporter
+ * <p>
+ * No threads are created. An update is a lock free (compare and set) update of the value,
+ * written to the metric's fixed slot, the same approach as the JVM's own performance counters (hsperfdata).
+ * Slot writes of a metric are serialized by a (compare and set) claimed publisher, so the slot always ends
+ * with the latest value
+ * <p>
+ * The label name "channel" is reserved, the exporter adds it to identify the metrics channel
+ * <p>
+ * Usage:
+ * <pre>
+ * MetricsChannelWriter metricsChannelWriter = new MetricsChannelWriter(new File("/tmp/metrics/application.metrics"));
+ * MetricsChannelWriter.Counter requests = metricsChannelWriter.counter("requests", "Number of requests", "method", "GET");
+ * requests.inc();
+ * </pre>
+ */
+public class MetricsChannelWriter implements Closeable {
+
+    public static final int DEFAULT_SLOT_CAPACITY = 1024;
+    public static final int DEFAULT_METADATA_CAPACITY = 256 * 1024;
+
+    private static final Pattern METRIC_NAME_PATTERN = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final Pattern LABEL_NAME_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+    private static final String RESERVED_LABEL_NAME = "channel";
+
+    private final File file;
+    private final MappedByteBuffer mappedByteBuffer;
+    private final int slotCapacity;
+    private final int metadataOffset;
+    private final int metadataCapacity;
+    private final Map<String, Object> metricMap;
+    private int slotCount;
+    private int metadataLength;
+    private boolean isClosed;
+
+    // A volatile write orders the preceding buffer writes (Java 8 has no ordered ByteBuffer puts)
+    private volatile int publishedSlotCount;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     * @throws IOException
+     */
+    public MetricsChannelWriter(File file) throws IOException {
+        this(file, DEFAULT_SLOT_CAPACITY, DEFAULT_METADATA_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param file the metrics channel file, replaced if it exists
+     * @param slotCapacity the maximum number of metrics
+     * @param metadataCapacity the maximum size of the metric names, help, and labels, in bytes
+     * @throws IOException
+     */
+    public MetricsChannelWriter(File file, int slotCapacity, int metadataCapacity) throws IOException {
+        Precondition.notNull(file, "file is null");
+        Precondition.inRange(slotCapacity, 1, 1024 * 1024, "slotCapacity is outside range (1 - " + (1024 * 1024) + ")");
+        Precondition.inRange(metadataCapacity, 1, 64 * 1024 * 1024, "metadataCapacity is outside range (1 - " + (64 * 1024 * 1024) + ")");
+
+        this.file = file;
+        this.slotCapacity = slotCapacity;
+        this.metadataOffset = MetricsChannel.getMetadataOffset(slotCapacity);
+        this.metadataCapacity = metadataCapacity;
+        this.metricMap = new HashMap<>();
+
+        // Replace (rather than truncate) an existing file, so a reader mapping the old file detects the change
+        Files.deleteIfExists(file.toPath());
+
+        File temporaryFile = new File(file.getAbsoluteFile().getParentFile(), "." + file.getName() + ".tmp");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryFile, "rw")) {
+            randomAccessFile.setLength((long) metadataOffset + metadataCapacity);
+
+            // The mapping remains valid after the file is closed
+            mappedByteBuffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+        }
+
+        mappedByteBuffer.order(ByteOrder.nativeOrder());
+        mappedByteBuffer.put(
+                MetricsChannel.BYTE_ORDER_OFFSET,
+                ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? MetricsChannel.BYTE_ORDER_BIG_ENDIAN : MetricsChannel.BYTE_ORDER_LITTLE_ENDIAN);
+        mappedByteBuffer.put(MetricsChannel.VERSION_OFFSET, MetricsChannel.VERSION);
+        mappedByteBuffer.putLong(MetricsChannel.PID_OFFSET, getPid());
+        mappedByteBuffer.putInt(MetricsChannel.SLOT_CAPACITY_OFFSET, slotCapacity);
+        mappedByteBuffer.putInt(MetricsChannel.METADATA_CAPACITY_OFFSET, metadataCapacity);
+        publishedSlotCount = 0;
+        mappedByteBuffer.putInt(MetricsChannel.MAGIC_OFFSET, MetricsChannel.MAGIC);
+
+        // Readers only see the fully initialized file
+        Files.move(temporaryFile.toPath(), file.toPath());
+    }
+
+    /**
+     * Method to get the metrics channel file
+     *
+     * @return
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Method to register (or get an existing) counter
+     *
+     * @param name
+     * @param help
+     * @param labels label name/value pairs
+     * @return
+     */
+    public synchronized Counter counter(String name, String help, String... labels) {
+        return (Counter) register(MetricsChannel.Type.COUNTER, name, help, labels);
+    }
+
+    /**
+     * Method to register (or get an existing) gauge
+     *
+     * @param name
+     * @param help
+     * @param labels label name/value pairs
+     * @return
+     */
+    public synchronized Gauge gauge(String name, String help, String... labels) {
+        return (Gauge) register(MetricsChannel.Type.GAUGE, name, help, labels);
+    }
+
+    /**
+     * Method to close the writer, removing the metrics channel file
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    private Object register(MetricsChannel.Type type, String name, String help, String... labels) {
+        Precondition.isTrue(!isClosed, "writer is closed");
+        Precondition.notNull(name, "name is null");
+        Precondition.isTrue(METRIC_NAME_PATTERN.matcher(name).matches(), IllegalArgumentException.class, "name [" + name + "] is invalid");
+        Precondition.notNull(help, "help is null");
+        Precondition.notNull(labels, "labels is null");
+        Precondition.isTrue((labels.length % 2) == 0, IllegalArgumentException.class, "labels must be name/value pairs");
+
+        StringBuilder keyStringBuilder = new StringBuilder(name);
+        Set<String> labelNameSet = new HashSet<>();
+        for (int i = 0; i < labels.length; i += 2) {
+            Precondition.notNull(labels[i], "label name is null");
+            Precondition.isTrue(LABEL_NAME_PATTERN.matcher(labels[i]).matches(), IllegalArgumentException.class, "label name [" + labels[i] + "] is invalid");
+            Precondition.isTrue(!RESERVED_LABEL_NAME.equals(labels[i]), IllegalArgumentException.class, "label name [" + labels[i] + "] is reserved");
+            Precondition.isTrue(labelNameSet.add(labels[i]), IllegalArgumentException.class, "label name [" + labels[i] + "] is duplicated");
+            Precondition.notNull(labels[i + 1], "label value is null");
+            keyStringBuilder.append('\u0000').append(labels[i]).append('\u0000').append(labels[i + 1]);
+        }
+
+        String key = keyStringBuilder.toString();
+        Object metric = metricMap.get(key);
+        if (metric != null) {
+            Precondition.isTrue(
+                    (type == MetricsChannel.Type.COUNTER) == (metric instanceof Counter),
+                    IllegalArgumentException.class,
+                    "metric [" + name + "] is already registered with a different type");
+
+            return metric;
+        }
+
+        Precondition.isTrue(slotCount < slotCapacity, "slot capacity [" + slotCapacity + "] exceeded");
+
+        byte[][] strings = new byte[2 + labels.length][];
+        strings[0] = name.getBytes(StandardCharsets.UTF_8);
+        strings[1] = help.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < labels.length; i++) {
+            strings[2 + i] = labels[i].getBytes(StandardCharsets.UTF_8);
+        }
+
+        // record length, slot, type, strings, label count
+        int recordLength = 4 + 4 + 1 + 2;
+        for (byte[] string : strings) {
+            Precondition.isTrue(string.length <= Short.MAX_VALUE, IllegalArgumentException.class, "string is too long");
+            recordLength += 2 + string.length;
+        }
+
+        Precondition.isTrue(metadataLength + recordLength <= metadataCapacity, "metadata capacity [" + metadataCapacity + "] exceeded");
+
+        int slot = slotCount;
+        int position = metadataOffset + metadataLength;
+
+        mappedByteBuffer.putInt(position + 4, slot);
+        mappedByteBuffer.put(position + 8, (byte) type.ordinal());
+        position += 9;
+        position = putString(position, strings[0]);
+        position = putString(position, strings[1]);
+        mappedByteBuffer.putShort(position, (short) (labels.length / 2));
+        position += 2;
+        for (int i = 2; i < strings.length; i++) {
+            position = putString(position, strings[i]);
+        }
+
+        int slotOffset = MetricsChannel.getSlotOffset(slot);
+        mappedByteBuffer.putDouble(slotOffset, 0);
+
+        // The record length is written last, a reader ignores a record with a length of 0
+        mappedByteBuffer.putInt(metadataOffset + metadataLength, recordLength);
+
+        slotCount++;
+        metadataLength += recordLength;
+
+        publishedSlotCount = slotCount;
+        mappedByteBuffer.putInt(MetricsChannel.METADATA_LENGTH_OFFSET, metadataLength);
+        mappedByteBuffer.putInt(MetricsChannel.SLOT_COUNT_OFFSET, slotCount);
+
+        if (type == MetricsChannel.Type.COUNTER) {
+            metric = new Counter(mappedByteBuffer, slotOffset);
+        } else {
+            metric = new Gauge(mappedByteBuffer, slotOffset);
+        }
+
+        metricMap.put(key, metric);
+
+        return metric;
+    }
+
+    private int putString(int position, byte[] bytes) {
+        mappedByteBuffer.putShort(position, (short) bytes.length);
+        position += 2;
+
+        for (byte b : bytes) {
+            mappedByteBuffer.put(position++, b);
+        }
+
+        return position;
+    }
+
+    /**
+     * Method to atomically add to a value, writing the result to the slot
+     *
+     * @param mappedByteBuffer
+     * @param offset
+     * @param bits the value, as raw long bits
+     * @param pending the number of updates not yet written to the slot
+     * @param amount
+     */
+    private static void add(MappedByteBuffer mappedByteBuffer, int offset, AtomicLong bits, AtomicInteger pending, double amount) {
+        long current;
+        long next;
+
+        do {
+            current = bits.get();
+            next = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + amount);
+        } while (!bits.compareAndSet(current, next));
+
+        write(mappedByteBuffer, offset, bits, pending);
+    }
+
+    /**
+     * Method to write the latest value to the slot
+     * <p>
+     * The thread that increments pending from 0 claims the slot, and writes the latest value until
+     * every pending update is written. Other threads return, their update is written by the claiming thread.
+     * Only one thread writes the slot at a time, and the (atomic) pending decrement orders the slot write
+     * before the check for later updates, so the slot can't be left holding a stale value
+     *
+     * @param mappedByteBuffer
+     * @param offset
+     * @param bits the value, as raw long bits
+     * @param pending the number of updates not yet written to the slot
+     */
+    private static void write(MappedByteBuffer mappedByteBuffer, int offset, AtomicLong bits, AtomicInteger pending) {
+        if (pending.getAndIncrement() != 0) {
+            // Another thread has claimed the slot, and will write this update
+            return;
+        }
+
+        int count = 1;
+
+        do {
+            mappedByteBuffer.putLong(offset, bits.get());
+            count = pending.addAndGet(-count);
+        } while (count != 0);
+    }
+
+    private static long getPid() {
+        try {
+            return Long.parseLong(ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Class to implement a counter
+     */
+    public static final class Counter {
+
+        private final MappedByteBuffer mappedByteBuffer;
+        private final int offset;
+        private final AtomicLong bits;
+        private final AtomicInteger pending;
+
+        private Counter(MappedByteBuffer mappedByteBuffer, int offset) {
+            this.mappedByteBuffer = mappedByteBuffer;
+            this.offset = offset;
+            this.bits = new AtomicLong(Double.doubleToRawLongBits(0));
+            this.pending = new AtomicInteger();
+        }
+
+        /**
+         * Method to increment the counter by 1
+         */
+        public void inc() {
+            inc(1);
+        }
+
+        /**
+         * Method to increment the counter
+         *
+         * @param amount
+         */
+        public void inc(double amount) {
+            if (amount < 0) {
+                throw new IllegalArgumentException("amount is negative");
+            }
+
+            add(mappedByteBuffer, offset, bits, pending, amount);
+        }
+
+        /**
+         * Method to get the counter value
+         *
+         * @return
+         */
+        public double get() {
+            return Double.longBitsToDouble(bits.get());
+        }
+    }
+
+    /**
+     * Class to implement a gauge
+     */
+    public static final class Gauge {
+
+        private final MappedByteBuffer mappedByteBuffer;
+        private final int offset;
+        private final AtomicLong bits;
+        private final AtomicInteger pending;
+
+        private Gauge(MappedByteBuffer mappedByteBuffer, int offset) {
+            this.mappedByteBuffer = mappedByteBuffer;
+            this.offset = offset;
+            this.bits = new AtomicLong(Double.doubleToRawLongBits(0));
+            this.pending = new AtomicInteger();
+        }
+
+        /**
+         * Method to set the gauge
+         *
+         * @param value
+         */
+        public void set(double value) {
+            bits.set(Double.doubleToRawLongBits(value));
+            write(mappedByteBuffer, offset, bits, pending);
+        }
+
+        /**
+         * Method to increment the gauge by 1
+         */
+        public void inc() {
+            inc(1);
+        }
+
+        /**
+         * Method to increment the gauge
+         *
+         * @param amount
+         */
+        public void inc(double amount) {
+            add(mappedByteBuffer, offset, bits, pending, amount);
+        }
+
+        /**
+         * Method to decrement the gauge by 1
+         */
+        public void dec() {
+            inc(-1);
+        }
+
+        /**
+         * Method to decrement the gauge
+         *
+         * @param amount
+         */
+        public void dec(double amount) {
+            inc(-amount);
+        }
+
+        /**
+         * Method to get the gauge value
+         *
+         * @return
+         */
+        public double get() {
+            return Double.longBitsToDouble(bits.get());
+        }
+    }
+}
@@ -38,5 +38,7 @@ public class ChildFirstJarClassLoader extends ChildFirstJarInputStreamClassLoade
         Precondition.notNull(jar, "jar is null");
 
         this.jar = jar;
+
+        resolveVersions();
     }
 }
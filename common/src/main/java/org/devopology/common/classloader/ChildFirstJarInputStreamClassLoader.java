@@ -26,21 +26,32 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.jar.JarInputStream;
 
 /**
  * Class to implement a child-first JarInputStream classloader
+ * <p>
+ * For a multi-release jar, classes and resources are resolved from the highest
+ * META-INF/versions/N directory supported by the running JVM, then the base entry
  */
 public class ChildFirstJarInputStreamClassLoader extends ClassLoader {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ChildFirstJarInputStreamClassLoader.class);
 
+    private static final String META_INF = "META-INF/";
+    private static final String META_INF_VERSIONS = "META-INF/versions/";
+    private static final int JAVA_VERSION = parseJavaVersion(System.getProperty("java.specification.version"));
+
     protected Jar jar;
     protected Map<String, Class> classMap;
+    private List<String> versionPrefixList;
 
     /**
      * Constructor
@@ -55,6 +66,8 @@ public class ChildFirstJarInputStreamClassLoader extends ClassLoader {
 
         jar = new Jar();
         jar.load(jarInputStream);
+
+        resolveVersions();
     }
 
     /**
@@ -66,6 +79,43 @@ public class ChildFirstJarInputStreamClassLoader extends ClassLoader {
         super(parent);
 
         classMap = Collections.synchronizedMap(new TreeMap<>());
+        versionPrefixList = Collections.emptyList();
+    }
+
+    /**
+     * Method to resolve the versioned entry directories used for the running JVM, highest version first
+     */
+    void resolveVersions() {
+        if (!jar.isMultiRelease()) {
+            return;
+        }
+
+        Set<Integer> versionSet = new TreeSet<>(Collections.reverseOrder());
+
+        for (String name : jar.keySet()) {
+            if (name.startsWith(META_INF_VERSIONS)) {
+                int index = name.indexOf('/', META_INF_VERSIONS.length());
+                if (index > META_INF_VERSIONS.length()) {
+                    try {
+                        int version = Integer.parseInt(name.substring(META_INF_VERSIONS.length(), index));
+                        if ((version >= 9) && (version <= JAVA_VERSION)) {
+                            versionSet.add(version);
+                        }
+                    } catch (NumberFormatException e) {
+                        // DO NOTHING
+                    }
+                }
+            }
+        }
+
+        List<String> versionPrefixList = new ArrayList<>();
+        for (Integer version : versionSet) {
+            versionPrefixList.add(META_INF_VERSIONS + version + "/");
+        }
+
+        LOGGER.trace(String.format("resolveVersions() versionPrefixList = %s", versionPrefixList));
+
+        this.versionPrefixList = versionPrefixList;
     }
 
     /**
@@ -123,7 +173,7 @@ public class ChildFirstJarInputStreamClassLoader extends ClassLoader {
     private byte[] loadClassBytes(String classname) throws IOException {
         String jarEntryName = classname.replaceAll("\\.", "/") + ".class";
 
-        JarEntry jarEntry = jar.get(jarEntryName);
+        JarEntry jarEntry = getJarEntry(jarEntryName);
         if (jarEntry != null) {
             byte[] bytes = new byte[(int) jarEntry.getSize()];
             DataInputStream dataInputStream = new DataInputStream(jarEntry.getInputStream());
@@ -146,11 +196,58 @@ public class ChildFirstJarInputStreamClassLoader extends ClassLoader {
     public InputStream getResourceAsStream(String name) {
         LOGGER.trace(String.format("getResourceAsStream() name = [%s]", name));
 
-        JarEntry jarEntry = jar.get(name);
+        JarEntry jarEntry = getJarEntry(name);
         if (jarEntry != null) {
             return jarEntry.getInputStream();
         }
 
         return null;
     }
+
+    /**
+     * Method to get a jar entry, resolving versioned entries for a multi-release jar
+     *
+     * @param name
+     * @return
+     */
+    private JarEntry getJarEntry(String name) {
+        if (!name.startsWith(META_INF)) {
+            for (String versionPrefix : versionPrefixList) {
+                JarEntry jarEntry = jar.get(versionPrefix + name);
+                if (jarEntry != null) {
+                    return jarEntry;
+                }
+            }
+        }
+
+        return jar.get(name);
+    }
+
+    /**
+     * Method to parse the Java version (e.g. "1.8" = 8, "17" = 17)
+     *
+     * @param specificationVersion the "java.specification.version" system property
+     * @return the Java version, 8 if the version can't be parsed
+     */
+    static int parseJavaVersion(String specificationVersion) {
+        if (specificationVersion == null) {
+            return 8;
+        }
+
+        String version = specificationVersion.trim();
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+
+        int index = version.indexOf('.');
+        if (index > 0) {
+            version = version.substring(0, index);
+        }
+
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 8;
+        }
+    }
 }
@@ -24,12 +24,24 @@ import java.util.List;
 
 public class FileMonitor {
 
+    private static final long DEFAULT_INTERVAL_MILLISECONDS = 10000;
+
     private File file;
+    private long intervalMilliseconds;
     private List<FileMonitorListener> fileMonitorListenerList;
     private Thread thread;
+    private volatile boolean isStopped;
 
     public FileMonitor(File file) {
+        this(file, DEFAULT_INTERVAL_MILLISECONDS);
+    }
+
+    public FileMonitor(File file, long intervalMilliseconds) {
+        Precondition.notNull(file, "file is null");
+        Precondition.inRange(intervalMilliseconds, 1, Long.MAX_VALUE, "intervalMilliseconds is outside range (1 - " + Long.MAX_VALUE + ")");
+
         this.file = file;
+        this.intervalMilliseconds = intervalMilliseconds;
         fileMonitorListenerList = new ArrayList<>();
     }
 
@@ -50,16 +62,29 @@ public class FileMonitor {
         }
     }
 
+    public synchronized void stop() {
+        isStopped = true;
+
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
     private void monitor() {
         long previousLastModified = file.lastModified();
 
-        while (true) {
+        while (!isStopped) {
             try {
-                Thread.currentThread().sleep(10000);
+                Thread.sleep(intervalMilliseconds);
             } catch (InterruptedException e) {
                 // DO NOTHING
             }
 
+            if (isStopped) {
+                break;
+            }
+
             if (file.exists() && file.isFile() && file.canRead()) {
 
                 long lastModified = file.lastModified();
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
 
 /**
  * Class to load a jar and cache entries in memory. Only files in the jar are loaded.
@@ -39,7 +40,10 @@ public class Jar {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Jar.class);
 
+    private static final String MULTI_RELEASE = "Multi-Release";
+
     private Map<String, JarEntry> jarEntryMap;
+    private boolean isMultiRelease;
 
     /**
      * Constructor
@@ -75,6 +79,11 @@ public class Jar {
 
         clear();
 
+        Manifest manifest = jarInputStream.getManifest();
+        if (manifest != null) {
+            isMultiRelease = Boolean.parseBoolean(manifest.getMainAttributes().getValue(MULTI_RELEASE));
+        }
+
         while (true) {
             java.util.jar.JarEntry jarEntry = jarInputStream.getNextJarEntry();
             if (jarEntry == null) {
@@ -106,6 +115,16 @@ public class Jar {
      */
     public void clear() {
         jarEntryMap.clear();
+        isMultiRelease = false;
+    }
+
+    /**
+     * Method to return whether the jar manifest declares a multi-release jar ("Multi-Release: true")
+     *
+     * @return
+     */
+    public boolean isMultiRelease() {
+        return isMultiRelease;
     }
 
     /**
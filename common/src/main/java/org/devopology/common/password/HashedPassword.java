@@ -19,6 +19,9 @@ package org.devopology.common.password;
 import org.devopology.common.precondition.Precondition;
 import org.devopology.common.sha.SHA;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
 /**
  * Class to implement an encrypted password
  * <p>
@@ -120,7 +123,7 @@ public class HashedPassword {
     }
 
     /**
-     * Method to compare whether the encrypted password is equal another Object
+     * Method to compare whether the encrypted password is equal another Object (constant time)
      *
      * @param object
      * @return
@@ -129,7 +132,9 @@ public class HashedPassword {
     public boolean equals(Object object) {
         if (HashedPassword.class.isInstance(object)) {
             HashedPassword hashedPassword = (HashedPassword) object;
-            return this.hashedPassword.equals(hashedPassword.hashedPassword);
+            return MessageDigest.isEqual(
+                    this.hashedPassword.getBytes(StandardCharsets.UTF_8),
+                    hashedPassword.hashedPassword.getBytes(StandardCharsets.UTF_8));
         }
 
         return false;
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.common.password;
+
+import org.devopology.common.precondition.Precondition;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Class to implement a bounded, time to live (TTL) cache of successfully verified credentials,
+ * so a slow password hash isn't recomputed for the same credentials on every request
+ * <p>
+ * Credentials are never stored, entries are keyed by an HMAC-SHA256 digest of the username and password
+ * using a random per cache key, and compared in constant time. Only successful verifications are cached,
+ * so invalid credentials always pay the full password hash cost
+ */
+public class VerifiedCredentialCache {
+
+    private static final String HMAC_SHA_256 = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+
+    private final LongSupplier nanoTimeSupplier;
+    private final int maximumEntries;
+    private final long ttlNanoseconds;
+    private final Map<CredentialDigest, Long> credentialDigestMap;
+    private final ThreadLocal<Mac> macThreadLocal;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * Constructor
+     *
+     * @param maximumEntries
+     * @param ttlMilliseconds
+     */
+    public VerifiedCredentialCache(int maximumEntries, long ttlMilliseconds) {
+        this(maximumEntries, ttlMilliseconds, System::nanoTime);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maximumEntries
+     * @param ttlMilliseconds
+     * @param nanoTimeSupplier
+     */
+    VerifiedCredentialCache(int maximumEntries, long ttlMilliseconds, LongSupplier nanoTimeSupplier) {
+        Precondition.inRange(maximumEntries, 1, Integer.MAX_VALUE, "maximumEntries is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.inRange(ttlMilliseconds, 1, Long.MAX_VALUE / 1000000, "ttlMilliseconds is outside range (1 - " + (Long.MAX_VALUE / 1000000) + ")");
+        Precondition.notNull(nanoTimeSupplier, "nanoTimeSupplier is null");
+
+        this.nanoTimeSupplier = nanoTimeSupplier;
+        this.maximumEntries = maximumEntries;
+        this.ttlNanoseconds = TimeUnit.MILLISECONDS.toNanos(ttlMilliseconds);
+        this.credentialDigestMap = new ConcurrentHashMap<>();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+
+        byte[] key = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(key);
+        SecretKeySpec secretKeySpec = new SecretKeySpec(key, HMAC_SHA_256);
+
+        // Mac instances aren't thread safe, reuse one per thread
+        this.macThreadLocal = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_SHA_256);
+                mac.init(secretKeySpec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Method to check if credentials were verified within the TTL
+     *
+     * @param username
+     * @param password
+     * @return true if the credentials were verified within the TTL
+     */
+    public boolean isVerified(String username, String password) {
+        Precondition.notNull(username, "username is null");
+        Precondition.notNull(password, "password is null");
+
+        CredentialDigest credentialDigest = digest(username, password);
+
+        Long expirationNanoseconds = credentialDigestMap.get(credentialDigest);
+        if (expirationNanoseconds != null) {
+            if (nanoTimeSupplier.getAsLong() - expirationNanoseconds < 0) {
+                hits.increment();
+                return true;
+            }
+
+            credentialDigestMap.remove(credentialDigest, expirationNanoseconds);
+        }
+
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Method to record successfully verified credentials
+     * <p>
+     * If the cache is full after removing expired entries, the credentials aren't cached
+     *
+     * @param username
+     * @param password
+     */
+    public void put(String username, String password) {
+        Precondition.notNull(username, "username is null");
+        Precondition.notNull(password, "password is null");
+
+        long nowNanoseconds = nanoTimeSupplier.getAsLong();
+
+        if (credentialDigestMap.size() >= maximumEntries) {
+            evict(nowNanoseconds);
+
+            if (credentialDigestMap.size() >= maximumEntries) {
+                return;
+            }
+        }
+
+        credentialDigestMap.put(digest(username, password), nowNanoseconds + ttlNanoseconds);
+    }
+
+    /**
+     * Method to remove all entries
+     */
+    public void clear() {
+        credentialDigestMap.clear();
+    }
+
+    /**
+     * Method to get the number of entries
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return credentialDigestMap.size();
+    }
+
+    /**
+     * Method to get the number of cache hits
+     *
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Method to get the number of cache misses
+     *
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Method to create the keyed digest of credentials
+     *
+     * @param username
+     * @param password
+     * @return the CredentialDigest
+     */
+    private CredentialDigest digest(String username, String password) {
+        Mac mac = macThreadLocal.get();
+        mac.update(username.getBytes(StandardCharsets.UTF_8));
+        // Separator, so "ab" / "c" and "a" / "bc" have different digests
+        mac.update((byte) 0);
+        mac.update(password.getBytes(StandardCharsets.UTF_8));
+        return new CredentialDigest(mac.doFinal());
+    }
+
+    /**
+     * Method to evict expired entries
+     *
+     * @param nowNanoseconds
+     */
+    private void evict(long nowNanoseconds) {
+        for (Map.Entry<CredentialDigest, Long> entry : credentialDigestMap.entrySet()) {
+            if (nowNanoseconds - entry.getValue() >= 0) {
+                credentialDigestMap.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Class to implement a credential digest map key, compared in constant time
+     */
+    private static class CredentialDigest {
+
+        private final byte[] digest;
+        private final int hashCode;
+
+        private CredentialDigest(byte[] digest) {
+            this.digest = digest;
+            this.hashCode = ((digest[0] & 0xFF) << 24) | ((digest[1] & 0xFF) << 16) | ((digest[2] & 0xFF) << 8) | (digest[3] & 0xFF);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object instanceof CredentialDigest) {
+                return MessageDigest.isEqual(digest, ((CredentialDigest) object).digest);
+            }
+
+            return false;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.common.ratelimit;
+
+import org.devopology.common.precondition.Precondition;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Class to implement a per key (e.g. client address) token bucket rate limiter
+ * <p>
+ * Each bucket is a single AtomicLong holding the theoretical arrival time of the next request
+ * (generic cell rate algorithm), so acquiring a permit is a map read and a compare-and-set. Buckets
+ * idle longer than the idle eviction time are evicted by the request that finds the eviction overdue
+ * <p>
+ * The number of buckets is bounded (approximately, concurrent new keys may briefly exceed it). A new key
+ * at the maximum triggers an early eviction of full buckets (at most once per emission interval), which
+ * is lossless since a full bucket is the same as a new bucket. If still at the maximum, new keys share
+ * a single bucket until buckets are evicted
+ *
+ * @param <K> the key type
+ */
+public class TokenBucketRateLimiter<K> {
+
+    /**
+     * Default maximum number of buckets
+     */
+    public static final int DEFAULT_MAXIMUM_BUCKETS = 10000;
+
+    private final LongSupplier nanoTimeSupplier;
+    private final long emissionIntervalNanoseconds;
+    private final long burstNanoseconds;
+    private final long idleEvictionNanoseconds;
+    private final int maximumBuckets;
+    private final Map<K, Bucket> bucketMap;
+    private final Bucket sharedBucket;
+    private final AtomicLong nextEvictionNanoseconds;
+    private final AtomicLong nextEarlyEvictionNanoseconds;
+    private final LongAdder allowed;
+    private final LongAdder rejected;
+    private final LongAdder evicted;
+    private final LongAdder shared;
+
+    /**
+     * Constructor
+     *
+     * @param permitsPerSecond the sustained rate per key
+     * @param burst the number of permits a key can acquire at once
+     * @param idleEvictionMilliseconds
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst, long idleEvictionMilliseconds) {
+        this(permitsPerSecond, burst, idleEvictionMilliseconds, DEFAULT_MAXIMUM_BUCKETS, System::nanoTime);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param permitsPerSecond the sustained rate per key
+     * @param burst the number of permits a key can acquire at once
+     * @param idleEvictionMilliseconds
+     * @param maximumBuckets the maximum number of buckets (keys)
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst, long idleEvictionMilliseconds, int maximumBuckets) {
+        this(permitsPerSecond, burst, idleEvictionMilliseconds, maximumBuckets, System::nanoTime);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param permitsPerSecond the sustained rate per key
+     * @param burst the number of permits a key can acquire at once
+     * @param idleEvictionMilliseconds
+     * @param nanoTimeSupplier
+     */
+    TokenBucketRateLimiter(double permitsPerSecond, int burst, long idleEvictionMilliseconds, LongSupplier nanoTimeSupplier) {
+        this(permitsPerSecond, burst, idleEvictionMilliseconds, DEFAULT_MAXIMUM_BUCKETS, nanoTimeSupplier);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param permitsPerSecond the sustained rate per key
+     * @param burst the number of permits a key can acquire at once
+     * @param idleEvictionMilliseconds
+     * @param maximumBuckets the maximum number of buckets (keys)
+     * @param nanoTimeSupplier
+     */
+    TokenBucketRateLimiter(double permitsPerSecond, int burst, long idleEvictionMilliseconds, int maximumBuckets, LongSupplier nanoTimeSupplier) {
+        Precondition.isTrue(permitsPerSecond > 0, IllegalArgumentException.class, "permitsPerSecond must be > 0");
+        Precondition.inRange(burst, 1, Integer.MAX_VALUE, "burst is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.inRange(idleEvictionMilliseconds, 1, Long.MAX_VALUE / 1000000, "idleEvictionMilliseconds is outside range (1 - " + (Long.MAX_VALUE / 1000000) + ")");
+        Precondition.inRange(maximumBuckets, 1, Integer.MAX_VALUE, "maximumBuckets is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.notNull(nanoTimeSupplier, "nanoTimeSupplier is null");
+
+        this.nanoTimeSupplier = nanoTimeSupplier;
+        this.emissionIntervalNanoseconds = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanoseconds = emissionIntervalNanoseconds * burst;
+        this.idleEvictionNanoseconds = TimeUnit.MILLISECONDS.toNanos(idleEvictionMilliseconds);
+        this.maximumBuckets = maximumBuckets;
+        this.bucketMap = new ConcurrentHashMap<>();
+
+        long nowNanoseconds = nanoTimeSupplier.getAsLong();
+        this.sharedBucket = new Bucket(nowNanoseconds);
+        this.nextEvictionNanoseconds = new AtomicLong(nowNanoseconds + idleEvictionNanoseconds);
+        this.nextEarlyEvictionNanoseconds = new AtomicLong(nowNanoseconds);
+        this.allowed = new LongAdder();
+        this.rejected = new LongAdder();
+        this.evicted = new LongAdder();
+        this.shared = new LongAdder();
+    }
+
+    /**
+     * Method to try to acquire a permit
+     *
+     * @param key
+     * @return true if a permit was acquired, false if the key's rate is exceeded
+     */
+    public boolean tryAcquire(K key) {
+        Precondition.notNull(key, "key is null");
+
+        long nowNanoseconds = nanoTimeSupplier.getAsLong();
+
+        long nextEvictionNanoseconds = this.nextEvictionNanoseconds.get();
+        if ((nowNanoseconds - nextEvictionNanoseconds >= 0)
+                && this.nextEvictionNanoseconds.compareAndSet(nextEvictionNanoseconds, nowNanoseconds + idleEvictionNanoseconds)) {
+            evict(nowNanoseconds, idleEvictionNanoseconds);
+        }
+
+        Bucket bucket = bucketMap.get(key);
+        if (bucket == null) {
+            bucket = getNewBucket(key, nowNanoseconds);
+        }
+
+        while (true) {
+            long theoreticalArrivalNanoseconds = bucket.get();
+
+            // The bucket is full if the theoretical arrival time is in the past
+            long baseNanoseconds = (theoreticalArrivalNanoseconds - nowNanoseconds > 0) ? theoreticalArrivalNanoseconds : nowNanoseconds;
+            long newTheoreticalArrivalNanoseconds = baseNanoseconds + emissionIntervalNanoseconds;
+
+            if (newTheoreticalArrivalNanoseconds - nowNanoseconds > burstNanoseconds) {
+                rejected.increment();
+                return false;
+            }
+
+            if (bucket.compareAndSet(theoreticalArrivalNanoseconds, newTheoreticalArrivalNanoseconds)) {
+                allowed.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Method to get the number of keys with a bucket
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        return bucketMap.size();
+    }
+
+    /**
+     * Method to get the number of permits acquired
+     *
+     * @return the number of permits acquired
+     */
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    /**
+     * Method to get the number of rejected requests
+     *
+     * @return the number of rejected requests
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Method to get the number of evicted buckets
+     *
+     * @return the number of evicted buckets
+     */
+    public long getEvicted() {
+        return evicted.sum();
+    }
+
+    /**
+     * Method to get the number of requests that used the shared bucket (maximum buckets reached)
+     *
+     * @return the number of requests that used the shared bucket
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+
+    /**
+     * Method to create a bucket for a new key, or get the shared bucket if at the maximum number of buckets
+     *
+     * @param key
+     * @param nowNanoseconds
+     * @return the bucket
+     */
+    private Bucket getNewBucket(K key, long nowNanoseconds) {
+        if (bucketMap.size() >= maximumBuckets) {
+            long nextEarlyEvictionNanoseconds = this.nextEarlyEvictionNanoseconds.get();
+            if ((nowNanoseconds - nextEarlyEvictionNanoseconds >= 0)
+                    && this.nextEarlyEvictionNanoseconds.compareAndSet(nextEarlyEvictionNanoseconds, nowNanoseconds + emissionIntervalNanoseconds)) {
+                evict(nowNanoseconds, 0);
+            }
+
+            if (bucketMap.size() >= maximumBuckets) {
+                shared.increment();
+                return sharedBucket;
+            }
+        }
+
+        Bucket newBucket = new Bucket(nowNanoseconds);
+        Bucket bucket = bucketMap.putIfAbsent(key, newBucket);
+        return bucket != null ? bucket : newBucket;
+    }
+
+    /**
+     * Method to evict buckets that have been full for longer than the idle time
+     *
+     * @param nowNanoseconds
+     * @param idleNanoseconds 0 to evict all full buckets
+     */
+    private void evict(long nowNanoseconds, long idleNanoseconds) {
+        for (Map.Entry<K, Bucket> entry : bucketMap.entrySet()) {
+            // A bucket is idle once it has been full for the idle time
+            if (nowNanoseconds - entry.getValue().get() > idleNanoseconds) {
+                if (bucketMap.remove(entry.getKey(), entry.getValue())) {
+                    evicted.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Class to implement a bucket, holding the theoretical arrival time of the next request
+     */
+    private static class Bucket extends AtomicLong {
+
+        private Bucket(long theoreticalArrivalNanoseconds) {
+            super(theoreticalArrivalNanoseconds);
+        }
+    }
+}
@@ -16,16 +16,25 @@
 
 package org.devopology.common.sha;
 
-import java.io.UnsupportedEncodingException;
-import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 /**
- * Class to implement SHA1 methods
+ * Class to implement SHA methods
+ * <p>
+ * MessageDigest instances and the hex output buffer are reused per thread
  */
 public class SHA {
 
+    private static final char[] HEX_CHARACTERS = "0123456789abcdef".toCharArray();
+
+    // Legacy format, String.format("%040x", new BigInteger(1, digest)), leading zeros are dropped down to 40 characters
+    private static final int MINIMUM_HEX_LENGTH = 40;
+
+    private static final ThreadLocal<MessageDigest> SHA_512_MESSAGE_DIGEST = ThreadLocal.withInitial(() -> getMessageDigest("SHA-512"));
+    private static final ThreadLocal<char[]> SHA_512_HEX_CHARACTERS = ThreadLocal.withInitial(() -> new char[128]);
+
     private SHA() {
         // DO NOTHING
     }
@@ -39,15 +48,44 @@ public class SHA {
             return "";
         }
 
+        MessageDigest digest = SHA_512_MESSAGE_DIGEST.get();
+        digest.reset();
+        byte[] bytes = digest.digest(string.getBytes(StandardCharsets.UTF_8));
+
+        char[] characters = SHA_512_HEX_CHARACTERS.get();
+        int offset = toHex(bytes, characters);
+        return new String(characters, offset, characters.length - offset);
+    }
+
+    /**
+     * Method to convert bytes to lowercase hex characters
+     *
+     * @param bytes
+     * @param characters buffer of bytes.length * 2 characters
+     * @return the offset of the first character in the legacy format (leading zeros dropped down to 40 characters)
+     */
+    private static int toHex(byte[] bytes, char[] characters) {
+        int offset = -1;
+
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xFF;
+            characters[i * 2] = HEX_CHARACTERS[value >>> 4];
+            characters[(i * 2) + 1] = HEX_CHARACTERS[value & 0x0F];
+
+            if (offset == -1 && value != 0) {
+                offset = (value >>> 4) == 0 ? (i * 2) + 1 : i * 2;
+            }
+        }
+
+        int maximumOffset = characters.length - MINIMUM_HEX_LENGTH;
+        return (offset == -1 || offset > maximumOffset) ? maximumOffset : offset;
+    }
+
+    private static MessageDigest getMessageDigest(String algorithm) {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-512");
-            digest.reset();
-            digest.update(string.getBytes("UTF-8"));
-            return String.format("%040x", new BigInteger(1, digest.digest()));
+            return MessageDigest.getInstance(algorithm);
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException(e);
         }
     }
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.common.channel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsChannelTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        File file = directory.resolve("test" + MetricsChannel.FILENAME_SUFFIX).toFile();
+
+        try (MetricsChannelWriter metricsChannelWriter = new MetricsChannelWriter(file)) {
+            MetricsChannelWriter.Counter counter = metricsChannelWriter.counter("requests", "Number of requests", "method", "GET");
+            MetricsChannelWriter.Gauge gauge = metricsChannelWriter.gauge("queue_depth", "Queue depth");
+
+            MetricsChannelReader metricsChannelReader = new MetricsChannelReader(file);
+            List<MetricsChannelReader.Metric> metricList = metricsChannelReader.getMetricList();
+            assertEquals(2, metricList.size());
+
+            MetricsChannelReader.Metric requests = metricList.get(0);
+            assertEquals(MetricsChannel.Type.COUNTER, requests.getType());
+            assertEquals("requests", requests.getName());
+            assertEquals("Number of requests", requests.getHelp());
+            assertEquals(Arrays.asList("method"), requests.getLabelNames());
+            assertEquals(Arrays.asList("GET"), requests.getLabelValues());
+
+            MetricsChannelReader.Metric queueDepth = metricList.get(1);
+            assertEquals(MetricsChannel.Type.GAUGE, queueDepth.getType());
+            assertTrue(queueDepth.getLabelNames().isEmpty());
+
+            counter.inc();
+            counter.inc(2.5);
+            gauge.set(10);
+            gauge.dec();
+
+            assertEquals(3.5, metricsChannelReader.getValue(requests));
+            assertEquals(9, metricsChannelReader.getValue(queueDepth));
+
+            // Metrics registered after the reader was created
+            metricsChannelWriter.counter("requests", "Number of requests", "method", "POST").inc();
+            metricList = metricsChannelReader.getMetricList();
+            assertEquals(3, metricList.size());
+            assertEquals(Arrays.asList("POST"), metricList.get(2).getLabelValues());
+            assertEquals(1, metricsChannelReader.getValue(metricList.get(2)));
+        }
+
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testRegisterExisting() throws IOException {
+        File file = directory.resolve("test" + MetricsChannel.FILENAME_SUFFIX).toFile();
+
+        try (MetricsChannelWriter metricsChannelWriter = new MetricsChannelWriter(file)) {
+            MetricsChannelWriter.Counter counter = metricsChannelWriter.counter("requests", "Number of requests", "method", "GET");
+
+            assertSame(counter, metricsChannelWriter.counter("requests", "Number of requests", "method", "GET"));
+            assertThrows(IllegalArgumentException.class, () -> metricsChannelWriter.gauge("requests", "Number of requests", "method", "GET"));
+            assertEquals(1, new MetricsChannelReader(file).getMetricList().size());
+        }
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        File file = directory.resolve("test" + MetricsChannel.FILENAME_SUFFIX).toFile();
+
+        try (MetricsChannelWriter metricsChannelWriter = new MetricsChannelWriter(file)) {
+            MetricsChannelWriter.Counter counter = metricsChannelWriter.counter("requests", "Number of requests");
+            MetricsChannelWriter.Gauge gauge = metricsChannelWriter.gauge("in_flight", "In flight requests");
+
+            int threads = 4;
+            int increments = 100000;
+            List<Thread> threadList = new ArrayList<>();
+
+            for (int i = 0; i < threads; i++) {
+                Thread thread = new Thread(() -> {
+                    for (int j = 0; j < increments; j++) {
+                        counter.inc();
+                        gauge.inc();
+                        gauge.dec();
+                    }
+                });
+
+                threadList.add(thread);
+                thread.start();
+            }
+
+            for (Thread thread : threadList) {
+                thread.join();
+            }
+
+            // No updates are lost, and the slots hold the latest values
+            MetricsChannelReader metricsChannelReader = new MetricsChannelReader(file);
+            List<MetricsChannelReader.Metric> metricList = metricsChannelReader.getMetricList();
+
+            assertEquals(threads * increments, counter.get());
+            assertEquals(threads * increments, metricsChannelReader.getValue(metricList.get(0)));
+            assertEquals(0, gauge.get());
+            assertEquals(0, metricsChannelReader.getValue(metricList.get(1)));
+        }
+    }
+
+    @Test
+    public void testConcurrentSets() throws Exception {
+        File file = directory.resolve("test" + MetricsChannel.FILENAME_SUFFIX).toFile();
+
+        try (MetricsChannelWriter metricsChannelWriter = new MetricsChannelWriter(file)) {
+            MetricsChannelWriter.Gauge gauge = metricsChannelWriter.gauge("temperature", "Temperature");
+            MetricsChannelReader metricsChannelReader = new MetricsChannelReader(file);
+            MetricsChannelReader.Metric metric = metricsChannelReader.getMetricList().get(0);
+
+            int threads = 4;
+            int updates = 10000;
+
+            for (int round = 0; round < 20; round++) {
+                List<Thread> threadList = new ArrayList<>();
+
+                for (int i = 0; i < threads; i++) {
+                    int offset = (round * threads + i) * updates;
+
+                    Thread thread = new Thread(() -> {
+                        for (int j = 0; j < updates; j++) {
+                            // Mix sets and increments, so writers race on the slot
+                            if ((j % 2) == 0) {
+                                gauge.set(offset + j);
+                            } else {
+                                gauge.inc();
+                            }
+                        }
+                    });
+
+                    threadList.add(thread);
+                    thread.start();
+                }
+
+                for (Thread thread : threadList) {
+                    thread.join();
+                }
+
+                // Once the writers are quiescent, the slot holds the latest value
+                assertEquals(gauge.get(), metricsChannelReader.getValue(metric), "round " + round);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        File file = directory.resolve("test" + MetricsChannel.FILENAME_SUFFIX).toFile();
+
+        try (MetricsChannelWriter metricsChannelWriter = new MetricsChannelWriter(file, 2, 1024)) {
+            assertThrows(IllegalArgumentException.class, () -> metricsChannelWriter.counter("invalid-name", "help"));
+            assertThrows(IllegalArgumentException.class, () -> metricsChannelWriter.counter("requests", "help", "method"));
+            assertThrows(IllegalArgumentException.class, () -> metricsChannelWriter.counter("requests", "help").inc(-1));
+            assertThrows(IllegalArgumentException.class, () -> metricsChannelWriter.counter("requests", "help", "channel", "value"));
+            assertThrows(IllegalArgumentException.class, () -> metricsChannelWriter.counter("requests", "help", "method", "GET", "method", "POST"));
+
+            metricsChannelWriter.gauge("capacity", "help");
+            assertThrows(IllegalStateException.class, () -> metricsChannelWriter.gauge("exceeded", "help"));
+        }
+
+        Path notMetricsChannelFile = directory.resolve("invalid" + MetricsChannel.FILENAME_SUFFIX);
+        Files.write(notMetricsChannelFile, new byte[128]);
+        assertThrows(IOException.class, () -> new MetricsChannelReader(notMetricsChannelFile.toFile()));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.common.classloader;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ChildFirstJarInputStreamClassLoaderTest {
+
+    private static final int JAVA_VERSION =
+            ChildFirstJarInputStreamClassLoader.parseJavaVersion(System.getProperty("java.specification.version"));
+
+    @Test
+    public void testParseJavaVersion() {
+        assertEquals(8, ChildFirstJarInputStreamClassLoader.parseJavaVersion("1.8"));
+        assertEquals(11, ChildFirstJarInputStreamClassLoader.parseJavaVersion("11"));
+        assertEquals(21, ChildFirstJarInputStreamClassLoader.parseJavaVersion("21"));
+        assertEquals(8, ChildFirstJarInputStreamClassLoader.parseJavaVersion(null));
+        assertEquals(8, ChildFirstJarInputStreamClassLoader.parseJavaVersion("invalid"));
+    }
+
+    @Test
+    public void testMultiRelease() throws IOException {
+        ChildFirstJarInputStreamClassLoader classLoader = new ChildFirstJarInputStreamClassLoader(createJar(true), null);
+
+        // Versions above the running JVM are ignored
+        String expected = JAVA_VERSION >= 9 ? "9" : "base";
+        assertEquals(expected, read(classLoader, "resource.txt"));
+        assertEquals("base", read(classLoader, "base.txt"));
+        assertEquals("9", read(classLoader, "META-INF/versions/9/resource.txt"));
+        assertNull(classLoader.getResourceAsStream("missing.txt"));
+    }
+
+    @Test
+    public void testNotMultiRelease() throws IOException {
+        ChildFirstJarInputStreamClassLoader classLoader = new ChildFirstJarInputStreamClassLoader(createJar(false), null);
+
+        assertEquals("base", read(classLoader, "resource.txt"));
+        assertEquals("base", read(classLoader, "base.txt"));
+    }
+
+    private static JarInputStream createJar(boolean isMultiRelease) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        if (isMultiRelease) {
+            manifest.getMainAttributes().putValue("Multi-Release", "true");
+        }
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        try (JarOutputStream jarOutputStream = new JarOutputStream(byteArrayOutputStream, manifest)) {
+            write(jarOutputStream, "resource.txt", "base");
+            write(jarOutputStream, "base.txt", "base");
+            write(jarOutputStream, "META-INF/versions/9/resource.txt", "9");
+            write(jarOutputStream, "META-INF/versions/" + (JAVA_VERSION + 1) + "/resource.txt", "future");
+        }
+
+        return new JarInputStream(new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
+    }
+
+    private static void write(JarOutputStream jarOutputStream, String name, String content) throws IOException {
+        jarOutputStream.putNextEntry(new JarEntry(name));
+        jarOutputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        jarOutputStream.closeEntry();
+    }
+
+    private static String read(ClassLoader classLoader, String name) throws IOException {
+        try (InputStream inputStream = classLoader.getResourceAsStream(name)) {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            byte[] bytes = new byte[1024];
+            int count;
+            while ((count = inputStream.read(bytes)) != -1) {
+                byteArrayOutputStream.write(bytes, 0, count);
+            }
+
+            return new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.common.password;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VerifiedCredentialCacheTest {
+
+    @Test
+    public void testVerified() {
+        AtomicLong nanoTime = new AtomicLong(-TimeUnit.SECONDS.toNanos(1));
+        VerifiedCredentialCache verifiedCredentialCache = new VerifiedCredentialCache(16, 1000, nanoTime::get);
+
+        assertFalse(verifiedCredentialCache.isVerified("test", "password"));
+
+        verifiedCredentialCache.put("test", "password");
+
+        assertTrue(verifiedCredentialCache.isVerified("test", "password"));
+        assertFalse(verifiedCredentialCache.isVerified("test", "Password"));
+        assertFalse(verifiedCredentialCache.isVerified("test2", "password"));
+
+        // The username / password separator prevents collisions
+        verifiedCredentialCache.put("ab", "c");
+        assertFalse(verifiedCredentialCache.isVerified("a", "bc"));
+
+        assertEquals(1, verifiedCredentialCache.getHits());
+        assertEquals(4, verifiedCredentialCache.getMisses());
+    }
+
+    @Test
+    public void testTTL() {
+        AtomicLong nanoTime = new AtomicLong(-TimeUnit.SECONDS.toNanos(1));
+        VerifiedCredentialCache verifiedCredentialCache = new VerifiedCredentialCache(16, 1000, nanoTime::get);
+
+        verifiedCredentialCache.put("test", "password");
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertTrue(verifiedCredentialCache.isVerified("test", "password"));
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertFalse(verifiedCredentialCache.isVerified("test", "password"));
+
+        // The expired entry is removed
+        assertEquals(0, verifiedCredentialCache.size());
+    }
+
+    @Test
+    public void testMaximumEntries() {
+        AtomicLong nanoTime = new AtomicLong(0);
+        VerifiedCredentialCache verifiedCredentialCache = new VerifiedCredentialCache(2, 1000, nanoTime::get);
+
+        verifiedCredentialCache.put("a", "password");
+        verifiedCredentialCache.put("b", "password");
+        verifiedCredentialCache.put("c", "password");
+
+        // The cache is full, "c" isn't cached
+        assertEquals(2, verifiedCredentialCache.size());
+        assertFalse(verifiedCredentialCache.isVerified("c", "password"));
+
+        // Expired entries are evicted to make room
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        verifiedCredentialCache.put("c", "password");
+
+        assertEquals(1, verifiedCredentialCache.size());
+        assertTrue(verifiedCredentialCache.isVerified("c", "password"));
+
+        verifiedCredentialCache.clear();
+        assertEquals(0, verifiedCredentialCache.size());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new VerifiedCredentialCache(0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new VerifiedCredentialCache(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new VerifiedCredentialCache(1, 1000).isVerified(null, "password"));
+    }
+}
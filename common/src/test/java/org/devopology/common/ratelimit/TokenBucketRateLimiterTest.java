@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.common.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketRateLimiterTest {
+
+    @Test
+    public void testBurstAndRefill() {
+        AtomicLong nanoTime = new AtomicLong(1000);
+        TokenBucketRateLimiter<String> tokenBucketRateLimiter = new TokenBucketRateLimiter<>(2, 3, 60000, nanoTime::get);
+
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertFalse(tokenBucketRateLimiter.tryAcquire("a"));
+
+        // Other keys have their own bucket
+        assertTrue(tokenBucketRateLimiter.tryAcquire("b"));
+
+        // 2 permits per second, one permit every 500 milliseconds
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(499));
+        assertFalse(tokenBucketRateLimiter.tryAcquire("a"));
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertFalse(tokenBucketRateLimiter.tryAcquire("a"));
+
+        // The bucket doesn't fill beyond the burst
+        nanoTime.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertFalse(tokenBucketRateLimiter.tryAcquire("a"));
+
+        assertEquals(8, tokenBucketRateLimiter.getAllowed());
+        assertEquals(4, tokenBucketRateLimiter.getRejected());
+    }
+
+    @Test
+    public void testIdleEviction() {
+        AtomicLong nanoTime = new AtomicLong(-TimeUnit.SECONDS.toNanos(1));
+        TokenBucketRateLimiter<String> tokenBucketRateLimiter = new TokenBucketRateLimiter<>(1, 1, 1000, nanoTime::get);
+
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("b"));
+        assertEquals(2, tokenBucketRateLimiter.size());
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("b"));
+
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("b"));
+
+        // "a" was idle, "b" wasn't
+        assertEquals(1, tokenBucketRateLimiter.size());
+        assertEquals(1, tokenBucketRateLimiter.getEvicted());
+    }
+
+    @Test
+    public void testMaximumBuckets() {
+        AtomicLong nanoTime = new AtomicLong(0);
+        TokenBucketRateLimiter<String> tokenBucketRateLimiter = new TokenBucketRateLimiter<>(1, 1, 60000, 2, nanoTime::get);
+
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("b"));
+        assertEquals(2, tokenBucketRateLimiter.size());
+
+        // At the maximum, no bucket is full, so new keys share a bucket
+        assertTrue(tokenBucketRateLimiter.tryAcquire("c"));
+        assertFalse(tokenBucketRateLimiter.tryAcquire("d"));
+        assertFalse(tokenBucketRateLimiter.tryAcquire("c"));
+        assertEquals(2, tokenBucketRateLimiter.size());
+        assertEquals(3, tokenBucketRateLimiter.getShared());
+
+        // Existing keys keep their own bucket
+        assertFalse(tokenBucketRateLimiter.tryAcquire("a"));
+        assertEquals(3, tokenBucketRateLimiter.getShared());
+
+        // Full buckets are evicted early (before the idle eviction time) to make room for new keys
+        nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertTrue(tokenBucketRateLimiter.tryAcquire("e"));
+        assertEquals(1, tokenBucketRateLimiter.size());
+        assertEquals(2, tokenBucketRateLimiter.getEvicted());
+
+        assertTrue(tokenBucketRateLimiter.tryAcquire("a"));
+        assertFalse(tokenBucketRateLimiter.tryAcquire("a"));
+        assertEquals(2, tokenBucketRateLimiter.size());
+        assertEquals(3, tokenBucketRateLimiter.getShared());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter<String>(0, 1, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter<String>(1, 0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter<String>(1, 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter<String>(1, 1, 1000, 0));
+    }
+}
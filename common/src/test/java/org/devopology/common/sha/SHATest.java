@@ -18,6 +18,11 @@ package org.devopology.common.sha;
 
 import org.junit.jupiter.api.Test;
 
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public class SHATest {
@@ -31,4 +36,18 @@ public class SHATest {
 
         assertEquals(expectedSHA512Hash, actualSHA512Hash);
     }
+
+    @Test
+    public void testLegacyFormat() throws NoSuchAlgorithmException {
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-512");
+
+        // Includes hashes with leading zeros, which the legacy format drops
+        for (int i = 0; i < 10000; i++) {
+            String value = "value-" + i;
+            String expectedSHA512Hash = String.format(
+                    "%040x", new BigInteger(1, messageDigest.digest(value.getBytes(StandardCharsets.UTF_8))));
+
+            assertEquals(expectedSHA512Hash, SHA.sha512Hash(value));
+        }
+    }
 }
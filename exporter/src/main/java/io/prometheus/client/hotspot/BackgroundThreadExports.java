@@ -0,0 +1,249 @@
+/**
+ * Based on https://github.com/prometheus/client_java/tree/master/simpleclient_hotspot/src/main/java/io/prometheus/client/hotspot/ThreadExports.java
+ *
+ * Exports the same metrics as ThreadExports, but counts thread states and detects deadlocks
+ * in the background, so a scrape never calls ThreadMXBean.getThreadInfo(), findDeadlockedThreads(),
+ * or findMonitorDeadlockedThreads(), which require a safepoint and are expensive with many threads
+ */
+
+package io.prometheus.client.hotspot;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+import io.prometheus.client.Predicate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static io.prometheus.client.SampleNameFilter.ALLOW_ALL;
+
+/**
+ * Exports metrics about JVM thread areas, with thread states and deadlocks collected in the background.
+ * <p>
+ * Example usage:
+ * <pre>
+ * {@code
+ *   new BackgroundThreadExports(15000, 300000).register();
+ * }
+ * </pre>
+ * Example metrics being exported:
+ * <pre>
+ *   jvm_threads_current{} 300
+ *   jvm_threads_daemon{} 200
+ *   jvm_threads_peak{} 410
+ *   jvm_threads_started_total{} 1200
+ *   jvm_threads_state{state="RUNNABLE"} 10
+ *   metrics_exporter_thread_state_duration_seconds{} 0.002
+ *   metrics_exporter_thread_deadlock_duration_seconds{} 0.120
+ * </pre>
+ */
+public class BackgroundThreadExports extends Collector {
+
+    public static final String UNKNOWN = "UNKNOWN";
+
+    public static final String JVM_THREADS_STATE = "jvm_threads_state";
+    private static final String JVM_THREADS_CURRENT = "jvm_threads_current";
+    private static final String JVM_THREADS_DAEMON = "jvm_threads_daemon";
+    private static final String JVM_THREADS_PEAK = "jvm_threads_peak";
+    private static final String JVM_THREADS_STARTED_TOTAL = "jvm_threads_started_total";
+    private static final String JVM_THREADS_DEADLOCKED = "jvm_threads_deadlocked";
+    private static final String JVM_THREADS_DEADLOCKED_MONITOR = "jvm_threads_deadlocked_monitor";
+    private static final String METRICS_EXPORTER_THREAD_STATE_DURATION_SECONDS = "metrics_exporter_thread_state_duration_seconds";
+    private static final String METRICS_EXPORTER_THREAD_DEADLOCK_DURATION_SECONDS = "metrics_exporter_thread_deadlock_duration_seconds";
+
+    private final ThreadMXBean threadBean;
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private volatile long[] threadStateCounts;
+    private volatile double threadStateDurationSeconds;
+    private volatile double deadlocked;
+    private volatile double deadlockedMonitor;
+    private volatile double deadlockDurationSeconds;
+    private volatile boolean isDeadlockDetected;
+
+    public BackgroundThreadExports(long stateIntervalMilliseconds, long deadlockIntervalMilliseconds) {
+        this(ManagementFactory.getThreadMXBean(), stateIntervalMilliseconds, deadlockIntervalMilliseconds);
+    }
+
+    public BackgroundThreadExports(ThreadMXBean threadBean, long stateIntervalMilliseconds, long deadlockIntervalMilliseconds) {
+        this.threadBean = threadBean;
+        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "thread-exports");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Count states once before the first scrape, the first deadlock detection runs immediately in the background
+        countThreadStates();
+
+        scheduledExecutorService.scheduleWithFixedDelay(
+                this::countThreadStates, stateIntervalMilliseconds, stateIntervalMilliseconds, TimeUnit.MILLISECONDS);
+        scheduledExecutorService.scheduleWithFixedDelay(
+                this::detectDeadlocks, 0, deadlockIntervalMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background collection
+     */
+    public void close() {
+        scheduledExecutorService.shutdownNow();
+    }
+
+    /**
+     * Count thread states by enumerating the live threads, Thread.getState() doesn't require a safepoint
+     */
+    private void countThreadStates() {
+        try {
+            long startNanoseconds = System.nanoTime();
+
+            ThreadGroup rootThreadGroup = Thread.currentThread().getThreadGroup();
+            while (rootThreadGroup.getParent() != null) {
+                rootThreadGroup = rootThreadGroup.getParent();
+            }
+
+            Thread[] threads = new Thread[rootThreadGroup.activeCount() + 16];
+            int count;
+            while ((count = rootThreadGroup.enumerate(threads, true)) == threads.length) {
+                threads = new Thread[threads.length * 2];
+            }
+
+            Thread.State[] states = Thread.State.values();
+            long[] threadStateCounts = new long[states.length + 1];
+            for (int i = 0; i < count; i++) {
+                threadStateCounts[threads[i].getState().ordinal()]++;
+            }
+
+            // Threads the JVM reports that aren't in a thread group
+            threadStateCounts[states.length] = Math.max(0, threadBean.getThreadCount() - count);
+
+            this.threadStateCounts = threadStateCounts;
+            this.threadStateDurationSeconds = (System.nanoTime() - startNanoseconds) / NANOSECONDS_PER_SECOND;
+        } catch (Throwable t) {
+            // DO NOTHING, keep the previous counts
+        }
+    }
+
+    /**
+     * Detect deadlocked threads
+     */
+    private void detectDeadlocks() {
+        try {
+            long startNanoseconds = System.nanoTime();
+
+            this.deadlocked = nullSafeArrayLength(threadBean.findDeadlockedThreads());
+            this.deadlockedMonitor = nullSafeArrayLength(threadBean.findMonitorDeadlockedThreads());
+            this.deadlockDurationSeconds = (System.nanoTime() - startNanoseconds) / NANOSECONDS_PER_SECOND;
+            this.isDeadlockDetected = true;
+        } catch (Throwable t) {
+            // DO NOTHING, keep the previous values
+        }
+    }
+
+    void addThreadMetrics(List<MetricFamilySamples> sampleFamilies, Predicate<String> nameFilter) {
+        if (nameFilter.test(JVM_THREADS_CURRENT)) {
+            sampleFamilies.add(
+                    new GaugeMetricFamily(
+                            JVM_THREADS_CURRENT,
+                            "Current thread count of a JVM",
+                            threadBean.getThreadCount()));
+        }
+
+        if (nameFilter.test(JVM_THREADS_DAEMON)) {
+            sampleFamilies.add(
+                    new GaugeMetricFamily(
+                            JVM_THREADS_DAEMON,
+                            "Daemon thread count of a JVM",
+                            threadBean.getDaemonThreadCount()));
+        }
+
+        if (nameFilter.test(JVM_THREADS_PEAK)) {
+            sampleFamilies.add(
+                    new GaugeMetricFamily(
+                            JVM_THREADS_PEAK,
+                            "Peak thread count of a JVM",
+                            threadBean.getPeakThreadCount()));
+        }
+
+        if (nameFilter.test(JVM_THREADS_STARTED_TOTAL)) {
+            sampleFamilies.add(
+                    new CounterMetricFamily(
+                            JVM_THREADS_STARTED_TOTAL,
+                            "Started thread count of a JVM",
+                            threadBean.getTotalStartedThreadCount()));
+        }
+
+        if (isDeadlockDetected) {
+            if (nameFilter.test(JVM_THREADS_DEADLOCKED)) {
+                sampleFamilies.add(
+                        new GaugeMetricFamily(
+                                JVM_THREADS_DEADLOCKED,
+                                "Cycles of JVM-threads that are in deadlock waiting to acquire object monitors or ownable synchronizers",
+                                deadlocked));
+            }
+
+            if (nameFilter.test(JVM_THREADS_DEADLOCKED_MONITOR)) {
+                sampleFamilies.add(
+                        new GaugeMetricFamily(
+                                JVM_THREADS_DEADLOCKED_MONITOR,
+                                "Cycles of JVM-threads that are in deadlock waiting to acquire object monitors",
+                                deadlockedMonitor));
+            }
+
+            if (nameFilter.test(METRICS_EXPORTER_THREAD_DEADLOCK_DURATION_SECONDS)) {
+                sampleFamilies.add(
+                        new GaugeMetricFamily(
+                                METRICS_EXPORTER_THREAD_DEADLOCK_DURATION_SECONDS,
+                                "Time the last background thread deadlock detection took, in seconds",
+                                deadlockDurationSeconds));
+            }
+        }
+
+        long[] threadStateCounts = this.threadStateCounts;
+        if ((threadStateCounts != null) && nameFilter.test(JVM_THREADS_STATE)) {
+            GaugeMetricFamily threadStateFamily = new GaugeMetricFamily(
+                    JVM_THREADS_STATE,
+                    "Current count of threads by state",
+                    Collections.singletonList("state"));
+
+            Thread.State[] states = Thread.State.values();
+            for (Thread.State state : states) {
+                threadStateFamily.addMetric(Collections.singletonList(state.name()), threadStateCounts[state.ordinal()]);
+            }
+
+            threadStateFamily.addMetric(Collections.singletonList(UNKNOWN), threadStateCounts[states.length]);
+
+            sampleFamilies.add(threadStateFamily);
+        }
+
+        if ((threadStateCounts != null) && nameFilter.test(METRICS_EXPORTER_THREAD_STATE_DURATION_SECONDS)) {
+            sampleFamilies.add(
+                    new GaugeMetricFamily(
+                            METRICS_EXPORTER_THREAD_STATE_DURATION_SECONDS,
+                            "Time the last background thread state count took, in seconds",
+                            threadStateDurationSeconds));
+        }
+    }
+
+    private static double nullSafeArrayLength(long[] array) {
+        return null == array ? 0 : array.length;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        return collect(null);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect(Predicate<String> nameFilter) {
+        List<MetricFamilySamples> mfs = new ArrayList<MetricFamilySamples>();
+        addThreadMetrics(mfs, nameFilter == null ? ALLOW_ALL : nameFilter);
+        return mfs;
+    }
+}
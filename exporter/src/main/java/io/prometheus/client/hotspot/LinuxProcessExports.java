@@ -0,0 +1,482 @@
+/**
+ * Based on https://github.com/prometheus/client_java/tree/master/simpleclient_hotspot/src/main/java/io/prometheus/client/hotspot/StandardExports.java
+ *
+ * Exports the same process metrics as StandardExports on Linux, plus container (cgroup v1 / v2) CPU throttling,
+ * memory, and OOM metrics. Files are kept open and read into reusable buffers, numbers are parsed without
+ * String allocation, and the file descriptor count (a directory listing) is only refreshed on a slower interval
+ */
+
+package io.prometheus.client.hotspot;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+import io.prometheus.client.Predicate;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.prometheus.client.SampleNameFilter.ALLOW_ALL;
+
+/**
+ * Exports Linux process and container metrics.
+ * <p>
+ * Example usage:
+ * <pre>
+ * {@code
+ *   if (LinuxProcessExports.isSupported()) {
+ *     new LinuxProcessExports(60000).register();
+ *   }
+ * }
+ * </pre>
+ * Example metrics being exported:
+ * <pre>
+ *   process_cpu_seconds_total{} 12.3
+ *   process_resident_memory_bytes{} 120000000
+ *   container_cpu_cfs_throttled_periods_total{} 5
+ *   container_cpu_cfs_throttled_seconds_total{} 0.75
+ *   container_memory_usage_bytes{} 300000000
+ *   container_memory_limit_bytes{} 1073741824
+ *   container_oom_events_total{} 0
+ * </pre>
+ */
+public class LinuxProcessExports extends Collector {
+
+    private static final String PROCESS_CPU_SECONDS_TOTAL = "process_cpu_seconds_total";
+    private static final String PROCESS_START_TIME_SECONDS = "process_start_time_seconds";
+    private static final String PROCESS_OPEN_FDS = "process_open_fds";
+    private static final String PROCESS_MAX_FDS = "process_max_fds";
+    private static final String PROCESS_VIRTUAL_MEMORY_BYTES = "process_virtual_memory_bytes";
+    private static final String PROCESS_RESIDENT_MEMORY_BYTES = "process_resident_memory_bytes";
+    private static final String CONTAINER_CPU_CFS_PERIODS_TOTAL = "container_cpu_cfs_periods_total";
+    private static final String CONTAINER_CPU_CFS_THROTTLED_PERIODS_TOTAL = "container_cpu_cfs_throttled_periods_total";
+    private static final String CONTAINER_CPU_CFS_THROTTLED_SECONDS_TOTAL = "container_cpu_cfs_throttled_seconds_total";
+    private static final String CONTAINER_CPU_LIMIT_CORES = "container_cpu_limit_cores";
+    private static final String CONTAINER_MEMORY_USAGE_BYTES = "container_memory_usage_bytes";
+    private static final String CONTAINER_MEMORY_LIMIT_BYTES = "container_memory_limit_bytes";
+    private static final String CONTAINER_OOM_EVENTS_TOTAL = "container_oom_events_total";
+
+    private static final byte[] VM_SIZE = ProcFile.toBytes("VmSize");
+    private static final byte[] VM_RSS = ProcFile.toBytes("VmRSS");
+    private static final byte[] MAX_OPEN_FILES = ProcFile.toBytes("Max open files");
+    private static final byte[] NR_PERIODS = ProcFile.toBytes("nr_periods");
+    private static final byte[] NR_THROTTLED = ProcFile.toBytes("nr_throttled");
+    private static final byte[] THROTTLED_TIME = ProcFile.toBytes("throttled_time");
+    private static final byte[] THROTTLED_USEC = ProcFile.toBytes("throttled_usec");
+    private static final byte[] OOM_KILL = ProcFile.toBytes("oom_kill");
+
+    // cgroup v1 reports "no limit" as a very large page aligned value
+    private static final long CGROUP_V1_UNLIMITED = Long.MAX_VALUE / 2;
+
+    private static final File PROC_SELF = new File("/proc/self");
+
+    private final long fdIntervalNanoseconds;
+    private final OperatingSystemMXBean operatingSystemMXBean;
+    private final Method getProcessCpuTimeMethod;
+    private final double startTimeSeconds;
+    private final Path fdDirectory;
+
+    private final ProcFile statusProcFile;
+    private final ProcFile limitsProcFile;
+    private final ProcFile cpuStatProcFile;
+    private final ProcFile cpuMaxProcFile;
+    private final ProcFile cpuQuotaProcFile;
+    private final ProcFile cpuPeriodProcFile;
+    private final ProcFile memoryUsageProcFile;
+    private final ProcFile memoryLimitProcFile;
+    private final ProcFile memoryEventsProcFile;
+    private final boolean isCpuCgroupV2;
+    private final boolean isMemoryCgroupV2;
+
+    private long fdTimestampNanoseconds;
+    private long openFds = -1;
+    private long maxFds = -1;
+
+    /**
+     * Determine whether the collector is supported (Linux with /proc)
+     *
+     * @return
+     */
+    public static boolean isSupported() {
+        return new File("/proc/self/status").canRead();
+    }
+
+    public LinuxProcessExports(long fdIntervalMilliseconds) {
+        // Resolve the cgroup directories once, allocation is only avoided when collecting
+        this(
+                fdIntervalMilliseconds,
+                PROC_SELF,
+                readCgroupDirectories(new File(PROC_SELF, "mountinfo"), readCgroupPaths(new File(PROC_SELF, "cgroup"))));
+    }
+
+    /**
+     * Constructor using a /proc/self directory and the resolved cgroup directories
+     * ("cpu" and "memory" for cgroup v1, "" for the cgroup v2 unified hierarchy)
+     *
+     * @param fdIntervalMilliseconds
+     * @param procSelfDirectory
+     * @param cgroupDirectoryMap
+     */
+    LinuxProcessExports(long fdIntervalMilliseconds, File procSelfDirectory, Map<String, File> cgroupDirectoryMap) {
+        this.fdIntervalNanoseconds = fdIntervalMilliseconds * 1000000L;
+        this.operatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+        this.getProcessCpuTimeMethod = getMethod(operatingSystemMXBean, "getProcessCpuTime");
+        this.startTimeSeconds = ManagementFactory.getRuntimeMXBean().getStartTime() / MILLISECONDS_PER_SECOND;
+        this.fdDirectory = new File(procSelfDirectory, "fd").toPath();
+
+        this.statusProcFile = ProcFile.open(new File(procSelfDirectory, "status"));
+        this.limitsProcFile = ProcFile.open(new File(procSelfDirectory, "limits"));
+
+        File cpuDirectory = cgroupDirectoryMap.get("cpu");
+        if (cpuDirectory != null) {
+            isCpuCgroupV2 = false;
+            cpuStatProcFile = ProcFile.open(new File(cpuDirectory, "cpu.stat"));
+            cpuMaxProcFile = null;
+            cpuQuotaProcFile = ProcFile.open(new File(cpuDirectory, "cpu.cfs_quota_us"));
+            cpuPeriodProcFile = ProcFile.open(new File(cpuDirectory, "cpu.cfs_period_us"));
+        } else {
+            File cgroupV2Directory = cgroupDirectoryMap.get("");
+            isCpuCgroupV2 = true;
+            cpuStatProcFile = cgroupV2Directory != null ? ProcFile.open(new File(cgroupV2Directory, "cpu.stat")) : null;
+            cpuMaxProcFile = cgroupV2Directory != null ? ProcFile.open(new File(cgroupV2Directory, "cpu.max")) : null;
+            cpuQuotaProcFile = null;
+            cpuPeriodProcFile = null;
+        }
+
+        File memoryDirectory = cgroupDirectoryMap.get("memory");
+        if (memoryDirectory != null) {
+            isMemoryCgroupV2 = false;
+            memoryUsageProcFile = ProcFile.open(new File(memoryDirectory, "memory.usage_in_bytes"));
+            memoryLimitProcFile = ProcFile.open(new File(memoryDirectory, "memory.limit_in_bytes"));
+            memoryEventsProcFile = ProcFile.open(new File(memoryDirectory, "memory.oom_control"));
+        } else {
+            File cgroupV2Directory = cgroupDirectoryMap.get("");
+            isMemoryCgroupV2 = true;
+            memoryUsageProcFile = cgroupV2Directory != null ? ProcFile.open(new File(cgroupV2Directory, "memory.current")) : null;
+            memoryLimitProcFile = cgroupV2Directory != null ? ProcFile.open(new File(cgroupV2Directory, "memory.max")) : null;
+            memoryEventsProcFile = cgroupV2Directory != null ? ProcFile.open(new File(cgroupV2Directory, "memory.events")) : null;
+        }
+    }
+
+    /**
+     * Close the open files
+     */
+    public void close() {
+        for (ProcFile procFile : new ProcFile[] {
+                statusProcFile, limitsProcFile, cpuStatProcFile, cpuMaxProcFile, cpuQuotaProcFile,
+                cpuPeriodProcFile, memoryUsageProcFile, memoryLimitProcFile, memoryEventsProcFile }) {
+            if (procFile != null) {
+                procFile.close();
+            }
+        }
+    }
+
+    synchronized void addProcessMetrics(List<MetricFamilySamples> sampleFamilies, Predicate<String> nameFilter) {
+        if ((getProcessCpuTimeMethod != null) && nameFilter.test(PROCESS_CPU_SECONDS_TOTAL)) {
+            try {
+                long processCpuTime = (Long) getProcessCpuTimeMethod.invoke(operatingSystemMXBean);
+                sampleFamilies.add(
+                        new CounterMetricFamily(
+                                PROCESS_CPU_SECONDS_TOTAL,
+                                "Total user and system CPU time spent in seconds.",
+                                processCpuTime / NANOSECONDS_PER_SECOND));
+            } catch (Exception e) {
+                // DO NOTHING
+            }
+        }
+
+        if (nameFilter.test(PROCESS_START_TIME_SECONDS)) {
+            sampleFamilies.add(
+                    new GaugeMetricFamily(
+                            PROCESS_START_TIME_SECONDS,
+                            "Start time of the process since unix epoch in seconds.",
+                            startTimeSeconds));
+        }
+
+        long nowNanoseconds = System.nanoTime();
+        if ((openFds < 0) || (nowNanoseconds - fdTimestampNanoseconds >= fdIntervalNanoseconds)) {
+            fdTimestampNanoseconds = nowNanoseconds;
+            openFds = countOpenFds(fdDirectory);
+
+            if ((limitsProcFile != null) && limitsProcFile.read()) {
+                maxFds = limitsProcFile.getLong(MAX_OPEN_FILES);
+            }
+        }
+
+        if ((openFds >= 0) && nameFilter.test(PROCESS_OPEN_FDS)) {
+            sampleFamilies.add(
+                    new GaugeMetricFamily(
+                            PROCESS_OPEN_FDS,
+                            "Number of open file descriptors.",
+                            openFds));
+        }
+
+        if ((maxFds >= 0) && (maxFds != ProcFile.UNLIMITED) && nameFilter.test(PROCESS_MAX_FDS)) {
+            sampleFamilies.add(
+                    new GaugeMetricFamily(
+                            PROCESS_MAX_FDS,
+                            "Maximum number of open file descriptors.",
+                            maxFds));
+        }
+
+        if ((statusProcFile != null) && statusProcFile.read()) {
+            long vmSize = statusProcFile.getLong(VM_SIZE);
+            if ((vmSize >= 0) && nameFilter.test(PROCESS_VIRTUAL_MEMORY_BYTES)) {
+                sampleFamilies.add(
+                        new GaugeMetricFamily(
+                                PROCESS_VIRTUAL_MEMORY_BYTES,
+                                "Virtual memory size in bytes.",
+                                vmSize * 1024));
+            }
+
+            long vmRSS = statusProcFile.getLong(VM_RSS);
+            if ((vmRSS >= 0) && nameFilter.test(PROCESS_RESIDENT_MEMORY_BYTES)) {
+                sampleFamilies.add(
+                        new GaugeMetricFamily(
+                                PROCESS_RESIDENT_MEMORY_BYTES,
+                                "Resident memory size in bytes.",
+                                vmRSS * 1024));
+            }
+        }
+    }
+
+    synchronized void addContainerMetrics(List<MetricFamilySamples> sampleFamilies, Predicate<String> nameFilter) {
+        if ((cpuStatProcFile != null) && cpuStatProcFile.read()) {
+            long periods = cpuStatProcFile.getLong(NR_PERIODS);
+            if ((periods >= 0) && nameFilter.test(CONTAINER_CPU_CFS_PERIODS_TOTAL)) {
+                sampleFamilies.add(
+                        new CounterMetricFamily(
+                                CONTAINER_CPU_CFS_PERIODS_TOTAL,
+                                "Number of elapsed CPU quota enforcement periods.",
+                                periods));
+            }
+
+            long throttledPeriods = cpuStatProcFile.getLong(NR_THROTTLED);
+            if ((throttledPeriods >= 0) && nameFilter.test(CONTAINER_CPU_CFS_THROTTLED_PERIODS_TOTAL)) {
+                sampleFamilies.add(
+                        new CounterMetricFamily(
+                                CONTAINER_CPU_CFS_THROTTLED_PERIODS_TOTAL,
+                                "Number of CPU quota enforcement periods that were throttled.",
+                                throttledPeriods));
+            }
+
+            // cgroup v2 reports microseconds, cgroup v1 reports nanoseconds
+            double throttledSeconds = isCpuCgroupV2
+                    ? cpuStatProcFile.getLong(THROTTLED_USEC) / 1000000.0
+                    : cpuStatProcFile.getLong(THROTTLED_TIME) / NANOSECONDS_PER_SECOND;
+            if ((throttledSeconds >= 0) && nameFilter.test(CONTAINER_CPU_CFS_THROTTLED_SECONDS_TOTAL)) {
+                sampleFamilies.add(
+                        new CounterMetricFamily(
+                                CONTAINER_CPU_CFS_THROTTLED_SECONDS_TOTAL,
+                                "Total time the container has been CPU throttled in seconds.",
+                                throttledSeconds));
+            }
+        }
+
+        long quota = ProcFile.MISSING;
+        long period = ProcFile.MISSING;
+        if (isCpuCgroupV2) {
+            if ((cpuMaxProcFile != null) && cpuMaxProcFile.read()) {
+                quota = cpuMaxProcFile.getLong(0);
+                period = cpuMaxProcFile.getLong(1);
+            }
+        } else if ((cpuQuotaProcFile != null) && (cpuPeriodProcFile != null) && cpuQuotaProcFile.read() && cpuPeriodProcFile.read()) {
+            quota = cpuQuotaProcFile.getLong(0);
+            period = cpuPeriodProcFile.getLong(0);
+        }
+
+        if ((quota > 0) && (quota != ProcFile.UNLIMITED) && (period > 0) && nameFilter.test(CONTAINER_CPU_LIMIT_CORES)) {
+            sampleFamilies.add(
+                    new GaugeMetricFamily(
+                            CONTAINER_CPU_LIMIT_CORES,
+                            "CPU limit (quota / period) in cores.",
+                            (double) quota / period));
+        }
+
+        if ((memoryUsageProcFile != null) && memoryUsageProcFile.read()) {
+            long usage = memoryUsageProcFile.getLong(0);
+            if ((usage >= 0) && nameFilter.test(CONTAINER_MEMORY_USAGE_BYTES)) {
+                sampleFamilies.add(
+                        new GaugeMetricFamily(
+                                CONTAINER_MEMORY_USAGE_BYTES,
+                                "Container memory usage in bytes.",
+                                usage));
+            }
+        }
+
+        if ((memoryLimitProcFile != null) && memoryLimitProcFile.read()) {
+            long limit = memoryLimitProcFile.getLong(0);
+            boolean isLimited = (limit >= 0) && (limit != ProcFile.UNLIMITED) && (isMemoryCgroupV2 || (limit < CGROUP_V1_UNLIMITED));
+            if (isLimited && nameFilter.test(CONTAINER_MEMORY_LIMIT_BYTES)) {
+                sampleFamilies.add(
+                        new GaugeMetricFamily(
+                                CONTAINER_MEMORY_LIMIT_BYTES,
+                                "Container memory limit in bytes.",
+                                limit));
+            }
+        }
+
+        if ((memoryEventsProcFile != null) && memoryEventsProcFile.read()) {
+            long oomKills = memoryEventsProcFile.getLong(OOM_KILL);
+            if ((oomKills >= 0) && nameFilter.test(CONTAINER_OOM_EVENTS_TOTAL)) {
+                sampleFamilies.add(
+                        new CounterMetricFamily(
+                                CONTAINER_OOM_EVENTS_TOTAL,
+                                "Number of processes killed by the OOM killer in the container.",
+                                oomKills));
+            }
+        }
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        return collect(null);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect(Predicate<String> nameFilter) {
+        List<MetricFamilySamples> mfs = new ArrayList<MetricFamilySamples>();
+        addProcessMetrics(mfs, nameFilter == null ? ALLOW_ALL : nameFilter);
+        addContainerMetrics(mfs, nameFilter == null ? ALLOW_ALL : nameFilter);
+        return mfs;
+    }
+
+    /**
+     * Count the open file descriptors, excluding the descriptor used to list the directory
+     *
+     * @param fdDirectory
+     * @return the count, or -1 if the directory can't be listed
+     */
+    private static long countOpenFds(Path fdDirectory) {
+        long count = 0;
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(fdDirectory)) {
+            for (Path ignored : directoryStream) {
+                count++;
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+
+        return Math.max(count - 1, 0);
+    }
+
+    /**
+     * Read the cgroup path of each controller from /proc/self/cgroup ("" is the cgroup v2 unified hierarchy)
+     *
+     * @param cgroupFile
+     * @return
+     */
+    static Map<String, String> readCgroupPaths(File cgroupFile) {
+        Map<String, String> cgroupPathMap = new HashMap<>();
+
+        try {
+            for (String line : Files.readAllLines(cgroupFile.toPath(), StandardCharsets.UTF_8)) {
+                String[] tokens = line.split(":", 3);
+                if (tokens.length == 3) {
+                    for (String controller : tokens[1].split(",")) {
+                        cgroupPathMap.put(controller.startsWith("name=") ? tokens[1] : controller, tokens[2]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // DO NOTHING
+        }
+
+        return cgroupPathMap;
+    }
+
+    /**
+     * Resolve the cgroup directory of the "cpu" and "memory" controllers (cgroup v1),
+     * and the unified hierarchy (cgroup v2, key ""), using /proc/self/mountinfo
+     *
+     * @param mountinfoFile
+     * @param cgroupPathMap
+     * @return
+     */
+    static Map<String, File> readCgroupDirectories(File mountinfoFile, Map<String, String> cgroupPathMap) {
+        Map<String, File> cgroupDirectoryMap = new HashMap<>();
+
+        try {
+            for (String line : Files.readAllLines(mountinfoFile.toPath(), StandardCharsets.UTF_8)) {
+                // <id> <parent id> <major:minor> <root> <mount point> <options> [optional fields] - <type> <source> <super options>
+                int separatorIndex = line.indexOf(" - ");
+                if (separatorIndex == -1) {
+                    continue;
+                }
+
+                String[] fields = line.substring(0, separatorIndex).split(" ");
+                String[] typeFields = line.substring(separatorIndex + 3).split(" ");
+                if ((fields.length < 5) || (typeFields.length < 3)) {
+                    continue;
+                }
+
+                String root = unescape(fields[3]);
+                String mountPoint = unescape(fields[4]);
+
+                if ("cgroup2".equals(typeFields[0])) {
+                    String path = cgroupPathMap.get("");
+                    if (path != null) {
+                        cgroupDirectoryMap.put("", resolve(root, mountPoint, path));
+                    }
+                } else if ("cgroup".equals(typeFields[0])) {
+                    for (String option : typeFields[2].split(",")) {
+                        if ("cpu".equals(option) || "memory".equals(option)) {
+                            String path = cgroupPathMap.get(option);
+                            if (path != null) {
+                                cgroupDirectoryMap.put(option, resolve(root, mountPoint, path));
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // DO NOTHING
+        }
+
+        return cgroupDirectoryMap;
+    }
+
+    private static File resolve(String root, String mountPoint, String path) {
+        String relativePath = path;
+        if (!"/".equals(root) && path.startsWith(root)) {
+            relativePath = path.substring(root.length());
+        }
+
+        File directory = new File(mountPoint, relativePath);
+        if (!directory.isDirectory()) {
+            // In a container the cgroup namespace root is usually the mount point
+            directory = new File(mountPoint);
+        }
+
+        return directory;
+    }
+
+    private static String unescape(String value) {
+        return value.replace("\\040", " ").replace("\\011", "\t").replace("\\012", "\n").replace("\\134", "\\");
+    }
+
+    private static Method getMethod(Object object, String name) {
+        try {
+            Class<?> clazz = Class.forName("com.sun.management.OperatingSystemMXBean");
+            if (clazz.isInstance(object)) {
+                return clazz.getMethod(name);
+            }
+        } catch (ReflectiveOperationException e) {
+            // DO NOTHING
+        }
+
+        return null;
+    }
+}
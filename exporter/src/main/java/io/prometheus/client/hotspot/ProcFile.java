@@ -0,0 +1,211 @@
+/**
+ * Reusable reader for Linux /proc and cgroup files, used by LinuxProcessExports
+ */
+
+package io.prometheus.client.hotspot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a small /proc or cgroup file into a reusable buffer, and parses numbers without String allocation.
+ * <p>
+ * The file is kept open, /proc and cgroup files return current content when read again from offset 0.
+ */
+class ProcFile {
+
+    /**
+     * Value returned if the key or field doesn't exist
+     */
+    static final long MISSING = Long.MIN_VALUE;
+
+    /**
+     * Value returned for "max" (no limit)
+     */
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final File file;
+    private final byte[] buffer;
+    private RandomAccessFile randomAccessFile;
+    private int length;
+
+    /**
+     * Open a file
+     *
+     * @param file
+     * @return the ProcFile, or null if the file can't be read
+     */
+    static ProcFile open(File file) {
+        try {
+            return new ProcFile(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private ProcFile(File file) throws IOException {
+        this.file = file;
+        this.buffer = new byte[BUFFER_SIZE];
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+    }
+
+    /**
+     * Read the current file content into the buffer
+     *
+     * @return true if the file was read
+     */
+    boolean read() {
+        length = 0;
+
+        try {
+            if (randomAccessFile == null) {
+                randomAccessFile = new RandomAccessFile(file, "r");
+            }
+
+            randomAccessFile.seek(0);
+
+            int read;
+            while ((length < buffer.length) && ((read = randomAccessFile.read(buffer, length, buffer.length - length)) > 0)) {
+                length += read;
+            }
+
+            return true;
+        } catch (IOException e) {
+            // Reopen on the next read
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Get the number following a key at the start of a line (e.g. "VmRSS:   1234 kB" or "nr_throttled 5")
+     *
+     * @param key the key as US-ASCII bytes
+     * @return the number, UNLIMITED, or MISSING
+     */
+    long getLong(byte[] key) {
+        int lineStart = 0;
+
+        while (lineStart < length) {
+            if (startsWith(lineStart, key)) {
+                int position = lineStart + key.length;
+                if ((position < length) && ((buffer[position] == ' ') || (buffer[position] == '\t') || (buffer[position] == ':'))) {
+                    return parseLong(position);
+                }
+            }
+
+            while ((lineStart < length) && (buffer[lineStart] != '\n')) {
+                lineStart++;
+            }
+
+            lineStart++;
+        }
+
+        return MISSING;
+    }
+
+    /**
+     * Get the whitespace separated field of the first line (e.g. "max 100000")
+     *
+     * @param index the field index, starting at 0
+     * @return the number, UNLIMITED, or MISSING
+     */
+    long getLong(int index) {
+        int position = 0;
+
+        for (int i = 0; i <= index; i++) {
+            while ((position < length) && isWhitespace(buffer[position])) {
+                if (buffer[position] == '\n') {
+                    return MISSING;
+                }
+
+                position++;
+            }
+
+            if (position >= length) {
+                return MISSING;
+            }
+
+            if (i == index) {
+                return parseLong(position);
+            }
+
+            while ((position < length) && !isWhitespace(buffer[position])) {
+                position++;
+            }
+        }
+
+        return MISSING;
+    }
+
+    /**
+     * Close the file
+     */
+    void close() {
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                // DO NOTHING
+            }
+
+            randomAccessFile = null;
+        }
+    }
+
+    private boolean startsWith(int position, byte[] key) {
+        if (position + key.length > length) {
+            return false;
+        }
+
+        for (int i = 0; i < key.length; i++) {
+            if (buffer[position + i] != key[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private long parseLong(int position) {
+        while ((position < length) && ((buffer[position] == ' ') || (buffer[position] == '\t') || (buffer[position] == ':'))) {
+            position++;
+        }
+
+        if ((position + 2 < length) && (buffer[position] == 'm') && (buffer[position + 1] == 'a') && (buffer[position + 2] == 'x')) {
+            return UNLIMITED;
+        }
+
+        boolean isNegative = false;
+        if ((position < length) && (buffer[position] == '-')) {
+            isNegative = true;
+            position++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        while ((position < length) && (buffer[position] >= '0') && (buffer[position] <= '9')) {
+            value = (value * 10) + (buffer[position] - '0');
+            position++;
+            digits++;
+        }
+
+        if (digits == 0) {
+            return MISSING;
+        }
+
+        return isNegative ? -value : value;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return (b == ' ') || (b == '\t') || (b == '\n');
+    }
+
+    static byte[] toBytes(String string) {
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+}
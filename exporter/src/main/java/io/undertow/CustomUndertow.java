@@ -47,6 +47,7 @@ import org.xnio.Xnio;
 import org.xnio.XnioWorker;
 import org.xnio.channels.AcceptingChannel;
 import org.xnio.ssl.JsseSslUtils;
+import org.xnio.ssl.SslConnection;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
@@ -99,8 +100,13 @@ public final class CustomUndertow {
     private ByteBufferPool byteBufferPool;
     private XnioWorker worker;
     private Executor sslEngineDelegatedTaskExecutor;
+    private final ChannelListener<SslConnection> sslConnectionListener;
     private List<AcceptingChannel<? extends StreamConnection>> channels;
     private Xnio xnio;
+    private final String unixDomainSocketPath;
+    private final String unixDomainSocketPermissions;
+    private final int unixDomainSocketMaximumConnections;
+    private UnixDomainSocketAcceptor unixDomainSocketAcceptor;
 
     private CustomUndertow(Builder builder) {
         this.byteBufferPool = builder.byteBufferPool;
@@ -113,11 +119,15 @@ public final class CustomUndertow {
         this.xnio = builder.xnio;
         this.worker = builder.worker;
         this.sslEngineDelegatedTaskExecutor = builder.sslEngineDelegatedTaskExecutor;
+        this.sslConnectionListener = builder.sslConnectionListener;
         this.internalWorker = builder.worker == null;
         this.internalXnio = builder.xnio == null;
         this.workerOptions = builder.workerOptions.getMap();
         this.socketOptions = builder.socketOptions.getMap();
         this.serverOptions = builder.serverOptions.getMap();
+        this.unixDomainSocketPath = builder.unixDomainSocketPath;
+        this.unixDomainSocketPermissions = builder.unixDomainSocketPermissions;
+        this.unixDomainSocketMaximumConnections = builder.unixDomainSocketMaximumConnections;
     }
 
     /**
@@ -127,6 +137,13 @@ public final class CustomUndertow {
         return new Builder();
     }
 
+    /**
+     * @return true if Unix domain socket listeners are supported (Java 16+)
+     */
+    public static boolean isUnixDomainSocketSupported() {
+        return UnixDomainSocketAcceptor.isSupported();
+    }
+
     public synchronized void start() {
         if (internalXnio) {
             xnio = Xnio.getInstance(CustomUndertow.class.getClassLoader());
@@ -248,7 +265,17 @@ public final class CustomUndertow {
                             ChannelListener<AcceptingChannel<StreamConnection>> acceptListener = ChannelListeners.openListenerAdapter(new ProxyProtocolOpenListener(openListener, xnioSsl, buffers, socketOptionsWithOverrides));
                             sslServer = worker.createStreamConnectionServer(new InetSocketAddress(Inet4Address.getByName(listener.host), listener.port), (ChannelListener) acceptListener, socketOptionsWithOverrides);
                         } else {
-                            ChannelListener<AcceptingChannel<StreamConnection>> acceptListener = ChannelListeners.openListenerAdapter(openListener);
+                            ChannelListener<StreamConnection> sslOpenListener = openListener;
+                            if (sslConnectionListener != null) {
+                                // Notify the SSL connection listener before the open listener, before the handshake starts
+                                sslOpenListener = streamConnection -> {
+                                    if (streamConnection instanceof SslConnection) {
+                                        ChannelListeners.invokeChannelListener((SslConnection) streamConnection, sslConnectionListener);
+                                    }
+                                    openListener.handleEvent(streamConnection);
+                                };
+                            }
+                            ChannelListener<AcceptingChannel<StreamConnection>> acceptListener = ChannelListeners.openListenerAdapter(sslOpenListener);
                             sslServer = xnioSsl.createSslConnectionServer(worker, new InetSocketAddress(Inet4Address.getByName(listener.host), listener.port), (ChannelListener) acceptListener, socketOptionsWithOverrides);
                         }
 
@@ -260,7 +287,24 @@ public final class CustomUndertow {
 
             }
 
+            if (unixDomainSocketPath != null) {
+                UndertowLogger.ROOT_LOGGER.debugf("Configuring listener for Unix domain socket %s", unixDomainSocketPath);
+                OptionMap undertowOptions = OptionMap.builder().set(UndertowOptions.BUFFER_PIPELINED_DATA, true).addAll(serverOptions).getMap();
+                HttpOpenListener openListener = new HttpOpenListener(buffers, undertowOptions);
+                HttpHandler handler = rootHandler;
+                if (serverOptions.get(UndertowOptions.ENABLE_HTTP2, false)) {
+                    handler = new Http2UpgradeHandler(handler);
+                }
+                openListener.setRootHandler(handler);
+                unixDomainSocketAcceptor = new UnixDomainSocketAcceptor(
+                        unixDomainSocketPath, unixDomainSocketPermissions, unixDomainSocketMaximumConnections, worker, openListener);
+            }
+
         } catch (Exception e) {
+            if (unixDomainSocketAcceptor != null) {
+                unixDomainSocketAcceptor.close();
+                unixDomainSocketAcceptor = null;
+            }
             if(internalWorker && worker != null) {
                 worker.shutdownNow();
             }
@@ -270,6 +314,10 @@ public final class CustomUndertow {
 
     public synchronized void stop() {
         UndertowLogger.ROOT_LOGGER.infof("stopping server: %s", Version.getFullVersionString());
+        if (unixDomainSocketAcceptor != null) {
+            unixDomainSocketAcceptor.close();
+            unixDomainSocketAcceptor = null;
+        }
         if (channels != null) {
             for (AcceptingChannel<? extends StreamConnection> channel : channels) {
                 IoUtils.safeClose(channel);
@@ -442,7 +490,11 @@ public final class CustomUndertow {
         private Xnio xnio;
         private XnioWorker worker;
         private Executor sslEngineDelegatedTaskExecutor;
+        private ChannelListener<SslConnection> sslConnectionListener;
         private ByteBufferPool byteBufferPool;
+        private String unixDomainSocketPath;
+        private String unixDomainSocketPermissions;
+        private int unixDomainSocketMaximumConnections;
 
         private final OptionMap.Builder workerOptions = OptionMap.builder();
         private final OptionMap.Builder socketOptions = OptionMap.builder();
@@ -526,6 +578,21 @@ public final class CustomUndertow {
             return this;
         }
 
+        /**
+         * Add an HTTP listener on a Unix domain socket (Java 16+), using the server handler
+         *
+         * @param path the socket file
+         * @param permissions the socket file POSIX permissions (e.g. "rw-------")
+         * @param maximumConnections
+         * @return this
+         */
+        public Builder setUnixDomainSocketListener(String path, String permissions, int maximumConnections) {
+            this.unixDomainSocketPath = path;
+            this.unixDomainSocketPermissions = permissions;
+            this.unixDomainSocketMaximumConnections = maximumConnections;
+            return this;
+        }
+
         public Builder addAjpListener(int port, String host, HttpHandler rootHandler) {
             listeners.add(new ListenerConfig(ListenerType.AJP, port, host, null, null, rootHandler));
             return this;
@@ -603,6 +670,16 @@ public final class CustomUndertow {
             return this;
         }
 
+        /**
+         * Sets a listener notified when an HTTPS listener accepts a connection, before the SSL/TLS handshake
+         * (e.g. to set a handshake listener using {@link SslConnection#getHandshakeSetter()}).
+         * Not used for listeners using the proxy protocol.
+         */
+        public Builder setSslConnectionListener(ChannelListener<SslConnection> sslConnectionListener) {
+            this.sslConnectionListener = sslConnectionListener;
+            return this;
+        }
+
         public Builder setByteBufferPool(ByteBufferPool byteBufferPool) {
             this.byteBufferPool = byteBufferPool;
             return this;
@@ -31,6 +31,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.List;
 
 public class Configuration {
 
@@ -309,6 +310,42 @@ public class Configuration {
         return null;
     }
 
+    public List<Object> getList(String path) throws ConfigurationException {
+        return getList(path, true);
+    }
+
+    public List<Object> getList(String path, boolean isRequired) throws ConfigurationException {
+        Precondition.notNull(path, PATH_IS_NULL);
+        Precondition.notEmpty(path, PATH_IS_EMPTY);
+        Precondition.isTrue(yamlPath != null, NO_DATA_LOADED);
+
+        path = path.trim();
+
+        try {
+            Object object = yamlPath.read(path, isRequired);
+            int state = state(object, isRequired);
+            switch (state) {
+                case OBJECT_NOT_NULL: {
+                    return Converter.LIST_CONVERTER.convert(object);
+                }
+                case OBJECT_NULL_AND_REQUIRED: {
+                    throw new ConfigurationException(String.format(PATH_VALUE_IS_REQUIRED, path));
+                }
+                case OBJECT_NULL_AND_NOT_REQUIRED: {
+                    return null;
+                }
+            }
+        } catch (PathNotFoundException e) {
+            if (isRequired) {
+                throw new ConfigurationException(e.getMessage());
+            }
+        } catch (ConverterException e) {
+            throw new ConfigurationException(e.getMessage());
+        }
+
+        return null;
+    }
+
     private int state(Object object, boolean isRequired) {
         if (object != null) {
             return OBJECT_NOT_NULL;
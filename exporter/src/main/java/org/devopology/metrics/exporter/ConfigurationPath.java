@@ -21,11 +21,19 @@ package org.devopology.metrics.exporter;
  */
 public class ConfigurationPath {
 
+    public static final String EXPORTER_SERVER_ADMISSION_QUEUE_DEADLINE_MILLISECONDS_PATH = "$.exporter.server.admission.queue-deadline-milliseconds";
+    public static final String EXPORTER_SERVER_ADMISSION_RETRY_AFTER_SECONDS_PATH = "$.exporter.server.admission.retry-after-seconds";
+    public static final String EXPORTER_SERVER_ADMISSION_STATUS_CODE_PATH = "$.exporter.server.admission.status-code";
+    public static final String EXPORTER_SERVER_AUTHENTICATION_BASIC_CACHE_ENABLED_PATH = "$.exporter.server.authentication.basic.cache.enabled";
+    public static final String EXPORTER_SERVER_AUTHENTICATION_BASIC_CACHE_MAXIMUM_ENTRIES_PATH = "$.exporter.server.authentication.basic.cache.maximum-entries";
+    public static final String EXPORTER_SERVER_AUTHENTICATION_BASIC_CACHE_TTL_MILLISECONDS_PATH = "$.exporter.server.authentication.basic.cache.ttl-milliseconds";
     public static final String EXPORTER_SERVER_AUTHENTICATION_BASIC_ENABLED_PATH = "$.exporter.server.authentication.basic.enabled";
     public static final String EXPORTER_SERVER_AUTHENTICATION_BASIC_PASSWORD_PATH = "$.exporter.server.authentication.basic.password";
     public static final String EXPORTER_SERVER_AUTHENTICATION_BASIC_USERNAME_PATH = "$.exporter.server.authentication.basic.username";
     public static final String EXPORTER_SERVER_CACHING_ENABLED_PATH = "$.exporter.server.caching.enabled";
     public static final String EXPORTER_SERVER_CACHING_MILLISECONDS_PATH = "$.exporter.server.caching.milliseconds";
+    public static final String EXPORTER_SERVER_CONNECTIONS_HIGH_WATER_PATH = "$.exporter.server.connections.high-water";
+    public static final String EXPORTER_SERVER_CONNECTIONS_LOW_WATER_PATH = "$.exporter.server.connections.low-water";
     public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_BUFFER_POOLS_ENABLED_PATH = "$.exporter.server.exports.hotspot.buffer-pools.enabled";
     public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_CLASS_LOADING_ENABLED_PATH = "$.exporter.server.exports.hotspot.class-loading.enabled";
     public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_COMPILATION_ENABLED_PATH = "$.exporter.server.exports.hotspot.compilation.enabled";
@@ -33,18 +41,96 @@ public class ConfigurationPath {
     public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_MEMORY_ALLOCATION_ENABLED_PATH = "$.exporter.server.exports.hotspot.memory-allocation.enabled";
     public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_MEMORY_POOLS_ENABLED_PATH = "$.exporter.server.exports.hotspot.memory-pools.enabled";
     public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_STANDARD_ENABLED_PATH = "$.exporter.server.exports.hotspot.standard.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_STANDARD_LINUX_ENABLED_PATH = "$.exporter.server.exports.hotspot.standard.linux.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_STANDARD_LINUX_FD_INTERVAL_MILLISECONDS_PATH = "$.exporter.server.exports.hotspot.standard.linux.fd-interval-milliseconds";
+    public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_BACKGROUND_DEADLOCK_INTERVAL_MILLISECONDS_PATH = "$.exporter.server.exports.hotspot.thread.background.deadlock-interval-milliseconds";
+    public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_BACKGROUND_ENABLED_PATH = "$.exporter.server.exports.hotspot.thread.background.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_BACKGROUND_STATE_INTERVAL_MILLISECONDS_PATH = "$.exporter.server.exports.hotspot.thread.background.state-interval-milliseconds";
     public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_ENABLED_PATH = "$.exporter.server.exports.hotspot.thread.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_HOT_THREADS_ENABLED_PATH = "$.exporter.server.exports.hotspot.thread.hot-threads.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_HOT_THREADS_INTERVAL_MILLISECONDS_PATH = "$.exporter.server.exports.hotspot.thread.hot-threads.interval-milliseconds";
+    public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_HOT_THREADS_TOP_N_PATH = "$.exporter.server.exports.hotspot.thread.hot-threads.top-n";
     public static final String EXPORTER_SERVER_EXPORTS_HOTSPOT_VERSION_INFO_ENABLED_PATH = "$.exporter.server.exports.hotspot.version-info.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_HSPERFDATA_DIRECTORY_PATH = "$.exporter.server.exports.hsperfdata.directory";
+    public static final String EXPORTER_SERVER_EXPORTS_HSPERFDATA_ENABLED_PATH = "$.exporter.server.exports.hsperfdata.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_JFR_ENABLED_PATH = "$.exporter.server.exports.jfr.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_JFR_THRESHOLD_MILLISECONDS_PATH = "$.exporter.server.exports.jfr.threshold-milliseconds";
     public static final String EXPORTER_SERVER_EXPORTS_JMX_ENABLED_PATH = "$.exporter.server.exports.jmx.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_NOTIFICATION_SNAPSHOT_ENABLED_PATH = "$.exporter.server.exports.jmx.notification-snapshot.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_NOTIFICATION_SNAPSHOT_OBJECT_NAMES_PATH = "$.exporter.server.exports.jmx.notification-snapshot.object-names";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_NOTIFICATION_SNAPSHOT_REFRESH_MILLISECONDS_PATH = "$.exporter.server.exports.jmx.notification-snapshot.refresh-milliseconds";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_ENABLED_PATH = "$.exporter.server.exports.jmx.parallel.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_PARALLELISM_PATH = "$.exporter.server.exports.jmx.parallel.parallelism";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_PARTITIONING_PATH = "$.exporter.server.exports.jmx.parallel.partitioning";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_PARTITIONS_PATH = "$.exporter.server.exports.jmx.parallel.partitions";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_TIMEOUT_MILLISECONDS_PATH = "$.exporter.server.exports.jmx.parallel.timeout-milliseconds";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_PLATFORM_FAST_PATH_ENABLED_PATH = "$.exporter.server.exports.jmx.platform-fast-path.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_QUARANTINE_BUDGET_MILLISECONDS_PATH = "$.exporter.server.exports.jmx.quarantine.budget-milliseconds";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_QUARANTINE_CONSECUTIVE_SCRAPES_PATH = "$.exporter.server.exports.jmx.quarantine.consecutive-scrapes";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_QUARANTINE_COOLDOWN_MILLISECONDS_PATH = "$.exporter.server.exports.jmx.quarantine.cooldown-milliseconds";
+    public static final String EXPORTER_SERVER_EXPORTS_JMX_QUARANTINE_ENABLED_PATH = "$.exporter.server.exports.jmx.quarantine.enabled";
+    public static final String EXPORTER_SERVER_EXPORTS_METRICS_CHANNEL_DIRECTORY_PATH = "$.exporter.server.exports.metrics-channel.directory";
+    public static final String EXPORTER_SERVER_EXPORTS_METRICS_CHANNEL_ENABLED_PATH = "$.exporter.server.exports.metrics-channel.enabled";
     //public static final String EXPORTER_SERVER_EXPORTS_JMX_FILENAME_PATH = "$.exporter.server.exports.jmx.filename";
     public static final String EXPORTER_SERVER_HOST_PATH = "$.exporter.server.host";
     public static final String EXPORTER_SERVER_PORT_PATH = "$.exporter.server.port";
+    public static final String EXPORTER_SERVER_RATE_LIMIT_ENABLED_PATH = "$.exporter.server.rate-limit.enabled";
+    public static final String EXPORTER_SERVER_RATE_LIMIT_ENDPOINTS_METRICS_BURST_PATH = "$.exporter.server.rate-limit.endpoints.metrics.burst";
+    public static final String EXPORTER_SERVER_RATE_LIMIT_ENDPOINTS_METRICS_REQUESTS_PER_MINUTE_PATH = "$.exporter.server.rate-limit.endpoints.metrics.requests-per-minute";
+    public static final String EXPORTER_SERVER_RATE_LIMIT_ENDPOINTS_TARGETS_BURST_PATH = "$.exporter.server.rate-limit.endpoints.targets.burst";
+    public static final String EXPORTER_SERVER_RATE_LIMIT_ENDPOINTS_TARGETS_REQUESTS_PER_MINUTE_PATH = "$.exporter.server.rate-limit.endpoints.targets.requests-per-minute";
+    public static final String EXPORTER_SERVER_RATE_LIMIT_IDLE_EVICTION_MILLISECONDS_PATH = "$.exporter.server.rate-limit.idle-eviction-milliseconds";
+    public static final String EXPORTER_SERVER_RATE_LIMIT_MAXIMUM_CLIENTS_PATH = "$.exporter.server.rate-limit.maximum-clients";
     public static final String EXPORTER_SERVER_SSL_CERTIFICATE_ALIAS_PATH = "$.exporter.server.ssl.certificate.alias";
+    public static final String EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_ALLOWED_SUBJECT_ALTERNATIVE_NAMES_PATH = "$.exporter.server.ssl.client-authentication.allowed-subject-alternative-names";
+    public static final String EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_ALLOWED_SUBJECTS_PATH = "$.exporter.server.ssl.client-authentication.allowed-subjects";
+    public static final String EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_ENABLED_PATH = "$.exporter.server.ssl.client-authentication.enabled";
+    public static final String EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_MODE_PATH = "$.exporter.server.ssl.client-authentication.mode";
+    public static final String EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_TRUSTSTORE_FILENAME_PATH = "$.exporter.server.ssl.client-authentication.truststore.filename";
+    public static final String EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_TRUSTSTORE_PASSWORD_PATH = "$.exporter.server.ssl.client-authentication.truststore.password";
+    public static final String EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_TRUSTSTORE_TYPE_PATH = "$.exporter.server.ssl.client-authentication.truststore.type";
     public static final String EXPORTER_SERVER_SSL_ENABLED_PATH = "$.exporter.server.ssl.enabled";
     public static final String EXPORTER_SERVER_SSL_KEYSTORE_FILENAME_PATH = "$.exporter.server.ssl.keystore.filename";
     public static final String EXPORTER_SERVER_SSL_KEYSTORE_PASSWORD_PATH = "$.exporter.server.ssl.keystore.password";
     public static final String EXPORTER_SERVER_SSL_KEYSTORE_TYPE_PATH = "$.exporter.server.ssl.keystore.type";
     public static final String EXPORTER_SERVER_SSL_PROTOCOL_PATH = "$.exporter.server.ssl.protocol";
+    public static final String EXPORTER_SERVER_SSL_RELOAD_ENABLED_PATH = "$.exporter.server.ssl.reload.enabled";
+    public static final String EXPORTER_SERVER_SSL_RELOAD_INTERVAL_MILLISECONDS_PATH = "$.exporter.server.ssl.reload.interval-milliseconds";
+    public static final String EXPORTER_SERVER_SSL_SESSION_CACHE_SIZE_PATH = "$.exporter.server.ssl.session-cache.size";
+    public static final String EXPORTER_SERVER_SSL_SESSION_CACHE_TIMEOUT_SECONDS_PATH = "$.exporter.server.ssl.session-cache.timeout-seconds";
+    public static final String EXPORTER_SERVER_SSL_SESSION_TICKETS_PATH = "$.exporter.server.ssl.session-tickets";
+    public static final String EXPORTER_SERVER_TARGETS_CONNECTION_BACKOFF_MAXIMUM_MILLISECONDS_PATH = "$.exporter.server.targets.connection.backoff-maximum-milliseconds";
+    public static final String EXPORTER_SERVER_TARGETS_CONNECTION_BACKOFF_MINIMUM_MILLISECONDS_PATH = "$.exporter.server.targets.connection.backoff-minimum-milliseconds";
+    public static final String EXPORTER_SERVER_TARGETS_CONNECTION_CONNECT_TIMEOUT_MILLISECONDS_PATH = "$.exporter.server.targets.connection.connect-timeout-milliseconds";
+    public static final String EXPORTER_SERVER_TARGETS_CONNECTION_HEALTH_CHECK_MILLISECONDS_PATH = "$.exporter.server.targets.connection.health-check-milliseconds";
+    public static final String EXPORTER_SERVER_TARGETS_DISCOVERY_ENABLED_PATH = "$.exporter.server.targets.discovery.enabled";
+    public static final String EXPORTER_SERVER_TARGETS_DISCOVERY_INTERVAL_MILLISECONDS_PATH = "$.exporter.server.targets.discovery.interval-milliseconds";
+    public static final String EXPORTER_SERVER_TARGETS_DISCOVERY_MAIN_CLASS_PATH = "$.exporter.server.targets.discovery.main-class";
+    public static final String EXPORTER_SERVER_TARGETS_DISCOVERY_MAXIMUM_TARGETS_PATH = "$.exporter.server.targets.discovery.maximum-targets";
+    public static final String EXPORTER_SERVER_TARGETS_DISCOVERY_SYSTEM_PROPERTY_NAME_PATH = "$.exporter.server.targets.discovery.system-property.name";
+    public static final String EXPORTER_SERVER_TARGETS_DISCOVERY_SYSTEM_PROPERTY_VALUE_PATH = "$.exporter.server.targets.discovery.system-property.value";
+    public static final String EXPORTER_SERVER_TARGETS_ENABLED_PATH = "$.exporter.server.targets.enabled";
+    public static final String EXPORTER_SERVER_TARGETS_LIST_CACHING_MILLISECONDS_PATH = "$.exporter.server.targets.list[%d].caching-milliseconds";
+    public static final String EXPORTER_SERVER_TARGETS_LIST_HOST_PORT_PATH = "$.exporter.server.targets.list[%d].host-port";
+    public static final String EXPORTER_SERVER_TARGETS_LIST_JMX_URL_PATH = "$.exporter.server.targets.list[%d].jmx-url";
+    public static final String EXPORTER_SERVER_TARGETS_LIST_MAXIMUM_CONCURRENT_SCRAPES_PATH = "$.exporter.server.targets.list[%d].maximum-concurrent-scrapes";
+    public static final String EXPORTER_SERVER_TARGETS_LIST_NAME_PATH = "$.exporter.server.targets.list[%d].name";
+    public static final String EXPORTER_SERVER_TARGETS_LIST_PASSWORD_PATH = "$.exporter.server.targets.list[%d].password";
+    public static final String EXPORTER_SERVER_TARGETS_LIST_PATH = "$.exporter.server.targets.list";
+    public static final String EXPORTER_SERVER_TARGETS_LIST_SSL_PATH = "$.exporter.server.targets.list[%d].ssl";
+    public static final String EXPORTER_SERVER_TARGETS_LIST_USERNAME_PATH = "$.exporter.server.targets.list[%d].username";
+    public static final String EXPORTER_SERVER_TARGETS_THREADS_PATH = "$.exporter.server.targets.threads";
+    public static final String EXPORTER_SERVER_THREADS_COLLECTION_PATH = "$.exporter.server.threads.collection";
+    public static final String EXPORTER_SERVER_THREADS_COLLECTION_QUEUE_CAPACITY_PATH = "$.exporter.server.threads.collection-queue-capacity";
     public static final String EXPORTER_SERVER_THREADS_IO_PATH = "$.exporter.server.threads.io";
+    public static final String EXPORTER_SERVER_THREADS_SSL_HANDSHAKE_PATH = "$.exporter.server.threads.ssl-handshake";
+    public static final String EXPORTER_SERVER_THREADS_SSL_HANDSHAKE_QUEUE_CAPACITY_PATH = "$.exporter.server.threads.ssl-handshake-queue-capacity";
+    public static final String EXPORTER_SERVER_THREADS_VIRTUAL_PATH = "$.exporter.server.threads.virtual";
     public static final String EXPORTER_SERVER_THREADS_WORKER_PATH = "$.exporter.server.threads.worker";
+    public static final String EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_ENABLED_PATH = "$.exporter.server.unix-domain-socket.enabled";
+    public static final String EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_EXCLUSIVE_PATH = "$.exporter.server.unix-domain-socket.exclusive";
+    public static final String EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_MAXIMUM_CONNECTIONS_PATH = "$.exporter.server.unix-domain-socket.maximum-connections";
+    public static final String EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_PATH_PATH = "$.exporter.server.unix-domain-socket.path";
+    public static final String EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_PERMISSIONS_PATH = "$.exporter.server.unix-domain-socket.permissions";
+    public static final String START_DELAY_SECONDS_PATH = "$.startDelaySeconds";
 }
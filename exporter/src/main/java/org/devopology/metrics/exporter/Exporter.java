@@ -19,10 +19,12 @@ package org.devopology.metrics.exporter;
 import io.prometheus.client.Collector;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.Info;
+import io.prometheus.client.hotspot.BackgroundThreadExports;
 import io.prometheus.client.hotspot.BufferPoolsExports;
 import io.prometheus.client.hotspot.ClassLoadingExports;
 import io.prometheus.client.hotspot.CompilationExports;
 import io.prometheus.client.hotspot.GarbageCollectorExports;
+import io.prometheus.client.hotspot.LinuxProcessExports;
 import io.prometheus.client.hotspot.MemoryAllocationExports;
 import io.prometheus.client.hotspot.MemoryPoolsExports;
 import io.prometheus.client.hotspot.StandardExports;
@@ -33,41 +35,98 @@ import io.undertow.CustomUndertow;
 import io.undertow.UndertowOptions;
 import io.undertow.security.idm.IdentityManager;
 import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import org.devopology.common.file.FileMonitor;
 import org.devopology.common.logger.Logger;
 import org.devopology.common.logger.LoggerFactory;
 import org.devopology.common.password.ObfuscatedPassword;
+import org.devopology.common.password.VerifiedCredentialCache;
 import org.devopology.common.precondition.Precondition;
-import org.devopology.metrics.exporter.collector.CollectorWrapper;
+import org.devopology.common.ratelimit.TokenBucketRateLimiter;
+import org.devopology.metrics.exporter.collector.AttributeJmxCollector;
+import org.devopology.metrics.exporter.collector.CollectionExecutor;
+import org.devopology.metrics.exporter.collector.HotThreadsCollector;
+import org.devopology.metrics.exporter.collector.HsperfdataCollector;
+import org.devopology.metrics.exporter.collector.JfrCollector;
+import org.devopology.metrics.exporter.collector.MetricsChannelCollector;
+import org.devopology.metrics.exporter.collector.NotificationSnapshotCollector;
+import org.devopology.metrics.exporter.collector.PartitionedJmxCollector;
+import org.devopology.metrics.exporter.collector.PlatformMXBeanCollector;
+import org.devopology.metrics.exporter.collector.Quarantine;
+import org.devopology.metrics.exporter.collector.RateLimitCollector;
+import org.devopology.metrics.exporter.collector.ReadinessCollector;
+import org.devopology.metrics.exporter.collector.SSLCollector;
+import org.devopology.metrics.exporter.collector.SSLHandshakeExecutor;
+import org.devopology.metrics.exporter.collector.TargetsCollector;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.devopology.metrics.exporter.jmx.ObjectNameFilter;
 import org.devopology.metrics.exporter.resources.Resources;
+import org.devopology.metrics.exporter.target.AttachDiscovery;
+import org.devopology.metrics.exporter.target.Target;
+import org.devopology.metrics.exporter.target.TargetFactory;
 import org.devopology.metrics.exporter.template.Template;
+import org.devopology.metrics.exporter.thread.VirtualThreads;
 import org.devopology.metrics.exporter.undertow.handler.BasicAuthenticationHttpHandler;
+import org.devopology.metrics.exporter.undertow.handler.ClientCertificateAuthenticationHttpHandler;
 import org.devopology.metrics.exporter.undertow.handler.DispatcherHttpHandler;
 import org.devopology.metrics.exporter.undertow.handler.FaviconHttpHandler;
 import org.devopology.metrics.exporter.undertow.handler.HealthyHttpHandler;
+import org.devopology.metrics.exporter.undertow.handler.RateLimitHttpHandler;
+import org.devopology.metrics.exporter.undertow.handler.ReadyHttpHandler;
+import org.devopology.metrics.exporter.undertow.handler.RetryAfterHttpHandler;
 import org.devopology.metrics.exporter.undertow.handler.StaticContentHttpHandler;
+import org.devopology.metrics.exporter.undertow.handler.TargetHttpHandler;
 import org.devopology.metrics.exporter.undertow.handler.predicate.RequestPathExact;
+import org.devopology.metrics.exporter.undertow.handler.predicate.RequestPathStartsWith;
 import org.devopology.metrics.exporter.undertow.handler.MetricsHttpHandler;
+import org.devopology.metrics.exporter.undertow.security.ClientCertificateIdentityManager;
+import org.devopology.metrics.exporter.undertow.security.ClientCertificateTrustManager;
 import org.devopology.metrics.exporter.undertow.security.UsernameSaltedPasswordIdentityManager;
 import org.xnio.OptionMap;
 import org.xnio.Options;
+import org.xnio.SslClientAuthMode;
 import org.xnio.Xnio;
 import org.xnio.XnioWorker;
 import org.xnio.nio.NioXnioProvider;
 import org.yaml.snakeyaml.Yaml;
 
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509ExtendedTrustManager;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Class to expose JMX and Prometheus metrics via a web server
@@ -85,6 +144,8 @@ public class Exporter {
 
     private static final String VERSION = "version";
 
+    private static final String JDK_TLS_SERVER_ENABLE_SESSION_TICKET_EXTENSION = "jdk.tls.server.enableSessionTicketExtension";
+
     enum Mode { STANDALONE, AGENT }
 
     private Mode mode;
@@ -93,6 +154,25 @@ public class Exporter {
     private List<Collector> collectorList;
     private Configuration configuration;
     private CustomUndertow undertow;
+    private CollectionExecutor collectionExecutor;
+    private SSLCollector sslCollector;
+    private SSLHandshakeExecutor sslHandshakeExecutor;
+    private FileMonitor sslFileMonitor;
+    private boolean isVirtualThreadsEnabled;
+    private ExecutorService workerExecutorService;
+    private ExecutorService jmxExecutorService;
+    private NotificationSnapshotCollector notificationSnapshotCollector;
+    private ReadinessCollector readinessCollector;
+    private HsperfdataCollector hsperfdataCollector;
+    private BackgroundThreadExports backgroundThreadExports;
+    private HotThreadsCollector hotThreadsCollector;
+    private JfrCollector jfrCollector;
+    private LinuxProcessExports linuxProcessExports;
+    private Map<String, Target> targetMap;
+    private AttachDiscovery attachDiscovery;
+    private ScheduledThreadPoolExecutor targetScheduledThreadPoolExecutor;
+    private ExecutorService targetConnectionExecutorService;
+    private ThreadPoolExecutor targetThreadPoolExecutor;
 
     /**
      * Constructor
@@ -169,6 +249,14 @@ public class Exporter {
             CustomUndertow.Builder undertowBuilder = CustomUndertow.builder();
             undertowBuilder.setServerOption(UndertowOptions.ENABLE_HTTP2, true);
 
+            isVirtualThreadsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_THREADS_VIRTUAL_PATH, false);
+            if (isVirtualThreadsEnabled && !VirtualThreads.isSupported()) {
+                LOGGER.warn("virtual threads require Java 21+, using platform threads");
+                isVirtualThreadsEnabled = false;
+            }
+
+            LOGGER.info(String.format("virtual threads enabled [%b]", isVirtualThreadsEnabled));
+
             Integer ioThreads = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_THREADS_IO_PATH, false);
             if ((ioThreads != null) && (ioThreads < 1)) {
                 throw new ConfigurationException(String.format("io threads must be greater >= %d", 1));
@@ -187,12 +275,130 @@ public class Exporter {
                 LOGGER.info(String.format("Undertow worker threads [%d]", workerThreads));
             }
 
+            Integer collectionThreads = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_THREADS_COLLECTION_PATH, false);
+            if (collectionThreads == null) {
+                collectionThreads = 2;
+            }
+
+            if (collectionThreads < 1) {
+                throw new ConfigurationException(String.format("collection threads must be >= %d", 1));
+            }
+
+            Integer collectionQueueCapacity = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_THREADS_COLLECTION_QUEUE_CAPACITY_PATH, false);
+            if (collectionQueueCapacity == null) {
+                collectionQueueCapacity = 16;
+            }
+
+            if (collectionQueueCapacity < 1) {
+                throw new ConfigurationException(String.format("collection queue capacity must be >= %d", 1));
+            }
+
+            LOGGER.info(String.format("collection threads [%d]", collectionThreads));
+            LOGGER.info(String.format("collection queue capacity [%d]", collectionQueueCapacity));
+
+            Long queueDeadlineMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_ADMISSION_QUEUE_DEADLINE_MILLISECONDS_PATH, false);
+            if (queueDeadlineMilliseconds == null) {
+                queueDeadlineMilliseconds = 10000L;
+            }
+
+            if (queueDeadlineMilliseconds < 1) {
+                throw new ConfigurationException(String.format("admission queue deadline milliseconds must be >= %d", 1));
+            }
+
+            Integer shedStatusCode = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_ADMISSION_STATUS_CODE_PATH, false);
+            if (shedStatusCode == null) {
+                shedStatusCode = 503;
+            }
+
+            if ((shedStatusCode != 503) && (shedStatusCode != 429)) {
+                throw new ConfigurationException(String.format("admission status code must be %d or %d", 503, 429));
+            }
+
+            Long retryAfterSeconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_ADMISSION_RETRY_AFTER_SECONDS_PATH, false);
+            if (retryAfterSeconds == null) {
+                retryAfterSeconds = 5L;
+            }
+
+            if (retryAfterSeconds < 0) {
+                throw new ConfigurationException(String.format("admission retry after seconds must be >= %d", 0));
+            }
+
+            LOGGER.info(String.format("admission queue deadline milliseconds [%d]", queueDeadlineMilliseconds));
+            LOGGER.info(String.format("admission status code [%d]", shedStatusCode));
+            LOGGER.info(String.format("admission retry after seconds [%d]", retryAfterSeconds));
+
+            Integer connectionsHighWater = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_CONNECTIONS_HIGH_WATER_PATH, false);
+            if (connectionsHighWater == null) {
+                connectionsHighWater = 100;
+            }
+
+            Integer connectionsLowWater = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_CONNECTIONS_LOW_WATER_PATH, false);
+            if (connectionsLowWater == null) {
+                connectionsLowWater = connectionsHighWater;
+            }
+
+            if (connectionsHighWater < 1) {
+                throw new ConfigurationException(String.format("connections high water must be >= %d", 1));
+            }
+
+            if ((connectionsLowWater < 1) || (connectionsLowWater > connectionsHighWater)) {
+                throw new ConfigurationException(String.format("connections low water must be in the range %d - %d (inclusive)", 1, connectionsHighWater));
+            }
+
+            LOGGER.info(String.format("Undertow connections high water [%d]", connectionsHighWater));
+            LOGGER.info(String.format("Undertow connections low water [%d]", connectionsLowWater));
+
             // TODO if server host is a valid domain name, but unknown Undertow will throw an exception
 
+            Boolean isUnixDomainSocketEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_ENABLED_PATH, false);
+            if (isUnixDomainSocketEnabled && !CustomUndertow.isUnixDomainSocketSupported()) {
+                LOGGER.warn("Undertow Unix domain socket requires Java 16+, ignoring");
+                isUnixDomainSocketEnabled = false;
+            }
+
+            LOGGER.info(String.format("Undertow Unix domain socket enabled [%b]", isUnixDomainSocketEnabled));
+
+            Boolean isUnixDomainSocketExclusive = false;
+
+            if (isUnixDomainSocketEnabled) {
+                String unixDomainSocketPath = configuration.getString(ConfigurationPath.EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_PATH_PATH);
+
+                String unixDomainSocketPermissions = configuration.getString(ConfigurationPath.EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_PERMISSIONS_PATH, false);
+                if (unixDomainSocketPermissions == null) {
+                    unixDomainSocketPermissions = "rw-------";
+                }
+
+                if (!unixDomainSocketPermissions.matches("[r-][w-][x-][r-][w-][x-][r-][w-][x-]")) {
+                    throw new ConfigurationException(String.format("Unix domain socket permissions [%s] are invalid", unixDomainSocketPermissions));
+                }
+
+                Integer unixDomainSocketMaximumConnections = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_MAXIMUM_CONNECTIONS_PATH, false);
+                if (unixDomainSocketMaximumConnections == null) {
+                    unixDomainSocketMaximumConnections = 16;
+                }
+
+                if (unixDomainSocketMaximumConnections < 1) {
+                    throw new ConfigurationException(String.format("Unix domain socket maximum connections must be >= %d", 1));
+                }
+
+                isUnixDomainSocketExclusive = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_UNIX_DOMAIN_SOCKET_EXCLUSIVE_PATH, false);
+
+                LOGGER.info(String.format("Undertow Unix domain socket path [%s]", unixDomainSocketPath));
+                LOGGER.info(String.format("Undertow Unix domain socket permissions [%s]", unixDomainSocketPermissions));
+                LOGGER.info(String.format("Undertow Unix domain socket maximum connections [%d]", unixDomainSocketMaximumConnections));
+                LOGGER.info(String.format("Undertow Unix domain socket exclusive [%b]", isUnixDomainSocketExclusive));
+
+                undertowBuilder.setUnixDomainSocketListener(unixDomainSocketPath, unixDomainSocketPermissions, unixDomainSocketMaximumConnections);
+            }
+
             Boolean isSSLEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_SSL_ENABLED_PATH);
             LOGGER.info(String.format("Undertow SSL/TLS enabled [%b]", isSSLEnabled));
 
-            if (isSSLEnabled) {
+            SslClientAuthMode sslClientAuthMode = SslClientAuthMode.NOT_REQUESTED;
+
+            if (isUnixDomainSocketExclusive) {
+                LOGGER.info("Undertow TCP listener disabled");
+            } else if (isSSLEnabled) {
                 File keyStore = configuration.getReadableFile(ConfigurationPath.EXPORTER_SERVER_SSL_KEYSTORE_FILENAME_PATH);
                 String keyStoreType = configuration.getString(ConfigurationPath.EXPORTER_SERVER_SSL_KEYSTORE_TYPE_PATH);
                 String keyStorePassword = configuration.getString(ConfigurationPath.EXPORTER_SERVER_SSL_KEYSTORE_PASSWORD_PATH);
@@ -203,8 +409,124 @@ public class Exporter {
                 String certificateAlias = configuration.getString(ConfigurationPath.EXPORTER_SERVER_SSL_CERTIFICATE_ALIAS_PATH);
                 String sslProtocol = configuration.getString(ConfigurationPath.EXPORTER_SERVER_SSL_PROTOCOL_PATH);
 
-                SSLContext sslContext = createSSLContext(certificateAlias, keyStore, keyStoreType, keyStorePassword, sslProtocol);
+                Integer sessionCacheSize = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_SSL_SESSION_CACHE_SIZE_PATH, false);
+                if ((sessionCacheSize != null) && (sessionCacheSize < 0)) {
+                    throw new ConfigurationException(String.format("SSL/TLS session cache size must be >= %d", 0));
+                }
+
+                Integer sessionTimeoutSeconds = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_SSL_SESSION_CACHE_TIMEOUT_SECONDS_PATH, false);
+                if ((sessionTimeoutSeconds != null) && (sessionTimeoutSeconds < 0)) {
+                    throw new ConfigurationException(String.format("SSL/TLS session cache timeout seconds must be >= %d", 0));
+                }
+
+                if (sessionCacheSize != null) {
+                    LOGGER.info(String.format("Undertow SSL/TLS session cache size [%d]", sessionCacheSize));
+                }
+
+                if (sessionTimeoutSeconds != null) {
+                    LOGGER.info(String.format("Undertow SSL/TLS session cache timeout seconds [%d]", sessionTimeoutSeconds));
+                }
+
+                configureSessionTickets();
+
+                TrustManager[] trustManagers = null;
+
+                Boolean isClientAuthenticationEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_ENABLED_PATH, false);
+                LOGGER.info(String.format("Undertow SSL/TLS client authentication enabled [%b]", isClientAuthenticationEnabled));
+
+                if (isClientAuthenticationEnabled) {
+                    String clientAuthenticationMode = configuration.getString(ConfigurationPath.EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_MODE_PATH, false);
+                    if (clientAuthenticationMode == null) {
+                        clientAuthenticationMode = "required";
+                    }
+
+                    clientAuthenticationMode = clientAuthenticationMode.trim().toLowerCase(Locale.ENGLISH);
+                    if ("required".equals(clientAuthenticationMode)) {
+                        sslClientAuthMode = SslClientAuthMode.REQUIRED;
+                    } else if ("requested".equals(clientAuthenticationMode)) {
+                        sslClientAuthMode = SslClientAuthMode.REQUESTED;
+                    } else {
+                        throw new ConfigurationException(String.format("SSL/TLS client authentication mode [%s] must be [required] or [requested]", clientAuthenticationMode));
+                    }
+
+                    LOGGER.info(String.format("Undertow SSL/TLS client authentication mode [%s]", clientAuthenticationMode));
+
+                    trustManagers = createClientCertificateTrustManagers();
+                    undertowBuilder.setSocketOption(Options.SSL_CLIENT_AUTH_MODE, sslClientAuthMode);
+                }
+
+                SSLContext sslContext = createSSLContext(certificateAlias, keyStore, keyStoreType, keyStorePassword, sslProtocol, trustManagers, sessionCacheSize, sessionTimeoutSeconds);
                 undertowBuilder.addHttpsListener(serverPort, serverHost, sslContext);
+
+                // Count full and resumed handshakes
+                sslCollector = new SSLCollector();
+                collectorList.add(sslCollector.register());
+                undertowBuilder.setSslConnectionListener(sslCollector);
+
+                Integer sslHandshakeThreads = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_THREADS_SSL_HANDSHAKE_PATH, false);
+                if (sslHandshakeThreads == null) {
+                    sslHandshakeThreads = 2;
+                }
+
+                if (sslHandshakeThreads < 1) {
+                    throw new ConfigurationException(String.format("SSL/TLS handshake threads must be >= %d", 1));
+                }
+
+                Integer sslHandshakeQueueCapacity = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_THREADS_SSL_HANDSHAKE_QUEUE_CAPACITY_PATH, false);
+                if (sslHandshakeQueueCapacity == null) {
+                    sslHandshakeQueueCapacity = 64;
+                }
+
+                if (sslHandshakeQueueCapacity < 1) {
+                    throw new ConfigurationException(String.format("SSL/TLS handshake queue capacity must be >= %d", 1));
+                }
+
+                LOGGER.info(String.format("Undertow SSL/TLS handshake threads [%d]", sslHandshakeThreads));
+                LOGGER.info(String.format("Undertow SSL/TLS handshake queue capacity [%d]", sslHandshakeQueueCapacity));
+
+                // Run SSLEngine delegated tasks on the handshake Executor instead of the IO / worker threads.
+                // Handshake tasks are CPU bound, so always use platform threads
+                sslHandshakeExecutor = new SSLHandshakeExecutor(
+                        sslHandshakeThreads,
+                        sslHandshakeQueueCapacity,
+                        VirtualThreads.newThreadFactory("ssl-handshake-", false));
+                collectorList.add(sslHandshakeExecutor.register());
+                undertowBuilder.setSslEngineDelegatedTaskExecutor(sslHandshakeExecutor);
+
+                Boolean isReloadEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_SSL_RELOAD_ENABLED_PATH, false);
+                LOGGER.info(String.format("Undertow SSL/TLS reload enabled [%b]", isReloadEnabled));
+
+                if (isReloadEnabled) {
+                    Long reloadIntervalMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_SSL_RELOAD_INTERVAL_MILLISECONDS_PATH);
+                    if (reloadIntervalMilliseconds < 1) {
+                        throw new ConfigurationException(String.format("SSL/TLS reload interval milliseconds must be >= %d", 1));
+                    }
+
+                    LOGGER.info(String.format("Undertow SSL/TLS reload interval milliseconds [%d]", reloadIntervalMilliseconds));
+
+                    String finalKeyStorePassword = keyStorePassword;
+                    TrustManager[] finalTrustManagers = trustManagers;
+
+                    // Started after Undertow is started
+                    sslFileMonitor = new FileMonitor(keyStore, reloadIntervalMilliseconds);
+                    sslFileMonitor.addListener(file -> {
+                        try {
+                            // Only new connections use the reloaded SSLContext, open connections aren't affected
+                            SSLContext reloadedSSLContext = createSSLContext(
+                                    certificateAlias, file, keyStoreType, finalKeyStorePassword, sslProtocol, finalTrustManagers, sessionCacheSize, sessionTimeoutSeconds);
+
+                            for (CustomUndertow.ListenerInfo listenerInfo : undertow.getListenerInfo()) {
+                                listenerInfo.setSslContext(reloadedSSLContext);
+                            }
+
+                            sslCollector.reloaded(true);
+                            LOGGER.info(String.format("SSL/TLS keystore [%s] reloaded", file));
+                        } catch (Exception e) {
+                            sslCollector.reloaded(false);
+                            LOGGER.warn(String.format("SSL/TLS keystore [%s] reload failed [%s], using the previous keystore", file, e.getMessage()));
+                        }
+                    });
+                }
             } else {
                 undertowBuilder.addHttpListener(serverPort, serverHost);
             }
@@ -225,6 +547,12 @@ public class Exporter {
             dispatcherHttpHandler.addHttpHandler(
                     new RequestPathExact("/-/healthy").or(new RequestPathExact("/-/health")), new HealthyHttpHandler());
 
+            // Set up the HttpHandler for "/-/ready" (ready once the JMX collector, if any, is ready)
+            ReadinessCollector finalReadinessCollector = readinessCollector;
+            dispatcherHttpHandler.addHttpHandler(
+                    new RequestPathExact("/-/ready"),
+                    new ReadyHttpHandler(() -> (finalReadinessCollector == null) || (finalReadinessCollector.getState() == ReadinessCollector.State.READY)));
+
             // Set up the HttpHandler for "/-/information"
             Template template = new Template(
                     resources.getResourceAsString("/information..html", StandardCharsets.UTF_8));
@@ -236,25 +564,93 @@ public class Exporter {
                     new RequestPathExact("/-/information"),
                     new StaticContentHttpHandler(200, "text/html", template.merge(values)));
 
+            // Set up the HttpHandler for "/probe?target=<name>" and "/targets/<name>" (standalone mode only)
+            Boolean isTargetsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_TARGETS_ENABLED_PATH, false);
+            if (isTargetsEnabled && (mode == Mode.AGENT)) {
+                LOGGER.warn("targets are only supported in standalone mode, ignoring");
+                isTargetsEnabled = false;
+            }
+
+            LOGGER.info(String.format("targets enabled [%b]", isTargetsEnabled));
+
+            if (isTargetsEnabled) {
+                TargetHttpHandler targetHttpHandler = configureTargets();
+
+                dispatcherHttpHandler.addHttpHandler(
+                        new RequestPathExact("/probe").or(new RequestPathStartsWith("/targets/")), targetHttpHandler);
+            }
+
             // Set up the default HttpHandler (metrics output)
             MetricsHttpHandler metricsHttpHandler = new MetricsHttpHandler(isCachingEnabled, cacheMilliseconds);
+
+            // Collect on the collection Executor instead of the IO threads
+            collectionExecutor = new CollectionExecutor(
+                    collectionThreads,
+                    collectionQueueCapacity,
+                    queueDeadlineMilliseconds,
+                    VirtualThreads.newThreadFactory("metrics-collector-", isVirtualThreadsEnabled));
+            collectorList.add(collectionExecutor.register());
+            metricsHttpHandler.setCollectionExecutor(collectionExecutor, new RetryAfterHttpHandler(shedStatusCode, retryAfterSeconds));
+
             dispatcherHttpHandler.setDefaultHttpHandler(metricsHttpHandler);
 
             HttpHandler httpHandler = dispatcherHttpHandler;
 
             Boolean isBasicAuthenticationEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_AUTHENTICATION_BASIC_ENABLED_PATH);
             LOGGER.info(String.format("Undertow BASIC authentication enabled [%b]", isBasicAuthenticationEnabled));
+
+            IdentityManager identityManager = null;
             if (isBasicAuthenticationEnabled) {
                 String basicAuthenticationUsername = configuration.getString(ConfigurationPath.EXPORTER_SERVER_AUTHENTICATION_BASIC_USERNAME_PATH);
                 String basicAuthenticationSaltedPassword = configuration.getString(ConfigurationPath.EXPORTER_SERVER_AUTHENTICATION_BASIC_PASSWORD_PATH);
 
-                IdentityManager identityManager =
+                VerifiedCredentialCache verifiedCredentialCache = null;
+
+                Boolean isBasicAuthenticationCacheEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_AUTHENTICATION_BASIC_CACHE_ENABLED_PATH, false);
+                LOGGER.info(String.format("Undertow BASIC authentication cache enabled [%b]", isBasicAuthenticationCacheEnabled));
+
+                if (isBasicAuthenticationCacheEnabled) {
+                    Integer cacheMaximumEntries = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_AUTHENTICATION_BASIC_CACHE_MAXIMUM_ENTRIES_PATH, false);
+                    if (cacheMaximumEntries == null) {
+                        cacheMaximumEntries = 1024;
+                    }
+
+                    if (cacheMaximumEntries < 1) {
+                        throw new ConfigurationException(String.format("BASIC authentication cache maximum entries must be >= %d", 1));
+                    }
+
+                    Long cacheTtlMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_AUTHENTICATION_BASIC_CACHE_TTL_MILLISECONDS_PATH, false);
+                    if (cacheTtlMilliseconds == null) {
+                        cacheTtlMilliseconds = 60000L;
+                    }
+
+                    if (cacheTtlMilliseconds < 1) {
+                        throw new ConfigurationException(String.format("BASIC authentication cache TTL milliseconds must be >= %d", 1));
+                    }
+
+                    LOGGER.info(String.format("Undertow BASIC authentication cache maximum entries [%d]", cacheMaximumEntries));
+                    LOGGER.info(String.format("Undertow BASIC authentication cache TTL milliseconds [%d]", cacheTtlMilliseconds));
+
+                    verifiedCredentialCache = new VerifiedCredentialCache(cacheMaximumEntries, cacheTtlMilliseconds);
+                }
+
+                identityManager =
                         new UsernameSaltedPasswordIdentityManager(
-                            basicAuthenticationUsername, basicAuthenticationSaltedPassword);
+                            basicAuthenticationUsername, basicAuthenticationSaltedPassword, verifiedCredentialCache);
+            }
 
+            if (sslClientAuthMode == SslClientAuthMode.REQUESTED) {
+                // Client certificate (verified during the handshake) or BASIC authentication if enabled
+                httpHandler = new ClientCertificateAuthenticationHttpHandler(
+                        new ClientCertificateIdentityManager(identityManager), isBasicAuthenticationEnabled, dispatcherHttpHandler);
+            } else if (isBasicAuthenticationEnabled) {
+                // If client authentication is required, the handshake already verified the client certificate
                 httpHandler = new BasicAuthenticationHttpHandler(identityManager, dispatcherHttpHandler);
             }
 
+            // Rate limit before authentication
+            httpHandler = configureRateLimit(httpHandler);
+
             if (isCachingEnabled) {
                 LOGGER.info(String.format("caching enabled [%b]", isCachingEnabled));
             }
@@ -273,8 +669,8 @@ public class Exporter {
             OptionMap.Builder xnioWorkerOptionMapBuilder = OptionMap.builder();
 
             xnioWorkerOptionMapBuilder
-                    .set(Options.CONNECTION_HIGH_WATER, 100)
-                    .set(Options.CONNECTION_LOW_WATER, 100)
+                    .set(Options.CONNECTION_HIGH_WATER, connectionsHighWater)
+                    .set(Options.CONNECTION_LOW_WATER, connectionsLowWater)
                     .set(Options.TCP_NODELAY, true)
                     .set(Options.CORK, true);
 
@@ -288,13 +684,35 @@ public class Exporter {
             }
 
             // Create the XnioWorker instance
-            XnioWorker xnioWorker = xnio.createWorker(xnioWorkerOptionMapBuilder.getMap());
+            XnioWorker xnioWorker;
+
+            if (isVirtualThreadsEnabled) {
+                // Run worker tasks on virtual threads instead of the XNIO worker thread pool
+                workerExecutorService = VirtualThreads.newThreadPerTaskExecutor("worker-");
+
+                xnioWorker = xnio.createWorkerBuilder()
+                        .populateFromOptions(xnioWorkerOptionMapBuilder.getMap())
+                        .setExternalExecutorService(workerExecutorService)
+                        .build();
+            } else {
+                xnioWorker = xnio.createWorker(xnioWorkerOptionMapBuilder.getMap());
+            }
+
             undertowBuilder.setWorker(xnioWorker);
 
+            if (sslHandshakeExecutor != null) {
+                // Run SSLEngine delegated tasks on the XNIO worker, not the IO thread, if the handshake queue is full
+                sslHandshakeExecutor.setFallbackExecutor(xnioWorker);
+            }
+
             // Build and start the Undertow instance
             undertow = undertowBuilder.build();
             undertow.start();
 
+            if (sslFileMonitor != null) {
+                sslFileMonitor.start();
+            }
+
             LOGGER.info("Undertow running");
             LOGGER.info("running");
         } catch (Exception e) {
@@ -368,7 +786,51 @@ public class Exporter {
         Boolean isHotSpotThreadExportsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_ENABLED_PATH);
         LOGGER.info(String.format("HotSpot thread exports enabled [%s]", isHotSpotThreadExportsEnabled));
         if (isHotSpotThreadExportsEnabled) {
-            collectorList.add(new ThreadExports().register());
+            Boolean isHotSpotThreadExportsBackgroundEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_BACKGROUND_ENABLED_PATH, false);
+            LOGGER.info(String.format("HotSpot thread exports background enabled [%b]", isHotSpotThreadExportsBackgroundEnabled));
+            if (isHotSpotThreadExportsBackgroundEnabled) {
+                Long stateIntervalMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_BACKGROUND_STATE_INTERVAL_MILLISECONDS_PATH);
+                if (stateIntervalMilliseconds < 1) {
+                    throw new ConfigurationException(String.format("thread background state interval milliseconds must be >= %d", 1));
+                }
+
+                Long deadlockIntervalMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_BACKGROUND_DEADLOCK_INTERVAL_MILLISECONDS_PATH);
+                if (deadlockIntervalMilliseconds < 1) {
+                    throw new ConfigurationException(String.format("thread background deadlock interval milliseconds must be >= %d", 1));
+                }
+
+                LOGGER.info(String.format("HotSpot thread exports state interval milliseconds [%d]", stateIntervalMilliseconds));
+                LOGGER.info(String.format("HotSpot thread exports deadlock interval milliseconds [%d]", deadlockIntervalMilliseconds));
+
+                backgroundThreadExports = new BackgroundThreadExports(stateIntervalMilliseconds, deadlockIntervalMilliseconds);
+                collectorList.add(backgroundThreadExports.register());
+            } else {
+                collectorList.add(new ThreadExports().register());
+            }
+
+            Boolean isHotSpotThreadExportsHotThreadsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_HOT_THREADS_ENABLED_PATH, false);
+            LOGGER.info(String.format("HotSpot thread exports hot threads enabled [%b]", isHotSpotThreadExportsHotThreadsEnabled));
+            if (isHotSpotThreadExportsHotThreadsEnabled) {
+                if (mode == Mode.STANDALONE) {
+                    LOGGER.warn("HotSpot thread exports hot threads are only supported in agent mode, ignoring");
+                } else {
+                    Long intervalMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_HOT_THREADS_INTERVAL_MILLISECONDS_PATH);
+                    if (intervalMilliseconds < 1) {
+                        throw new ConfigurationException(String.format("thread hot threads interval milliseconds must be >= %d", 1));
+                    }
+
+                    Integer topN = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_THREAD_HOT_THREADS_TOP_N_PATH);
+                    if ((topN < 1) || (topN > 1000)) {
+                        throw new ConfigurationException(String.format("thread hot threads top n must be in the range %d - %d (inclusive)", 1, 1000));
+                    }
+
+                    LOGGER.info(String.format("HotSpot thread exports hot threads interval milliseconds [%d]", intervalMilliseconds));
+                    LOGGER.info(String.format("HotSpot thread exports hot threads top n [%d]", topN));
+
+                    hotThreadsCollector = new HotThreadsCollector(intervalMilliseconds, topN);
+                    collectorList.add(hotThreadsCollector.register());
+                }
+            }
         }
 
         Boolean isHotSpotVersionInfoExportsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_VERSION_INFO_ENABLED_PATH);
@@ -380,50 +842,728 @@ public class Exporter {
         Boolean isHotSpotStandardExportsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_STANDARD_ENABLED_PATH);
         LOGGER.info(String.format("HotSpot standard exports enabled [%b]", isHotSpotStandardExportsEnabled));
         if (isHotSpotStandardExportsEnabled) {
-            collectorList.add(new StandardExports().register());
+            Boolean isHotSpotStandardExportsLinuxEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_STANDARD_LINUX_ENABLED_PATH, false);
+            LOGGER.info(String.format("HotSpot standard exports Linux enabled [%b]", isHotSpotStandardExportsLinuxEnabled));
+            if (isHotSpotStandardExportsLinuxEnabled && !LinuxProcessExports.isSupported()) {
+                LOGGER.warn("HotSpot standard exports Linux is only supported on Linux, ignoring");
+                isHotSpotStandardExportsLinuxEnabled = false;
+            }
+
+            if (isHotSpotStandardExportsLinuxEnabled) {
+                Long fdIntervalMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HOTSPOT_STANDARD_LINUX_FD_INTERVAL_MILLISECONDS_PATH);
+                if (fdIntervalMilliseconds < 0) {
+                    throw new ConfigurationException(String.format("standard Linux fd interval milliseconds must be >= %d", 0));
+                }
+
+                LOGGER.info(String.format("HotSpot standard exports Linux fd interval milliseconds [%d]", fdIntervalMilliseconds));
+
+                linuxProcessExports = new LinuxProcessExports(fdIntervalMilliseconds);
+                collectorList.add(linuxProcessExports.register());
+            } else {
+                collectorList.add(new StandardExports().register());
+            }
+        }
+
+        Boolean isHsperfdataExportsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HSPERFDATA_ENABLED_PATH, false);
+        LOGGER.info(String.format("hsperfdata exports enabled [%b]", isHsperfdataExportsEnabled));
+        if (isHsperfdataExportsEnabled) {
+            if (mode == Mode.AGENT) {
+                LOGGER.warn("hsperfdata exports are only supported in standalone mode, ignoring");
+            } else {
+                String directory = configuration.getString(ConfigurationPath.EXPORTER_SERVER_EXPORTS_HSPERFDATA_DIRECTORY_PATH, false);
+                if (directory == null) {
+                    directory = System.getProperty("java.io.tmpdir");
+                }
+
+                File directoryFile = new File(directory);
+                if (!directoryFile.isDirectory()) {
+                    throw new ConfigurationException(String.format("hsperfdata directory [%s] doesn't exist", directory));
+                }
+
+                LOGGER.info(String.format("hsperfdata directory [%s]", directory));
+
+                hsperfdataCollector = new HsperfdataCollector(directoryFile.toPath());
+                collectorList.add(hsperfdataCollector.register());
+            }
+        }
+
+        Boolean isJfrExportsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JFR_ENABLED_PATH, false);
+        LOGGER.info(String.format("JFR exports enabled [%b]", isJfrExportsEnabled));
+        if (isJfrExportsEnabled) {
+            if (mode == Mode.STANDALONE) {
+                LOGGER.warn("JFR exports are only supported in agent mode, ignoring");
+            } else {
+                Long thresholdMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JFR_THRESHOLD_MILLISECONDS_PATH, false);
+                if (thresholdMilliseconds == null) {
+                    thresholdMilliseconds = 10L;
+                }
+
+                if (thresholdMilliseconds < 0) {
+                    throw new ConfigurationException(String.format("JFR threshold milliseconds must be >= %d", 0));
+                }
+
+                LOGGER.info(String.format("JFR threshold milliseconds [%d]", thresholdMilliseconds));
+
+                try {
+                    jfrCollector = new JfrCollector(thresholdMilliseconds);
+                    collectorList.add(jfrCollector.register());
+                } catch (ClassNotFoundException e) {
+                    LOGGER.warn("JFR exports require Java 14+, ignoring");
+                }
+            }
+        }
+
+        Boolean isMetricsChannelExportsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_METRICS_CHANNEL_ENABLED_PATH, false);
+        LOGGER.info(String.format("metrics channel exports enabled [%b]", isMetricsChannelExportsEnabled));
+        if (isMetricsChannelExportsEnabled) {
+            if (mode == Mode.AGENT) {
+                LOGGER.warn("metrics channel exports are only supported in standalone mode, ignoring");
+            } else {
+                String directory = configuration.getString(ConfigurationPath.EXPORTER_SERVER_EXPORTS_METRICS_CHANNEL_DIRECTORY_PATH);
+                File directoryFile = new File(directory);
+                if (!directoryFile.isDirectory()) {
+                    throw new ConfigurationException(String.format("metrics channel directory [%s] doesn't exist", directory));
+                }
+
+                LOGGER.info(String.format("metrics channel directory [%s]", directory));
+
+                collectorList.add(new MetricsChannelCollector(directoryFile.toPath()).register());
+            }
         }
 
         Boolean isJMXExportsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_ENABLED_PATH);
         LOGGER.info(String.format("JMX exports enabled [%b]", isJMXExportsEnabled));
         if (isJMXExportsEnabled) {
-            JmxCollector.Mode jmxCollectorMode = JmxCollector.Mode.AGENT;
-            if (mode == Mode.STANDALONE) {
-                jmxCollectorMode = JmxCollector.Mode.STANDALONE;
+            Boolean isJMXParallelExportsEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_ENABLED_PATH, false);
+            if (isJMXParallelExportsEnabled && (mode == Mode.STANDALONE)) {
+                LOGGER.warn("JMX parallel exports are only supported in agent mode, ignoring");
+                isJMXParallelExportsEnabled = false;
+            }
+
+            LOGGER.info(String.format("JMX parallel exports enabled [%b]", isJMXParallelExportsEnabled));
+
+            Boolean isJMXNotificationSnapshotEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_NOTIFICATION_SNAPSHOT_ENABLED_PATH, false);
+            if (isJMXNotificationSnapshotEnabled && (mode == Mode.STANDALONE)) {
+                LOGGER.warn("JMX notification snapshot is only supported in agent mode, ignoring");
+                isJMXNotificationSnapshotEnabled = false;
+            }
+
+            Boolean isJMXPlatformFastPathEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_PLATFORM_FAST_PATH_ENABLED_PATH, false);
+            if (isJMXPlatformFastPathEnabled && (mode == Mode.STANDALONE)) {
+                LOGGER.warn("JMX platform fast path is only supported in agent mode, ignoring");
+                isJMXPlatformFastPathEnabled = false;
+            }
+
+            Boolean isJMXQuarantineEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_QUARANTINE_ENABLED_PATH, false);
+            if (isJMXQuarantineEnabled && (mode == Mode.STANDALONE)) {
+                LOGGER.warn("JMX quarantine is only supported in agent mode, ignoring");
+                isJMXQuarantineEnabled = false;
+            }
+
+            // The JMX exporter configuration is only loaded as a Map when it's partitioned or modified
+            Map<String, Object> jmxConfigurationMap = null;
+            DefaultExport defaultExport = null;
+
+            if (isJMXParallelExportsEnabled || isJMXNotificationSnapshotEnabled || isJMXPlatformFastPathEnabled || isJMXQuarantineEnabled) {
+                try (FileReader fileReader = new FileReader(configuration.getYamlConfigurationFile())) {
+                    jmxConfigurationMap = new Yaml().load(fileReader);
+                }
+
+                defaultExport = new DefaultExport(jmxConfigurationMap);
+            }
+
+            if (isJMXNotificationSnapshotEnabled && !defaultExport.isDefaultExportOnly()) {
+                LOGGER.warn("JMX notification snapshot requires rules without \"name\" or \"value\", ignoring");
+                isJMXNotificationSnapshotEnabled = false;
+            }
+
+            LOGGER.info(String.format("JMX notification snapshot enabled [%b]", isJMXNotificationSnapshotEnabled));
+
+            if (isJMXNotificationSnapshotEnabled) {
+                List<Object> objectNames = configuration.getList(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_NOTIFICATION_SNAPSHOT_OBJECT_NAMES_PATH);
+                if (objectNames.isEmpty()) {
+                    throw new ConfigurationException("JMX notification snapshot object names is empty");
+                }
+
+                List<ObjectName> objectNameList = new ArrayList<>();
+                for (Object objectName : objectNames) {
+                    try {
+                        objectNameList.add(new ObjectName(String.valueOf(objectName)));
+                    } catch (MalformedObjectNameException e) {
+                        throw new ConfigurationException(String.format("JMX notification snapshot object name [%s] is invalid", objectName));
+                    }
+
+                    LOGGER.info(String.format("JMX notification snapshot object name [%s]", objectName));
+                }
+
+                Long refreshMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_NOTIFICATION_SNAPSHOT_REFRESH_MILLISECONDS_PATH, false);
+                if (refreshMilliseconds == null) {
+                    refreshMilliseconds = 60000L;
+                }
+
+                if (refreshMilliseconds < 1) {
+                    throw new ConfigurationException(String.format("JMX notification snapshot refresh milliseconds must be >= %d", 1));
+                }
+
+                LOGGER.info(String.format("JMX notification snapshot refresh milliseconds [%d]", refreshMilliseconds));
+
+                notificationSnapshotCollector = new NotificationSnapshotCollector(
+                        ManagementFactory.getPlatformMBeanServer(),
+                        objectNameList,
+                        defaultExport,
+                        refreshMilliseconds);
+
+                // Exclude the MBeans from the JMXExporter
+                excludeObjectNames(jmxConfigurationMap, objectNameList);
+
+                collectorList.add(notificationSnapshotCollector.register());
+            }
+
+            if (isJMXPlatformFastPathEnabled && !defaultExport.isDefaultExportOnly()) {
+                LOGGER.warn("JMX platform fast path requires rules without \"name\" or \"value\", ignoring");
+                isJMXPlatformFastPathEnabled = false;
+            }
+
+            LOGGER.info(String.format("JMX platform fast path enabled [%b]", isJMXPlatformFastPathEnabled));
+
+            if (isJMXPlatformFastPathEnabled) {
+                // Filter using the configured (and notification snapshot) ObjectNames before excluding the domain
+                PlatformMXBeanCollector platformMXBeanCollector = new PlatformMXBeanCollector(
+                        ManagementFactory.getPlatformMBeanServer(),
+                        new ObjectNameFilter(jmxConfigurationMap),
+                        defaultExport);
+
+                // Exclude the platform MXBeans from the JMXExporter
+                excludeObjectNames(jmxConfigurationMap, Collections.singletonList(new ObjectName(PlatformMXBeanCollector.DOMAIN_OBJECT_NAME)));
+
+                collectorList.add(platformMXBeanCollector.register());
+            }
+
+            if (isJMXQuarantineEnabled && !defaultExport.isDefaultExportOnly()) {
+                LOGGER.warn("JMX quarantine requires rules without \"name\" or \"value\", ignoring");
+                isJMXQuarantineEnabled = false;
+            }
+
+            LOGGER.info(String.format("JMX quarantine enabled [%b]", isJMXQuarantineEnabled));
+
+            Quarantine quarantine = null;
+            if (isJMXQuarantineEnabled) {
+                Long budgetMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_QUARANTINE_BUDGET_MILLISECONDS_PATH);
+                if (budgetMilliseconds < 1) {
+                    throw new ConfigurationException(String.format("JMX quarantine budget milliseconds must be >= %d", 1));
+                }
+
+                Integer consecutiveScrapes = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_QUARANTINE_CONSECUTIVE_SCRAPES_PATH);
+                if (consecutiveScrapes < 1) {
+                    throw new ConfigurationException(String.format("JMX quarantine consecutive scrapes must be >= %d", 1));
+                }
+
+                Long cooldownMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_QUARANTINE_COOLDOWN_MILLISECONDS_PATH);
+                if (cooldownMilliseconds < 1) {
+                    throw new ConfigurationException(String.format("JMX quarantine cooldown milliseconds must be >= %d", 1));
+                }
+
+                LOGGER.info(String.format("JMX quarantine budget milliseconds [%d]", budgetMilliseconds));
+                LOGGER.info(String.format("JMX quarantine consecutive scrapes [%d]", consecutiveScrapes));
+                LOGGER.info(String.format("JMX quarantine cooldown milliseconds [%d]", cooldownMilliseconds));
+
+                quarantine = new Quarantine(
+                        "metrics_exporter_jmx_attribute",
+                        AttributeJmxCollector.QUARANTINE_LABEL_NAMES,
+                        budgetMilliseconds,
+                        consecutiveScrapes,
+                        cooldownMilliseconds);
+
+                collectorList.add(quarantine.register());
             }
 
             // Create the JMXExporter
-            Collector collector = new JmxCollector(configuration.getYamlConfigurationFile(), jmxCollectorMode);
+            Collector collector;
+
+            if (isJMXParallelExportsEnabled) {
+                String partitioningValue = configuration.getString(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_PARTITIONING_PATH);
+
+                PartitionedJmxCollector.Partitioning partitioning;
+                try {
+                    partitioning = PartitionedJmxCollector.Partitioning.decode(partitioningValue);
+                } catch (IllegalArgumentException e) {
+                    throw new ConfigurationException(String.format("JMX parallel partitioning [%s] must be [domain] or [hash]", partitioningValue));
+                }
+
+                int partitions = 1;
+                if (partitioning == PartitionedJmxCollector.Partitioning.HASH) {
+                    partitions = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_PARTITIONS_PATH);
+                    if (partitions < 1) {
+                        throw new ConfigurationException(String.format("JMX parallel partitions must be >= %d", 1));
+                    }
+                }
+
+                int parallelism = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_PARALLELISM_PATH);
+                if (parallelism < 1) {
+                    throw new ConfigurationException(String.format("JMX parallel parallelism must be >= %d", 1));
+                }
+
+                LOGGER.info(String.format("JMX parallel partitioning [%s]", partitioning.name().toLowerCase()));
+                if (partitioning == PartitionedJmxCollector.Partitioning.HASH) {
+                    LOGGER.info(String.format("JMX parallel partitions [%d]", partitions));
+                }
+                LOGGER.info(String.format("JMX parallel parallelism [%d]", parallelism));
+
+                Long timeoutMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_EXPORTS_JMX_PARALLEL_TIMEOUT_MILLISECONDS_PATH, false);
+                if (timeoutMilliseconds == null) {
+                    timeoutMilliseconds = PartitionedJmxCollector.DEFAULT_TIMEOUT_MILLISECONDS;
+                }
+
+                if (timeoutMilliseconds < 1) {
+                    throw new ConfigurationException(String.format("JMX parallel timeout milliseconds must be >= %d", 1));
+                }
+
+                LOGGER.info(String.format("JMX parallel timeout milliseconds [%d]", timeoutMilliseconds));
+
+                if (isVirtualThreadsEnabled) {
+                    // Collect each partition on a new virtual thread, concurrency is bounded by the parallelism
+                    jmxExecutorService = VirtualThreads.newThreadPerTaskExecutor("jmx-collector-");
+                } else {
+                    // Create an exporter owned ForkJoinPool, isolated from the application's common pool
+                    ClassLoader classLoader = getClass().getClassLoader();
+                    jmxExecutorService = new ForkJoinPool(parallelism, forkJoinPool -> {
+                        ForkJoinWorkerThread forkJoinWorkerThread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                        forkJoinWorkerThread.setName("jmx-collector-" + forkJoinWorkerThread.getPoolIndex());
+                        forkJoinWorkerThread.setDaemon(true);
+                        forkJoinWorkerThread.setContextClassLoader(classLoader);
+                        return forkJoinWorkerThread;
+                    }, null, false);
+                }
+
+                collector = new PartitionedJmxCollector(
+                        jmxConfigurationMap,
+                        partitioning,
+                        partitions,
+                        jmxExecutorService,
+                        parallelism,
+                        timeoutMilliseconds,
+                        ManagementFactory.getPlatformMBeanServer(),
+                        defaultExport,
+                        quarantine);
+            } else {
+                JmxCollector.Mode jmxCollectorMode = JmxCollector.Mode.AGENT;
+                if (mode == Mode.STANDALONE) {
+                    jmxCollectorMode = JmxCollector.Mode.STANDALONE;
+                }
+
+                if (isJMXQuarantineEnabled) {
+                    // Collect attribute by attribute, using the modified JMX configuration (agent mode only)
+                    collector = new AttributeJmxCollector(
+                            ManagementFactory.getPlatformMBeanServer(),
+                            null,
+                            new ObjectNameFilter(jmxConfigurationMap),
+                            defaultExport,
+                            quarantine);
+                } else if (isJMXNotificationSnapshotEnabled || isJMXPlatformFastPathEnabled) {
+                    // Use the modified JMX configuration (agent mode only)
+                    collector = new JmxCollector(new Yaml().dump(jmxConfigurationMap));
+                } else {
+                    collector = new JmxCollector(configuration.getYamlConfigurationFile(), jmxCollectorMode);
+                }
+            }
 
             /**
              * Handle "startDelaySeconds" as a special case.
              * <p>
-             * Collection of ALL metrics fails if "startDelaySeconds" is configuration in the JmxExporter.
-             * <p></p>
-             * In this scenario, we create a wrapper class to handle the JmxExporter behavior,
-             * returning other metrics before the JMX exporter is ready
+             * The JmxCollector fails collection of ALL metrics while waiting for "startDelaySeconds",
+             * so the ReadinessCollector only collects the JmxCollector once the start delay has expired
+             * and a background warm-up collection has completed
              */
-            int startDelaySeconds = 0;
-            Map<String, ?> yamlMap2 = new Yaml().load(new FileReader(configuration.getYamlConfigurationFile()));
-            if (yamlMap2.containsKey("startDelaySeconds")) {
-                try {
-                    startDelaySeconds = (Integer) yamlMap2.get("startDelaySeconds");
-                } catch (ClassCastException e) {
-                    // DO NOTHING
-                }
+            Integer startDelaySeconds = configuration.getInteger(ConfigurationPath.START_DELAY_SECONDS_PATH, false);
+            if ((startDelaySeconds == null) || (startDelaySeconds < 0)) {
+                startDelaySeconds = 0;
             }
 
-            if (startDelaySeconds > 0) {
-                collector = new CollectorWrapper(collector);
-            }
+            LOGGER.info(String.format("JMX start delay seconds [%d]", startDelaySeconds));
+
+            readinessCollector = new ReadinessCollector(collector, startDelaySeconds);
+            collector = readinessCollector;
 
             collectorList.add(collector.register());
         }
     }
 
+    /**
+     * Method to configure per client rate limiting
+     *
+     * @param httpHandler
+     * @return the HttpHandler, wrapped in a RateLimitHttpHandler if rate limiting is enabled
+     * @throws Exception
+     */
+    private HttpHandler configureRateLimit(HttpHandler httpHandler) throws Exception {
+        Boolean isRateLimitEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_RATE_LIMIT_ENABLED_PATH, false);
+        LOGGER.info(String.format("rate limit enabled [%b]", isRateLimitEnabled));
+        if (!isRateLimitEnabled) {
+            return httpHandler;
+        }
+
+        Long idleEvictionMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_RATE_LIMIT_IDLE_EVICTION_MILLISECONDS_PATH, false);
+        if (idleEvictionMilliseconds == null) {
+            idleEvictionMilliseconds = 300000L;
+        }
+
+        if (idleEvictionMilliseconds < 1) {
+            throw new ConfigurationException(String.format("rate limit idle eviction milliseconds must be >= %d", 1));
+        }
+
+        LOGGER.info(String.format("rate limit idle eviction milliseconds [%d]", idleEvictionMilliseconds));
+
+        Integer maximumClients = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_RATE_LIMIT_MAXIMUM_CLIENTS_PATH, false);
+        if (maximumClients == null) {
+            maximumClients = TokenBucketRateLimiter.DEFAULT_MAXIMUM_BUCKETS;
+        }
+
+        if (maximumClients < 1) {
+            throw new ConfigurationException(String.format("rate limit maximum clients must be >= %d", 1));
+        }
+
+        LOGGER.info(String.format("rate limit maximum clients [%d]", maximumClients));
+
+        Predicate<HttpServerExchange> targetsPredicate = new RequestPathExact("/probe").or(new RequestPathStartsWith("/targets/"));
+        Predicate<HttpServerExchange> metricsPredicate =
+                targetsPredicate.or(new RequestPathStartsWith("/-/")).or(new RequestPathExact("/favicon.ico")).negate();
+
+        RateLimitHttpHandler rateLimitHttpHandler = new RateLimitHttpHandler(httpHandler);
+        Map<String, TokenBucketRateLimiter<?>> tokenBucketRateLimiterMap = new LinkedHashMap<>();
+
+        String[][] endpoints = new String[][] {
+                { "targets",
+                        ConfigurationPath.EXPORTER_SERVER_RATE_LIMIT_ENDPOINTS_TARGETS_REQUESTS_PER_MINUTE_PATH,
+                        ConfigurationPath.EXPORTER_SERVER_RATE_LIMIT_ENDPOINTS_TARGETS_BURST_PATH },
+                { "metrics",
+                        ConfigurationPath.EXPORTER_SERVER_RATE_LIMIT_ENDPOINTS_METRICS_REQUESTS_PER_MINUTE_PATH,
+                        ConfigurationPath.EXPORTER_SERVER_RATE_LIMIT_ENDPOINTS_METRICS_BURST_PATH }
+        };
+
+        for (String[] endpoint : endpoints) {
+            String name = endpoint[0];
+
+            Integer requestsPerMinute = configuration.getInteger(endpoint[1], false);
+            if (requestsPerMinute == null) {
+                continue;
+            }
+
+            if (requestsPerMinute < 1) {
+                throw new ConfigurationException(String.format("rate limit endpoint [%s] requests per minute must be >= %d", name, 1));
+            }
+
+            Integer burst = configuration.getInteger(endpoint[2], false);
+            if (burst == null) {
+                burst = 5;
+            }
+
+            if (burst < 1) {
+                throw new ConfigurationException(String.format("rate limit endpoint [%s] burst must be >= %d", name, 1));
+            }
+
+            LOGGER.info(String.format("rate limit endpoint [%s] requests per minute [%d] burst [%d]", name, requestsPerMinute, burst));
+
+            TokenBucketRateLimiter<InetAddress> tokenBucketRateLimiter =
+                    new TokenBucketRateLimiter<>(requestsPerMinute / 60.0, burst, idleEvictionMilliseconds, maximumClients);
+
+            // A client can retry once the next permit is available
+            long retryAfterSeconds = (60 + requestsPerMinute - 1) / requestsPerMinute;
+
+            rateLimitHttpHandler.addRateLimit(
+                    "targets".equals(name) ? targetsPredicate : metricsPredicate,
+                    tokenBucketRateLimiter,
+                    new RetryAfterHttpHandler(429, retryAfterSeconds));
+
+            tokenBucketRateLimiterMap.put(name, tokenBucketRateLimiter);
+        }
+
+        if (tokenBucketRateLimiterMap.isEmpty()) {
+            throw new ConfigurationException("rate limit requires at least one endpoint");
+        }
+
+        collectorList.add(new RateLimitCollector(tokenBucketRateLimiterMap).register());
+
+        return rateLimitHttpHandler;
+    }
+
+    /**
+     * Method to configure targets (standalone mode only)
+     *
+     * @return the TargetHttpHandler
+     * @throws Exception
+     */
+    private TargetHttpHandler configureTargets() throws Exception {
+        Integer threads = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_TARGETS_THREADS_PATH);
+        if (threads < 1) {
+            throw new ConfigurationException(String.format("targets threads must be >= %d", 1));
+        }
+
+        Boolean isDiscoveryEnabled = configuration.getBoolean(ConfigurationPath.EXPORTER_SERVER_TARGETS_DISCOVERY_ENABLED_PATH, false);
+        LOGGER.info(String.format("targets discovery enabled [%b]", isDiscoveryEnabled));
+
+        List<Object> targets = configuration.getList(ConfigurationPath.EXPORTER_SERVER_TARGETS_LIST_PATH, !isDiscoveryEnabled);
+        if (targets == null) {
+            targets = new ArrayList<>();
+        }
+
+        if (targets.isEmpty() && !isDiscoveryEnabled) {
+            throw new ConfigurationException("targets list is empty");
+        }
+
+        // The JMX exporter configuration (rules, etc.) is shared by all targets
+        Map<String, Object> jmxConfigurationMap;
+        try (FileReader fileReader = new FileReader(configuration.getYamlConfigurationFile())) {
+            jmxConfigurationMap = new Yaml().load(fileReader);
+        }
+
+        Long connectTimeoutMilliseconds = getTargetsConnectionMilliseconds(ConfigurationPath.EXPORTER_SERVER_TARGETS_CONNECTION_CONNECT_TIMEOUT_MILLISECONDS_PATH, 10000L);
+        Long healthCheckMilliseconds = getTargetsConnectionMilliseconds(ConfigurationPath.EXPORTER_SERVER_TARGETS_CONNECTION_HEALTH_CHECK_MILLISECONDS_PATH, 10000L);
+        Long backoffMinimumMilliseconds = getTargetsConnectionMilliseconds(ConfigurationPath.EXPORTER_SERVER_TARGETS_CONNECTION_BACKOFF_MINIMUM_MILLISECONDS_PATH, 1000L);
+        Long backoffMaximumMilliseconds = getTargetsConnectionMilliseconds(ConfigurationPath.EXPORTER_SERVER_TARGETS_CONNECTION_BACKOFF_MAXIMUM_MILLISECONDS_PATH, 60000L);
+        if (backoffMaximumMilliseconds < backoffMinimumMilliseconds) {
+            throw new ConfigurationException("targets connection backoff maximum milliseconds must be >= backoff minimum milliseconds");
+        }
+
+        LOGGER.info(String.format("targets connection connect timeout milliseconds [%d]", connectTimeoutMilliseconds));
+        LOGGER.info(String.format("targets connection health check milliseconds [%d]", healthCheckMilliseconds));
+        LOGGER.info(String.format("targets connection backoff minimum milliseconds [%d]", backoffMinimumMilliseconds));
+        LOGGER.info(String.format("targets connection backoff maximum milliseconds [%d]", backoffMaximumMilliseconds));
+
+        // Connects, health checks, reconnects, and discovery run in the background, never on a scrape
+        ClassLoader classLoader = getClass().getClassLoader();
+        AtomicInteger schedulerThreadIndex = new AtomicInteger();
+        targetScheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(
+                threads,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "target-scheduler-" + schedulerThreadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                });
+
+        // Connects, health checks, and closes may block (RMI), so run on their own threads, bounded by the connect timeout,
+        // leaving the scheduler for timing and discovery
+        AtomicInteger connectionThreadIndex = new AtomicInteger();
+        targetConnectionExecutorService = Executors.newCachedThreadPool(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "target-connection-" + connectionThreadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                });
+
+        TargetFactory targetFactory = new TargetFactory(
+                jmxConfigurationMap,
+                targetScheduledThreadPoolExecutor,
+                targetConnectionExecutorService,
+                connectTimeoutMilliseconds,
+                healthCheckMilliseconds,
+                backoffMinimumMilliseconds,
+                backoffMaximumMilliseconds);
+
+        LOGGER.info(String.format("targets persistent connection collection [%b]", targetFactory.isPersistentConnectionCollection()));
+
+        targetMap = new ConcurrentSkipListMap<>();
+        int queueCapacity = 0;
+
+        for (int i = 0; i < targets.size(); i++) {
+            String name = configuration.getString(String.format(ConfigurationPath.EXPORTER_SERVER_TARGETS_LIST_NAME_PATH, i));
+            if (name.trim().isEmpty() || name.contains("/")) {
+                throw new ConfigurationException(String.format("target name [%s] is invalid", name));
+            }
+
+            if (targetMap.containsKey(name)) {
+                throw new ConfigurationException(String.format("target name [%s] is duplicated", name));
+            }
+
+            String jmxUrl = configuration.getString(String.format(ConfigurationPath.EXPORTER_SERVER_TARGETS_LIST_JMX_URL_PATH, i), false);
+            String hostPort = configuration.getString(String.format(ConfigurationPath.EXPORTER_SERVER_TARGETS_LIST_HOST_PORT_PATH, i), false);
+            if ((jmxUrl == null) == (hostPort == null)) {
+                throw new ConfigurationException(String.format("target [%s] requires either jmx-url or host-port", name));
+            }
+
+            if (jmxUrl == null) {
+                jmxUrl = "service:jmx:rmi:///jndi/rmi://" + hostPort + "/jmxrmi";
+            }
+
+            String username = configuration.getString(String.format(ConfigurationPath.EXPORTER_SERVER_TARGETS_LIST_USERNAME_PATH, i), false);
+            String password = configuration.getString(String.format(ConfigurationPath.EXPORTER_SERVER_TARGETS_LIST_PASSWORD_PATH, i), false);
+            if (password != null) {
+                password = new ObfuscatedPassword(password).getUnobfuscatedPassword();
+            }
+
+            Boolean isSSLEnabled = configuration.getBoolean(String.format(ConfigurationPath.EXPORTER_SERVER_TARGETS_LIST_SSL_PATH, i), false);
+
+            Integer maximumConcurrentScrapes = configuration.getInteger(String.format(ConfigurationPath.EXPORTER_SERVER_TARGETS_LIST_MAXIMUM_CONCURRENT_SCRAPES_PATH, i), false);
+            if (maximumConcurrentScrapes == null) {
+                maximumConcurrentScrapes = 1;
+            } else if (maximumConcurrentScrapes < 1) {
+                throw new ConfigurationException(String.format("target [%s] maximum concurrent scrapes must be >= %d", name, 1));
+            }
+
+            Long cacheMilliseconds = configuration.getLong(String.format(ConfigurationPath.EXPORTER_SERVER_TARGETS_LIST_CACHING_MILLISECONDS_PATH, i), false);
+            if ((cacheMilliseconds != null) && (cacheMilliseconds < 1)) {
+                throw new ConfigurationException(String.format("target [%s] caching milliseconds must be >= %d", name, 1));
+            }
+
+            LOGGER.info(String.format("target [%s] [%s]", name, jmxUrl));
+
+            try {
+                targetMap.put(
+                        name,
+                        targetFactory.createTarget(
+                                name,
+                                jmxUrl,
+                                username,
+                                password,
+                                isSSLEnabled,
+                                maximumConcurrentScrapes,
+                                cacheMilliseconds));
+            } catch (MalformedURLException e) {
+                throw new ConfigurationException(String.format("target [%s] jmx-url is invalid", name));
+            }
+
+            queueCapacity += maximumConcurrentScrapes;
+        }
+
+        LOGGER.info(String.format("targets threads [%d]", threads));
+
+        for (Target target : targetMap.values()) {
+            target.getJmxConnectionManager().start();
+        }
+
+        if (isDiscoveryEnabled) {
+            queueCapacity += configureDiscovery(targetFactory, backoffMinimumMilliseconds, backoffMaximumMilliseconds);
+        }
+
+        // Scrapes are bounded per target, so the queue only needs to hold every permitted scrape
+        targetThreadPoolExecutor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                VirtualThreads.newThreadFactory("target-collector-", isVirtualThreadsEnabled));
+
+        collectorList.add(new TargetsCollector(targetMap.values()).register());
+
+        return new TargetHttpHandler(targetMap, targetThreadPoolExecutor);
+    }
+
+    /**
+     * Method to configure local JVM discovery using the Attach API (standalone mode only)
+     *
+     * @param targetFactory
+     * @param backoffMinimumMilliseconds
+     * @param backoffMaximumMilliseconds
+     * @return the maximum number of discovered targets
+     * @throws Exception
+     */
+    private int configureDiscovery(TargetFactory targetFactory, long backoffMinimumMilliseconds, long backoffMaximumMilliseconds) throws Exception {
+        Long intervalMilliseconds = configuration.getLong(ConfigurationPath.EXPORTER_SERVER_TARGETS_DISCOVERY_INTERVAL_MILLISECONDS_PATH);
+        if (intervalMilliseconds < 1) {
+            throw new ConfigurationException(String.format("targets discovery interval milliseconds must be >= %d", 1));
+        }
+
+        Integer maximumTargets = configuration.getInteger(ConfigurationPath.EXPORTER_SERVER_TARGETS_DISCOVERY_MAXIMUM_TARGETS_PATH);
+        if (maximumTargets < 1) {
+            throw new ConfigurationException(String.format("targets discovery maximum targets must be >= %d", 1));
+        }
+
+        Pattern mainClassPattern = getPattern(ConfigurationPath.EXPORTER_SERVER_TARGETS_DISCOVERY_MAIN_CLASS_PATH, false);
+        String systemPropertyName = configuration.getString(ConfigurationPath.EXPORTER_SERVER_TARGETS_DISCOVERY_SYSTEM_PROPERTY_NAME_PATH, false);
+        Pattern systemPropertyValuePattern = null;
+        if (systemPropertyName != null) {
+            systemPropertyValuePattern = getPattern(ConfigurationPath.EXPORTER_SERVER_TARGETS_DISCOVERY_SYSTEM_PROPERTY_VALUE_PATH, true);
+        }
+
+        if ((mainClassPattern == null) && (systemPropertyName == null)) {
+            throw new ConfigurationException("targets discovery requires a main class and/or system property");
+        }
+
+        LOGGER.info(String.format("targets discovery interval milliseconds [%d]", intervalMilliseconds));
+        LOGGER.info(String.format("targets discovery maximum targets [%d]", maximumTargets));
+
+        if (mainClassPattern != null) {
+            LOGGER.info(String.format("targets discovery main class [%s]", mainClassPattern.pattern()));
+        }
+
+        if (systemPropertyName != null) {
+            LOGGER.info(String.format("targets discovery system property [%s] [%s]", systemPropertyName, systemPropertyValuePattern.pattern()));
+        }
+
+        try {
+            attachDiscovery = new AttachDiscovery(
+                    targetMap,
+                    targetFactory,
+                    mainClassPattern,
+                    systemPropertyName,
+                    systemPropertyValuePattern,
+                    maximumTargets,
+                    backoffMinimumMilliseconds,
+                    backoffMaximumMilliseconds);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.warn("targets discovery requires the Attach API (\"jdk.attach\" module, or \"tools.jar\" on Java 8), ignoring");
+            return 0;
+        }
+
+        targetScheduledThreadPoolExecutor.scheduleWithFixedDelay(attachDiscovery, 0, intervalMilliseconds, TimeUnit.MILLISECONDS);
+
+        return maximumTargets;
+    }
+
+    /**
+     * Method to get a regular expression Pattern
+     *
+     * @param path
+     * @param isRequired
+     * @return the Pattern, or null if not required and not present
+     * @throws ConfigurationException
+     */
+    private Pattern getPattern(String path, boolean isRequired) throws ConfigurationException {
+        String regex = configuration.getString(path, isRequired);
+        if (regex == null) {
+            return null;
+        }
+
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new ConfigurationException(String.format("path [%s] value [%s] is an invalid regular expression", path, regex));
+        }
+    }
+
+    /**
+     * Method to get an optional targets connection milliseconds value
+     *
+     * @param path
+     * @param defaultMilliseconds
+     * @return
+     * @throws ConfigurationException
+     */
+    private Long getTargetsConnectionMilliseconds(String path, Long defaultMilliseconds) throws ConfigurationException {
+        Long milliseconds = configuration.getLong(path, false);
+        if (milliseconds == null) {
+            return defaultMilliseconds;
+        }
+
+        if (milliseconds < 1) {
+            throw new ConfigurationException(String.format("path [%s] value must be >= %d", path, 1));
+        }
+
+        return milliseconds;
+    }
+
     /**
      * Method to clean up resources
      */
     private void cleanup() {
+        // Stop the SSL/TLS keystore monitor
+        if (sslFileMonitor != null) {
+            sslFileMonitor.stop();
+            sslFileMonitor = null;
+        }
+
         // Stop the Undertow instance
         if (undertow != null) {
             try {
@@ -443,6 +1583,128 @@ public class Exporter {
 
             collectorList.clear();
         }
+
+        // Stop the collection Executor
+        if (collectionExecutor != null) {
+            collectionExecutor.close();
+            collectionExecutor = null;
+        }
+
+        // Stop the SSL/TLS handshake Executor (after Undertow is stopped)
+        if (sslHandshakeExecutor != null) {
+            sslHandshakeExecutor.close();
+            sslHandshakeExecutor = null;
+        }
+
+        // Stop the background thread state counts and deadlock detection
+        if (backgroundThreadExports != null) {
+            backgroundThreadExports.close();
+            backgroundThreadExports = null;
+        }
+
+        // Stop the hot threads sampling
+        if (hotThreadsCollector != null) {
+            hotThreadsCollector.close();
+            hotThreadsCollector = null;
+        }
+
+        // Close the /proc and cgroup files
+        if (linuxProcessExports != null) {
+            linuxProcessExports.close();
+            linuxProcessExports = null;
+        }
+
+        // Stop the JFR recording stream
+        if (jfrCollector != null) {
+            jfrCollector.close();
+            jfrCollector = null;
+        }
+
+        // Stop the hsperfdata directory watch
+        if (hsperfdataCollector != null) {
+            hsperfdataCollector.close();
+            hsperfdataCollector = null;
+        }
+
+        // Stop the JMX warm-up
+        if (readinessCollector != null) {
+            readinessCollector.close();
+            readinessCollector = null;
+        }
+
+        // Remove the JMX notification snapshot listeners
+        if (notificationSnapshotCollector != null) {
+            notificationSnapshotCollector.close();
+            notificationSnapshotCollector = null;
+        }
+
+        // Stop discovery and close the target JMX connections
+        if (attachDiscovery != null) {
+            attachDiscovery.close();
+            attachDiscovery = null;
+        }
+
+        if (targetMap != null) {
+            for (Target target : targetMap.values()) {
+                target.close();
+            }
+
+            targetMap = null;
+        }
+
+        if (targetScheduledThreadPoolExecutor != null) {
+            targetScheduledThreadPoolExecutor.shutdownNow();
+            targetScheduledThreadPoolExecutor = null;
+        }
+
+        if (targetConnectionExecutorService != null) {
+            targetConnectionExecutorService.shutdownNow();
+            targetConnectionExecutorService = null;
+        }
+
+        // Shutdown the target ThreadPoolExecutor
+        if (targetThreadPoolExecutor != null) {
+            targetThreadPoolExecutor.shutdownNow();
+            targetThreadPoolExecutor = null;
+        }
+
+        // Shutdown the JMX ExecutorService
+        if (jmxExecutorService != null) {
+            jmxExecutorService.shutdownNow();
+            jmxExecutorService = null;
+        }
+
+        // Shutdown the worker ExecutorService
+        if (workerExecutorService != null) {
+            workerExecutorService.shutdownNow();
+            workerExecutorService = null;
+        }
+    }
+
+    /**
+     * Method to add ObjectNames to the JMX configuration excluded ObjectNames
+     *
+     * @param jmxConfigurationMap
+     * @param objectNameList
+     */
+    @SuppressWarnings("unchecked")
+    private static void excludeObjectNames(Map<String, Object> jmxConfigurationMap, List<ObjectName> objectNameList) {
+        String key = "blacklistObjectNames";
+        if (jmxConfigurationMap.containsKey("excludeObjectNames")) {
+            key = "excludeObjectNames";
+        }
+
+        List<Object> excludeObjectNameList = new ArrayList<>();
+        Object excludeObjectNames = jmxConfigurationMap.get(key);
+        if (excludeObjectNames instanceof List) {
+            excludeObjectNameList.addAll((List<Object>) excludeObjectNames);
+        }
+
+        for (ObjectName objectName : objectNameList) {
+            excludeObjectNameList.add(objectName.getCanonicalName());
+        }
+
+        jmxConfigurationMap.put(key, excludeObjectNameList);
     }
 
     /**
@@ -453,12 +1715,25 @@ public class Exporter {
      * @param keyStoreType
      * @param keyStorePassword
      * @param sslProtocol
+     * @param trustManagers client certificate TrustManagers, may be null
+     * @param sessionCacheSize optional, may be null
+     * @param sessionTimeoutSeconds optional, may be null
      * @return
      * @throws Exception
      */
-    private SSLContext createSSLContext(String certificateAlias, File keyStoreFile, String keyStoreType, String keyStorePassword, String sslProtocol) throws Exception {
+    private SSLContext createSSLContext(
+            String certificateAlias,
+            File keyStoreFile,
+            String keyStoreType,
+            String keyStorePassword,
+            String sslProtocol,
+            TrustManager[] trustManagers,
+            Integer sessionCacheSize,
+            Integer sessionTimeoutSeconds) throws Exception {
         KeyStore keyStore = KeyStore.getInstance(keyStoreType);
-        keyStore.load(new FileInputStream(keyStoreFile), keyStorePassword.toCharArray());
+        try (FileInputStream fileInputStream = new FileInputStream(keyStoreFile)) {
+            keyStore.load(fileInputStream, keyStorePassword.toCharArray());
+        }
 
         boolean foundCertificate = false;
         Enumeration<String> keyStoreAliases = keyStore.aliases();
@@ -483,9 +1758,110 @@ public class Exporter {
         SSLContext sslContext = SSLContext.getInstance(sslProtocol);
         sslContext.init(
                 keyManagerFactory.getKeyManagers(),
-                null,
+                trustManagers,
                 new SecureRandom());
 
+        if (sessionCacheSize != null) {
+            sslContext.getServerSessionContext().setSessionCacheSize(sessionCacheSize);
+        }
+
+        if (sessionTimeoutSeconds != null) {
+            sslContext.getServerSessionContext().setSessionTimeout(sessionTimeoutSeconds);
+        }
+
         return sslContext;
     }
+
+    /**
+     * Method to create the client certificate TrustManagers (truststore and optional subject / subject alternative name allowlist)
+     *
+     * @return the client certificate TrustManagers
+     * @throws Exception
+     */
+    private TrustManager[] createClientCertificateTrustManagers() throws Exception {
+        File trustStoreFile = configuration.getReadableFile(ConfigurationPath.EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_TRUSTSTORE_FILENAME_PATH);
+        String trustStoreType = configuration.getString(ConfigurationPath.EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_TRUSTSTORE_TYPE_PATH);
+        String trustStorePassword = configuration.getString(ConfigurationPath.EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_TRUSTSTORE_PASSWORD_PATH);
+
+        trustStorePassword = new ObfuscatedPassword(trustStorePassword).getUnobfuscatedPassword();
+
+        LOGGER.info(String.format("Undertow SSL/TLS client authentication truststore [%s]", trustStoreFile));
+
+        List<String> allowedSubjectList = new ArrayList<>();
+        List<Object> allowedSubjects = configuration.getList(ConfigurationPath.EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_ALLOWED_SUBJECTS_PATH, false);
+        if (allowedSubjects != null) {
+            for (Object allowedSubject : allowedSubjects) {
+                allowedSubjectList.add(String.valueOf(allowedSubject));
+                LOGGER.info(String.format("Undertow SSL/TLS client authentication allowed subject [%s]", allowedSubject));
+            }
+        }
+
+        List<String> allowedSubjectAlternativeNameList = new ArrayList<>();
+        List<Object> allowedSubjectAlternativeNames = configuration.getList(ConfigurationPath.EXPORTER_SERVER_SSL_CLIENT_AUTHENTICATION_ALLOWED_SUBJECT_ALTERNATIVE_NAMES_PATH, false);
+        if (allowedSubjectAlternativeNames != null) {
+            for (Object allowedSubjectAlternativeName : allowedSubjectAlternativeNames) {
+                allowedSubjectAlternativeNameList.add(String.valueOf(allowedSubjectAlternativeName));
+                LOGGER.info(String.format("Undertow SSL/TLS client authentication allowed subject alternative name [%s]", allowedSubjectAlternativeName));
+            }
+        }
+
+        KeyStore trustStore = KeyStore.getInstance(trustStoreType);
+        try (FileInputStream fileInputStream = new FileInputStream(trustStoreFile)) {
+            trustStore.load(fileInputStream, trustStorePassword.toCharArray());
+        }
+
+        TrustManagerFactory trustManagerFactory =
+                TrustManagerFactory.getInstance(
+                    TrustManagerFactory.getDefaultAlgorithm());
+
+        trustManagerFactory.init(trustStore);
+
+        X509ExtendedTrustManager x509ExtendedTrustManager = null;
+        for (TrustManager trustManager : trustManagerFactory.getTrustManagers()) {
+            if (trustManager instanceof X509ExtendedTrustManager) {
+                x509ExtendedTrustManager = (X509ExtendedTrustManager) trustManager;
+                break;
+            }
+        }
+
+        if (x509ExtendedTrustManager == null) {
+            throw new ConfigurationException(String.format("SSL/TLS client authentication truststore [%s] has no X509 TrustManager", trustStoreFile));
+        }
+
+        try {
+            return new TrustManager[] {
+                    new ClientCertificateTrustManager(x509ExtendedTrustManager, allowedSubjectList, allowedSubjectAlternativeNameList) };
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException(String.format("SSL/TLS client authentication allowed subject is invalid [%s]", e.getMessage()));
+        }
+    }
+
+    /**
+     * Method to configure TLS session tickets (stateless session resumption, Java 13+)
+     * <p>
+     * The JDK only supports a JVM-wide system property, read when JSSE is initialized,
+     * so the property is only set if it isn't already set
+     *
+     * @throws ConfigurationException
+     */
+    private void configureSessionTickets() throws ConfigurationException {
+        String sessionTickets = configuration.getString(ConfigurationPath.EXPORTER_SERVER_SSL_SESSION_TICKETS_PATH, false);
+        if (sessionTickets == null) {
+            return;
+        }
+
+        sessionTickets = sessionTickets.trim().toLowerCase(Locale.ENGLISH);
+        if (!"true".equals(sessionTickets) && !"false".equals(sessionTickets)) {
+            throw new ConfigurationException(String.format("SSL/TLS session tickets [%s] must be true or false", sessionTickets));
+        }
+
+        String currentSessionTickets = System.getProperty(JDK_TLS_SERVER_ENABLE_SESSION_TICKET_EXTENSION);
+        if (currentSessionTickets != null) {
+            LOGGER.info(String.format("Undertow SSL/TLS session tickets [%s] (system property already set)", currentSessionTickets));
+            return;
+        }
+
+        System.setProperty(JDK_TLS_SERVER_ENABLE_SESSION_TICKET_EXTENSION, sessionTickets);
+        LOGGER.info(String.format("Undertow SSL/TLS session tickets [%s]", sessionTickets));
+    }
 }
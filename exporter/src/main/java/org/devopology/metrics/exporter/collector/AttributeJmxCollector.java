@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.devopology.metrics.exporter.jmx.ObjectNameFilter;
+
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class to collect a local MBeanServer attribute by attribute, quarantining MBean attributes that are consistently slow to read
+ * <p>
+ * Each attribute read is timed and recorded in the {@link Quarantine}, keyed by ObjectName and attribute name,
+ * so a single slow attribute is skipped without skipping the rest of the MBean (or domain)
+ * <p>
+ * Uses the default export format, so only supports rules without "name" or "value"
+ */
+public class AttributeJmxCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AttributeJmxCollector.class);
+
+    /**
+     * Quarantine key label names
+     */
+    public static final List<String> QUARANTINE_LABEL_NAMES = Arrays.asList("object_name", "attribute");
+
+    private final MBeanServer mBeanServer;
+    private final ObjectName queryObjectName;
+    private final ObjectNameFilter objectNameFilter;
+    private final DefaultExport defaultExport;
+    private final Quarantine quarantine;
+    private final Map<ObjectName, BeanAttributes> beanAttributesMap;
+
+    /**
+     * Constructor
+     *
+     * @param mBeanServer
+     * @param queryObjectName the ObjectName pattern used to query MBeans, null to query all MBeans
+     * @param objectNameFilter
+     * @param defaultExport
+     * @param quarantine
+     */
+    public AttributeJmxCollector(
+            MBeanServer mBeanServer,
+            ObjectName queryObjectName,
+            ObjectNameFilter objectNameFilter,
+            DefaultExport defaultExport,
+            Quarantine quarantine) {
+        Precondition.notNull(mBeanServer, "mBeanServer is null");
+        Precondition.notNull(objectNameFilter, "objectNameFilter is null");
+        Precondition.notNull(defaultExport, "defaultExport is null");
+        Precondition.notNull(quarantine, "quarantine is null");
+
+        this.mBeanServer = mBeanServer;
+        this.queryObjectName = queryObjectName;
+        this.objectNameFilter = objectNameFilter;
+        this.defaultExport = defaultExport;
+        this.quarantine = quarantine;
+        this.beanAttributesMap = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        long startNanoseconds = System.nanoTime();
+        boolean isError = false;
+
+        Map<String, MetricFamilySamples> metricFamilySamplesMap = new TreeMap<>();
+
+        try {
+            Set<ObjectName> objectNames = mBeanServer.queryNames(queryObjectName, null);
+
+            // Remove the cached attributes and quarantine state of unregistered MBeans
+            for (ObjectName objectName : new ArrayList<>(beanAttributesMap.keySet())) {
+                if (!objectNames.contains(objectName)) {
+                    remove(objectName);
+                }
+            }
+
+            for (ObjectName objectName : new TreeSet<>(objectNames)) {
+                if (!objectNameFilter.isIncluded(objectName)) {
+                    continue;
+                }
+
+                BeanAttributes beanAttributes = beanAttributesMap.get(objectName);
+
+                if (beanAttributes == null) {
+                    try {
+                        beanAttributes = new BeanAttributes(objectName, mBeanServer.getMBeanInfo(objectName));
+                    } catch (JMException e) {
+                        // The MBean was unregistered
+                        continue;
+                    }
+
+                    beanAttributesMap.put(objectName, beanAttributes);
+                }
+
+                collect(objectName, beanAttributes, metricFamilySamplesMap);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn(String.format("JMX collection failed [%s]", e.getMessage()));
+            isError = true;
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>(metricFamilySamplesMap.values());
+        metricFamilySamplesList.addAll(DefaultExport.getScrapeMetricFamilySamples(System.nanoTime() - startNanoseconds, isError));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        // Return an empty list, the MBeans are dynamic
+        return new ArrayList<>();
+    }
+
+    /**
+     * Method to collect the attributes of an MBean, timing each attribute read
+     *
+     * @param objectName
+     * @param beanAttributes
+     * @param metricFamilySamplesMap
+     */
+    private void collect(ObjectName objectName, BeanAttributes beanAttributes, Map<String, MetricFamilySamples> metricFamilySamplesMap) {
+        for (int i = 0; i < beanAttributes.attributeNames.length; i++) {
+            List<String> key = beanAttributes.quarantineKeys.get(i);
+            if (quarantine.isQuarantined(key)) {
+                continue;
+            }
+
+            String attributeName = beanAttributes.attributeNames[i];
+            long startNanoseconds = System.nanoTime();
+            Object value;
+
+            try {
+                value = mBeanServer.getAttribute(objectName, attributeName);
+            } catch (Exception e) {
+                // Attribute read failures are skipped, matches the JMX exporter
+                value = null;
+            }
+
+            quarantine.record(key, System.nanoTime() - startNanoseconds);
+
+            if (value != null) {
+                defaultExport.processBeanValue(
+                        objectName.getDomain(),
+                        beanAttributes.beanProperties,
+                        new LinkedList<>(),
+                        attributeName,
+                        beanAttributes.attributeDescriptions[i],
+                        value,
+                        metricFamilySamplesMap);
+            }
+        }
+    }
+
+    /**
+     * Method to remove the cached attributes and quarantine state of an unregistered MBean
+     *
+     * @param objectName
+     */
+    private void remove(ObjectName objectName) {
+        BeanAttributes beanAttributes = beanAttributesMap.remove(objectName);
+        if ((beanAttributes != null) && (quarantine.size() > 0)) {
+            quarantine.removeIf(key -> key.get(0).equals(beanAttributes.objectName));
+        }
+    }
+
+    /**
+     * Class to cache the readable attributes of an MBean
+     */
+    private static class BeanAttributes {
+
+        private final String objectName;
+        private final LinkedHashMap<String, String> beanProperties;
+        private final String[] attributeNames;
+        private final String[] attributeDescriptions;
+        private final List<List<String>> quarantineKeys;
+
+        /**
+         * Constructor
+         *
+         * @param objectName
+         * @param mBeanInfo
+         */
+        private BeanAttributes(ObjectName objectName, MBeanInfo mBeanInfo) {
+            List<String> attributeNameList = new ArrayList<>();
+            List<String> attributeDescriptionList = new ArrayList<>();
+
+            for (MBeanAttributeInfo mBeanAttributeInfo : mBeanInfo.getAttributes()) {
+                if (mBeanAttributeInfo.isReadable()) {
+                    attributeNameList.add(mBeanAttributeInfo.getName());
+                    attributeDescriptionList.add(mBeanAttributeInfo.getDescription());
+                }
+            }
+
+            this.objectName = objectName.toString();
+            this.beanProperties = DefaultExport.getKeyPropertyList(objectName);
+            this.attributeNames = attributeNameList.toArray(new String[0]);
+            this.attributeDescriptions = attributeDescriptionList.toArray(new String[0]);
+            this.quarantineKeys = new ArrayList<>(attributeNames.length);
+
+            // Keys are created once per MBean, so a quarantine lookup doesn't allocate
+            for (int i = 0; i < attributeNames.length; i++) {
+                quarantineKeys.add(Arrays.asList(this.objectName, attributeNames[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Counter;
+import io.prometheus.client.GaugeMetricFamily;
+import io.prometheus.client.Histogram;
+import org.devopology.common.precondition.Precondition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class to implement a bounded, named Executor for metrics collection, so collection
+ * and rendering don't run on (and block) the Undertow IO threads
+ * <p>
+ * Admission control: the number of threads limits concurrent collections, and collections
+ * are shed if the queue is full or they waited in the queue longer than the queue deadline
+ * <p>
+ * The queue deadline is enforced by a timer scheduled when the collection is queued, so a collection
+ * is shed when the deadline passes, not when a thread becomes available. The collection and the
+ * deadline race to claim the collection, so exactly one of them runs
+ * <p>
+ * Exports the queue depth, active threads, queue wait time, and queued / shed collections
+ */
+public class CollectionExecutor extends Collector implements Collector.Describable {
+
+    private static final double[] BUCKETS = new double[] {
+            0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10 };
+
+    private static final String METRICS_EXPORTER_COLLECTION_EXECUTOR_THREADS = "metrics_exporter_collection_executor_threads";
+    private static final String METRICS_EXPORTER_COLLECTION_EXECUTOR_ACTIVE_THREADS = "metrics_exporter_collection_executor_active_threads";
+    private static final String METRICS_EXPORTER_COLLECTION_EXECUTOR_QUEUE_DEPTH = "metrics_exporter_collection_executor_queue_depth";
+
+    private static final String QUEUE_FULL = "queue_full";
+    private static final String QUEUE_DEADLINE = "queue_deadline";
+
+    private final int threads;
+    private final long queueDeadlineNanoseconds;
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final ScheduledThreadPoolExecutor deadlineScheduledThreadPoolExecutor;
+    private final AtomicInteger admitted;
+    private final Histogram queueWaitHistogram;
+    private final Counter queuedCounter;
+    private final Counter shedCounter;
+
+    /**
+     * Constructor
+     *
+     * @param threads
+     * @param queueCapacity
+     * @param queueDeadlineMilliseconds
+     * @param threadFactory
+     */
+    public CollectionExecutor(int threads, int queueCapacity, long queueDeadlineMilliseconds, ThreadFactory threadFactory) {
+        Precondition.inRange(threads, 1, Integer.MAX_VALUE, "threads is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.inRange(queueCapacity, 1, Integer.MAX_VALUE, "queueCapacity is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.inRange(queueDeadlineMilliseconds, 1, Long.MAX_VALUE / 1000000, "queueDeadlineMilliseconds is outside range (1 - " + (Long.MAX_VALUE / 1000000) + ")");
+        Precondition.notNull(threadFactory, "threadFactory is null");
+
+        this.threads = threads;
+        this.queueDeadlineNanoseconds = TimeUnit.MILLISECONDS.toNanos(queueDeadlineMilliseconds);
+        this.admitted = new AtomicInteger();
+
+        this.threadPoolExecutor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory);
+
+        // Shedding only completes the exchange, so a single platform thread is enough
+        ClassLoader classLoader = getClass().getClassLoader();
+        this.deadlineScheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(
+                1,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "metrics-collector-deadline");
+                    thread.setDaemon(true);
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                });
+
+        // Most collections start before their deadline, so remove the cancelled timers
+        this.deadlineScheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+
+        this.queueWaitHistogram = Histogram.build()
+                .name("metrics_exporter_collection_executor_queue_wait_seconds")
+                .help("Time collections waited in the collection executor queue, in seconds")
+                .buckets(BUCKETS)
+                .create();
+
+        this.queuedCounter = Counter.build()
+                .name("metrics_exporter_collection_executor_queued")
+                .help("Number of collections that waited in the collection executor queue because all threads were collecting")
+                .create();
+
+        this.shedCounter = Counter.build()
+                .name("metrics_exporter_collection_executor_shed")
+                .help("Number of collections shed because the collection executor queue was full or the queue deadline passed")
+                .labelNames("reason")
+                .create();
+
+        // Create the label children so they are exported before the first shed collection
+        this.shedCounter.labels(QUEUE_FULL);
+        this.shedCounter.labels(QUEUE_DEADLINE);
+    }
+
+    /**
+     * Method to execute a collection
+     *
+     * @param collection the collection
+     * @param shed run instead of the collection if the collection waits longer than the queue deadline
+     * @throws RejectedExecutionException if the queue is full or the Executor is closed
+     */
+    public void execute(Runnable collection, Runnable shed) {
+        Task task = new Task(collection, shed);
+
+        boolean isQueued = admitted.incrementAndGet() > threads;
+
+        try {
+            threadPoolExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            admitted.decrementAndGet();
+            shedCounter.labels(QUEUE_FULL).inc();
+            throw e;
+        }
+
+        if (isQueued) {
+            queuedCounter.inc();
+        }
+
+        try {
+            task.deadlineFuture = deadlineScheduledThreadPoolExecutor.schedule(task::deadline, queueDeadlineNanoseconds, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed, the collection still runs (or is dropped) with the thread pool
+        }
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>();
+
+        metricFamilySamplesList.add(
+                new GaugeMetricFamily(
+                        METRICS_EXPORTER_COLLECTION_EXECUTOR_THREADS,
+                        "Number of collection executor threads",
+                        threads));
+
+        metricFamilySamplesList.add(
+                new GaugeMetricFamily(
+                        METRICS_EXPORTER_COLLECTION_EXECUTOR_ACTIVE_THREADS,
+                        "Number of collection executor threads collecting",
+                        threadPoolExecutor.getActiveCount()));
+
+        metricFamilySamplesList.add(
+                new GaugeMetricFamily(
+                        METRICS_EXPORTER_COLLECTION_EXECUTOR_QUEUE_DEPTH,
+                        "Number of collections waiting in the collection executor queue",
+                        threadPoolExecutor.getQueue().size()));
+
+        metricFamilySamplesList.addAll(queueWaitHistogram.collect());
+        metricFamilySamplesList.addAll(queuedCounter.collect());
+        metricFamilySamplesList.addAll(shedCounter.collect());
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return collect();
+    }
+
+    /**
+     * Method to close the Executor
+     */
+    public void close() {
+        deadlineScheduledThreadPoolExecutor.shutdownNow();
+        threadPoolExecutor.shutdownNow();
+    }
+
+    /**
+     * Class to implement a queued collection, claimed by either a collection thread or the deadline timer
+     */
+    private class Task implements Runnable {
+
+        private final Runnable collection;
+        private final Runnable shed;
+        private final long queuedNanoseconds;
+        private final AtomicBoolean isClaimed;
+        private volatile ScheduledFuture<?> deadlineFuture;
+
+        private Task(Runnable collection, Runnable shed) {
+            this.collection = collection;
+            this.shed = shed;
+            this.queuedNanoseconds = System.nanoTime();
+            this.isClaimed = new AtomicBoolean();
+        }
+
+        /**
+         * Method to run the collection on a collection thread
+         */
+        @Override
+        public void run() {
+            long queueWaitNanoseconds = System.nanoTime() - queuedNanoseconds;
+
+            // The deadline may have passed before the timer ran
+            if (queueWaitNanoseconds > queueDeadlineNanoseconds) {
+                deadline();
+                return;
+            }
+
+            if (!isClaimed.compareAndSet(false, true)) {
+                // Shed by the deadline timer
+                return;
+            }
+
+            ScheduledFuture<?> scheduledFuture = deadlineFuture;
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+            }
+
+            try {
+                queueWaitHistogram.observe(queueWaitNanoseconds / NANOSECONDS_PER_SECOND);
+                collection.run();
+            } finally {
+                admitted.decrementAndGet();
+            }
+        }
+
+        /**
+         * Method to shed the collection once the queue deadline has passed
+         */
+        private void deadline() {
+            if (!isClaimed.compareAndSet(false, true)) {
+                // Collecting (or already shed)
+                return;
+            }
+
+            // Free the queue slot, a no-op if a collection thread has already taken the task
+            threadPoolExecutor.remove(this);
+
+            try {
+                queueWaitHistogram.observe((System.nanoTime() - queuedNanoseconds) / NANOSECONDS_PER_SECOND);
+                shedCounter.labels(QUEUE_DEADLINE).inc();
+                shed.run();
+            } finally {
+                admitted.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Class to collect the top N threads by CPU and contention (agent mode)
+ * <p>
+ * Threads are sampled on a background interval. Thread names are normalized (digits replaced by "*",
+ * e.g. "pool-*-thread-*") and the per interval deltas are aggregated by normalized name. The top N names
+ * by CPU and the top N names by blocked time are exported, all other threads are aggregated as "other",
+ * so there are at most (2 * N) + 1 "thread" label values. A scrape returns the samples of the last interval
+ */
+public class HotThreadsCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotThreadsCollector.class);
+
+    private static final String OTHER = "other";
+    private static final Pattern DIGITS_PATTERN = Pattern.compile("[0-9]+");
+
+    private static final String JVM_HOT_THREADS_THREADS = "jvm_hot_threads_threads";
+    private static final String JVM_HOT_THREADS_THREADS_HELP = "Number of threads with the normalized thread name";
+    private static final String JVM_HOT_THREADS_CPU_UTILIZATION = "jvm_hot_threads_cpu_utilization";
+    private static final String JVM_HOT_THREADS_CPU_UTILIZATION_HELP = "CPU used by the threads during the last interval, in cores";
+    private static final String JVM_HOT_THREADS_BLOCKED = "jvm_hot_threads_blocked";
+    private static final String JVM_HOT_THREADS_BLOCKED_HELP = "Number of times the threads blocked to enter a monitor during the last interval";
+    private static final String JVM_HOT_THREADS_BLOCKED_SECONDS = "jvm_hot_threads_blocked_seconds";
+    private static final String JVM_HOT_THREADS_BLOCKED_SECONDS_HELP = "Time the threads were blocked to enter a monitor during the last interval, in seconds";
+    private static final String JVM_HOT_THREADS_WAITED = "jvm_hot_threads_waited";
+    private static final String JVM_HOT_THREADS_WAITED_HELP = "Number of times the threads waited for notification during the last interval";
+    private static final String JVM_HOT_THREADS_WAITED_SECONDS = "jvm_hot_threads_waited_seconds";
+    private static final String JVM_HOT_THREADS_WAITED_SECONDS_HELP = "Time the threads waited for notification during the last interval, in seconds";
+    private static final String METRICS_EXPORTER_HOT_THREADS_SAMPLE_DURATION_SECONDS = "metrics_exporter_hot_threads_sample_duration_seconds";
+    private static final String METRICS_EXPORTER_HOT_THREADS_SAMPLE_DURATION_SECONDS_HELP = "Time the last hot threads sample took, in seconds";
+
+    private static final List<String> LABEL_NAMES = Collections.singletonList("thread");
+
+    private final ThreadMXBean threadMXBean;
+    private final int topN;
+    private final boolean isThreadCpuTimeSupported;
+    private final boolean isThreadContentionMonitoringSupported;
+    private final boolean wasThreadContentionMonitoringEnabled;
+    private final Map<String, String> normalizedNameMap;
+    private ScheduledExecutorService scheduledExecutorService;
+
+    private Map<Long, ThreadSample> previousThreadSampleMap;
+    private long previousNanoseconds;
+    private volatile List<MetricFamilySamples> metricFamilySamplesList;
+
+    /**
+     * Constructor
+     *
+     * @param intervalMilliseconds
+     * @param topN
+     */
+    public HotThreadsCollector(long intervalMilliseconds, int topN) {
+        this(ManagementFactory.getThreadMXBean(), topN);
+
+        Precondition.inRange(intervalMilliseconds, 1, Long.MAX_VALUE, "intervalMilliseconds is outside range (1 - " + Long.MAX_VALUE + ")");
+
+        this.scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-threads");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.scheduledExecutorService.scheduleWithFixedDelay(this::sample, 0, intervalMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor, without background sampling
+     *
+     * @param threadMXBean
+     * @param topN
+     */
+    HotThreadsCollector(ThreadMXBean threadMXBean, int topN) {
+        Precondition.notNull(threadMXBean, "threadMXBean is null");
+        Precondition.inRange(topN, 1, 1000, "topN is outside range (1 - 1000)");
+
+        this.threadMXBean = threadMXBean;
+        this.topN = topN;
+        this.isThreadCpuTimeSupported = threadMXBean.isThreadCpuTimeSupported();
+        this.isThreadContentionMonitoringSupported = threadMXBean.isThreadContentionMonitoringSupported();
+        this.wasThreadContentionMonitoringEnabled = isThreadContentionMonitoringSupported && threadMXBean.isThreadContentionMonitoringEnabled();
+        this.normalizedNameMap = new HashMap<>();
+        this.previousThreadSampleMap = new HashMap<>();
+        this.metricFamilySamplesList = Collections.emptyList();
+
+        if (isThreadCpuTimeSupported && !threadMXBean.isThreadCpuTimeEnabled()) {
+            threadMXBean.setThreadCpuTimeEnabled(true);
+        }
+
+        if (isThreadContentionMonitoringSupported && !wasThreadContentionMonitoringEnabled) {
+            // Required for blocked and waited times
+            threadMXBean.setThreadContentionMonitoringEnabled(true);
+        }
+
+        LOGGER.info(String.format("hot threads CPU time supported [%b]", isThreadCpuTimeSupported));
+        LOGGER.info(String.format("hot threads contention monitoring supported [%b]", isThreadContentionMonitoringSupported));
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        // Return an empty list, the thread names are dynamic
+        return new ArrayList<>();
+    }
+
+    /**
+     * Method to close the collector, stopping the background sampling
+     */
+    public void close() {
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.shutdownNow();
+        }
+
+        if (isThreadContentionMonitoringSupported && !wasThreadContentionMonitoringEnabled) {
+            threadMXBean.setThreadContentionMonitoringEnabled(false);
+        }
+    }
+
+    /**
+     * Method to sample the threads (scheduled)
+     */
+    private void sample() {
+        try {
+            long startNanoseconds = System.nanoTime();
+
+            ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadMXBean.getAllThreadIds(), 0);
+            Map<Long, ThreadSample> threadSampleMap = new HashMap<>(threadInfos.length * 2);
+
+            for (ThreadInfo threadInfo : threadInfos) {
+                if (threadInfo == null) {
+                    // Thread terminated
+                    continue;
+                }
+
+                long threadId = threadInfo.getThreadId();
+
+                threadSampleMap.put(
+                        threadId,
+                        new ThreadSample(
+                                threadInfo.getThreadName(),
+                                isThreadCpuTimeSupported ? threadMXBean.getThreadCpuTime(threadId) : -1,
+                                threadInfo.getBlockedCount(),
+                                threadInfo.getBlockedTime(),
+                                threadInfo.getWaitedCount(),
+                                threadInfo.getWaitedTime()));
+            }
+
+            sample(threadSampleMap, System.nanoTime(), startNanoseconds);
+        } catch (Throwable t) {
+            LOGGER.warn(String.format("hot threads sample failed [%s]", t.getMessage()));
+        }
+    }
+
+    /**
+     * Method to aggregate the thread samples (cumulative values) of an interval
+     *
+     * @param threadSampleMap the thread samples, keyed by thread id
+     * @param nowNanoseconds
+     * @param startNanoseconds
+     */
+    void sample(Map<Long, ThreadSample> threadSampleMap, long nowNanoseconds, long startNanoseconds) {
+        Map<String, Aggregate> aggregateMap = new HashMap<>();
+
+        for (Map.Entry<Long, ThreadSample> entry : threadSampleMap.entrySet()) {
+            ThreadSample threadSample = entry.getValue();
+
+            Aggregate aggregate = aggregateMap.computeIfAbsent(normalize(threadSample.name), name -> new Aggregate());
+            aggregate.add(threadSample, previousThreadSampleMap.get(entry.getKey()));
+        }
+
+        double intervalSeconds = (nowNanoseconds - previousNanoseconds) / NANOSECONDS_PER_SECOND;
+        boolean isFirstSample = previousNanoseconds == 0;
+
+        previousThreadSampleMap = threadSampleMap;
+        previousNanoseconds = nowNanoseconds;
+
+        // Normalized names of threads that no longer exist
+        if (normalizedNameMap.size() > threadSampleMap.size() * 4) {
+            normalizedNameMap.clear();
+        }
+
+        if (!isFirstSample) {
+            metricFamilySamplesList = toMetricFamilySamplesList(aggregateMap, intervalSeconds, (System.nanoTime() - startNanoseconds) / NANOSECONDS_PER_SECOND);
+        }
+    }
+
+    /**
+     * Method to select the top N normalized names, aggregate the rest as "other", and build the samples
+     *
+     * @param aggregateMap
+     * @param intervalSeconds
+     * @param sampleDurationSeconds
+     * @return
+     */
+    private List<MetricFamilySamples> toMetricFamilySamplesList(Map<String, Aggregate> aggregateMap, double intervalSeconds, double sampleDurationSeconds) {
+        List<Map.Entry<String, Aggregate>> entryList = new ArrayList<>(aggregateMap.entrySet());
+        Set<String> topNameSet = new HashSet<>();
+
+        // Threads named "other" are always aggregated as "other", so don't take a top N slot
+        entryList.removeIf(entry -> OTHER.equals(entry.getKey()));
+
+        entryList.sort((a, b) -> Long.compare(b.getValue().cpuTime, a.getValue().cpuTime));
+        for (int i = 0; (i < topN) && (i < entryList.size()); i++) {
+            if (entryList.get(i).getValue().cpuTime > 0) {
+                topNameSet.add(entryList.get(i).getKey());
+            }
+        }
+
+        entryList.sort((a, b) -> Long.compare(b.getValue().blockedTime, a.getValue().blockedTime));
+        for (int i = 0; (i < topN) && (i < entryList.size()); i++) {
+            if (entryList.get(i).getValue().blockedTime > 0) {
+                topNameSet.add(entryList.get(i).getKey());
+            }
+        }
+
+        Aggregate otherAggregate = new Aggregate();
+        List<String> nameList = new ArrayList<>();
+        List<Aggregate> aggregateList = new ArrayList<>();
+
+        for (Map.Entry<String, Aggregate> entry : aggregateMap.entrySet()) {
+            if (topNameSet.contains(entry.getKey())) {
+                nameList.add(entry.getKey());
+                aggregateList.add(entry.getValue());
+            } else {
+                otherAggregate.add(entry.getValue());
+            }
+        }
+
+        nameList.add(OTHER);
+        aggregateList.add(otherAggregate);
+
+        List<MetricFamilySamples.Sample> threadsSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> cpuSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> blockedSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> blockedSecondsSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> waitedSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> waitedSecondsSampleList = new ArrayList<>();
+
+        for (int i = 0; i < nameList.size(); i++) {
+            List<String> labelValues = Collections.singletonList(nameList.get(i));
+            Aggregate aggregate = aggregateList.get(i);
+
+            threadsSampleList.add(new MetricFamilySamples.Sample(JVM_HOT_THREADS_THREADS, LABEL_NAMES, labelValues, aggregate.threads));
+            blockedSampleList.add(new MetricFamilySamples.Sample(JVM_HOT_THREADS_BLOCKED, LABEL_NAMES, labelValues, aggregate.blockedCount));
+            waitedSampleList.add(new MetricFamilySamples.Sample(JVM_HOT_THREADS_WAITED, LABEL_NAMES, labelValues, aggregate.waitedCount));
+
+            if (isThreadCpuTimeSupported) {
+                cpuSampleList.add(new MetricFamilySamples.Sample(JVM_HOT_THREADS_CPU_UTILIZATION, LABEL_NAMES, labelValues, (aggregate.cpuTime / NANOSECONDS_PER_SECOND) / intervalSeconds));
+            }
+
+            if (isThreadContentionMonitoringSupported) {
+                blockedSecondsSampleList.add(new MetricFamilySamples.Sample(JVM_HOT_THREADS_BLOCKED_SECONDS, LABEL_NAMES, labelValues, aggregate.blockedTime / MILLISECONDS_PER_SECOND));
+                waitedSecondsSampleList.add(new MetricFamilySamples.Sample(JVM_HOT_THREADS_WAITED_SECONDS, LABEL_NAMES, labelValues, aggregate.waitedTime / MILLISECONDS_PER_SECOND));
+            }
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>();
+        metricFamilySamplesList.add(new MetricFamilySamples(JVM_HOT_THREADS_THREADS, Type.GAUGE, JVM_HOT_THREADS_THREADS_HELP, threadsSampleList));
+
+        if (isThreadCpuTimeSupported) {
+            metricFamilySamplesList.add(new MetricFamilySamples(JVM_HOT_THREADS_CPU_UTILIZATION, Type.GAUGE, JVM_HOT_THREADS_CPU_UTILIZATION_HELP, cpuSampleList));
+        }
+
+        metricFamilySamplesList.add(new MetricFamilySamples(JVM_HOT_THREADS_BLOCKED, Type.GAUGE, JVM_HOT_THREADS_BLOCKED_HELP, blockedSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(JVM_HOT_THREADS_WAITED, Type.GAUGE, JVM_HOT_THREADS_WAITED_HELP, waitedSampleList));
+
+        if (isThreadContentionMonitoringSupported) {
+            metricFamilySamplesList.add(new MetricFamilySamples(JVM_HOT_THREADS_BLOCKED_SECONDS, Type.GAUGE, JVM_HOT_THREADS_BLOCKED_SECONDS_HELP, blockedSecondsSampleList));
+            metricFamilySamplesList.add(new MetricFamilySamples(JVM_HOT_THREADS_WAITED_SECONDS, Type.GAUGE, JVM_HOT_THREADS_WAITED_SECONDS_HELP, waitedSecondsSampleList));
+        }
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_HOT_THREADS_SAMPLE_DURATION_SECONDS,
+                        Type.GAUGE,
+                        METRICS_EXPORTER_HOT_THREADS_SAMPLE_DURATION_SECONDS_HELP,
+                        Collections.singletonList(
+                                new MetricFamilySamples.Sample(
+                                        METRICS_EXPORTER_HOT_THREADS_SAMPLE_DURATION_SECONDS,
+                                        Collections.emptyList(),
+                                        Collections.emptyList(),
+                                        sampleDurationSeconds))));
+
+        return Collections.unmodifiableList(metricFamilySamplesList);
+    }
+
+    /**
+     * Method to normalize a thread name, replacing digits with "*" (e.g. "pool-1-thread-12" is "pool-*-thread-*")
+     *
+     * @param threadName
+     * @return
+     */
+    String normalize(String threadName) {
+        if (threadName == null) {
+            return OTHER;
+        }
+
+        return normalizedNameMap.computeIfAbsent(threadName, name -> DIGITS_PATTERN.matcher(name).replaceAll("*"));
+    }
+
+    /**
+     * Class to hold a thread's cumulative values
+     */
+    static class ThreadSample {
+
+        private final String name;
+        private final long cpuTime;
+        private final long blockedCount;
+        private final long blockedTime;
+        private final long waitedCount;
+        private final long waitedTime;
+
+        /**
+         * Constructor
+         *
+         * @param name
+         * @param cpuTime CPU time in nanoseconds, -1 if not supported
+         * @param blockedCount
+         * @param blockedTime blocked time in milliseconds, -1 if not supported
+         * @param waitedCount
+         * @param waitedTime waited time in milliseconds, -1 if not supported
+         */
+        ThreadSample(String name, long cpuTime, long blockedCount, long blockedTime, long waitedCount, long waitedTime) {
+            this.name = name;
+            this.cpuTime = cpuTime;
+            this.blockedCount = blockedCount;
+            this.blockedTime = blockedTime;
+            this.waitedCount = waitedCount;
+            this.waitedTime = waitedTime;
+        }
+    }
+
+    /**
+     * Class to aggregate the per interval deltas of threads with the same normalized name
+     */
+    private static class Aggregate {
+
+        private long threads;
+        private long cpuTime;
+        private long blockedCount;
+        private long blockedTime;
+        private long waitedCount;
+        private long waitedTime;
+
+        private void add(ThreadSample threadSample, ThreadSample previousThreadSample) {
+            threads++;
+
+            // A new thread's values accumulated since it started
+            cpuTime += delta(threadSample.cpuTime, previousThreadSample != null ? previousThreadSample.cpuTime : 0);
+            blockedCount += delta(threadSample.blockedCount, previousThreadSample != null ? previousThreadSample.blockedCount : 0);
+            blockedTime += delta(threadSample.blockedTime, previousThreadSample != null ? previousThreadSample.blockedTime : 0);
+            waitedCount += delta(threadSample.waitedCount, previousThreadSample != null ? previousThreadSample.waitedCount : 0);
+            waitedTime += delta(threadSample.waitedTime, previousThreadSample != null ? previousThreadSample.waitedTime : 0);
+        }
+
+        private void add(Aggregate aggregate) {
+            threads += aggregate.threads;
+            cpuTime += aggregate.cpuTime;
+            blockedCount += aggregate.blockedCount;
+            blockedTime += aggregate.blockedTime;
+            waitedCount += aggregate.waitedCount;
+            waitedTime += aggregate.waitedTime;
+        }
+
+        private static long delta(long value, long previousValue) {
+            // -1 if not supported, or the thread terminated
+            if ((value < 0) || (previousValue < 0)) {
+                return 0;
+            }
+
+            return Math.max(value - previousValue, 0);
+        }
+    }
+}
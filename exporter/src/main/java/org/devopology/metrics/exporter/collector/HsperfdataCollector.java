@@ -0,0 +1,381 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.hsperfdata.PerfDataFile;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Class to collect HotSpot performance data counters of local JVMs (standalone mode)
+ * <p>
+ * Reads the memory mapped "hsperfdata_<user>/<pid>" files, so no JMX, RMI, or attach is required and
+ * there is no cost to the observed JVMs. JVM start and exit is detected by watching the directories.
+ * <p>
+ * Counters are exported as "hsperfdata_<counter name>" with "pid" and "main_class" labels. Tick counters
+ * are converted to seconds, monotonic counters are exported as counters, all others as gauges
+ */
+public class HsperfdataCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HsperfdataCollector.class);
+
+    private static final String HSPERFDATA_DIRECTORY_PREFIX = "hsperfdata_";
+    private static final String METRIC_NAME_PREFIX = "hsperfdata_";
+    private static final String JAVA_COMMAND = "sun.rt.javaCommand";
+    private static final String HRT_FREQUENCY = "sun.os.hrt.frequency";
+    private static final String HRT_TICKS = "sun.os.hrt.ticks";
+
+    // The JVM updates the tick counter every 50 ms (-XX:PerfDataSamplingInterval), a file without updates is stale
+    private static final long STALE_NANOSECONDS = 5000000000L;
+
+    private static final String METRICS_EXPORTER_HSPERFDATA_JVMS = "metrics_exporter_hsperfdata_jvms";
+    private static final String METRICS_EXPORTER_HSPERFDATA_JVMS_HELP = "Number of local JVMs with performance data";
+
+    private static final List<String> LABEL_NAMES = Arrays.asList("pid", "main_class");
+
+    private final Path directory;
+    private final WatchService watchService;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Path> changedPathQueue;
+    private final Set<Path> pendingPathSet;
+    private final Map<Path, Jvm> jvmMap;
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory containing the "hsperfdata_<user>" directories (usually "java.io.tmpdir")
+     * @throws IOException
+     */
+    public HsperfdataCollector(Path directory) throws IOException {
+        Precondition.notNull(directory, "directory is null");
+
+        this.directory = directory;
+        this.changedPathQueue = new ConcurrentLinkedQueue<>();
+        this.pendingPathSet = new HashSet<>();
+        this.jvmMap = new TreeMap<>();
+
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        scan();
+
+        this.thread = new Thread(this::watch, "hsperfdata-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public synchronized List<MetricFamilySamples> collect() {
+        Path changedPath;
+        while ((changedPath = changedPathQueue.poll()) != null) {
+            // Created, deleted, or replaced (pid reuse)
+            jvmMap.remove(changedPath);
+            pendingPathSet.add(changedPath);
+        }
+
+        // A file isn't accessible until the JVM has initialized it
+        pendingPathSet.removeIf(path -> {
+            if (!Files.exists(path)) {
+                return true;
+            }
+
+            try {
+                jvmMap.put(path, new Jvm(new PerfDataFile(path)));
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        });
+
+        long nowNanoseconds = System.nanoTime();
+        Map<String, MetricFamilySamples> metricFamilySamplesMap = new TreeMap<>();
+        int jvms = 0;
+
+        for (Map.Entry<Path, Jvm> entry : jvmMap.entrySet()) {
+            Jvm jvm = entry.getValue();
+
+            if (jvm.perfDataFile.isModified()) {
+                // Counters were added, so parse the counter directory again
+                try {
+                    jvm = new Jvm(new PerfDataFile(entry.getKey()));
+                    entry.setValue(jvm);
+                } catch (IOException e) {
+                    continue;
+                }
+            }
+
+            if (!jvm.isLive(nowNanoseconds)) {
+                continue;
+            }
+
+            jvms++;
+            jvm.collect(metricFamilySamplesMap);
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>(metricFamilySamplesMap.values());
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_HSPERFDATA_JVMS,
+                        Type.GAUGE,
+                        METRICS_EXPORTER_HSPERFDATA_JVMS_HELP,
+                        Collections.singletonList(
+                                new MetricFamilySamples.Sample(
+                                        METRICS_EXPORTER_HSPERFDATA_JVMS,
+                                        Collections.emptyList(),
+                                        Collections.emptyList(),
+                                        jvms))));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        // Return an empty list, the JVMs are dynamic
+        return new ArrayList<>();
+    }
+
+    /**
+     * Method to close the collector, stopping the directory watch
+     */
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // DO NOTHING
+        }
+
+        thread.interrupt();
+    }
+
+    /**
+     * Method to scan for "hsperfdata_<user>" directories and files
+     */
+    private void scan() {
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, HSPERFDATA_DIRECTORY_PREFIX + "*")) {
+            for (Path hsperfdataDirectory : directoryStream) {
+                register(hsperfdataDirectory);
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("hsperfdata scan of [%s] failed [%s]", directory, e.getMessage()));
+        }
+    }
+
+    /**
+     * Method to watch a "hsperfdata_<user>" directory and queue its files
+     *
+     * @param hsperfdataDirectory
+     */
+    private void register(Path hsperfdataDirectory) {
+        if (!Files.isDirectory(hsperfdataDirectory)) {
+            return;
+        }
+
+        try {
+            hsperfdataDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+
+            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(hsperfdataDirectory)) {
+                for (Path path : directoryStream) {
+                    changedPathQueue.add(path);
+                }
+            }
+        } catch (IOException e) {
+            // Another user's directory may not be readable
+        }
+    }
+
+    /**
+     * Method to process directory watch events
+     */
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey watchKey = watchService.take();
+                Path watchedDirectory = (Path) watchKey.watchable();
+
+                for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+                    if (watchEvent.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        scan();
+                        continue;
+                    }
+
+                    Path path = watchedDirectory.resolve((Path) watchEvent.context());
+                    if (watchedDirectory.equals(directory)) {
+                        if (path.getFileName().toString().startsWith(HSPERFDATA_DIRECTORY_PREFIX)) {
+                            register(path);
+                        }
+                    } else {
+                        changedPathQueue.add(path);
+                    }
+                }
+
+                watchKey.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // DO NOTHING
+        }
+    }
+
+    /**
+     * Class to hold a JVM's performance data and precomputed metric names
+     */
+    private static class Jvm {
+
+        private final PerfDataFile perfDataFile;
+        private final List<String> labelValues;
+        private final PerfDataFile.Counter[] counters;
+        private final String[] familyNames;
+        private final String[] sampleNames;
+        private final Type[] types;
+        private final double[] scales;
+        private final PerfDataFile.Counter ticksCounter;
+
+        private long lastTicks;
+        private long lastTicksNanoseconds;
+
+        private Jvm(PerfDataFile perfDataFile) {
+            this.perfDataFile = perfDataFile;
+
+            String mainClass = perfDataFile.getString(JAVA_COMMAND);
+            if (mainClass == null) {
+                mainClass = "";
+            }
+
+            this.labelValues = Arrays.asList(perfDataFile.getPath().getFileName().toString(), mainClass.split(" ", 2)[0]);
+
+            List<PerfDataFile.Counter> counterList = perfDataFile.getCounterList();
+
+            double frequency = 0;
+            PerfDataFile.Counter ticksCounter = null;
+            for (PerfDataFile.Counter counter : counterList) {
+                if (HRT_FREQUENCY.equals(counter.getName())) {
+                    frequency = perfDataFile.getLong(counter);
+                } else if (HRT_TICKS.equals(counter.getName())) {
+                    ticksCounter = counter;
+                }
+            }
+
+            this.ticksCounter = ticksCounter;
+            this.counters = counterList.toArray(new PerfDataFile.Counter[0]);
+            this.familyNames = new String[counters.length];
+            this.sampleNames = new String[counters.length];
+            this.types = new Type[counters.length];
+            this.scales = new double[counters.length];
+
+            for (int i = 0; i < counters.length; i++) {
+                PerfDataFile.Counter counter = counters[i];
+
+                String familyName = METRIC_NAME_PREFIX + sanitize(counter.getName());
+                double scale = 1;
+
+                if ((counter.getUnits() == PerfDataFile.Units.TICKS) && (frequency > 0)) {
+                    familyName += "_seconds";
+                    scale = 1 / frequency;
+                }
+
+                if (counter.getVariability() == PerfDataFile.Variability.MONOTONIC) {
+                    types[i] = Type.COUNTER;
+                    sampleNames[i] = familyName + "_total";
+                } else {
+                    types[i] = Type.GAUGE;
+                    sampleNames[i] = familyName;
+                }
+
+                familyNames[i] = familyName;
+                scales[i] = scale;
+            }
+        }
+
+        /**
+         * Method to determine whether the JVM is updating its performance data
+         *
+         * @param nowNanoseconds
+         * @return
+         */
+        private boolean isLive(long nowNanoseconds) {
+            if (ticksCounter == null) {
+                return true;
+            }
+
+            long ticks = perfDataFile.getLong(ticksCounter);
+            if ((ticks != lastTicks) || (lastTicksNanoseconds == 0)) {
+                lastTicks = ticks;
+                lastTicksNanoseconds = nowNanoseconds;
+                return true;
+            }
+
+            return (nowNanoseconds - lastTicksNanoseconds) < STALE_NANOSECONDS;
+        }
+
+        /**
+         * Method to read the counter values, adding samples to the MetricFamilySamples map
+         *
+         * @param metricFamilySamplesMap
+         */
+        private void collect(Map<String, MetricFamilySamples> metricFamilySamplesMap) {
+            for (int i = 0; i < counters.length; i++) {
+                MetricFamilySamples metricFamilySamples = metricFamilySamplesMap.get(familyNames[i]);
+                if (metricFamilySamples == null) {
+                    metricFamilySamples = new MetricFamilySamples(familyNames[i], types[i], counters[i].getName(), new ArrayList<>());
+                    metricFamilySamplesMap.put(familyNames[i], metricFamilySamples);
+                } else if (metricFamilySamples.type != types[i]) {
+                    // Another JVM version exports the counter with a different variability
+                    continue;
+                }
+
+                metricFamilySamples.samples.add(
+                        new MetricFamilySamples.Sample(
+                                sampleNames[i],
+                                LABEL_NAMES,
+                                labelValues,
+                                perfDataFile.getLong(counters[i]) * scales[i]));
+            }
+        }
+
+        private static String sanitize(String name) {
+            char[] chars = name.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                char c = chars[i];
+                if (!(((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9')) || (c == '_'))) {
+                    chars[i] = '_';
+                }
+            }
+
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Class to collect JDK Flight Recorder events (agent mode, Java 14+)
+ * <p>
+ * A RecordingStream delivers garbage collection, safepoint, monitor enter, and thread park events
+ * on its own thread, which are aggregated into fixed bucket histograms. A scrape only reads the aggregates.
+ * <p>
+ * The JFR API is accessed using reflection, so the exporter still runs on Java 8
+ */
+public class JfrCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JfrCollector.class);
+
+    private static final String RECORDING_STREAM_CLASS_NAME = "jdk.jfr.consumer.RecordingStream";
+    private static final String EVENT_SETTINGS_CLASS_NAME = "jdk.jfr.EventSettings";
+    private static final String RECORDED_EVENT_CLASS_NAME = "jdk.jfr.consumer.RecordedEvent";
+
+    private static final String GARBAGE_COLLECTION = "jdk.GarbageCollection";
+    private static final String SAFEPOINT_BEGIN = "jdk.SafepointBegin";
+    private static final String SAFEPOINT_END = "jdk.SafepointEnd";
+    private static final String JAVA_MONITOR_ENTER = "jdk.JavaMonitorEnter";
+    private static final String THREAD_PARK = "jdk.ThreadPark";
+
+    private static final double[] BUCKETS = new double[] {
+            0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    // Safepoint begin events waiting for their end event
+    private static final int MAXIMUM_PENDING_SAFEPOINTS = 64;
+
+    private final Object recordingStream;
+    private final Method closeMethod;
+    private final Method getDurationMethod;
+    private final Method getDurationFieldMethod;
+    private final Method getStartTimeMethod;
+    private final Method getEndTimeMethod;
+    private final Method getLongMethod;
+    private final Method getStringMethod;
+
+    private final Histogram gcPauseHistogram;
+    private final Histogram safepointHistogram;
+    private final Histogram monitorEnterHistogram;
+    private final Histogram threadParkHistogram;
+    private final Counter eventErrorsCounter;
+    private final Map<Long, Instant> safepointBeginMap;
+
+    /**
+     * Constructor
+     *
+     * @param thresholdMilliseconds the minimum duration of monitor enter and thread park events
+     * @throws ReflectiveOperationException if JFR event streaming isn't available (Java 14+)
+     */
+    public JfrCollector(long thresholdMilliseconds) throws ReflectiveOperationException {
+        Precondition.inRange(thresholdMilliseconds, 0, Long.MAX_VALUE, "thresholdMilliseconds is outside range (0 - " + Long.MAX_VALUE + ")");
+
+        Class<?> recordingStreamClass = Class.forName(RECORDING_STREAM_CLASS_NAME);
+        Class<?> eventSettingsClass = Class.forName(EVENT_SETTINGS_CLASS_NAME);
+        Class<?> recordedEventClass = Class.forName(RECORDED_EVENT_CLASS_NAME);
+
+        Method enableMethod = recordingStreamClass.getMethod("enable", String.class);
+        Method onEventMethod = recordingStreamClass.getMethod("onEvent", String.class, Consumer.class);
+        Method startAsyncMethod = recordingStreamClass.getMethod("startAsync");
+        Method withThresholdMethod = eventSettingsClass.getMethod("withThreshold", Duration.class);
+        Method withoutStackTraceMethod = eventSettingsClass.getMethod("withoutStackTrace");
+
+        this.closeMethod = recordingStreamClass.getMethod("close");
+        this.getDurationMethod = recordedEventClass.getMethod("getDuration");
+        this.getDurationFieldMethod = recordedEventClass.getMethod("getDuration", String.class);
+        this.getStartTimeMethod = recordedEventClass.getMethod("getStartTime");
+        this.getEndTimeMethod = recordedEventClass.getMethod("getEndTime");
+        this.getLongMethod = recordedEventClass.getMethod("getLong", String.class);
+        this.getStringMethod = recordedEventClass.getMethod("getString", String.class);
+
+        this.gcPauseHistogram = Histogram.build()
+                .name("jvm_jfr_gc_pause_seconds")
+                .help("Garbage collection pause time (sum of pauses per collection), in seconds")
+                .labelNames("gc")
+                .buckets(BUCKETS)
+                .create();
+
+        this.safepointHistogram = Histogram.build()
+                .name("jvm_jfr_safepoint_seconds")
+                .help("Safepoint time, from the start of synchronization to the end of the safepoint, in seconds")
+                .buckets(BUCKETS)
+                .create();
+
+        this.monitorEnterHistogram = Histogram.build()
+                .name("jvm_jfr_monitor_enter_seconds")
+                .help("Time threads waited to enter a contended monitor, in seconds")
+                .buckets(BUCKETS)
+                .create();
+
+        this.threadParkHistogram = Histogram.build()
+                .name("jvm_jfr_thread_park_seconds")
+                .help("Time threads were parked, in seconds")
+                .buckets(BUCKETS)
+                .create();
+
+        this.eventErrorsCounter = Counter.build()
+                .name("metrics_exporter_jfr_event_errors")
+                .help("Number of JFR events that couldn't be processed")
+                .create();
+
+        this.safepointBeginMap = new LinkedHashMap<Long, Instant>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Instant> eldest) {
+                return size() > MAXIMUM_PENDING_SAFEPOINTS;
+            }
+        };
+
+        Duration threshold = Duration.ofMillis(thresholdMilliseconds);
+
+        Object recordingStream = recordingStreamClass.getConstructor().newInstance();
+
+        try {
+            withoutStackTraceMethod.invoke(enableMethod.invoke(recordingStream, GARBAGE_COLLECTION));
+            withoutStackTraceMethod.invoke(enableMethod.invoke(recordingStream, SAFEPOINT_BEGIN));
+            withoutStackTraceMethod.invoke(enableMethod.invoke(recordingStream, SAFEPOINT_END));
+            withThresholdMethod.invoke(withoutStackTraceMethod.invoke(enableMethod.invoke(recordingStream, JAVA_MONITOR_ENTER)), threshold);
+            withThresholdMethod.invoke(withoutStackTraceMethod.invoke(enableMethod.invoke(recordingStream, THREAD_PARK)), threshold);
+
+            onEventMethod.invoke(recordingStream, GARBAGE_COLLECTION, (Consumer<Object>) this::onGarbageCollection);
+            onEventMethod.invoke(recordingStream, SAFEPOINT_BEGIN, (Consumer<Object>) this::onSafepointBegin);
+            onEventMethod.invoke(recordingStream, SAFEPOINT_END, (Consumer<Object>) this::onSafepointEnd);
+            onEventMethod.invoke(recordingStream, JAVA_MONITOR_ENTER, (Consumer<Object>) event -> observeDuration(monitorEnterHistogram, event));
+            onEventMethod.invoke(recordingStream, THREAD_PARK, (Consumer<Object>) event -> observeDuration(threadParkHistogram, event));
+
+            startAsyncMethod.invoke(recordingStream);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            closeMethod.invoke(recordingStream);
+            throw e;
+        }
+
+        this.recordingStream = recordingStream;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>();
+        metricFamilySamplesList.addAll(gcPauseHistogram.collect());
+        metricFamilySamplesList.addAll(safepointHistogram.collect());
+        metricFamilySamplesList.addAll(monitorEnterHistogram.collect());
+        metricFamilySamplesList.addAll(threadParkHistogram.collect());
+        metricFamilySamplesList.addAll(eventErrorsCounter.collect());
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return collect();
+    }
+
+    /**
+     * Method to close the collector, stopping the recording stream
+     */
+    public void close() {
+        try {
+            closeMethod.invoke(recordingStream);
+        } catch (Throwable t) {
+            LOGGER.warn(String.format("JFR recording stream close failed [%s]", getMessage(t)));
+        }
+    }
+
+    private void onGarbageCollection(Object event) {
+        try {
+            String name = (String) getStringMethod.invoke(event, "name");
+            Duration sumOfPauses = (Duration) getDurationFieldMethod.invoke(event, "sumOfPauses");
+            gcPauseHistogram.labels(name != null ? name : "unknown").observe(toSeconds(sumOfPauses));
+        } catch (Throwable t) {
+            eventErrorsCounter.inc();
+        }
+    }
+
+    private void onSafepointBegin(Object event) {
+        try {
+            long safepointId = (Long) getLongMethod.invoke(event, "safepointId");
+            safepointBeginMap.put(safepointId, (Instant) getStartTimeMethod.invoke(event));
+        } catch (Throwable t) {
+            eventErrorsCounter.inc();
+        }
+    }
+
+    private void onSafepointEnd(Object event) {
+        try {
+            long safepointId = (Long) getLongMethod.invoke(event, "safepointId");
+            Instant beginInstant = safepointBeginMap.remove(safepointId);
+            if (beginInstant != null) {
+                Instant endInstant = (Instant) getEndTimeMethod.invoke(event);
+                safepointHistogram.observe(toSeconds(Duration.between(beginInstant, endInstant)));
+            }
+        } catch (Throwable t) {
+            eventErrorsCounter.inc();
+        }
+    }
+
+    private void observeDuration(Histogram histogram, Object event) {
+        try {
+            histogram.observe(toSeconds((Duration) getDurationMethod.invoke(event)));
+        } catch (Throwable t) {
+            eventErrorsCounter.inc();
+        }
+    }
+
+    private static double toSeconds(Duration duration) {
+        return duration.getSeconds() + (duration.getNano() / NANOSECONDS_PER_SECOND);
+    }
+
+    private static String getMessage(Throwable t) {
+        if ((t instanceof InvocationTargetException) && (t.getCause() != null)) {
+            t = t.getCause();
+        }
+
+        return t.getMessage();
+    }
+}
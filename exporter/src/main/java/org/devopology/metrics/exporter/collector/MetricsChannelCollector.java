@@ -0,0 +1,253 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.channel.MetricsChannel;
+import org.devopology.common.channel.MetricsChannelReader;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Class to collect metrics published by applications to metrics channel files (standalone mode)
+ * <p>
+ * Applications use the MetricsChannelWriter to write "<channel>.metrics" files in the directory.
+ * Metrics are exported with a "channel" label
+ */
+public class MetricsChannelCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsChannelCollector.class);
+
+    private static final String CHANNEL_LABEL_NAME = "channel";
+    private static final Path PROC_PATH = Paths.get("/proc");
+
+    private static final String METRICS_EXPORTER_METRICS_CHANNELS = "metrics_exporter_metrics_channels";
+    private static final String METRICS_EXPORTER_METRICS_CHANNELS_HELP = "Number of metrics channels";
+
+    private final Path directory;
+    private final Map<Path, Channel> channelMap;
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory containing the metrics channel files
+     */
+    public MetricsChannelCollector(Path directory) {
+        Precondition.notNull(directory, "directory is null");
+
+        this.directory = directory;
+        this.channelMap = new TreeMap<>();
+    }
+
+    @Override
+    public synchronized List<MetricFamilySamples> collect() {
+        Set<Path> pathSet = new HashSet<>();
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, "*" + MetricsChannel.FILENAME_SUFFIX)) {
+            for (Path path : directoryStream) {
+                pathSet.add(path);
+            }
+        } catch (IOException e) {
+            LOGGER.warn(String.format("metrics channel scan of [%s] failed [%s]", directory, e.getMessage()));
+        }
+
+        channelMap.keySet().retainAll(pathSet);
+
+        Map<String, MetricFamilySamples> metricFamilySamplesMap = new TreeMap<>();
+        int channels = 0;
+
+        for (Path path : pathSet) {
+            Channel channel = getChannel(path);
+            if ((channel == null) || !channel.isWriterAlive()) {
+                continue;
+            }
+
+            channels++;
+            channel.collect(metricFamilySamplesMap);
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>(metricFamilySamplesMap.values());
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_METRICS_CHANNELS,
+                        Type.GAUGE,
+                        METRICS_EXPORTER_METRICS_CHANNELS_HELP,
+                        Collections.singletonList(
+                                new MetricFamilySamples.Sample(
+                                        METRICS_EXPORTER_METRICS_CHANNELS,
+                                        Collections.emptyList(),
+                                        Collections.emptyList(),
+                                        channels))));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        // Return an empty list, the channels are dynamic
+        return new ArrayList<>();
+    }
+
+    /**
+     * Method to get the Channel for a path, mapping the file if it's new or has been replaced
+     *
+     * @param path
+     * @return the Channel, or null if the file isn't (yet) a valid metrics channel file
+     */
+    private Channel getChannel(Path path) {
+        Object fileKey;
+
+        try {
+            BasicFileAttributes basicFileAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+            fileKey = basicFileAttributes.fileKey();
+            if (fileKey == null) {
+                fileKey = basicFileAttributes.creationTime();
+            }
+        } catch (IOException e) {
+            channelMap.remove(path);
+            return null;
+        }
+
+        Channel channel = channelMap.get(path);
+        if ((channel != null) && Objects.equals(channel.fileKey, fileKey)) {
+            return channel;
+        }
+
+        try {
+            channel = new Channel(new MetricsChannelReader(path.toFile()), fileKey);
+            channelMap.put(path, channel);
+            return channel;
+        } catch (IOException e) {
+            LOGGER.warn(String.format("metrics channel [%s] is invalid [%s]", path, e.getMessage()));
+            channelMap.remove(path);
+            return null;
+        }
+    }
+
+    /**
+     * Class to hold a mapped metrics channel file and precomputed metric names
+     */
+    private static class Channel {
+
+        private final MetricsChannelReader metricsChannelReader;
+        private final Object fileKey;
+        private final String name;
+        private final List<String[]> namesList;
+        private final List<List<String>> labelNamesList;
+        private final List<List<String>> labelValuesList;
+
+        private Channel(MetricsChannelReader metricsChannelReader, Object fileKey) {
+            this.metricsChannelReader = metricsChannelReader;
+            this.fileKey = fileKey;
+
+            String filename = metricsChannelReader.getFile().getName();
+            this.name = filename.substring(0, filename.length() - MetricsChannel.FILENAME_SUFFIX.length());
+            this.namesList = new ArrayList<>();
+            this.labelNamesList = new ArrayList<>();
+            this.labelValuesList = new ArrayList<>();
+        }
+
+        /**
+         * Method to determine whether the writer is still running (a killed writer doesn't remove its file)
+         *
+         * @return
+         */
+        private boolean isWriterAlive() {
+            long pid = metricsChannelReader.getPid();
+            if ((pid < 0) || !Files.isDirectory(PROC_PATH)) {
+                return true;
+            }
+
+            return Files.exists(PROC_PATH.resolve(String.valueOf(pid)));
+        }
+
+        /**
+         * Method to read the metric values, adding samples to the MetricFamilySamples map
+         *
+         * @param metricFamilySamplesMap
+         */
+        private void collect(Map<String, MetricFamilySamples> metricFamilySamplesMap) {
+            List<MetricsChannelReader.Metric> metricList = metricsChannelReader.getMetricList();
+
+            for (int i = namesList.size(); i < metricList.size(); i++) {
+                MetricsChannelReader.Metric metric = metricList.get(i);
+
+                List<String> labelNames = new ArrayList<>(metric.getLabelNames().size() + 1);
+                labelNames.add(CHANNEL_LABEL_NAME);
+                labelNames.addAll(metric.getLabelNames());
+
+                List<String> labelValues = new ArrayList<>(labelNames.size());
+                labelValues.add(name);
+                labelValues.addAll(metric.getLabelValues());
+
+                String familyName = metric.getName();
+                String sampleName = familyName;
+                if (metric.getType() == MetricsChannel.Type.COUNTER) {
+                    // Matches the Prometheus client Counter, a "_total" suffix is part of the sample name only
+                    if (familyName.endsWith("_total")) {
+                        familyName = familyName.substring(0, familyName.length() - "_total".length());
+                    }
+
+                    sampleName = familyName + "_total";
+                }
+
+                namesList.add(new String[] { familyName, sampleName });
+                labelNamesList.add(labelNames);
+                labelValuesList.add(labelValues);
+            }
+
+            for (int i = 0; i < metricList.size(); i++) {
+                MetricsChannelReader.Metric metric = metricList.get(i);
+                String[] names = namesList.get(i);
+                Type type = metric.getType() == MetricsChannel.Type.COUNTER ? Type.COUNTER : Type.GAUGE;
+
+                MetricFamilySamples metricFamilySamples = metricFamilySamplesMap.get(names[0]);
+                if (metricFamilySamples == null) {
+                    metricFamilySamples = new MetricFamilySamples(names[0], type, metric.getHelp(), new ArrayList<>());
+                    metricFamilySamplesMap.put(names[0], metricFamilySamples);
+                } else if (metricFamilySamples.type != type) {
+                    // Another channel publishes the metric with a different type
+                    continue;
+                }
+
+                metricFamilySamples.samples.add(
+                        new MetricFamilySamples.Sample(
+                                names[1],
+                                labelNamesList.get(i),
+                                labelValuesList.get(i),
+                                metricsChannelReader.getValue(metric)));
+            }
+        }
+    }
+}
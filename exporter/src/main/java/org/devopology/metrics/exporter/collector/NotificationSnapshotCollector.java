@@ -0,0 +1,492 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+
+import javax.management.Attribute;
+import javax.management.AttributeChangeNotification;
+import javax.management.AttributeList;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.NotificationFilterSupport;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.relation.MBeanServerNotificationFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Class to collect MBean attributes from a snapshot maintained by AttributeChangeNotifications
+ * <p>
+ * MBeans matching the configured ObjectNames are excluded from the JmxCollector (via "blacklistObjectNames").
+ * MBeans that emit AttributeChangeNotifications are read once, then updated from notifications, so
+ * a scrape doesn't call getAttribute(). An MBean isn't required to send notifications for every attribute,
+ * so notifying MBeans are also re-read (refreshed) on a bounded interval. Matching MBeans that don't emit
+ * AttributeChangeNotifications are read on every scrape.
+ * <p>
+ * Samples use the JMX exporter default export format, see DefaultExport
+ */
+public class NotificationSnapshotCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationSnapshotCollector.class);
+
+    private static final String METRICS_EXPORTER_JMX_SNAPSHOT_NOTIFICATIONS = "metrics_exporter_jmx_snapshot_notifications";
+    private static final String METRICS_EXPORTER_JMX_SNAPSHOT_NOTIFICATIONS_HELP = "Number of AttributeChangeNotifications received";
+    private static final String METRICS_EXPORTER_JMX_SNAPSHOT_BEANS = "metrics_exporter_jmx_snapshot_beans";
+    private static final String METRICS_EXPORTER_JMX_SNAPSHOT_BEANS_HELP = "Number of MBeans in the snapshot";
+    private static final String METRICS_EXPORTER_JMX_SNAPSHOT_ATTRIBUTES = "metrics_exporter_jmx_snapshot_attributes";
+    private static final String METRICS_EXPORTER_JMX_SNAPSHOT_ATTRIBUTES_HELP = "Number of MBean attributes in the snapshot";
+
+    private static final List<String> MODE_LABEL_NAMES = Collections.singletonList("mode");
+    private static final List<String> NOTIFICATION_LABEL_VALUES = Collections.singletonList("notification");
+    private static final List<String> POLL_LABEL_VALUES = Collections.singletonList("poll");
+
+    private final MBeanServer mBeanServer;
+    private final List<ObjectName> objectNameList;
+    private final DefaultExport defaultExport;
+    private final long refreshNanoseconds;
+    private final Map<ObjectName, BeanSnapshot> beanSnapshotMap;
+    private final Queue<ObjectName> pendingObjectNameQueue;
+    private final AtomicLong notifications;
+    private final NotificationListener attributeChangeNotificationListener;
+    private final NotificationListener registrationNotificationListener;
+
+    /**
+     * Constructor
+     *
+     * @param mBeanServer
+     * @param objectNameList
+     * @param defaultExport
+     * @param refreshMilliseconds the interval at which notifying MBeans are re-read
+     * @throws JMException
+     */
+    public NotificationSnapshotCollector(
+            MBeanServer mBeanServer,
+            List<ObjectName> objectNameList,
+            DefaultExport defaultExport,
+            long refreshMilliseconds) throws JMException {
+        Precondition.notNull(mBeanServer, "mBeanServer is null");
+        Precondition.notNull(objectNameList, "objectNameList is null");
+        Precondition.isTrue(!objectNameList.isEmpty(), "objectNameList is empty");
+        Precondition.notNull(defaultExport, "defaultExport is null");
+        Precondition.inRange(refreshMilliseconds, 1, Long.MAX_VALUE / 1000000, "refreshMilliseconds is outside range (1 - " + (Long.MAX_VALUE / 1000000) + ")");
+
+        this.mBeanServer = mBeanServer;
+        this.objectNameList = new ArrayList<>(objectNameList);
+        this.defaultExport = defaultExport;
+        this.refreshNanoseconds = refreshMilliseconds * 1000000L;
+        this.beanSnapshotMap = new ConcurrentHashMap<>();
+        this.pendingObjectNameQueue = new ConcurrentLinkedQueue<>();
+        this.notifications = new AtomicLong();
+
+        // Called on the thread that changed the attribute, so only store the value
+        this.attributeChangeNotificationListener = (notification, handback) -> {
+            if (notification instanceof AttributeChangeNotification) {
+                AttributeChangeNotification attributeChangeNotification = (AttributeChangeNotification) notification;
+                ((BeanSnapshot) handback).set(attributeChangeNotification.getAttributeName(), attributeChangeNotification.getNewValue());
+                notifications.incrementAndGet();
+            }
+        };
+
+        // Called on the thread that (un)registered the MBean, so defer reading the MBean to the next collection
+        this.registrationNotificationListener = (notification, handback) -> {
+            if (notification instanceof MBeanServerNotification) {
+                ObjectName objectName = ((MBeanServerNotification) notification).getMBeanName();
+                if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                    if (matches(objectName)) {
+                        pendingObjectNameQueue.add(objectName);
+                    }
+                } else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
+                    beanSnapshotMap.remove(objectName);
+                }
+            }
+        };
+
+        MBeanServerNotificationFilter mBeanServerNotificationFilter = new MBeanServerNotificationFilter();
+        mBeanServerNotificationFilter.enableAllObjectNames();
+
+        // Subscribe before querying so that no registration is missed
+        mBeanServer.addNotificationListener(
+                MBeanServerDelegate.DELEGATE_NAME,
+                registrationNotificationListener,
+                mBeanServerNotificationFilter,
+                null);
+
+        for (ObjectName objectName : objectNameList) {
+            pendingObjectNameQueue.addAll(mBeanServer.queryNames(objectName, null));
+        }
+    }
+
+    /**
+     * Method to get the ObjectNames (patterns) managed by the collector
+     *
+     * @return
+     */
+    public List<ObjectName> getObjectNameList() {
+        return Collections.unmodifiableList(objectNameList);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        ObjectName pendingObjectName;
+        while ((pendingObjectName = pendingObjectNameQueue.poll()) != null) {
+            track(pendingObjectName);
+        }
+
+        Map<String, MetricFamilySamples> metricFamilySamplesMap = new TreeMap<>();
+        int notificationBeans = 0;
+        int notificationAttributes = 0;
+        int pollBeans = 0;
+        int pollAttributes = 0;
+
+        long nowNanoseconds = System.nanoTime();
+
+        for (BeanSnapshot beanSnapshot : new TreeMap<>(beanSnapshotMap).values()) {
+            if (beanSnapshot.notifying) {
+                if (beanSnapshot.isRefreshRequired(nowNanoseconds) && !beanSnapshot.refresh(nowNanoseconds)) {
+                    // The MBean was unregistered
+                    untrack(beanSnapshot);
+                    continue;
+                }
+
+                notificationBeans++;
+                notificationAttributes += beanSnapshot.attributeNames.length;
+            } else {
+                if (!beanSnapshot.poll()) {
+                    continue;
+                }
+
+                pollBeans++;
+                pollAttributes += beanSnapshot.attributeNames.length;
+            }
+
+            for (int i = 0; i < beanSnapshot.attributeNames.length; i++) {
+                defaultExport.processBeanValue(
+                        beanSnapshot.domain,
+                        beanSnapshot.beanProperties,
+                        new LinkedList<>(),
+                        beanSnapshot.attributeNames[i],
+                        beanSnapshot.attributeDescriptions[i],
+                        beanSnapshot.values.get(i),
+                        metricFamilySamplesMap);
+            }
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>(metricFamilySamplesMap.values());
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_JMX_SNAPSHOT_NOTIFICATIONS,
+                        Type.COUNTER,
+                        METRICS_EXPORTER_JMX_SNAPSHOT_NOTIFICATIONS_HELP,
+                        Collections.singletonList(
+                                new MetricFamilySamples.Sample(
+                                        METRICS_EXPORTER_JMX_SNAPSHOT_NOTIFICATIONS + "_total",
+                                        Collections.emptyList(),
+                                        Collections.emptyList(),
+                                        notifications.get()))));
+
+        List<MetricFamilySamples.Sample> beansSampleList = new ArrayList<>();
+        beansSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_JMX_SNAPSHOT_BEANS, MODE_LABEL_NAMES, NOTIFICATION_LABEL_VALUES, notificationBeans));
+        beansSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_JMX_SNAPSHOT_BEANS, MODE_LABEL_NAMES, POLL_LABEL_VALUES, pollBeans));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_JMX_SNAPSHOT_BEANS, Type.GAUGE, METRICS_EXPORTER_JMX_SNAPSHOT_BEANS_HELP, beansSampleList));
+
+        List<MetricFamilySamples.Sample> attributesSampleList = new ArrayList<>();
+        attributesSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_JMX_SNAPSHOT_ATTRIBUTES, MODE_LABEL_NAMES, NOTIFICATION_LABEL_VALUES, notificationAttributes));
+        attributesSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_JMX_SNAPSHOT_ATTRIBUTES, MODE_LABEL_NAMES, POLL_LABEL_VALUES, pollAttributes));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_JMX_SNAPSHOT_ATTRIBUTES, Type.GAUGE, METRICS_EXPORTER_JMX_SNAPSHOT_ATTRIBUTES_HELP, attributesSampleList));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        // Return an empty list, the MBeans are dynamic
+        return new ArrayList<>();
+    }
+
+    /**
+     * Method to close the collector, removing all notification listeners
+     */
+    public void close() {
+        try {
+            mBeanServer.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, registrationNotificationListener);
+        } catch (JMException e) {
+            // DO NOTHING
+        }
+
+        for (BeanSnapshot beanSnapshot : beanSnapshotMap.values()) {
+            if (beanSnapshot.notifying) {
+                try {
+                    mBeanServer.removeNotificationListener(beanSnapshot.objectName, attributeChangeNotificationListener);
+                } catch (JMException e) {
+                    // DO NOTHING
+                }
+            }
+        }
+
+        beanSnapshotMap.clear();
+    }
+
+    /**
+     * Method to start tracking an MBean
+     * <p>
+     * Synchronized, so concurrent collections don't subscribe to the same MBean twice
+     *
+     * @param objectName
+     */
+    private synchronized void track(ObjectName objectName) {
+        if (beanSnapshotMap.containsKey(objectName)) {
+            return;
+        }
+
+        try {
+            MBeanInfo mBeanInfo = mBeanServer.getMBeanInfo(objectName);
+
+            List<MBeanAttributeInfo> mBeanAttributeInfoList = new ArrayList<>();
+            for (MBeanAttributeInfo mBeanAttributeInfo : mBeanInfo.getAttributes()) {
+                if (mBeanAttributeInfo.isReadable()) {
+                    mBeanAttributeInfoList.add(mBeanAttributeInfo);
+                }
+            }
+
+            boolean notifying = isAttributeChangeNotificationEmitter(mBeanInfo);
+            BeanSnapshot beanSnapshot = new BeanSnapshot(objectName, mBeanAttributeInfoList, notifying);
+
+            if (notifying) {
+                NotificationFilterSupport notificationFilterSupport = new NotificationFilterSupport();
+                notificationFilterSupport.enableType(AttributeChangeNotification.ATTRIBUTE_CHANGE);
+
+                // Subscribe before the initial read so that no change is missed
+                mBeanServer.addNotificationListener(objectName, attributeChangeNotificationListener, notificationFilterSupport, beanSnapshot);
+                beanSnapshot.seed(System.nanoTime());
+            }
+
+            beanSnapshotMap.put(objectName, beanSnapshot);
+
+            LOGGER.info(String.format("JMX snapshot tracking [%s] mode [%s]", objectName, notifying ? "notification" : "poll"));
+        } catch (JMException e) {
+            // The MBean was unregistered
+        }
+    }
+
+    /**
+     * Method to stop tracking an MBean that failed to refresh
+     *
+     * @param beanSnapshot
+     */
+    private void untrack(BeanSnapshot beanSnapshot) {
+        if (beanSnapshotMap.remove(beanSnapshot.objectName, beanSnapshot)) {
+            try {
+                mBeanServer.removeNotificationListener(beanSnapshot.objectName, attributeChangeNotificationListener);
+            } catch (JMException e) {
+                // DO NOTHING, the MBean was unregistered
+            }
+        }
+    }
+
+    /**
+     * Method to determine whether an ObjectName matches a configured ObjectName
+     *
+     * @param objectName
+     * @return
+     */
+    private boolean matches(ObjectName objectName) {
+        for (ObjectName pattern : objectNameList) {
+            if (pattern.apply(objectName)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Method to determine whether an MBean emits AttributeChangeNotifications
+     *
+     * @param mBeanInfo
+     * @return
+     */
+    private static boolean isAttributeChangeNotificationEmitter(MBeanInfo mBeanInfo) {
+        for (MBeanNotificationInfo mBeanNotificationInfo : mBeanInfo.getNotifications()) {
+            for (String type : mBeanNotificationInfo.getNotifTypes()) {
+                if (AttributeChangeNotification.ATTRIBUTE_CHANGE.equals(type)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Class to hold the attribute values of an MBean
+     * <p>
+     * Values are held in an array indexed by attribute position, so a notification
+     * updates a single slot without locking
+     */
+    private class BeanSnapshot {
+
+        private final ObjectName objectName;
+        private final String domain;
+        private final LinkedHashMap<String, String> beanProperties;
+        private final String[] attributeNames;
+        private final String[] attributeDescriptions;
+        private final Map<String, Integer> attributeIndexMap;
+        private final AtomicReferenceArray<Object> values;
+        private final boolean notifying;
+        private volatile long refreshedNanoseconds;
+
+        /**
+         * Constructor
+         *
+         * @param objectName
+         * @param mBeanAttributeInfoList
+         * @param notifying
+         */
+        private BeanSnapshot(ObjectName objectName, List<MBeanAttributeInfo> mBeanAttributeInfoList, boolean notifying) {
+            this.objectName = objectName;
+            this.domain = objectName.getDomain();
+            this.beanProperties = DefaultExport.getKeyPropertyList(objectName);
+            this.attributeNames = new String[mBeanAttributeInfoList.size()];
+            this.attributeDescriptions = new String[mBeanAttributeInfoList.size()];
+            this.attributeIndexMap = new HashMap<>();
+            this.values = new AtomicReferenceArray<>(mBeanAttributeInfoList.size());
+            this.notifying = notifying;
+
+            for (int i = 0; i < attributeNames.length; i++) {
+                MBeanAttributeInfo mBeanAttributeInfo = mBeanAttributeInfoList.get(i);
+                attributeNames[i] = mBeanAttributeInfo.getName();
+                attributeDescriptions[i] = mBeanAttributeInfo.getDescription();
+                attributeIndexMap.put(attributeNames[i], i);
+            }
+        }
+
+        /**
+         * Method to set an attribute value
+         *
+         * @param attributeName
+         * @param value
+         */
+        private void set(String attributeName, Object value) {
+            Integer index = attributeIndexMap.get(attributeName);
+            if (index != null) {
+                values.set(index, value);
+            }
+        }
+
+        /**
+         * Method to read the initial attribute values, without replacing values set by notifications
+         *
+         * @param nowNanoseconds
+         * @throws JMException
+         */
+        private void seed(long nowNanoseconds) throws JMException {
+            for (Attribute attribute : read()) {
+                Integer index = attributeIndexMap.get(attribute.getName());
+                if (index != null) {
+                    values.compareAndSet(index, null, attribute.getValue());
+                }
+            }
+
+            refreshedNanoseconds = nowNanoseconds;
+        }
+
+        /**
+         * Method to determine whether the refresh interval has expired
+         *
+         * @param nowNanoseconds
+         * @return
+         */
+        private boolean isRefreshRequired(long nowNanoseconds) {
+            return (nowNanoseconds - refreshedNanoseconds) >= refreshNanoseconds;
+        }
+
+        /**
+         * Method to re-read all attribute values, without replacing values set by notifications during the read
+         *
+         * @param nowNanoseconds
+         * @return true if the MBean was read, else false
+         */
+        private boolean refresh(long nowNanoseconds) {
+            // Set first, so concurrent collections don't refresh the same MBean
+            refreshedNanoseconds = nowNanoseconds;
+
+            Object[] previousValues = new Object[attributeNames.length];
+            for (int i = 0; i < previousValues.length; i++) {
+                previousValues[i] = values.get(i);
+            }
+
+            try {
+                for (Attribute attribute : read()) {
+                    Integer index = attributeIndexMap.get(attribute.getName());
+                    if (index != null) {
+                        // Fails if a notification changed the value during the read, keeping the newer value
+                        values.compareAndSet(index, previousValues[index], attribute.getValue());
+                    }
+                }
+
+                return true;
+            } catch (JMException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Method to read all attribute values
+         *
+         * @return true if the MBean was read, else false
+         */
+        private boolean poll() {
+            try {
+                for (Attribute attribute : read()) {
+                    set(attribute.getName(), attribute.getValue());
+                }
+
+                return true;
+            } catch (JMException e) {
+                return false;
+            }
+        }
+
+        private List<Attribute> read() throws JMException {
+            AttributeList attributeList = mBeanServer.getAttributes(objectName, attributeNames);
+            return attributeList.asList();
+        }
+    }
+}
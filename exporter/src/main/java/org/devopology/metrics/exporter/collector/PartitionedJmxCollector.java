@@ -0,0 +1,665 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.jmx.JmxCollector;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.devopology.metrics.exporter.jmx.ObjectNameFilter;
+import org.yaml.snakeyaml.Yaml;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Class to collect JMX metrics in parallel
+ * <p>
+ * The MBean set is split by domain, with each domain collected by a dedicated JmxCollector
+ * restricted (via "whitelistObjectNames") to that domain. Domains are grouped into partitions
+ * (one partition per domain, or a fixed number of partitions based on the domain hash) and
+ * partitions are collected concurrently on the provided ExecutorService (a ForkJoinPool, or a
+ * virtual thread per task ExecutorService on Java 21+). A virtual thread per task ExecutorService
+ * is unbounded, so concurrent partition collections are bounded by a Semaphore (parallelism).
+ * <p>
+ * Results are merged in partition / domain order so that output is stable between scrapes. A partition
+ * (or domain) that fails to collect, or doesn't complete within the timeout, is logged and dropped, reported
+ * as a JMX scrape error. Partitions that are still outstanding when collection ends (timed out, interrupted,
+ * or failed) are cancelled, interrupting their collection
+ * <p>
+ * Optionally, MBean attributes that are consistently slow to read are quarantined, in which case each domain
+ * is collected attribute by attribute (see {@link AttributeJmxCollector} and {@link Quarantine})
+ */
+@SuppressWarnings("unchecked")
+public class PartitionedJmxCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedJmxCollector.class);
+
+    private static final String START_DELAY_SECONDS = "startDelaySeconds";
+    private static final String WHITELIST_OBJECT_NAMES = "whitelistObjectNames";
+    private static final String INCLUDE_OBJECT_NAMES = "includeObjectNames";
+    private static final String EXPORTER = "exporter";
+
+    private static final String JMX_SCRAPE_DURATION_SECONDS = "jmx_scrape_duration_seconds";
+    private static final String JMX_SCRAPE_ERROR = "jmx_scrape_error";
+    private static final String JMX_SCRAPE_ERROR_HELP = "Non-zero if this scrape failed.";
+    private static final String JMX_SCRAPE_CACHED_BEANS = "jmx_scrape_cached_beans";
+
+    private static final String METRICS_EXPORTER_JMX_PARTITION_DURATION_SECONDS = "metrics_exporter_jmx_partition_duration_seconds";
+    private static final String METRICS_EXPORTER_JMX_PARTITION_DURATION_SECONDS_HELP = "Time this JMX partition collection took, in seconds";
+    private static final String METRICS_EXPORTER_JMX_PARTITION_DOMAINS = "metrics_exporter_jmx_partition_domains";
+    private static final String METRICS_EXPORTER_JMX_PARTITION_DOMAINS_HELP = "Number of MBean domains in the JMX partition";
+
+    private static final List<String> PARTITION_LABEL_NAMES = Collections.singletonList("partition");
+
+    /**
+     * Default collection timeout
+     */
+    public static final long DEFAULT_TIMEOUT_MILLISECONDS = 10000;
+
+    /**
+     * Partitioning strategies
+     */
+    public enum Partitioning {
+
+        /**
+         * One partition per MBean domain
+         */
+        DOMAIN,
+
+        /**
+         * A fixed number of partitions, assigned by MBean domain hash
+         */
+        HASH;
+
+        /**
+         * Method to decode a Partitioning value
+         *
+         * @param value
+         * @return
+         */
+        public static Partitioning decode(String value) {
+            Precondition.notNull(value, "value is null");
+
+            for (Partitioning partitioning : values()) {
+                if (partitioning.name().equalsIgnoreCase(value.trim())) {
+                    return partitioning;
+                }
+            }
+
+            throw new IllegalArgumentException(String.format("invalid partitioning [%s]", value));
+        }
+    }
+
+    private final Map<String, Object> jmxConfigurationMap;
+    private final List<ObjectName> whitelistObjectNameList;
+    private final Partitioning partitioning;
+    private final int partitions;
+    private final ExecutorService executorService;
+    private final Semaphore semaphore;
+    private final long timeoutNanoseconds;
+    private final MBeanServer mBeanServer;
+    private final DefaultExport defaultExport;
+    private final Quarantine quarantine;
+    private final Map<String, Collector> domainCollectorMap;
+
+    private Set<String> domainSet;
+
+    /**
+     * Constructor
+     *
+     * @param jmxConfigurationMap
+     * @param partitioning
+     * @param partitions
+     * @param executorService
+     * @param parallelism the maximum number of partitions collected concurrently
+     * @param mBeanServer
+     * @param defaultExport optional, may be null, required if quarantine isn't null
+     * @param quarantine optional, may be null
+     * @throws MalformedObjectNameException
+     */
+    public PartitionedJmxCollector(
+            Map<String, Object> jmxConfigurationMap,
+            Partitioning partitioning,
+            int partitions,
+            ExecutorService executorService,
+            int parallelism,
+            MBeanServer mBeanServer,
+            DefaultExport defaultExport,
+            Quarantine quarantine) throws MalformedObjectNameException {
+        this(jmxConfigurationMap, partitioning, partitions, executorService, parallelism, DEFAULT_TIMEOUT_MILLISECONDS, mBeanServer, defaultExport, quarantine);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param jmxConfigurationMap
+     * @param partitioning
+     * @param partitions
+     * @param executorService
+     * @param parallelism the maximum number of partitions collected concurrently
+     * @param timeoutMilliseconds the maximum time to wait for all partitions, late partitions are dropped
+     * @param mBeanServer
+     * @param defaultExport optional, may be null, required if quarantine isn't null
+     * @param quarantine optional, may be null
+     * @throws MalformedObjectNameException
+     */
+    public PartitionedJmxCollector(
+            Map<String, Object> jmxConfigurationMap,
+            Partitioning partitioning,
+            int partitions,
+            ExecutorService executorService,
+            int parallelism,
+            long timeoutMilliseconds,
+            MBeanServer mBeanServer,
+            DefaultExport defaultExport,
+            Quarantine quarantine) throws MalformedObjectNameException {
+        Precondition.notNull(jmxConfigurationMap, "jmxConfigurationMap is null");
+        Precondition.notNull(partitioning, "partitioning is null");
+        Precondition.inRange(partitions, 1, Integer.MAX_VALUE, "partitions is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.notNull(executorService, "executorService is null");
+        Precondition.inRange(parallelism, 1, Integer.MAX_VALUE, "parallelism is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.inRange(timeoutMilliseconds, 1, Long.MAX_VALUE / 1000000, "timeoutMilliseconds is outside range (1 - " + (Long.MAX_VALUE / 1000000) + ")");
+        Precondition.notNull(mBeanServer, "mBeanServer is null");
+        Precondition.isTrue((quarantine == null) || (defaultExport != null), IllegalArgumentException.class, "defaultExport is null");
+
+        this.jmxConfigurationMap = new LinkedHashMap<>(jmxConfigurationMap);
+        this.jmxConfigurationMap.remove(EXPORTER);
+
+        // Start delay is handled by ReadinessCollector, domain collectors may be created after startup
+        this.jmxConfigurationMap.remove(START_DELAY_SECONDS);
+
+        Object whitelistObject = this.jmxConfigurationMap.remove(WHITELIST_OBJECT_NAMES);
+        Object includeObject = this.jmxConfigurationMap.remove(INCLUDE_OBJECT_NAMES);
+        if (whitelistObject == null) {
+            whitelistObject = includeObject;
+        }
+
+        this.whitelistObjectNameList = new ArrayList<>();
+        if (whitelistObject instanceof List) {
+            for (Object object : (List<Object>) whitelistObject) {
+                whitelistObjectNameList.add(new ObjectName(String.valueOf(object)));
+            }
+        }
+
+        this.partitioning = partitioning;
+        this.partitions = partitions;
+        this.executorService = executorService;
+        this.semaphore = new Semaphore(parallelism);
+        this.timeoutNanoseconds = TimeUnit.MILLISECONDS.toNanos(timeoutMilliseconds);
+        this.mBeanServer = mBeanServer;
+        this.defaultExport = defaultExport;
+        this.quarantine = quarantine;
+        this.domainCollectorMap = new HashMap<>();
+        this.domainSet = new TreeSet<>();
+
+        // Create the collectors for the domains that currently exist
+        for (List<String> domainList : refreshDomains().values()) {
+            for (String domain : domainList) {
+                getDomainCollector(domain);
+            }
+        }
+    }
+
+    /**
+     * Method to collect metrics
+     *
+     * @return
+     */
+    @Override
+    public List<MetricFamilySamples> collect() {
+        long startNanoseconds = System.nanoTime();
+
+        Map<String, List<String>> partitionMap = refreshDomains();
+
+        boolean isError = false;
+
+        // Submit each partition
+        Map<String, Future<PartitionResult>> futureMap = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : partitionMap.entrySet()) {
+            List<String> domainList = entry.getValue();
+            try {
+                futureMap.put(entry.getKey(), executorService.submit(() -> {
+                    semaphore.acquire();
+                    try {
+                        return collectPartition(domainList);
+                    } finally {
+                        semaphore.release();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn(String.format("JMX partition [%s] collection rejected, dropping partition", entry.getKey()));
+                isError = true;
+            }
+        }
+
+        // Merge the results in partition order
+        Map<String, MergedMetricFamilySamples> mergedMetricFamilySamplesMap = new LinkedHashMap<>();
+        List<MetricFamilySamples.Sample> durationSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> domainsSampleList = new ArrayList<>();
+
+        long deadlineNanoseconds = startNanoseconds + timeoutNanoseconds;
+
+        try {
+            for (Map.Entry<String, Future<PartitionResult>> entry : futureMap.entrySet()) {
+                PartitionResult partitionResult = get(entry.getKey(), entry.getValue(), deadlineNanoseconds - System.nanoTime());
+                if (partitionResult == null) {
+                    isError = true;
+                    continue;
+                }
+
+                isError |= partitionResult.isError;
+
+                for (List<MetricFamilySamples> metricFamilySamplesList : partitionResult.metricFamilySamplesLists) {
+                    merge(mergedMetricFamilySamplesMap, metricFamilySamplesList);
+                }
+
+                List<String> labelValues = Collections.singletonList(entry.getKey());
+
+                durationSampleList.add(
+                        new MetricFamilySamples.Sample(
+                                METRICS_EXPORTER_JMX_PARTITION_DURATION_SECONDS,
+                                PARTITION_LABEL_NAMES,
+                                labelValues,
+                                partitionResult.durationNanoseconds / NANOSECONDS_PER_SECOND));
+
+                domainsSampleList.add(
+                        new MetricFamilySamples.Sample(
+                                METRICS_EXPORTER_JMX_PARTITION_DOMAINS,
+                                PARTITION_LABEL_NAMES,
+                                labelValues,
+                                partitionResult.domains));
+            }
+        } finally {
+            // Cancel outstanding partitions (timed out, or collection was interrupted or failed), a no-op for completed partitions
+            for (Future<PartitionResult> future : futureMap.values()) {
+                future.cancel(true);
+            }
+        }
+
+        if (isError) {
+            // Report the dropped partitions / domains as a scrape error
+            merge(
+                    mergedMetricFamilySamplesMap,
+                    Collections.singletonList(
+                            new MetricFamilySamples(
+                                    JMX_SCRAPE_ERROR,
+                                    Type.GAUGE,
+                                    JMX_SCRAPE_ERROR_HELP,
+                                    Collections.singletonList(
+                                            new MetricFamilySamples.Sample(
+                                                    JMX_SCRAPE_ERROR,
+                                                    Collections.emptyList(),
+                                                    Collections.emptyList(),
+                                                    1)))));
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>(mergedMetricFamilySamplesMap.size() + 5);
+
+        for (MergedMetricFamilySamples mergedMetricFamilySamples : mergedMetricFamilySamplesMap.values()) {
+            MetricFamilySamples metricFamilySamples = mergedMetricFamilySamples.metricFamilySamples;
+
+            if (JMX_SCRAPE_DURATION_SECONDS.equals(metricFamilySamples.name)) {
+                // Replace the per domain collector scrape durations with the overall scrape duration
+                metricFamilySamples =
+                        new MetricFamilySamples(
+                                metricFamilySamples.name,
+                                metricFamilySamples.type,
+                                metricFamilySamples.help,
+                                Collections.singletonList(
+                                        new MetricFamilySamples.Sample(
+                                                JMX_SCRAPE_DURATION_SECONDS,
+                                                Collections.emptyList(),
+                                                Collections.emptyList(),
+                                                (System.nanoTime() - startNanoseconds) / NANOSECONDS_PER_SECOND)));
+            }
+
+            metricFamilySamplesList.add(metricFamilySamples);
+        }
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_JMX_PARTITION_DURATION_SECONDS,
+                        Type.GAUGE,
+                        METRICS_EXPORTER_JMX_PARTITION_DURATION_SECONDS_HELP,
+                        durationSampleList));
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_JMX_PARTITION_DOMAINS,
+                        Type.GAUGE,
+                        METRICS_EXPORTER_JMX_PARTITION_DOMAINS_HELP,
+                        domainsSampleList));
+
+        return metricFamilySamplesList;
+    }
+
+    /**
+     * Method to describe metrics
+     * <p>
+     * Metric names depend on the MBeans registered at collection time, so nothing is described
+     *
+     * @return
+     */
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return new ArrayList<>();
+    }
+
+    /**
+     * Method to refresh the domain set, returning the current partitions
+     *
+     * @return
+     */
+    private synchronized Map<String, List<String>> refreshDomains() {
+        Set<String> currentDomainSet = new TreeSet<>(Arrays.asList(mBeanServer.getDomains()));
+
+        if (!currentDomainSet.equals(domainSet)) {
+            domainCollectorMap.keySet().retainAll(currentDomainSet);
+            domainSet = currentDomainSet;
+        }
+
+        Map<String, List<String>> partitionMap = new TreeMap<>();
+
+        for (String domain : domainSet) {
+            if (!isWhitelisted(domain)) {
+                continue;
+            }
+
+            String partition;
+            if (partitioning == Partitioning.DOMAIN) {
+                partition = domain;
+            } else {
+                partition = String.valueOf(Math.floorMod(domain.hashCode(), partitions));
+            }
+
+            partitionMap.computeIfAbsent(partition, key -> new ArrayList<>()).add(domain);
+        }
+
+        return partitionMap;
+    }
+
+    /**
+     * Method to get (or create) the JmxCollector (or AttributeJmxCollector if quarantine is enabled) for a domain
+     *
+     * @param domain
+     * @return
+     */
+    private synchronized Collector getDomainCollector(String domain) {
+        Collector collector = domainCollectorMap.get(domain);
+
+        if (collector == null) {
+            Map<String, Object> domainJmxConfigurationMap = new LinkedHashMap<>(jmxConfigurationMap);
+            domainJmxConfigurationMap.put(WHITELIST_OBJECT_NAMES, getWhitelistObjectNames(domain));
+
+            try {
+                if (quarantine != null) {
+                    collector = new AttributeJmxCollector(
+                            mBeanServer,
+                            new ObjectName(domain + ":*"),
+                            new ObjectNameFilter(domainJmxConfigurationMap),
+                            defaultExport,
+                            quarantine);
+                } else {
+                    collector = new JmxCollector(new Yaml().dump(domainJmxConfigurationMap));
+                }
+            } catch (MalformedObjectNameException e) {
+                throw new RuntimeException(e);
+            }
+
+            LOGGER.trace(String.format("created JMX collector for domain [%s]", domain));
+
+            domainCollectorMap.put(domain, collector);
+        }
+
+        return collector;
+    }
+
+    /**
+     * Method to determine whether a domain is matched by the whitelist
+     *
+     * @param domain
+     * @return
+     */
+    private boolean isWhitelisted(String domain) {
+        if (whitelistObjectNameList.isEmpty()) {
+            return true;
+        }
+
+        for (ObjectName objectName : whitelistObjectNameList) {
+            if (matchesDomain(objectName, domain)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Method to get the whitelist ObjectNames for a domain, restricting the configured whitelist to the domain
+     *
+     * @param domain
+     * @return
+     */
+    private List<String> getWhitelistObjectNames(String domain) {
+        List<String> list = new ArrayList<>();
+
+        if (whitelistObjectNameList.isEmpty()) {
+            list.add(domain + ":*");
+            return list;
+        }
+
+        for (ObjectName objectName : whitelistObjectNameList) {
+            if (matchesDomain(objectName, domain)) {
+                String keyPropertyList = objectName.getKeyPropertyListString();
+                if (objectName.isPropertyListPattern()) {
+                    keyPropertyList = keyPropertyList.isEmpty() ? "*" : keyPropertyList + ",*";
+                }
+
+                list.add(domain + ":" + keyPropertyList);
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Method to collect a partition
+     * <p>
+     * A domain that fails to collect is logged and dropped, the remaining domains are still collected
+     *
+     * @param domainList
+     * @return
+     */
+    private PartitionResult collectPartition(List<String> domainList) {
+        long startNanoseconds = System.nanoTime();
+        boolean isError = false;
+
+        List<List<MetricFamilySamples>> metricFamilySamplesLists = new ArrayList<>(domainList.size());
+        for (String domain : domainList) {
+            try {
+                metricFamilySamplesLists.add(getDomainCollector(domain).collect());
+            } catch (RuntimeException e) {
+                LOGGER.warn(String.format("JMX domain [%s] collection failed [%s], dropping domain", domain, e.getMessage()));
+                isError = true;
+            }
+        }
+
+        return new PartitionResult(metricFamilySamplesLists, domainList.size(), System.nanoTime() - startNanoseconds, isError);
+    }
+
+    /**
+     * Method to merge a List of MetricFamilySamples into a Map of MergedMetricFamilySamples
+     * <p>
+     * Duplicate samples are dropped, with the exception of the JmxCollector
+     * error / cached bean samples which are combined
+     *
+     * @param mergedMetricFamilySamplesMap
+     * @param metricFamilySamplesList
+     */
+    private static void merge(Map<String, MergedMetricFamilySamples> mergedMetricFamilySamplesMap, List<MetricFamilySamples> metricFamilySamplesList) {
+        for (MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            MergedMetricFamilySamples mergedMetricFamilySamples =
+                    mergedMetricFamilySamplesMap.computeIfAbsent(
+                            metricFamilySamples.name,
+                            name -> new MergedMetricFamilySamples(metricFamilySamples));
+
+            for (MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                mergedMetricFamilySamples.add(sample);
+            }
+        }
+    }
+
+    /**
+     * Method to create a copy of Sample with a different value
+     *
+     * @param sample
+     * @param value
+     * @return
+     */
+    private static MetricFamilySamples.Sample withValue(MetricFamilySamples.Sample sample, double value) {
+        return new MetricFamilySamples.Sample(sample.name, sample.labelNames, sample.labelValues, value);
+    }
+
+    /**
+     * Method to determine whether an ObjectName (possibly a pattern) matches a domain
+     *
+     * @param objectName
+     * @param domain
+     * @return
+     */
+    private static boolean matchesDomain(ObjectName objectName, String domain) {
+        if (!objectName.isDomainPattern()) {
+            return objectName.getDomain().equals(domain);
+        }
+
+        try {
+            return ObjectName.getInstance(objectName.getDomain() + ":*").apply(ObjectName.getInstance(domain + ":type=domain"));
+        } catch (MalformedObjectNameException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Method to get a partition result, logging and dropping a failed or late partition
+     *
+     * @param partition
+     * @param future
+     * @param timeoutNanoseconds the remaining time, if <= 0 only a completed partition is returned
+     * @return the PartitionResult, or null if the partition failed or didn't complete within the timeout
+     */
+    private static PartitionResult get(String partition, Future<PartitionResult> future, long timeoutNanoseconds) {
+        try {
+            return future.get(Math.max(0, timeoutNanoseconds), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (TimeoutException e) {
+            LOGGER.warn(String.format("JMX partition [%s] collection timed out, dropping partition", partition));
+        } catch (ExecutionException e) {
+            LOGGER.warn(String.format("JMX partition [%s] collection failed [%s], dropping partition", partition, e.getCause()));
+        } catch (RuntimeException e) {
+            // CancellationException
+            LOGGER.warn(String.format("JMX partition [%s] collection failed [%s], dropping partition", partition, e));
+        }
+
+        return null;
+    }
+
+    /**
+     * Class to hold the result of collecting a partition
+     */
+    private static class PartitionResult {
+
+        private final List<List<MetricFamilySamples>> metricFamilySamplesLists;
+        private final int domains;
+        private final long durationNanoseconds;
+        private final boolean isError;
+
+        public PartitionResult(List<List<MetricFamilySamples>> metricFamilySamplesLists, int domains, long durationNanoseconds, boolean isError) {
+            this.metricFamilySamplesLists = metricFamilySamplesLists;
+            this.domains = domains;
+            this.durationNanoseconds = durationNanoseconds;
+            this.isError = isError;
+        }
+    }
+
+    /**
+     * Class to merge the samples of a metric family, indexing samples by name and labels
+     */
+    private static class MergedMetricFamilySamples {
+
+        private final MetricFamilySamples metricFamilySamples;
+        private final Map<List<Object>, Integer> sampleIndexMap;
+
+        /**
+         * Constructor
+         *
+         * @param metricFamilySamples
+         */
+        private MergedMetricFamilySamples(MetricFamilySamples metricFamilySamples) {
+            this.metricFamilySamples =
+                    new MetricFamilySamples(
+                            metricFamilySamples.name,
+                            metricFamilySamples.type,
+                            metricFamilySamples.help,
+                            new ArrayList<>(metricFamilySamples.samples.size()));
+            this.sampleIndexMap = new HashMap<>();
+        }
+
+        /**
+         * Method to add a sample, dropping (or combining) a duplicate sample
+         *
+         * @param sample
+         */
+        private void add(MetricFamilySamples.Sample sample) {
+            List<MetricFamilySamples.Sample> sampleList = metricFamilySamples.samples;
+            List<Object> key = Arrays.asList(sample.name, sample.labelNames, sample.labelValues);
+            Integer index = sampleIndexMap.putIfAbsent(key, sampleList.size());
+
+            if (index == null) {
+                sampleList.add(sample);
+            } else if (JMX_SCRAPE_ERROR.equals(sample.name)) {
+                MetricFamilySamples.Sample existingSample = sampleList.get(index);
+                sampleList.set(index, withValue(existingSample, Math.max(existingSample.value, sample.value)));
+            } else if (JMX_SCRAPE_CACHED_BEANS.equals(sample.name)) {
+                MetricFamilySamples.Sample existingSample = sampleList.get(index);
+                sampleList.set(index, withValue(existingSample, existingSample.value + sample.value));
+            }
+        }
+    }
+}
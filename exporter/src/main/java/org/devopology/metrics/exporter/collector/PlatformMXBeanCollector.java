@@ -0,0 +1,535 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.devopology.metrics.exporter.jmx.ObjectNameFilter;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.OpenType;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.PlatformManagedObject;
+import java.lang.management.RuntimeMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Class to collect platform MXBeans (java.lang domain) through their typed java.lang.management interfaces
+ * <p>
+ * The JmxCollector reads platform MXBeans through the MBeanServer, which converts values to
+ * CompositeData / TabularData (Open MBean types) on every scrape. Attributes with a typed reader are
+ * read directly from the MXBean, other attributes fall back to a single getAttributes() call.
+ * <p>
+ * The "java.lang" domain is excluded from the JmxCollector (via "blacklistObjectNames").
+ * Samples use the JMX exporter default export format, see DefaultExport
+ */
+public class PlatformMXBeanCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlatformMXBeanCollector.class);
+
+    public static final String DOMAIN_OBJECT_NAME = "java.lang:*";
+
+    private static final String METRICS_EXPORTER_JMX_PLATFORM_ATTRIBUTES = "metrics_exporter_jmx_platform_attributes";
+    private static final String METRICS_EXPORTER_JMX_PLATFORM_ATTRIBUTES_HELP = "Number of platform MXBean attributes read in the last collection";
+
+    private static final List<String> PATH_LABEL_NAMES = Collections.singletonList("path");
+    private static final List<String> TYPED_LABEL_VALUES = Collections.singletonList("typed");
+    private static final List<String> GENERIC_LABEL_VALUES = Collections.singletonList("generic");
+
+    private static final String[] MEMORY_USAGE_KEYS = new String[] { "committed", "init", "max", "used" };
+
+    private static final String LAST_GC_INFO = "LastGcInfo";
+
+    // Attribute types that never produce a sample in the default export format
+    private static final Set<String> SKIPPED_TYPES = new HashSet<>(Arrays.asList(
+            String.class.getName(),
+            String[].class.getName(),
+            long[].class.getName(),
+            ObjectName.class.getName()));
+
+    private static final Map<Class<?>, Map<String, Function<Object, Object>>> READER_MAP = new LinkedHashMap<>();
+
+    static {
+        register(MemoryMXBean.class, "HeapMemoryUsage", MemoryMXBean::getHeapMemoryUsage);
+        register(MemoryMXBean.class, "NonHeapMemoryUsage", MemoryMXBean::getNonHeapMemoryUsage);
+        register(MemoryMXBean.class, "ObjectPendingFinalizationCount", MemoryMXBean::getObjectPendingFinalizationCount);
+        register(MemoryMXBean.class, "Verbose", MemoryMXBean::isVerbose);
+
+        register(MemoryPoolMXBean.class, "Usage", MemoryPoolMXBean::getUsage);
+        register(MemoryPoolMXBean.class, "PeakUsage", MemoryPoolMXBean::getPeakUsage);
+        register(MemoryPoolMXBean.class, "CollectionUsage", MemoryPoolMXBean::getCollectionUsage);
+        register(MemoryPoolMXBean.class, "UsageThreshold", MemoryPoolMXBean::getUsageThreshold);
+        register(MemoryPoolMXBean.class, "UsageThresholdCount", MemoryPoolMXBean::getUsageThresholdCount);
+        register(MemoryPoolMXBean.class, "UsageThresholdExceeded", MemoryPoolMXBean::isUsageThresholdExceeded);
+        register(MemoryPoolMXBean.class, "UsageThresholdSupported", MemoryPoolMXBean::isUsageThresholdSupported);
+        register(MemoryPoolMXBean.class, "CollectionUsageThreshold", MemoryPoolMXBean::getCollectionUsageThreshold);
+        register(MemoryPoolMXBean.class, "CollectionUsageThresholdCount", MemoryPoolMXBean::getCollectionUsageThresholdCount);
+        register(MemoryPoolMXBean.class, "CollectionUsageThresholdExceeded", MemoryPoolMXBean::isCollectionUsageThresholdExceeded);
+        register(MemoryPoolMXBean.class, "CollectionUsageThresholdSupported", MemoryPoolMXBean::isCollectionUsageThresholdSupported);
+        register(MemoryPoolMXBean.class, "Valid", MemoryPoolMXBean::isValid);
+
+        register(GarbageCollectorMXBean.class, "CollectionCount", GarbageCollectorMXBean::getCollectionCount);
+        register(GarbageCollectorMXBean.class, "CollectionTime", GarbageCollectorMXBean::getCollectionTime);
+        register(GarbageCollectorMXBean.class, "Valid", GarbageCollectorMXBean::isValid);
+
+        register(ThreadMXBean.class, "ThreadCount", ThreadMXBean::getThreadCount);
+        register(ThreadMXBean.class, "PeakThreadCount", ThreadMXBean::getPeakThreadCount);
+        register(ThreadMXBean.class, "DaemonThreadCount", ThreadMXBean::getDaemonThreadCount);
+        register(ThreadMXBean.class, "TotalStartedThreadCount", ThreadMXBean::getTotalStartedThreadCount);
+        register(ThreadMXBean.class, "CurrentThreadCpuTime", ThreadMXBean::getCurrentThreadCpuTime);
+        register(ThreadMXBean.class, "CurrentThreadUserTime", ThreadMXBean::getCurrentThreadUserTime);
+        register(ThreadMXBean.class, "ThreadCpuTimeEnabled", ThreadMXBean::isThreadCpuTimeEnabled);
+        register(ThreadMXBean.class, "ThreadCpuTimeSupported", ThreadMXBean::isThreadCpuTimeSupported);
+        register(ThreadMXBean.class, "CurrentThreadCpuTimeSupported", ThreadMXBean::isCurrentThreadCpuTimeSupported);
+        register(ThreadMXBean.class, "ThreadContentionMonitoringEnabled", ThreadMXBean::isThreadContentionMonitoringEnabled);
+        register(ThreadMXBean.class, "ThreadContentionMonitoringSupported", ThreadMXBean::isThreadContentionMonitoringSupported);
+        register(ThreadMXBean.class, "ObjectMonitorUsageSupported", ThreadMXBean::isObjectMonitorUsageSupported);
+        register(ThreadMXBean.class, "SynchronizerUsageSupported", ThreadMXBean::isSynchronizerUsageSupported);
+
+        register(RuntimeMXBean.class, "Uptime", RuntimeMXBean::getUptime);
+        register(RuntimeMXBean.class, "StartTime", RuntimeMXBean::getStartTime);
+        register(RuntimeMXBean.class, "BootClassPathSupported", RuntimeMXBean::isBootClassPathSupported);
+
+        register(ClassLoadingMXBean.class, "LoadedClassCount", ClassLoadingMXBean::getLoadedClassCount);
+        register(ClassLoadingMXBean.class, "TotalLoadedClassCount", ClassLoadingMXBean::getTotalLoadedClassCount);
+        register(ClassLoadingMXBean.class, "UnloadedClassCount", ClassLoadingMXBean::getUnloadedClassCount);
+        register(ClassLoadingMXBean.class, "Verbose", ClassLoadingMXBean::isVerbose);
+
+        register(CompilationMXBean.class, "TotalCompilationTime", CompilationMXBean::getTotalCompilationTime);
+        register(CompilationMXBean.class, "CompilationTimeMonitoringSupported", CompilationMXBean::isCompilationTimeMonitoringSupported);
+
+        register(OperatingSystemMXBean.class, "AvailableProcessors", OperatingSystemMXBean::getAvailableProcessors);
+        register(OperatingSystemMXBean.class, "SystemLoadAverage", OperatingSystemMXBean::getSystemLoadAverage);
+    }
+
+    private final MBeanServer mBeanServer;
+    private final ObjectNameFilter objectNameFilter;
+    private final DefaultExport defaultExport;
+    private final Map<ObjectName, PlatformManagedObject> platformManagedObjectMap;
+    private final Map<ObjectName, PlatformBean> platformBeanMap;
+    private final LastGcInfoReader lastGcInfoReader;
+
+    /**
+     * Constructor
+     *
+     * @param mBeanServer
+     * @param objectNameFilter
+     * @param defaultExport
+     */
+    public PlatformMXBeanCollector(MBeanServer mBeanServer, ObjectNameFilter objectNameFilter, DefaultExport defaultExport) {
+        Precondition.notNull(mBeanServer, "mBeanServer is null");
+        Precondition.notNull(objectNameFilter, "objectNameFilter is null");
+        Precondition.notNull(defaultExport, "defaultExport is null");
+
+        this.mBeanServer = mBeanServer;
+        this.objectNameFilter = objectNameFilter;
+        this.defaultExport = defaultExport;
+        this.platformManagedObjectMap = new HashMap<>();
+        this.platformBeanMap = new ConcurrentHashMap<>();
+
+        for (Class<? extends PlatformManagedObject> platformManagementInterface : ManagementFactory.getPlatformManagementInterfaces()) {
+            try {
+                for (PlatformManagedObject platformManagedObject : ManagementFactory.getPlatformMXBeans(platformManagementInterface)) {
+                    platformManagedObjectMap.putIfAbsent(platformManagedObject.getObjectName(), platformManagedObject);
+                }
+            } catch (IllegalArgumentException e) {
+                // DO NOTHING, interface isn't supported by this JVM
+            }
+        }
+
+        this.lastGcInfoReader = LastGcInfoReader.create();
+        if (lastGcInfoReader == null) {
+            LOGGER.info("com.sun.management.GarbageCollectorMXBean not available, LastGcInfo will be read using getAttributes()");
+        }
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        Set<ObjectName> objectNameSet;
+        try {
+            objectNameSet = new TreeSet<>(mBeanServer.queryNames(new ObjectName(DOMAIN_OBJECT_NAME), null));
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+
+        platformBeanMap.keySet().retainAll(objectNameSet);
+
+        Map<String, MetricFamilySamples> metricFamilySamplesMap = new TreeMap<>();
+        int[] counts = new int[2];
+
+        for (ObjectName objectName : objectNameSet) {
+            if (!objectNameFilter.isIncluded(objectName)) {
+                continue;
+            }
+
+            PlatformBean platformBean = platformBeanMap.get(objectName);
+            if (platformBean == null) {
+                try {
+                    platformBean = new PlatformBean(objectName);
+                } catch (JMException e) {
+                    // The MBean was unregistered
+                    continue;
+                }
+
+                platformBeanMap.put(objectName, platformBean);
+            }
+
+            platformBean.collect(metricFamilySamplesMap, counts);
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>(metricFamilySamplesMap.values());
+
+        List<MetricFamilySamples.Sample> sampleList = new ArrayList<>();
+        sampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_JMX_PLATFORM_ATTRIBUTES, PATH_LABEL_NAMES, TYPED_LABEL_VALUES, counts[0]));
+        sampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_JMX_PLATFORM_ATTRIBUTES, PATH_LABEL_NAMES, GENERIC_LABEL_VALUES, counts[1]));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_JMX_PLATFORM_ATTRIBUTES, Type.GAUGE, METRICS_EXPORTER_JMX_PLATFORM_ATTRIBUTES_HELP, sampleList));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        // Return an empty list, the MBeans are dynamic
+        return new ArrayList<>();
+    }
+
+    /**
+     * Method to register a typed attribute reader
+     *
+     * @param clazz
+     * @param attributeName
+     * @param function
+     * @param <T>
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void register(Class<T> clazz, String attributeName, Function<T, Object> function) {
+        READER_MAP.computeIfAbsent(clazz, c -> new HashMap<>()).put(attributeName, (Function<Object, Object>) function);
+    }
+
+    /**
+     * Method to get the description of an MXBean attribute's Open MBean type (the MXBean "openType" descriptor field)
+     *
+     * @param mBeanAttributeInfo
+     * @param defaultDescription returned if the attribute doesn't have an Open MBean type
+     * @return
+     */
+    private static String getOpenTypeDescription(MBeanAttributeInfo mBeanAttributeInfo, String defaultDescription) {
+        Object openType = mBeanAttributeInfo.getDescriptor().getFieldValue("openType");
+        if (openType instanceof OpenType) {
+            return ((OpenType<?>) openType).getDescription();
+        }
+
+        return defaultDescription;
+    }
+
+    /**
+     * Method to merge a MetricFamilySamples map into another MetricFamilySamples map
+     *
+     * @param source
+     * @param target
+     */
+    private static void merge(Map<String, MetricFamilySamples> source, Map<String, MetricFamilySamples> target) {
+        for (MetricFamilySamples metricFamilySamples : source.values()) {
+            MetricFamilySamples targetMetricFamilySamples = target.get(metricFamilySamples.name);
+            if (targetMetricFamilySamples == null) {
+                targetMetricFamilySamples = new MetricFamilySamples(
+                        metricFamilySamples.name,
+                        metricFamilySamples.type,
+                        metricFamilySamples.help,
+                        new ArrayList<>());
+
+                target.put(metricFamilySamples.name, targetMetricFamilySamples);
+            }
+
+            targetMetricFamilySamples.samples.addAll(metricFamilySamples.samples);
+        }
+    }
+
+    /**
+     * Class to hold the cached MBeanInfo and attribute readers of a platform MXBean
+     */
+    private class PlatformBean {
+
+        private final ObjectName objectName;
+        private final String domain;
+        private final LinkedHashMap<String, String> beanProperties;
+        private final PlatformManagedObject platformManagedObject;
+        private final List<MBeanAttributeInfo> typedAttributeInfoList;
+        private final List<Function<Object, Object>> typedReaderList;
+        private final String[] genericAttributeNames;
+        private final Map<String, String> genericAttributeDescriptionMap;
+        private final MBeanAttributeInfo lastGcInfoAttributeInfo;
+
+        private long lastGcInfoId = -1;
+        private Map<String, MetricFamilySamples> lastGcInfoMetricFamilySamplesMap;
+
+        /**
+         * Constructor
+         *
+         * @param objectName
+         * @throws JMException
+         */
+        private PlatformBean(ObjectName objectName) throws JMException {
+            this.objectName = objectName;
+            this.domain = objectName.getDomain();
+            this.beanProperties = DefaultExport.getKeyPropertyList(objectName);
+            this.platformManagedObject = platformManagedObjectMap.get(objectName);
+            this.typedAttributeInfoList = new ArrayList<>();
+            this.typedReaderList = new ArrayList<>();
+            this.genericAttributeDescriptionMap = new LinkedHashMap<>();
+
+            MBeanAttributeInfo lastGcInfoAttributeInfo = null;
+
+            for (MBeanAttributeInfo mBeanAttributeInfo : mBeanServer.getMBeanInfo(objectName).getAttributes()) {
+                if (!mBeanAttributeInfo.isReadable() || SKIPPED_TYPES.contains(mBeanAttributeInfo.getType())) {
+                    continue;
+                }
+
+                if (LAST_GC_INFO.equals(mBeanAttributeInfo.getName()) && (lastGcInfoReader != null) && lastGcInfoReader.isSupported(platformManagedObject)) {
+                    lastGcInfoAttributeInfo = mBeanAttributeInfo;
+                    continue;
+                }
+
+                Function<Object, Object> typedReader = getTypedReader(mBeanAttributeInfo.getName());
+                if (typedReader != null) {
+                    typedAttributeInfoList.add(mBeanAttributeInfo);
+                    typedReaderList.add(typedReader);
+                } else {
+                    genericAttributeDescriptionMap.put(mBeanAttributeInfo.getName(), mBeanAttributeInfo.getDescription());
+                }
+            }
+
+            this.genericAttributeNames = genericAttributeDescriptionMap.keySet().toArray(new String[0]);
+            this.lastGcInfoAttributeInfo = lastGcInfoAttributeInfo;
+        }
+
+        /**
+         * Method to collect the MBean attributes
+         *
+         * @param metricFamilySamplesMap
+         * @param counts typed and generic attribute counts
+         */
+        private void collect(Map<String, MetricFamilySamples> metricFamilySamplesMap, int[] counts) {
+            for (int i = 0; i < typedReaderList.size(); i++) {
+                MBeanAttributeInfo mBeanAttributeInfo = typedAttributeInfoList.get(i);
+
+                Object value;
+                try {
+                    value = typedReaderList.get(i).apply(platformManagedObject);
+                } catch (RuntimeException e) {
+                    // Attribute isn't supported (UnsupportedOperationException), skipped by getAttributes() as well
+                    continue;
+                }
+
+                counts[0]++;
+
+                if (value instanceof MemoryUsage) {
+                    processMemoryUsage(
+                            mBeanAttributeInfo.getName(),
+                            getOpenTypeDescription(mBeanAttributeInfo, MemoryUsage.class.getName()),
+                            (MemoryUsage) value,
+                            metricFamilySamplesMap);
+                } else {
+                    defaultExport.processBeanValue(
+                            domain,
+                            beanProperties,
+                            new LinkedList<>(),
+                            mBeanAttributeInfo.getName(),
+                            mBeanAttributeInfo.getDescription(),
+                            value,
+                            metricFamilySamplesMap);
+                }
+            }
+
+            if (lastGcInfoAttributeInfo != null) {
+                counts[0]++;
+                processLastGcInfo(metricFamilySamplesMap);
+            }
+
+            if (genericAttributeNames.length > 0) {
+                List<Attribute> attributeList;
+                try {
+                    attributeList = mBeanServer.getAttributes(objectName, genericAttributeNames).asList();
+                } catch (JMException e) {
+                    // The MBean was unregistered
+                    return;
+                }
+
+                for (Attribute attribute : attributeList) {
+                    counts[1]++;
+
+                    defaultExport.processBeanValue(
+                            domain,
+                            beanProperties,
+                            new LinkedList<>(),
+                            attribute.getName(),
+                            genericAttributeDescriptionMap.get(attribute.getName()),
+                            attribute.getValue(),
+                            metricFamilySamplesMap);
+                }
+            }
+        }
+
+        /**
+         * Method to process a MemoryUsage without converting it to CompositeData
+         *
+         * @param attributeName
+         * @param description the MemoryUsage CompositeType description
+         * @param memoryUsage
+         * @param metricFamilySamplesMap
+         */
+        private void processMemoryUsage(
+                String attributeName,
+                String description,
+                MemoryUsage memoryUsage,
+                Map<String, MetricFamilySamples> metricFamilySamplesMap) {
+            LinkedList<String> attrKeys = new LinkedList<>();
+            attrKeys.add(attributeName);
+
+            // Same key order, values, and help (CompositeType description) as the MemoryUsage CompositeData
+            long[] values = new long[] { memoryUsage.getCommitted(), memoryUsage.getInit(), memoryUsage.getMax(), memoryUsage.getUsed() };
+            for (int i = 0; i < MEMORY_USAGE_KEYS.length; i++) {
+                defaultExport.processBeanValue(
+                        domain,
+                        beanProperties,
+                        attrKeys,
+                        MEMORY_USAGE_KEYS[i],
+                        description,
+                        values[i],
+                        metricFamilySamplesMap);
+            }
+        }
+
+        /**
+         * Method to process LastGcInfo, only converting (flattening) it when a new garbage collection has occurred
+         *
+         * @param metricFamilySamplesMap
+         */
+        private void processLastGcInfo(Map<String, MetricFamilySamples> metricFamilySamplesMap) {
+            Object gcInfo = lastGcInfoReader.getLastGcInfo(platformManagedObject);
+            if (gcInfo == null) {
+                return;
+            }
+
+            long id = lastGcInfoReader.getId(gcInfo);
+            if ((lastGcInfoMetricFamilySamplesMap == null) || (id != lastGcInfoId)) {
+                Map<String, MetricFamilySamples> gcInfoMetricFamilySamplesMap = new TreeMap<>();
+
+                defaultExport.processBeanValue(
+                        domain,
+                        beanProperties,
+                        new LinkedList<>(),
+                        lastGcInfoAttributeInfo.getName(),
+                        lastGcInfoAttributeInfo.getDescription(),
+                        gcInfo,
+                        gcInfoMetricFamilySamplesMap);
+
+                lastGcInfoId = id;
+                lastGcInfoMetricFamilySamplesMap = gcInfoMetricFamilySamplesMap;
+            }
+
+            merge(lastGcInfoMetricFamilySamplesMap, metricFamilySamplesMap);
+        }
+
+        private Function<Object, Object> getTypedReader(String attributeName) {
+            if (platformManagedObject == null) {
+                return null;
+            }
+
+            for (Map.Entry<Class<?>, Map<String, Function<Object, Object>>> entry : READER_MAP.entrySet()) {
+                if (entry.getKey().isInstance(platformManagedObject)) {
+                    Function<Object, Object> typedReader = entry.getValue().get(attributeName);
+                    if (typedReader != null) {
+                        return typedReader;
+                    }
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Class to read LastGcInfo through com.sun.management.GarbageCollectorMXBean
+     * <p>
+     * Only loaded when com.sun.management.GarbageCollectorMXBean is available
+     */
+    private static class LastGcInfoReader {
+
+        private static final String CLASS_NAME = "com.sun.management.GarbageCollectorMXBean";
+
+        /**
+         * Method to create a LastGcInfoReader
+         *
+         * @return a LastGcInfoReader, or null if com.sun.management.GarbageCollectorMXBean isn't available
+         */
+        private static LastGcInfoReader create() {
+            try {
+                Class.forName(CLASS_NAME, false, PlatformMXBeanCollector.class.getClassLoader());
+                return new LastGcInfoReader();
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        private boolean isSupported(PlatformManagedObject platformManagedObject) {
+            return platformManagedObject instanceof com.sun.management.GarbageCollectorMXBean;
+        }
+
+        /**
+         * Method to get the LastGcInfo, which is also CompositeData
+         *
+         * @param platformManagedObject
+         * @return
+         */
+        private Object getLastGcInfo(PlatformManagedObject platformManagedObject) {
+            return ((com.sun.management.GarbageCollectorMXBean) platformManagedObject).getLastGcInfo();
+        }
+
+        private long getId(Object gcInfo) {
+            return ((com.sun.management.GcInfo) gcInfo).getId();
+        }
+    }
+}
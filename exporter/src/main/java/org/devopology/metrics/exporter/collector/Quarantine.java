@@ -0,0 +1,260 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Summary;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Class to track collection latency per key and quarantine keys that are consistently slow
+ * <p>
+ * A key that exceeds the latency budget on a number of consecutive collections is quarantined
+ * (skipped) for a cooldown period. Once the cooldown expires, the key is collected again (probed).
+ * A slow probe quarantines the key again immediately, a fast probe releases it.
+ * <p>
+ * Keys are lists of label values (for example an MBean ObjectName and attribute name). Only keys
+ * that have exceeded the budget are tracked and exported, so cardinality is bounded by the slow keys.
+ * Tracked keys export a collection duration summary (p50, p90, p99), removed with the key
+ */
+public class Quarantine extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Quarantine.class);
+
+    private final List<String> keyLabelNames;
+    private final long budgetNanoseconds;
+    private final int consecutive;
+    private final long cooldownNanoseconds;
+    private final Map<List<String>, State> stateMap;
+    private final Summary durationSummary;
+    private final String quarantinedName;
+    private final String quarantinesName;
+
+    /**
+     * Constructor
+     *
+     * @param name metric name prefix
+     * @param keyLabelNames
+     * @param budgetMilliseconds
+     * @param consecutive
+     * @param cooldownMilliseconds
+     */
+    public Quarantine(String name, List<String> keyLabelNames, long budgetMilliseconds, int consecutive, long cooldownMilliseconds) {
+        Precondition.notNull(name, "name is null");
+        Precondition.notEmpty(name, "name is empty");
+        Precondition.notNull(keyLabelNames, "keyLabelNames is null");
+        Precondition.isTrue(!keyLabelNames.isEmpty(), IllegalArgumentException.class, "keyLabelNames is empty");
+        Precondition.inRange(budgetMilliseconds, 1, Long.MAX_VALUE, "budgetMilliseconds is outside range (1 - " + Long.MAX_VALUE + ")");
+        Precondition.inRange(consecutive, 1, Integer.MAX_VALUE, "consecutive is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.inRange(cooldownMilliseconds, 1, Long.MAX_VALUE, "cooldownMilliseconds is outside range (1 - " + Long.MAX_VALUE + ")");
+
+        this.keyLabelNames = new ArrayList<>(keyLabelNames);
+        this.budgetNanoseconds = budgetMilliseconds * 1000000L;
+        this.consecutive = consecutive;
+        this.cooldownNanoseconds = cooldownMilliseconds * 1000000L;
+        this.stateMap = new ConcurrentHashMap<>();
+        this.durationSummary =
+                Summary.build()
+                        .name(name + "_duration_seconds")
+                        .help("Collection duration in seconds, of keys that have exceeded the budget")
+                        .labelNames(this.keyLabelNames.toArray(new String[0]))
+                        .quantile(0.5, 0.05)
+                        .quantile(0.9, 0.01)
+                        .quantile(0.99, 0.001)
+                        .create();
+        this.quarantinedName = name + "_quarantined";
+        this.quarantinesName = name + "_quarantines";
+    }
+
+    /**
+     * Method to determine whether a key should be skipped
+     * <p>
+     * Returns false once the cooldown has expired, allowing a probe
+     *
+     * @param key
+     * @return
+     */
+    public boolean isQuarantined(List<String> key) {
+        State state = stateMap.get(key);
+        if (state == null) {
+            return false;
+        }
+
+        synchronized (state) {
+            return state.quarantined && ((System.nanoTime() - state.quarantinedNanoseconds) < cooldownNanoseconds);
+        }
+    }
+
+    /**
+     * Method to record a collection duration for a key
+     *
+     * @param key
+     * @param durationNanoseconds
+     */
+    public void record(List<String> key, long durationNanoseconds) {
+        State state = stateMap.get(key);
+
+        if (state == null) {
+            if (durationNanoseconds <= budgetNanoseconds) {
+                // Fast path, keys within the budget aren't tracked
+                return;
+            }
+
+            state = stateMap.computeIfAbsent(key, k -> new State());
+        }
+
+        synchronized (state) {
+            if (state.isRemoved) {
+                // Removed concurrently, don't recreate the summary series
+                return;
+            }
+
+            durationSummary.labels(key.toArray(new String[0])).observe(durationNanoseconds / NANOSECONDS_PER_SECOND);
+
+            if (durationNanoseconds <= budgetNanoseconds) {
+                if (state.quarantined) {
+                    LOGGER.info(String.format("%s released from quarantine", key));
+                }
+
+                state.quarantined = false;
+                state.overBudgetCount = 0;
+                return;
+            }
+
+            state.overBudgetCount++;
+
+            // A slow probe (previously quarantined) is quarantined again immediately
+            if (state.quarantined || (state.overBudgetCount >= consecutive)) {
+                if (!state.quarantined) {
+                    LOGGER.warn(String.format(
+                            "%s quarantined, exceeded budget [%d] ms on [%d] consecutive collections",
+                            key,
+                            budgetNanoseconds / 1000000L,
+                            state.overBudgetCount));
+                }
+
+                state.quarantined = true;
+                state.quarantinedNanoseconds = System.nanoTime();
+                state.quarantines++;
+            }
+        }
+    }
+
+    /**
+     * Method to remove state for keys that no longer exist
+     *
+     * @param predicate
+     */
+    public void removeIf(Predicate<List<String>> predicate) {
+        Iterator<Map.Entry<List<String>, State>> iterator = stateMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<List<String>, State> entry = iterator.next();
+            if (predicate.test(entry.getKey())) {
+                iterator.remove();
+
+                State state = entry.getValue();
+                synchronized (state) {
+                    state.isRemoved = true;
+                    durationSummary.remove(entry.getKey().toArray(new String[0]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to get the number of tracked keys
+     *
+     * @return the number of tracked keys
+     */
+    public int size() {
+        return stateMap.size();
+    }
+
+    /**
+     * Method to collect quarantine metrics
+     *
+     * @return
+     */
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<Map.Entry<List<String>, State>> entryList = new ArrayList<>(stateMap.entrySet());
+        entryList.sort((entry1, entry2) -> entry1.getKey().toString().compareTo(entry2.getKey().toString()));
+
+        List<MetricFamilySamples.Sample> quarantinedSampleList = new ArrayList<>(entryList.size());
+        List<MetricFamilySamples.Sample> quarantinesSampleList = new ArrayList<>(entryList.size());
+
+        for (Map.Entry<List<String>, State> entry : entryList) {
+            List<String> labelValues = entry.getKey();
+            boolean quarantined = isQuarantined(labelValues);
+            long quarantines;
+
+            synchronized (entry.getValue()) {
+                quarantines = entry.getValue().quarantines;
+            }
+
+            quarantinedSampleList.add(
+                    new MetricFamilySamples.Sample(quarantinedName, keyLabelNames, labelValues, quarantined ? 1 : 0));
+
+            quarantinesSampleList.add(
+                    new MetricFamilySamples.Sample(quarantinesName + "_total", keyLabelNames, labelValues, quarantines));
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>(durationSummary.collect());
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        quarantinedName,
+                        Type.GAUGE,
+                        "Whether collection is quarantined (1) or not (0)",
+                        quarantinedSampleList));
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        quarantinesName,
+                        Type.COUNTER,
+                        "Number of times collection was quarantined",
+                        quarantinesSampleList));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return collect();
+    }
+
+    /**
+     * Class to hold per key state
+     */
+    private static class State {
+
+        private boolean quarantined;
+        private long quarantinedNanoseconds;
+        private boolean isRemoved;
+        private int overBudgetCount;
+        private long quarantines;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.common.ratelimit.TokenBucketRateLimiter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to collect per endpoint rate limit metrics
+ */
+public class RateLimitCollector extends Collector implements Collector.Describable {
+
+    private static final String METRICS_EXPORTER_RATE_LIMIT_ALLOWED = "metrics_exporter_rate_limit_allowed";
+    private static final String METRICS_EXPORTER_RATE_LIMIT_ALLOWED_HELP = "Number of requests allowed by the rate limit";
+    private static final String METRICS_EXPORTER_RATE_LIMIT_REJECTED = "metrics_exporter_rate_limit_rejected";
+    private static final String METRICS_EXPORTER_RATE_LIMIT_REJECTED_HELP = "Number of requests rejected by the rate limit";
+    private static final String METRICS_EXPORTER_RATE_LIMIT_CLIENTS = "metrics_exporter_rate_limit_clients";
+    private static final String METRICS_EXPORTER_RATE_LIMIT_CLIENTS_HELP = "Number of clients with a rate limit bucket";
+    private static final String METRICS_EXPORTER_RATE_LIMIT_EVICTIONS = "metrics_exporter_rate_limit_evictions";
+    private static final String METRICS_EXPORTER_RATE_LIMIT_EVICTIONS_HELP = "Number of idle client rate limit buckets evicted";
+    private static final String METRICS_EXPORTER_RATE_LIMIT_SHARED = "metrics_exporter_rate_limit_shared";
+    private static final String METRICS_EXPORTER_RATE_LIMIT_SHARED_HELP = "Number of requests from clients over the maximum clients, using the shared rate limit bucket";
+
+    private static final List<String> ENDPOINT_LABEL_NAMES = Collections.singletonList("endpoint");
+
+    private final Map<String, TokenBucketRateLimiter<?>> tokenBucketRateLimiterMap;
+
+    /**
+     * Constructor
+     *
+     * @param tokenBucketRateLimiterMap the rate limiters by endpoint
+     */
+    public RateLimitCollector(Map<String, TokenBucketRateLimiter<?>> tokenBucketRateLimiterMap) {
+        Precondition.notNull(tokenBucketRateLimiterMap, "tokenBucketRateLimiterMap is null");
+
+        this.tokenBucketRateLimiterMap = tokenBucketRateLimiterMap;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples.Sample> allowedSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> rejectedSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> clientsSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> evictionsSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> sharedSampleList = new ArrayList<>();
+
+        for (Map.Entry<String, TokenBucketRateLimiter<?>> entry : tokenBucketRateLimiterMap.entrySet()) {
+            List<String> labelValues = Collections.singletonList(entry.getKey());
+            TokenBucketRateLimiter<?> tokenBucketRateLimiter = entry.getValue();
+
+            allowedSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_RATE_LIMIT_ALLOWED + "_total", ENDPOINT_LABEL_NAMES, labelValues, tokenBucketRateLimiter.getAllowed()));
+            rejectedSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_RATE_LIMIT_REJECTED + "_total", ENDPOINT_LABEL_NAMES, labelValues, tokenBucketRateLimiter.getRejected()));
+            clientsSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_RATE_LIMIT_CLIENTS, ENDPOINT_LABEL_NAMES, labelValues, tokenBucketRateLimiter.size()));
+            evictionsSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_RATE_LIMIT_EVICTIONS + "_total", ENDPOINT_LABEL_NAMES, labelValues, tokenBucketRateLimiter.getEvicted()));
+            sharedSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_RATE_LIMIT_SHARED + "_total", ENDPOINT_LABEL_NAMES, labelValues, tokenBucketRateLimiter.getShared()));
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>();
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_RATE_LIMIT_ALLOWED, Type.COUNTER, METRICS_EXPORTER_RATE_LIMIT_ALLOWED_HELP, allowedSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_RATE_LIMIT_REJECTED, Type.COUNTER, METRICS_EXPORTER_RATE_LIMIT_REJECTED_HELP, rejectedSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_RATE_LIMIT_CLIENTS, Type.GAUGE, METRICS_EXPORTER_RATE_LIMIT_CLIENTS_HELP, clientsSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_RATE_LIMIT_EVICTIONS, Type.COUNTER, METRICS_EXPORTER_RATE_LIMIT_EVICTIONS_HELP, evictionsSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_RATE_LIMIT_SHARED, Type.COUNTER, METRICS_EXPORTER_RATE_LIMIT_SHARED_HELP, sharedSampleList));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return collect();
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class to handle JMX collector readiness
+ * <p>
+ * The collector starts WAITING for the configured start delay ("startDelaySeconds"), then WARMING
+ * while a background collection builds the collector caches (MBean index, rule caches), then READY.
+ * <p>
+ * Collection of the wrapped collector only occurs once READY. The start delay begins after
+ * the wrapped collector is created, so the wrapped collector's own start delay has always
+ * expired and collection of other metrics is never failed.
+ */
+public class ReadinessCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadinessCollector.class);
+
+    private static final String METRICS_EXPORTER_JMX_READINESS_STATE = "metrics_exporter_jmx_readiness_state";
+    private static final String METRICS_EXPORTER_JMX_READINESS_STATE_HELP = "JMX collection readiness state";
+    private static final String METRICS_EXPORTER_JMX_WARM_UP_DURATION_SECONDS = "metrics_exporter_jmx_warm_up_duration_seconds";
+    private static final String METRICS_EXPORTER_JMX_WARM_UP_DURATION_SECONDS_HELP = "Time the JMX warm-up collection took, in seconds";
+    private static final String METRICS_EXPORTER_JMX_WARM_UP_SAMPLES = "metrics_exporter_jmx_warm_up_samples";
+    private static final String METRICS_EXPORTER_JMX_WARM_UP_SAMPLES_HELP = "Number of samples collected by the JMX warm-up collection";
+
+    private static final List<String> STATE_LABEL_NAMES = Collections.singletonList(METRICS_EXPORTER_JMX_READINESS_STATE);
+
+    /**
+     * Readiness state
+     */
+    public enum State {
+
+        WAITING,
+        WARMING,
+        READY
+    }
+
+    private final Collector collector;
+    private final long startDelayMilliseconds;
+    private final Thread thread;
+
+    private volatile State state;
+    private volatile double warmUpDurationSeconds;
+    private volatile long warmUpSamples;
+
+    /**
+     * Constructor
+     *
+     * @param collector
+     * @param startDelaySeconds
+     */
+    public ReadinessCollector(Collector collector, int startDelaySeconds) {
+        this(collector, startDelaySeconds * 1000L);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param collector
+     * @param startDelayMilliseconds
+     */
+    ReadinessCollector(Collector collector, long startDelayMilliseconds) {
+        Precondition.notNull(collector, "collector is null");
+        Precondition.inRange(startDelayMilliseconds, 0, Long.MAX_VALUE, "startDelayMilliseconds is outside range (0 - " + Long.MAX_VALUE + ")");
+
+        this.collector = collector;
+        this.startDelayMilliseconds = startDelayMilliseconds;
+        this.state = State.WAITING;
+
+        this.thread = new Thread(this::run, "jmx-readiness");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Method to get the readiness state
+     *
+     * @return
+     */
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> metricFamilySamplesList;
+
+        if (state == State.READY) {
+            metricFamilySamplesList = new ArrayList<>(collector.collect());
+        } else {
+            metricFamilySamplesList = new ArrayList<>();
+        }
+
+        State currentState = state;
+        List<MetricFamilySamples.Sample> stateSampleList = new ArrayList<>();
+        for (State state : State.values()) {
+            stateSampleList.add(
+                    new MetricFamilySamples.Sample(
+                            METRICS_EXPORTER_JMX_READINESS_STATE,
+                            STATE_LABEL_NAMES,
+                            Collections.singletonList(state.name().toLowerCase()),
+                            state == currentState ? 1 : 0));
+        }
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_JMX_READINESS_STATE,
+                        Type.STATE_SET,
+                        METRICS_EXPORTER_JMX_READINESS_STATE_HELP,
+                        stateSampleList));
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_JMX_WARM_UP_DURATION_SECONDS,
+                        Type.GAUGE,
+                        METRICS_EXPORTER_JMX_WARM_UP_DURATION_SECONDS_HELP,
+                        Collections.singletonList(
+                                new MetricFamilySamples.Sample(
+                                        METRICS_EXPORTER_JMX_WARM_UP_DURATION_SECONDS,
+                                        Collections.emptyList(),
+                                        Collections.emptyList(),
+                                        warmUpDurationSeconds))));
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_JMX_WARM_UP_SAMPLES,
+                        Type.GAUGE,
+                        METRICS_EXPORTER_JMX_WARM_UP_SAMPLES_HELP,
+                        Collections.singletonList(
+                                new MetricFamilySamples.Sample(
+                                        METRICS_EXPORTER_JMX_WARM_UP_SAMPLES,
+                                        Collections.emptyList(),
+                                        Collections.emptyList(),
+                                        warmUpSamples))));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        // Return an empty list, the wrapped collector isn't collected until ready
+        return new ArrayList<>();
+    }
+
+    /**
+     * Method to close the collector, stopping the warm-up if in progress
+     */
+    public void close() {
+        thread.interrupt();
+    }
+
+    /**
+     * Method to wait for the start delay, then warm up the wrapped collector
+     */
+    private void run() {
+        if (startDelayMilliseconds > 0) {
+            LOGGER.info(String.format("JMX collection waiting for start delay [%d] ms", startDelayMilliseconds));
+
+            try {
+                Thread.sleep(startDelayMilliseconds);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+
+        state = State.WARMING;
+        LOGGER.info("JMX collection warming up");
+
+        long startNanoseconds = System.nanoTime();
+
+        try {
+            long samples = 0;
+            for (MetricFamilySamples metricFamilySamples : collector.collect()) {
+                samples += metricFamilySamples.samples.size();
+            }
+
+            warmUpSamples = samples;
+        } catch (Throwable t) {
+            // Collection errors are reported by scrapes once ready
+            LOGGER.warn(String.format("JMX collection warm-up failed [%s]", t.getMessage()));
+        }
+
+        warmUpDurationSeconds = (System.nanoTime() - startNanoseconds) / NANOSECONDS_PER_SECOND;
+        state = State.READY;
+
+        LOGGER.info(String.format("JMX collection ready, warm-up took [%d] ms", (long) (warmUpDurationSeconds * 1000)));
+    }
+}
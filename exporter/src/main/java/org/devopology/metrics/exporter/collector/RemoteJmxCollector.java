@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.devopology.metrics.exporter.jmx.ObjectNameFilter;
+import org.devopology.metrics.exporter.target.JmxConnectionManager;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class to collect a remote MBeanServer using a persistent connection (standalone mode)
+ * <p>
+ * Uses the default export format, so only supports rules without "name" or "value".
+ * Like the JmxCollector, a failed collection is reported with "jmx_scrape_error" instead of an exception
+ */
+public class RemoteJmxCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteJmxCollector.class);
+
+    private final JmxConnectionManager jmxConnectionManager;
+    private final ObjectNameFilter objectNameFilter;
+    private final DefaultExport defaultExport;
+    private final Map<ObjectName, BeanAttributes> beanAttributesMap;
+
+    private volatile MBeanServerConnection cachedMBeanServerConnection;
+
+    /**
+     * Constructor
+     *
+     * @param jmxConnectionManager
+     * @param objectNameFilter
+     * @param defaultExport
+     */
+    public RemoteJmxCollector(JmxConnectionManager jmxConnectionManager, ObjectNameFilter objectNameFilter, DefaultExport defaultExport) {
+        Precondition.notNull(jmxConnectionManager, "jmxConnectionManager is null");
+        Precondition.notNull(objectNameFilter, "objectNameFilter is null");
+        Precondition.notNull(defaultExport, "defaultExport is null");
+
+        this.jmxConnectionManager = jmxConnectionManager;
+        this.objectNameFilter = objectNameFilter;
+        this.defaultExport = defaultExport;
+        this.beanAttributesMap = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        long startNanoseconds = System.nanoTime();
+        MBeanServerConnection mBeanServerConnection;
+
+        try {
+            // Fails fast if the target isn't connected
+            mBeanServerConnection = jmxConnectionManager.getMBeanServerConnection();
+        } catch (IOException e) {
+            LOGGER.warn(String.format("JMX collection failed [%s]", e.getMessage()));
+            return DefaultExport.getScrapeMetricFamilySamples(System.nanoTime() - startNanoseconds, true);
+        }
+
+        if (mBeanServerConnection != cachedMBeanServerConnection) {
+            // The target may have restarted, so the MBean attributes may have changed
+            beanAttributesMap.clear();
+            cachedMBeanServerConnection = mBeanServerConnection;
+        }
+
+        Map<String, MetricFamilySamples> metricFamilySamplesMap = new TreeMap<>();
+        boolean isError = false;
+
+        try {
+            Set<ObjectName> objectNames = mBeanServerConnection.queryNames(null, null);
+            beanAttributesMap.keySet().retainAll(objectNames);
+
+            for (ObjectName objectName : new TreeSet<>(objectNames)) {
+                if (!objectNameFilter.isIncluded(objectName)) {
+                    continue;
+                }
+
+                BeanAttributes beanAttributes = beanAttributesMap.get(objectName);
+
+                try {
+                    if (beanAttributes == null) {
+                        beanAttributes = new BeanAttributes(objectName, mBeanServerConnection.getMBeanInfo(objectName));
+                        beanAttributesMap.put(objectName, beanAttributes);
+                    }
+
+                    if (beanAttributes.attributeNames.length == 0) {
+                        continue;
+                    }
+
+                    for (Attribute attribute : mBeanServerConnection.getAttributes(objectName, beanAttributes.attributeNames).asList()) {
+                        defaultExport.processBeanValue(
+                                objectName.getDomain(),
+                                beanAttributes.beanProperties,
+                                new LinkedList<>(),
+                                attribute.getName(),
+                                beanAttributes.attributeDescriptionMap.get(attribute.getName()),
+                                attribute.getValue(),
+                                metricFamilySamplesMap);
+                    }
+                } catch (JMException e) {
+                    // The MBean was unregistered
+                    beanAttributesMap.remove(objectName);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof IOException) {
+                jmxConnectionManager.failed(mBeanServerConnection, e);
+            }
+
+            LOGGER.warn(String.format("JMX collection failed [%s]", e.getMessage()));
+            isError = true;
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>(metricFamilySamplesMap.values());
+        metricFamilySamplesList.addAll(DefaultExport.getScrapeMetricFamilySamples(System.nanoTime() - startNanoseconds, isError));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        // Return an empty list, the MBeans are dynamic
+        return new ArrayList<>();
+    }
+
+    /**
+     * Class to cache the readable attributes of an MBean
+     */
+    private static class BeanAttributes {
+
+        private final LinkedHashMap<String, String> beanProperties;
+        private final String[] attributeNames;
+        private final Map<String, String> attributeDescriptionMap;
+
+        /**
+         * Constructor
+         *
+         * @param objectName
+         * @param mBeanInfo
+         */
+        private BeanAttributes(ObjectName objectName, MBeanInfo mBeanInfo) {
+            List<String> attributeNameList = new ArrayList<>();
+            Map<String, String> attributeDescriptionMap = new LinkedHashMap<>();
+
+            for (MBeanAttributeInfo mBeanAttributeInfo : mBeanInfo.getAttributes()) {
+                if (mBeanAttributeInfo.isReadable()) {
+                    attributeNameList.add(mBeanAttributeInfo.getName());
+                    attributeDescriptionMap.put(mBeanAttributeInfo.getName(), mBeanAttributeInfo.getDescription());
+                }
+            }
+
+            this.beanProperties = DefaultExport.getKeyPropertyList(objectName);
+            this.attributeNames = attributeNameList.toArray(new String[0]);
+            this.attributeDescriptionMap = attributeDescriptionMap;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+import io.prometheus.client.Histogram;
+import org.xnio.ChannelListener;
+import org.xnio.ssl.SslConnection;
+
+import javax.net.ssl.SSLSession;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class to collect SSL/TLS handshake, handshake duration, and SSLContext reload metrics
+ * <p>
+ * Set as the Undertow SSL connection listener, a handshake listener is set on each accepted connection.
+ * A handshake is counted as resumed if the negotiated session was created before the connection was accepted
+ * (a resumed session keeps the creation time of the original session, for both session ID / cache and
+ * session ticket resumption)
+ */
+public class SSLCollector extends Collector implements Collector.Describable, ChannelListener<SslConnection> {
+
+    private static final double[] BUCKETS = new double[] {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5 };
+
+    private static final String METRICS_EXPORTER_SSL_HANDSHAKES = "metrics_exporter_ssl_handshakes";
+    private static final String METRICS_EXPORTER_SSL_HANDSHAKES_HELP = "Number of completed SSL/TLS handshakes";
+    private static final String METRICS_EXPORTER_SSL_HANDSHAKE_RESUMPTION_RATIO = "metrics_exporter_ssl_handshake_resumption_ratio";
+    private static final String METRICS_EXPORTER_SSL_HANDSHAKE_RESUMPTION_RATIO_HELP = "Ratio of completed SSL/TLS handshakes that resumed a session";
+    private static final String METRICS_EXPORTER_SSL_CONTEXT_RELOADS = "metrics_exporter_ssl_context_reloads";
+    private static final String METRICS_EXPORTER_SSL_CONTEXT_RELOADS_HELP = "Number of SSLContext reloads after a keystore change";
+
+    private static final List<String> TYPE_LABEL_NAMES = Collections.singletonList("type");
+    private static final List<String> FULL_LABEL_VALUES = Collections.singletonList("full");
+    private static final List<String> RESUMED_LABEL_VALUES = Collections.singletonList("resumed");
+
+    private static final List<String> RESULT_LABEL_NAMES = Collections.singletonList("result");
+    private static final List<String> SUCCESS_LABEL_VALUES = Collections.singletonList("success");
+    private static final List<String> FAILURE_LABEL_VALUES = Collections.singletonList("failure");
+
+    private final LongAdder fullHandshakes;
+    private final LongAdder resumedHandshakes;
+    private final LongAdder successfulReloads;
+    private final LongAdder failedReloads;
+    private final Histogram handshakeDurationHistogram;
+
+    /**
+     * Constructor
+     */
+    public SSLCollector() {
+        this.fullHandshakes = new LongAdder();
+        this.resumedHandshakes = new LongAdder();
+        this.successfulReloads = new LongAdder();
+        this.failedReloads = new LongAdder();
+
+        this.handshakeDurationHistogram = Histogram.build()
+                .name("metrics_exporter_ssl_handshake_duration_seconds")
+                .help("Time from accepting an SSL/TLS connection to completing the handshake, in seconds")
+                .buckets(BUCKETS)
+                .create();
+    }
+
+    /**
+     * Method to handle an accepted SSL connection, before the handshake
+     *
+     * @param sslConnection
+     */
+    @Override
+    public void handleEvent(SslConnection sslConnection) {
+        long acceptedMilliseconds = System.currentTimeMillis();
+        long acceptedNanoseconds = System.nanoTime();
+
+        ChannelListener.Setter<? extends SslConnection> handshakeSetter = sslConnection.getHandshakeSetter();
+        handshakeSetter.set((ChannelListener<SslConnection>) connection -> {
+            // Only count the initial handshake
+            handshakeSetter.set(null);
+
+            handshakeDurationHistogram.observe((System.nanoTime() - acceptedNanoseconds) / NANOSECONDS_PER_SECOND);
+
+            SSLSession sslSession = connection.getSslSession();
+            if ((sslSession != null) && (sslSession.getCreationTime() < acceptedMilliseconds)) {
+                resumedHandshakes.increment();
+            } else {
+                fullHandshakes.increment();
+            }
+        });
+    }
+
+    /**
+     * Method to record an SSLContext reload
+     *
+     * @param isSuccessful
+     */
+    public void reloaded(boolean isSuccessful) {
+        if (isSuccessful) {
+            successfulReloads.increment();
+        } else {
+            failedReloads.increment();
+        }
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        long full = fullHandshakes.sum();
+        long resumed = resumedHandshakes.sum();
+        long total = full + resumed;
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>();
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_SSL_HANDSHAKES,
+                        Type.COUNTER,
+                        METRICS_EXPORTER_SSL_HANDSHAKES_HELP,
+                        Arrays.asList(
+                                new MetricFamilySamples.Sample(METRICS_EXPORTER_SSL_HANDSHAKES + "_total", TYPE_LABEL_NAMES, FULL_LABEL_VALUES, full),
+                                new MetricFamilySamples.Sample(METRICS_EXPORTER_SSL_HANDSHAKES + "_total", TYPE_LABEL_NAMES, RESUMED_LABEL_VALUES, resumed))));
+
+        metricFamilySamplesList.add(
+                new GaugeMetricFamily(
+                        METRICS_EXPORTER_SSL_HANDSHAKE_RESUMPTION_RATIO,
+                        METRICS_EXPORTER_SSL_HANDSHAKE_RESUMPTION_RATIO_HELP,
+                        total > 0 ? (double) resumed / total : 0));
+
+        metricFamilySamplesList.addAll(handshakeDurationHistogram.collect());
+
+        metricFamilySamplesList.add(
+                new MetricFamilySamples(
+                        METRICS_EXPORTER_SSL_CONTEXT_RELOADS,
+                        Type.COUNTER,
+                        METRICS_EXPORTER_SSL_CONTEXT_RELOADS_HELP,
+                        Arrays.asList(
+                                new MetricFamilySamples.Sample(METRICS_EXPORTER_SSL_CONTEXT_RELOADS + "_total", RESULT_LABEL_NAMES, SUCCESS_LABEL_VALUES, successfulReloads.sum()),
+                                new MetricFamilySamples.Sample(METRICS_EXPORTER_SSL_CONTEXT_RELOADS + "_total", RESULT_LABEL_NAMES, FAILURE_LABEL_VALUES, failedReloads.sum()))));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return collect();
+    }
+}
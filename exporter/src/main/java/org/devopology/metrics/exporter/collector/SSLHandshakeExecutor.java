@@ -0,0 +1,200 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Counter;
+import io.prometheus.client.GaugeMetricFamily;
+import io.prometheus.client.Histogram;
+import org.devopology.common.precondition.Precondition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class to implement a bounded, named Executor for SSLEngine delegated tasks (the CPU intensive part
+ * of an SSL/TLS handshake), so handshake bursts don't run on (and stall) the Undertow IO and worker threads
+ * <p>
+ * A delegated task can't be dropped without stalling the handshake. If the queue is full, or the Executor
+ * is closed, the task runs on the fallback Executor (the XNIO worker), or the calling thread if there
+ * isn't a fallback Executor. Once closed, queued tasks still run
+ * <p>
+ * Exports the queue depth, active threads, queue wait time, task duration, and fallback runs
+ */
+public class SSLHandshakeExecutor extends Collector implements Collector.Describable, Executor {
+
+    private static final double[] BUCKETS = new double[] {
+            0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1 };
+
+    private static final String METRICS_EXPORTER_SSL_HANDSHAKE_EXECUTOR_THREADS = "metrics_exporter_ssl_handshake_executor_threads";
+    private static final String METRICS_EXPORTER_SSL_HANDSHAKE_EXECUTOR_ACTIVE_THREADS = "metrics_exporter_ssl_handshake_executor_active_threads";
+    private static final String METRICS_EXPORTER_SSL_HANDSHAKE_EXECUTOR_QUEUE_DEPTH = "metrics_exporter_ssl_handshake_executor_queue_depth";
+
+    private final int threads;
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final Histogram queueWaitHistogram;
+    private final Histogram taskDurationHistogram;
+    private final Counter fallbackRunsCounter;
+    private volatile Executor fallbackExecutor;
+
+    /**
+     * Constructor
+     *
+     * @param threads
+     * @param queueCapacity
+     * @param threadFactory
+     */
+    public SSLHandshakeExecutor(int threads, int queueCapacity, ThreadFactory threadFactory) {
+        Precondition.inRange(threads, 1, Integer.MAX_VALUE, "threads is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.inRange(queueCapacity, 1, Integer.MAX_VALUE, "queueCapacity is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.notNull(threadFactory, "threadFactory is null");
+
+        this.threads = threads;
+
+        this.queueWaitHistogram = Histogram.build()
+                .name("metrics_exporter_ssl_handshake_executor_queue_wait_seconds")
+                .help("Time SSL/TLS handshake tasks waited in the handshake executor queue, in seconds")
+                .buckets(BUCKETS)
+                .create();
+
+        this.taskDurationHistogram = Histogram.build()
+                .name("metrics_exporter_ssl_handshake_executor_task_duration_seconds")
+                .help("Time SSL/TLS handshake tasks took to run, in seconds")
+                .buckets(BUCKETS)
+                .create();
+
+        this.fallbackRunsCounter = Counter.build()
+                .name("metrics_exporter_ssl_handshake_executor_fallback_runs")
+                .help("Number of SSL/TLS handshake tasks run on the fallback executor because the handshake executor queue was full")
+                .create();
+
+        this.threadPoolExecutor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                (runnable, threadPoolExecutor) -> {
+                    if (!threadPoolExecutor.isShutdown()) {
+                        fallbackRunsCounter.inc();
+                    }
+
+                    fallback(runnable);
+                });
+    }
+
+    /**
+     * Method to set the fallback Executor, used if the queue is full or the Executor is closed.
+     * If not set, the task runs on the calling thread (an Undertow IO thread)
+     *
+     * @param fallbackExecutor
+     */
+    public void setFallbackExecutor(Executor fallbackExecutor) {
+        Precondition.notNull(fallbackExecutor, "fallbackExecutor is null");
+
+        this.fallbackExecutor = fallbackExecutor;
+    }
+
+    /**
+     * Method to execute an SSLEngine delegated task
+     *
+     * @param task
+     */
+    @Override
+    public void execute(Runnable task) {
+        long queuedNanoseconds = System.nanoTime();
+
+        threadPoolExecutor.execute(() -> {
+            long startNanoseconds = System.nanoTime();
+            queueWaitHistogram.observe((startNanoseconds - queuedNanoseconds) / NANOSECONDS_PER_SECOND);
+
+            try {
+                task.run();
+            } finally {
+                taskDurationHistogram.observe((System.nanoTime() - startNanoseconds) / NANOSECONDS_PER_SECOND);
+            }
+        });
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>();
+
+        metricFamilySamplesList.add(
+                new GaugeMetricFamily(
+                        METRICS_EXPORTER_SSL_HANDSHAKE_EXECUTOR_THREADS,
+                        "Number of SSL/TLS handshake executor threads",
+                        threads));
+
+        metricFamilySamplesList.add(
+                new GaugeMetricFamily(
+                        METRICS_EXPORTER_SSL_HANDSHAKE_EXECUTOR_ACTIVE_THREADS,
+                        "Number of SSL/TLS handshake executor threads running a task",
+                        threadPoolExecutor.getActiveCount()));
+
+        metricFamilySamplesList.add(
+                new GaugeMetricFamily(
+                        METRICS_EXPORTER_SSL_HANDSHAKE_EXECUTOR_QUEUE_DEPTH,
+                        "Number of SSL/TLS handshake tasks waiting in the handshake executor queue",
+                        threadPoolExecutor.getQueue().size()));
+
+        metricFamilySamplesList.addAll(queueWaitHistogram.collect());
+        metricFamilySamplesList.addAll(taskDurationHistogram.collect());
+        metricFamilySamplesList.addAll(fallbackRunsCounter.collect());
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return collect();
+    }
+
+    /**
+     * Method to close the Executor, queued tasks still run, new tasks run on the fallback Executor
+     */
+    public void close() {
+        threadPoolExecutor.shutdown();
+    }
+
+    /**
+     * Method to run a task on the fallback Executor, or the calling thread if there isn't a
+     * fallback Executor or it rejects the task (e.g. the XNIO worker is shutting down)
+     *
+     * @param runnable
+     */
+    private void fallback(Runnable runnable) {
+        Executor executor = fallbackExecutor;
+        if (executor != null) {
+            try {
+                executor.execute(runnable);
+                return;
+            } catch (RejectedExecutionException e) {
+                // DO NOTHING
+            }
+        }
+
+        runnable.run();
+    }
+}
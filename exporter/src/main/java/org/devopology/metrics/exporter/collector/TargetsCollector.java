@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.target.JmxConnectionManager;
+import org.devopology.metrics.exporter.target.Target;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class to collect target scrape metrics (standalone mode)
+ */
+public class TargetsCollector extends Collector implements Collector.Describable {
+
+    private static final String METRICS_EXPORTER_TARGET_SCRAPES = "metrics_exporter_target_scrapes";
+    private static final String METRICS_EXPORTER_TARGET_SCRAPES_HELP = "Number of target scrapes";
+    private static final String METRICS_EXPORTER_TARGET_SCRAPE_FAILURES = "metrics_exporter_target_scrape_failures";
+    private static final String METRICS_EXPORTER_TARGET_SCRAPE_FAILURES_HELP = "Number of failed target scrapes";
+    private static final String METRICS_EXPORTER_TARGET_SCRAPE_REJECTIONS = "metrics_exporter_target_scrape_rejections";
+    private static final String METRICS_EXPORTER_TARGET_SCRAPE_REJECTIONS_HELP = "Number of target scrapes rejected due to the concurrent scrape limit";
+    private static final String METRICS_EXPORTER_TARGET_SCRAPE_DURATION_SECONDS = "metrics_exporter_target_scrape_duration_seconds";
+    private static final String METRICS_EXPORTER_TARGET_SCRAPE_DURATION_SECONDS_HELP = "Time the last target scrape took, in seconds";
+    private static final String METRICS_EXPORTER_TARGET_UP = "metrics_exporter_target_up";
+    private static final String METRICS_EXPORTER_TARGET_UP_HELP = "Whether the last target scrape succeeded";
+    private static final String METRICS_EXPORTER_TARGET_CONNECTION_STATE = "metrics_exporter_target_connection_state";
+    private static final String METRICS_EXPORTER_TARGET_CONNECTION_STATE_HELP = "Target JMX connection state";
+    private static final String METRICS_EXPORTER_TARGET_CONNECTS = "metrics_exporter_target_connects";
+    private static final String METRICS_EXPORTER_TARGET_CONNECTS_HELP = "Number of successful target JMX connects";
+    private static final String METRICS_EXPORTER_TARGET_CONNECT_FAILURES = "metrics_exporter_target_connect_failures";
+    private static final String METRICS_EXPORTER_TARGET_CONNECT_FAILURES_HELP = "Number of failed target JMX connects";
+    private static final String METRICS_EXPORTER_TARGET_CONNECTION_LOSSES = "metrics_exporter_target_connection_losses";
+    private static final String METRICS_EXPORTER_TARGET_CONNECTION_LOSSES_HELP = "Number of target JMX connections lost";
+    private static final String METRICS_EXPORTER_TARGET_CONNECT_DURATION_SECONDS = "metrics_exporter_target_connect_duration_seconds";
+    private static final String METRICS_EXPORTER_TARGET_CONNECT_DURATION_SECONDS_HELP = "Time the last target JMX connect took, in seconds";
+    private static final String METRICS_EXPORTER_TARGET_RECONNECT_DURATION_SECONDS = "metrics_exporter_target_reconnect_duration_seconds";
+    private static final String METRICS_EXPORTER_TARGET_RECONNECT_DURATION_SECONDS_HELP = "Time from the last target JMX connection loss until reconnected, in seconds";
+
+    private static final List<String> TARGET_LABEL_NAMES = Collections.singletonList("target");
+    private static final List<String> TARGET_STATE_LABEL_NAMES = Arrays.asList("target", METRICS_EXPORTER_TARGET_CONNECTION_STATE);
+
+    private final Collection<Target> targets;
+
+    /**
+     * Constructor
+     *
+     * @param targets
+     */
+    public TargetsCollector(Collection<Target> targets) {
+        Precondition.notNull(targets, "targets is null");
+
+        this.targets = targets;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples.Sample> scrapesSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> failuresSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> rejectionsSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> durationSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> upSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> connectionStateSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> connectsSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> connectFailuresSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> connectionLossesSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> connectDurationSampleList = new ArrayList<>();
+        List<MetricFamilySamples.Sample> reconnectDurationSampleList = new ArrayList<>();
+
+        for (Target target : targets) {
+            List<String> labelValues = Collections.singletonList(target.getName());
+
+            scrapesSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_SCRAPES + "_total", TARGET_LABEL_NAMES, labelValues, target.getScrapes()));
+            failuresSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_SCRAPE_FAILURES + "_total", TARGET_LABEL_NAMES, labelValues, target.getFailures()));
+            rejectionsSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_SCRAPE_REJECTIONS + "_total", TARGET_LABEL_NAMES, labelValues, target.getRejections()));
+            durationSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_SCRAPE_DURATION_SECONDS, TARGET_LABEL_NAMES, labelValues, target.getLastScrapeDurationSeconds()));
+            upSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_UP, TARGET_LABEL_NAMES, labelValues, target.isLastScrapeSuccess() ? 1 : 0));
+
+            JmxConnectionManager jmxConnectionManager = target.getJmxConnectionManager();
+            JmxConnectionManager.State currentState = jmxConnectionManager.getState();
+            for (JmxConnectionManager.State state : JmxConnectionManager.State.values()) {
+                connectionStateSampleList.add(
+                        new MetricFamilySamples.Sample(
+                                METRICS_EXPORTER_TARGET_CONNECTION_STATE,
+                                TARGET_STATE_LABEL_NAMES,
+                                Arrays.asList(target.getName(), state.name().toLowerCase()),
+                                state == currentState ? 1 : 0));
+            }
+
+            connectsSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_CONNECTS + "_total", TARGET_LABEL_NAMES, labelValues, jmxConnectionManager.getConnects()));
+            connectFailuresSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_CONNECT_FAILURES + "_total", TARGET_LABEL_NAMES, labelValues, jmxConnectionManager.getConnectFailures()));
+            connectionLossesSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_CONNECTION_LOSSES + "_total", TARGET_LABEL_NAMES, labelValues, jmxConnectionManager.getConnectionLosses()));
+            connectDurationSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_CONNECT_DURATION_SECONDS, TARGET_LABEL_NAMES, labelValues, jmxConnectionManager.getLastConnectDurationSeconds()));
+            reconnectDurationSampleList.add(new MetricFamilySamples.Sample(METRICS_EXPORTER_TARGET_RECONNECT_DURATION_SECONDS, TARGET_LABEL_NAMES, labelValues, jmxConnectionManager.getLastReconnectDurationSeconds()));
+        }
+
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>();
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_SCRAPES, Type.COUNTER, METRICS_EXPORTER_TARGET_SCRAPES_HELP, scrapesSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_SCRAPE_FAILURES, Type.COUNTER, METRICS_EXPORTER_TARGET_SCRAPE_FAILURES_HELP, failuresSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_SCRAPE_REJECTIONS, Type.COUNTER, METRICS_EXPORTER_TARGET_SCRAPE_REJECTIONS_HELP, rejectionsSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_SCRAPE_DURATION_SECONDS, Type.GAUGE, METRICS_EXPORTER_TARGET_SCRAPE_DURATION_SECONDS_HELP, durationSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_UP, Type.GAUGE, METRICS_EXPORTER_TARGET_UP_HELP, upSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_CONNECTION_STATE, Type.STATE_SET, METRICS_EXPORTER_TARGET_CONNECTION_STATE_HELP, connectionStateSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_CONNECTS, Type.COUNTER, METRICS_EXPORTER_TARGET_CONNECTS_HELP, connectsSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_CONNECT_FAILURES, Type.COUNTER, METRICS_EXPORTER_TARGET_CONNECT_FAILURES_HELP, connectFailuresSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_CONNECTION_LOSSES, Type.COUNTER, METRICS_EXPORTER_TARGET_CONNECTION_LOSSES_HELP, connectionLossesSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_CONNECT_DURATION_SECONDS, Type.GAUGE, METRICS_EXPORTER_TARGET_CONNECT_DURATION_SECONDS_HELP, connectDurationSampleList));
+        metricFamilySamplesList.add(new MetricFamilySamples(METRICS_EXPORTER_TARGET_RECONNECT_DURATION_SECONDS, Type.GAUGE, METRICS_EXPORTER_TARGET_RECONNECT_DURATION_SECONDS_HELP, reconnectDurationSampleList));
+
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return collect();
+    }
+}
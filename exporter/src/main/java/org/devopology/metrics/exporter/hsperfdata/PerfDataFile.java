@@ -0,0 +1,290 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.hsperfdata;
+
+import org.devopology.common.precondition.Precondition;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class to read a HotSpot performance data ("hsperfdata_<user>/<pid>") file
+ * <p>
+ * The file is memory mapped read only. The counter directory is parsed once, after which
+ * counter values are read directly from the mapped memory
+ */
+public class PerfDataFile {
+
+    private static final int MAGIC = 0xCAFEC0C0;
+    private static final int PROLOGUE_SIZE = 32;
+
+    private static final int BYTE_ORDER_OFFSET = 4;
+    private static final int MAJOR_VERSION_OFFSET = 5;
+    private static final int ACCESSIBLE_OFFSET = 7;
+    private static final int ENTRY_OFFSET_OFFSET = 24;
+    private static final int NUM_ENTRIES_OFFSET = 28;
+
+    private static final byte BYTE_ORDER_BIG_ENDIAN = 0;
+    private static final byte TYPE_LONG = 'J';
+    private static final byte TYPE_BYTE = 'B';
+
+    /**
+     * Counter units
+     */
+    public enum Units {
+
+        NONE,
+        BYTES,
+        TICKS,
+        EVENTS,
+        STRING,
+        HERTZ;
+
+        private static Units decode(byte value) {
+            if ((value >= 1) && (value <= values().length)) {
+                return values()[value - 1];
+            }
+
+            return NONE;
+        }
+    }
+
+    /**
+     * Counter variability
+     */
+    public enum Variability {
+
+        CONSTANT,
+        MONOTONIC,
+        VARIABLE;
+
+        private static Variability decode(byte value) {
+            if (value == 2) {
+                return MONOTONIC;
+            } else if (value == 3) {
+                return VARIABLE;
+            }
+
+            return CONSTANT;
+        }
+    }
+
+    /**
+     * Class to describe a long counter
+     */
+    public static class Counter {
+
+        private final String name;
+        private final Units units;
+        private final Variability variability;
+        private final int offset;
+
+        private Counter(String name, Units units, Variability variability, int offset) {
+            this.name = name;
+            this.units = units;
+            this.variability = variability;
+            this.offset = offset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Units getUnits() {
+            return units;
+        }
+
+        public Variability getVariability() {
+            return variability;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+    }
+
+    private final Path path;
+    private final MappedByteBuffer mappedByteBuffer;
+    private final int numEntries;
+    private final List<Counter> counterList;
+    private final List<String> stringNameList;
+    private final List<String> stringValueList;
+
+    /**
+     * Constructor
+     *
+     * @param path
+     * @throws IOException if the file can't be read, or isn't a valid (accessible) performance data file
+     */
+    public PerfDataFile(Path path) throws IOException {
+        Precondition.notNull(path, "path is null");
+
+        this.path = path;
+
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = fileChannel.size();
+            if (size < PROLOGUE_SIZE) {
+                throw new IOException(String.format("[%s] is too small", path));
+            }
+
+            // The mapping remains valid after the channel is closed
+            mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        mappedByteBuffer.order(ByteOrder.BIG_ENDIAN);
+        if (mappedByteBuffer.getInt(0) != MAGIC) {
+            throw new IOException(String.format("[%s] isn't a performance data file", path));
+        }
+
+        if (mappedByteBuffer.get(BYTE_ORDER_OFFSET) != BYTE_ORDER_BIG_ENDIAN) {
+            mappedByteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (mappedByteBuffer.get(MAJOR_VERSION_OFFSET) != 2) {
+            throw new IOException(String.format("[%s] version [%d] isn't supported", path, mappedByteBuffer.get(MAJOR_VERSION_OFFSET)));
+        }
+
+        if (mappedByteBuffer.get(ACCESSIBLE_OFFSET) == 0) {
+            throw new IOException(String.format("[%s] isn't accessible", path));
+        }
+
+        this.numEntries = mappedByteBuffer.getInt(NUM_ENTRIES_OFFSET);
+        this.counterList = new ArrayList<>();
+        this.stringNameList = new ArrayList<>();
+        this.stringValueList = new ArrayList<>();
+
+        parse();
+    }
+
+    /**
+     * Method to get the file path
+     *
+     * @return
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Method to get the long counters
+     *
+     * @return
+     */
+    public List<Counter> getCounterList() {
+        return Collections.unmodifiableList(counterList);
+    }
+
+    /**
+     * Method to get a string counter value (read once, when the file is parsed)
+     *
+     * @param name
+     * @return the value, or null if the counter doesn't exist
+     */
+    public String getString(String name) {
+        int index = stringNameList.indexOf(name);
+        if (index == -1) {
+            return null;
+        }
+
+        return stringValueList.get(index);
+    }
+
+    /**
+     * Method to get a long counter value
+     *
+     * @param counter
+     * @return
+     */
+    public long getLong(Counter counter) {
+        return mappedByteBuffer.getLong(counter.offset);
+    }
+
+    /**
+     * Method to determine whether counters have been added since the file was parsed
+     *
+     * @return
+     */
+    public boolean isModified() {
+        return mappedByteBuffer.getInt(NUM_ENTRIES_OFFSET) != numEntries;
+    }
+
+    /**
+     * Method to parse the counter directory
+     */
+    private void parse() throws IOException {
+        int capacity = mappedByteBuffer.capacity();
+        int position = mappedByteBuffer.getInt(ENTRY_OFFSET_OFFSET);
+
+        for (int i = 0; i < numEntries; i++) {
+            if ((position < PROLOGUE_SIZE) || (position + 20 > capacity)) {
+                throw new IOException(String.format("[%s] entry [%d] is invalid", path, i));
+            }
+
+            int entryLength = mappedByteBuffer.getInt(position);
+            int nameOffset = mappedByteBuffer.getInt(position + 4);
+            int vectorLength = mappedByteBuffer.getInt(position + 8);
+            byte dataType = mappedByteBuffer.get(position + 12);
+            byte units = mappedByteBuffer.get(position + 14);
+            byte variability = mappedByteBuffer.get(position + 15);
+            int dataOffset = mappedByteBuffer.getInt(position + 16);
+
+            if ((entryLength <= 0) || (position + entryLength > capacity)) {
+                throw new IOException(String.format("[%s] entry [%d] is invalid", path, i));
+            }
+
+            String name = readString(position + nameOffset, position + dataOffset);
+
+            if ((vectorLength == 0) && (dataType == TYPE_LONG)) {
+                counterList.add(new Counter(name, Units.decode(units), Variability.decode(variability), position + dataOffset));
+            } else if ((vectorLength > 0) && (dataType == TYPE_BYTE) && (Units.decode(units) == Units.STRING)) {
+                stringNameList.add(name);
+                stringValueList.add(readString(position + dataOffset, Math.min(position + dataOffset + vectorLength, capacity)));
+            }
+
+            position += entryLength;
+        }
+    }
+
+    /**
+     * Method to read a null terminated string
+     *
+     * @param start
+     * @param limit
+     * @return
+     */
+    private String readString(int start, int limit) {
+        int end = start;
+        while ((end < limit) && (mappedByteBuffer.get(end) != 0)) {
+            end++;
+        }
+
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = mappedByteBuffer.get(start + i);
+        }
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,952 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.jmx;
+
+import io.prometheus.client.Collector;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class to produce samples for MBean attribute values using the JMX exporter default export format
+ * <p>
+ * Mirrors the naming, labels, help, and value handling of the JMX exporter (io.prometheus.jmx) 0.17.0
+ * for rules that don't define a "name" (default export), so that attributes collected outside of the
+ * JmxCollector produce identical samples
+ * <p>
+ * Rules that define a "name" (custom export) aren't supported, see isDefaultExportOnly()
+ */
+@SuppressWarnings("unchecked")
+public class DefaultExport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DefaultExport.class);
+
+    private static final String SEPARATOR = "_";
+
+    private static final String JMX_SCRAPE_DURATION_SECONDS = "jmx_scrape_duration_seconds";
+    private static final String JMX_SCRAPE_ERROR = "jmx_scrape_error";
+    private static final String JMX_SCRAPE_CACHED_BEANS = "jmx_scrape_cached_beans";
+
+    private static final int MAXIMUM_PLANS = 10000;
+
+    // One sample plan per MBean attribute (value), so allow more than the type plans
+    private static final int MAXIMUM_SAMPLE_PLANS = 100000;
+
+    private static final ValueExtractor NUMBER_VALUE_EXTRACTOR = (value, valueFactor) -> ((Number) value).doubleValue() * valueFactor;
+    private static final ValueExtractor BOOLEAN_VALUE_EXTRACTOR = (value, valueFactor) -> (Boolean) value ? 1 : 0;
+
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile(
+            "([^,=:\\*\\?]+)" + "=" + "(\"(?:[^\\\\\"]*(?:\\\\.)?)*\"|[^,=:\"]*)");
+
+    private final boolean lowercaseOutputName;
+    private final boolean lowercaseOutputLabelNames;
+    private final List<Rule> ruleList;
+    private final boolean isDefaultExportOnly;
+    private final boolean isPatternUsed;
+    private final boolean isAttrNameSnakeCaseUsed;
+    private final Map<CompositeType, CompositePlan> compositePlanMap;
+    private final Map<TabularType, TabularPlan> tabularPlanMap;
+    private final Map<String, String> labelNameMap;
+    private final Map<SamplePlanKey, SamplePlan> samplePlanMap;
+
+    /**
+     * Constructor
+     *
+     * @param jmxConfigurationMap
+     */
+    public DefaultExport(Map<String, Object> jmxConfigurationMap) {
+        Precondition.notNull(jmxConfigurationMap, "jmxConfigurationMap is null");
+
+        this.lowercaseOutputName = Boolean.TRUE.equals(jmxConfigurationMap.get("lowercaseOutputName"));
+        this.lowercaseOutputLabelNames = Boolean.TRUE.equals(jmxConfigurationMap.get("lowercaseOutputLabelNames"));
+        this.ruleList = new ArrayList<>();
+        this.compositePlanMap = new ConcurrentHashMap<>();
+        this.tabularPlanMap = new ConcurrentHashMap<>();
+        this.labelNameMap = new ConcurrentHashMap<>();
+        this.samplePlanMap = new ConcurrentHashMap<>();
+
+        boolean isDefaultExportOnly = true;
+        boolean isPatternUsed = false;
+        boolean isAttrNameSnakeCaseUsed = false;
+
+        Object rules = jmxConfigurationMap.get("rules");
+        if (rules instanceof List) {
+            for (Map<String, Object> ruleMap : (List<Map<String, Object>>) rules) {
+                Rule rule = new Rule();
+
+                if (ruleMap.containsKey("pattern")) {
+                    rule.pattern = Pattern.compile("^.*(?:" + ruleMap.get("pattern") + ").*$");
+                    isPatternUsed = true;
+                }
+
+                if (ruleMap.containsKey("valueFactor")) {
+                    try {
+                        rule.valueFactor = Double.valueOf(String.valueOf(ruleMap.get("valueFactor")));
+                    } catch (NumberFormatException e) {
+                        // DO NOTHING, matches the JMX exporter
+                    }
+                }
+
+                if (ruleMap.containsKey("attrNameSnakeCase")) {
+                    rule.attrNameSnakeCase = Boolean.TRUE.equals(ruleMap.get("attrNameSnakeCase"));
+                    isAttrNameSnakeCaseUsed |= rule.attrNameSnakeCase;
+                }
+
+                if (ruleMap.containsKey("type")) {
+                    String type = String.valueOf(ruleMap.get("type"));
+                    if ("UNTYPED".equals(type)) {
+                        type = "UNKNOWN";
+                    }
+
+                    rule.type = Collector.Type.valueOf(type);
+                }
+
+                if (ruleMap.containsKey("name") || ruleMap.containsKey("value")) {
+                    isDefaultExportOnly = false;
+                }
+
+                ruleList.add(rule);
+            }
+        } else {
+            // Default to a single default rule
+            ruleList.add(new Rule());
+        }
+
+        this.isDefaultExportOnly = isDefaultExportOnly;
+        this.isPatternUsed = isPatternUsed;
+        this.isAttrNameSnakeCaseUsed = isAttrNameSnakeCaseUsed;
+    }
+
+    /**
+     * Method to determine whether all configured rules use the default export format
+     *
+     * @return
+     */
+    public boolean isDefaultExportOnly() {
+        return isDefaultExportOnly;
+    }
+
+    /**
+     * Method to process an MBean attribute value, adding samples to the MetricFamilySamples map
+     *
+     * @param domain
+     * @param beanProperties
+     * @param attrKeys
+     * @param attrName
+     * @param attrDescription
+     * @param value
+     * @param metricFamilySamplesMap
+     */
+    public void processBeanValue(
+            String domain,
+            LinkedHashMap<String, String> beanProperties,
+            LinkedList<String> attrKeys,
+            String attrName,
+            String attrDescription,
+            Object value,
+            Map<String, Collector.MetricFamilySamples> metricFamilySamplesMap) {
+        if (value == null) {
+            return;
+        }
+
+        if ((value instanceof Number) || (value instanceof String) || (value instanceof Boolean) || (value instanceof Date)) {
+            if (value instanceof Date) {
+                value = ((Date) value).getTime() / 1000.0;
+            }
+
+            recordBean(domain, beanProperties, attrKeys, attrName, attrDescription, value, metricFamilySamplesMap);
+        } else if (value instanceof CompositeData) {
+            CompositeData compositeData = (CompositeData) value;
+            CompositePlan compositePlan = getCompositePlan(compositeData.getCompositeType());
+            Object[] values = compositeData.getAll(compositePlan.keys);
+
+            attrKeys = new LinkedList<>(attrKeys);
+            attrKeys.add(attrName);
+
+            // The composite type description is used for every key, matches the JMX exporter
+            for (int i = 0; i < compositePlan.keys.length; i++) {
+                processBeanValue(
+                        domain,
+                        beanProperties,
+                        attrKeys,
+                        compositePlan.keys[i],
+                        compositePlan.description,
+                        values[i],
+                        metricFamilySamplesMap);
+            }
+        } else if (value instanceof TabularData) {
+            // The JMX exporter only supports TabularData with composite rows
+            TabularData tabularData = (TabularData) value;
+            TabularPlan tabularPlan = getTabularPlan(tabularData.getTabularType());
+
+            LinkedList<String> extendedAttrKeys = new LinkedList<>(attrKeys);
+            extendedAttrKeys.add(attrName);
+
+            for (Object row : tabularData.values()) {
+                if (!(row instanceof CompositeData)) {
+                    continue;
+                }
+
+                CompositeData compositeData = (CompositeData) row;
+                Object[] indexValues = compositeData.getAll(tabularPlan.indexNames);
+                Object[] values = compositeData.getAll(tabularPlan.valueKeys);
+
+                LinkedHashMap<String, String> labels = new LinkedHashMap<>(beanProperties);
+                for (int i = 0; i < tabularPlan.indexNames.length; i++) {
+                    if (indexValues[i] != null) {
+                        // Nested TabularData repeats index names, so append a suffix until the label name is unique
+                        String indexLabelName = tabularPlan.indexNames[i];
+                        while (labels.containsKey(indexLabelName)) {
+                            indexLabelName = indexLabelName + "_";
+                        }
+
+                        labels.put(indexLabelName, indexValues[i].toString());
+                    }
+                }
+
+                for (int i = 0; i < tabularPlan.valueKeys.length; i++) {
+                    // A "value" key isn't appended to the name
+                    boolean isValue = tabularPlan.isValueKeys[i];
+
+                    processBeanValue(
+                            domain,
+                            labels,
+                            isValue ? attrKeys : extendedAttrKeys,
+                            isValue ? attrName : tabularPlan.valueKeys[i],
+                            tabularPlan.description,
+                            values[i],
+                            metricFamilySamplesMap);
+                }
+            }
+        } else if (value instanceof Optional) {
+            Optional<?> optional = (Optional<?>) value;
+            if (optional.isPresent()) {
+                processBeanValue(
+                        domain,
+                        beanProperties,
+                        attrKeys,
+                        attrName,
+                        attrDescription,
+                        optional.get(),
+                        metricFamilySamplesMap);
+            }
+        }
+
+        // Arrays and other types aren't exported, matches the JMX exporter
+    }
+
+    /**
+     * Method to record a simple MBean attribute value
+     *
+     * @param domain
+     * @param beanProperties
+     * @param attrKeys
+     * @param attrName
+     * @param attrDescription
+     * @param beanValue
+     * @param metricFamilySamplesMap
+     */
+    private void recordBean(
+            String domain,
+            LinkedHashMap<String, String> beanProperties,
+            LinkedList<String> attrKeys,
+            String attrName,
+            String attrDescription,
+            Object beanValue,
+            Map<String, Collector.MetricFamilySamples> metricFamilySamplesMap) {
+        SamplePlan samplePlan = getSamplePlan(domain, beanProperties, attrKeys, attrName, attrDescription, beanValue);
+
+        ValueExtractor valueExtractor = samplePlan.getValueExtractor(beanValue);
+        if (valueExtractor == null) {
+            // Unsupported value type, matches the JMX exporter
+            return;
+        }
+
+        for (Rule rule : ruleList) {
+            if (rule.pattern != null) {
+                String matchName = rule.attrNameSnakeCase ? samplePlan.snakeCaseMatchName : samplePlan.matchName;
+                Matcher matcher = rule.pattern.matcher(matchName + ": " + beanValue);
+                if (!matcher.matches()) {
+                    continue;
+                }
+            }
+
+            addSample(
+                    samplePlan,
+                    rule.attrNameSnakeCase ? samplePlan.snakeCaseName : samplePlan.name,
+                    valueExtractor.getValue(beanValue, rule.valueFactor),
+                    rule.type,
+                    metricFamilySamplesMap);
+
+            return;
+        }
+    }
+
+    /**
+     * Method to add a sample using the default export format
+     *
+     * @param samplePlan
+     * @param name
+     * @param value
+     * @param type
+     * @param metricFamilySamplesMap
+     */
+    private void addSample(
+            SamplePlan samplePlan,
+            String name,
+            double value,
+            Collector.Type type,
+            Map<String, Collector.MetricFamilySamples> metricFamilySamplesMap) {
+        Collector.MetricFamilySamples metricFamilySamples = metricFamilySamplesMap.get(name);
+        if (metricFamilySamples == null) {
+            // The help is only used for the first sample of a family, so isn't part of the plan
+            metricFamilySamples = new DefaultExportMetricFamilySamples(name, type, samplePlan.getHelp());
+            metricFamilySamplesMap.put(name, metricFamilySamples);
+        }
+
+        if (!isFirstOccurrence(metricFamilySamples, samplePlan.labelNames, samplePlan.labelValues)) {
+            // Sanitized names can collide, keep the first occurrence, matches the JMX exporter
+            LOGGER.trace(
+                    String.format(
+                            "Metric [%s%s%s] was created multiple times, keeping the first occurrence",
+                            name,
+                            samplePlan.labelNames,
+                            samplePlan.labelValues));
+
+            return;
+        }
+
+        metricFamilySamples.samples.add(
+                new Collector.MetricFamilySamples.Sample(name, samplePlan.labelNames, samplePlan.labelValues, value));
+    }
+
+    /**
+     * Method to get the (cached) sample plan for an MBean attribute value
+     *
+     * @param domain
+     * @param beanProperties
+     * @param attrKeys
+     * @param attrName
+     * @param attrDescription
+     * @param beanValue
+     * @return
+     */
+    private SamplePlan getSamplePlan(
+            String domain,
+            LinkedHashMap<String, String> beanProperties,
+            LinkedList<String> attrKeys,
+            String attrName,
+            String attrDescription,
+            Object beanValue) {
+        SamplePlanKey samplePlanKey = new SamplePlanKey(domain, beanProperties, attrKeys, attrName, attrDescription);
+        SamplePlan samplePlan = samplePlanMap.get(samplePlanKey);
+        if (samplePlan == null) {
+            if (samplePlanMap.size() >= MAXIMUM_SAMPLE_PLANS) {
+                // Guard against MBeans that create a new ObjectName or TabularData row for every value
+                samplePlanMap.clear();
+            }
+
+            // Copy the key, so the plan doesn't depend on the caller not modifying beanProperties or attrKeys
+            samplePlanKey =
+                    new SamplePlanKey(
+                            domain,
+                            new LinkedHashMap<>(beanProperties),
+                            new LinkedList<>(attrKeys),
+                            attrName,
+                            attrDescription);
+
+            samplePlan = new SamplePlan(samplePlanKey, beanValue);
+            samplePlanMap.put(samplePlanKey, samplePlan);
+        }
+
+        return samplePlan;
+    }
+
+    /**
+     * Method to get the sample name using the default export format
+     *
+     * @param domain
+     * @param beanProperties
+     * @param attrKeys
+     * @param attrName
+     * @return
+     */
+    private String getName(String domain, LinkedHashMap<String, String> beanProperties, List<String> attrKeys, String attrName) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(domain);
+
+        if (!beanProperties.isEmpty()) {
+            stringBuilder.append(SEPARATOR);
+            stringBuilder.append(beanProperties.values().iterator().next());
+        }
+
+        for (String attrKey : attrKeys) {
+            stringBuilder.append(SEPARATOR);
+            stringBuilder.append(attrKey);
+        }
+
+        stringBuilder.append(SEPARATOR);
+        stringBuilder.append(attrName);
+
+        String name = safeName(stringBuilder.toString());
+        if (lowercaseOutputName) {
+            name = name.toLowerCase();
+        }
+
+        return name;
+    }
+
+    /**
+     * Method to determine whether a sample (label names and label values) is the first occurrence in a MetricFamilySamples
+     *
+     * @param metricFamilySamples
+     * @param labelNames
+     * @param labelValues
+     * @return
+     */
+    private static boolean isFirstOccurrence(
+            Collector.MetricFamilySamples metricFamilySamples, List<String> labelNames, List<String> labelValues) {
+        if (metricFamilySamples instanceof DefaultExportMetricFamilySamples) {
+            return ((DefaultExportMetricFamilySamples) metricFamilySamples).sampleKeySet.add(Arrays.asList(labelNames, labelValues));
+        }
+
+        // MetricFamilySamples not created by DefaultExport, scan the samples
+        for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+            if (sample.labelValues.equals(labelValues) && sample.labelNames.equals(labelNames)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Method to get the (cached) flattening plan for a CompositeType
+     *
+     * @param compositeType
+     * @return
+     */
+    private CompositePlan getCompositePlan(CompositeType compositeType) {
+        CompositePlan compositePlan = compositePlanMap.get(compositeType);
+        if (compositePlan == null) {
+            if (compositePlanMap.size() >= MAXIMUM_PLANS) {
+                // Guard against MBeans that create a new type for every value
+                compositePlanMap.clear();
+            }
+
+            compositePlan = new CompositePlan(compositeType);
+            compositePlanMap.put(compositeType, compositePlan);
+        }
+
+        return compositePlan;
+    }
+
+    /**
+     * Method to get the (cached) flattening plan for a TabularType
+     *
+     * @param tabularType
+     * @return
+     */
+    private TabularPlan getTabularPlan(TabularType tabularType) {
+        TabularPlan tabularPlan = tabularPlanMap.get(tabularType);
+        if (tabularPlan == null) {
+            if (tabularPlanMap.size() >= MAXIMUM_PLANS) {
+                // Guard against MBeans that create a new type for every value
+                tabularPlanMap.clear();
+            }
+
+            tabularPlan = new TabularPlan(tabularType);
+            tabularPlanMap.put(tabularType, tabularPlan);
+        }
+
+        return tabularPlan;
+    }
+
+    /**
+     * Method to get the (cached) label name for a bean property
+     *
+     * @param key
+     * @return
+     */
+    private String getLabelName(String key) {
+        String labelName = labelNameMap.get(key);
+        if (labelName == null) {
+            labelName = safeName(key);
+            if (lowercaseOutputLabelNames) {
+                labelName = labelName.toLowerCase();
+            }
+
+            if (labelNameMap.size() < MAXIMUM_PLANS) {
+                labelNameMap.put(key, labelName);
+            }
+        }
+
+        return labelName;
+    }
+
+    /**
+     * Method to get the JMX exporter scrape MetricFamilySamples (scrape duration, scrape error, and cached beans)
+     * <p>
+     * Collectors that read MBeans outside of the JmxCollector add these, so output families match the JmxCollector
+     *
+     * @param durationNanoseconds
+     * @param isError
+     * @return
+     */
+    public static List<Collector.MetricFamilySamples> getScrapeMetricFamilySamples(long durationNanoseconds, boolean isError) {
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = new ArrayList<>(3);
+
+        metricFamilySamplesList.add(
+                new Collector.MetricFamilySamples(
+                        JMX_SCRAPE_DURATION_SECONDS,
+                        Collector.Type.GAUGE,
+                        "Time this JMX scrape took, in seconds.",
+                        Collections.singletonList(
+                                new Collector.MetricFamilySamples.Sample(
+                                        JMX_SCRAPE_DURATION_SECONDS,
+                                        Collections.emptyList(),
+                                        Collections.emptyList(),
+                                        durationNanoseconds / Collector.NANOSECONDS_PER_SECOND))));
+
+        metricFamilySamplesList.add(
+                new Collector.MetricFamilySamples(
+                        JMX_SCRAPE_ERROR,
+                        Collector.Type.GAUGE,
+                        "Non-zero if this scrape failed.",
+                        Collections.singletonList(
+                                new Collector.MetricFamilySamples.Sample(
+                                        JMX_SCRAPE_ERROR,
+                                        Collections.emptyList(),
+                                        Collections.emptyList(),
+                                        isError ? 1 : 0))));
+
+        // Rules aren't cached outside of the JmxCollector
+        metricFamilySamplesList.add(
+                new Collector.MetricFamilySamples(
+                        JMX_SCRAPE_CACHED_BEANS,
+                        Collector.Type.GAUGE,
+                        "Number of beans with their matching rule cached",
+                        Collections.singletonList(
+                                new Collector.MetricFamilySamples.Sample(
+                                        JMX_SCRAPE_CACHED_BEANS,
+                                        Collections.emptyList(),
+                                        Collections.emptyList(),
+                                        0))));
+
+        return metricFamilySamplesList;
+    }
+
+    /**
+     * Method to get the MBean key properties, in ObjectName order
+     *
+     * @param objectName
+     * @return
+     */
+    public static LinkedHashMap<String, String> getKeyPropertyList(ObjectName objectName) {
+        LinkedHashMap<String, String> keyProperties = new LinkedHashMap<>();
+        String properties = objectName.getKeyPropertyListString();
+        Matcher matcher = PROPERTY_PATTERN.matcher(properties);
+
+        while (matcher.lookingAt()) {
+            keyProperties.put(matcher.group(1), matcher.group(2));
+            properties = properties.substring(matcher.end());
+            if (properties.startsWith(",")) {
+                properties = properties.substring(1);
+            }
+
+            matcher.reset(properties);
+        }
+
+        return keyProperties;
+    }
+
+    /**
+     * Method to convert a name to a Prometheus safe name
+     *
+     * @param name
+     * @return
+     */
+    static String safeName(String name) {
+        StringBuilder stringBuilder = new StringBuilder(name.length());
+        boolean previousIsUnderscore = false;
+
+        if (!name.isEmpty() && Character.isDigit(name.charAt(0))) {
+            // Prevent a numeric prefix
+            stringBuilder.append(SEPARATOR);
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c == '_') || !isLegalCharacter(c)) {
+                if (!previousIsUnderscore) {
+                    stringBuilder.append('_');
+                    previousIsUnderscore = true;
+                }
+            } else {
+                stringBuilder.append(c);
+                previousIsUnderscore = false;
+            }
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Method to convert an attribute name to snake case
+     *
+     * @param attrName
+     * @return
+     */
+    static String toSnakeAndLowerCase(String attrName) {
+        if ((attrName == null) || attrName.isEmpty()) {
+            return attrName;
+        }
+
+        char firstChar = attrName.charAt(0);
+        boolean previousIsUpperCaseOrUnderscore = Character.isUpperCase(firstChar) || (firstChar == '_');
+        StringBuilder stringBuilder = new StringBuilder(attrName.length()).append(Character.toLowerCase(firstChar));
+
+        for (int i = 1; i < attrName.length(); i++) {
+            char c = attrName.charAt(i);
+            boolean isUpperCase = Character.isUpperCase(c);
+            if (!previousIsUpperCaseOrUnderscore && isUpperCase) {
+                stringBuilder.append('_');
+            }
+
+            stringBuilder.append(Character.toLowerCase(c));
+            previousIsUpperCaseOrUnderscore = isUpperCase || (c == '_');
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Method to get the bean name used for help and rule matching, matches the JMX exporter
+     *
+     * @param samplePlanKey
+     * @return
+     */
+    private static String getBeanName(SamplePlanKey samplePlanKey) {
+        return samplePlanKey.domain
+                + angleBrackets(samplePlanKey.beanProperties.toString())
+                + angleBrackets(samplePlanKey.attrKeys.toString());
+    }
+
+    /**
+     * Method to get the ValueExtractor for a value, null if the value type isn't supported
+     *
+     * @param beanValue
+     * @return
+     */
+    private static ValueExtractor getValueExtractor(Object beanValue) {
+        if (beanValue instanceof Number) {
+            return NUMBER_VALUE_EXTRACTOR;
+        } else if (beanValue instanceof Boolean) {
+            return BOOLEAN_VALUE_EXTRACTOR;
+        }
+
+        return null;
+    }
+
+    private static boolean isLegalCharacter(char c) {
+        return (c == ':') || (c == '_') || ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9'));
+    }
+
+    private static String angleBrackets(String string) {
+        return "<" + string.substring(1, string.length() - 1) + ">";
+    }
+
+    /**
+     * Class to hold the flattening plan for a CompositeType
+     * <p>
+     * Compiled once per CompositeType, so a collection only walks the values
+     */
+    private static class CompositePlan {
+
+        private final String[] keys;
+        private final String description;
+
+        /**
+         * Constructor
+         *
+         * @param compositeType
+         */
+        private CompositePlan(CompositeType compositeType) {
+            this.keys = compositeType.keySet().toArray(new String[0]);
+            this.description = compositeType.getDescription();
+        }
+    }
+
+    /**
+     * Class to hold the flattening plan for a TabularType
+     * <p>
+     * Compiled once per TabularType, so a collection only walks the rows
+     */
+    private static class TabularPlan {
+
+        private final String[] indexNames;
+        private final String[] valueKeys;
+        private final String description;
+        private final boolean[] isValueKeys;
+
+        /**
+         * Constructor
+         *
+         * @param tabularType
+         */
+        private TabularPlan(TabularType tabularType) {
+            CompositeType rowType = tabularType.getRowType();
+            List<String> indexNameList = tabularType.getIndexNames();
+
+            Set<String> valueKeySet = new TreeSet<>(rowType.keySet());
+            valueKeySet.removeAll(indexNameList);
+
+            this.indexNames = indexNameList.toArray(new String[0]);
+            this.valueKeys = valueKeySet.toArray(new String[0]);
+            this.description = rowType.getDescription();
+            this.isValueKeys = new boolean[valueKeys.length];
+
+            for (int i = 0; i < valueKeys.length; i++) {
+                isValueKeys[i] = "value".equalsIgnoreCase(valueKeys[i]);
+            }
+        }
+    }
+
+    /**
+     * Class to hold the key of a sample plan (an MBean attribute value)
+     */
+    private static class SamplePlanKey {
+
+        private final String domain;
+        private final LinkedHashMap<String, String> beanProperties;
+        private final List<String> attrKeys;
+        private final String attrName;
+        private final String attrDescription;
+        private final int hashCode;
+
+        /**
+         * Constructor
+         *
+         * @param domain
+         * @param beanProperties
+         * @param attrKeys
+         * @param attrName
+         * @param attrDescription
+         */
+        private SamplePlanKey(
+                String domain,
+                LinkedHashMap<String, String> beanProperties,
+                List<String> attrKeys,
+                String attrName,
+                String attrDescription) {
+            this.domain = domain;
+            this.beanProperties = beanProperties;
+            this.attrKeys = attrKeys;
+            this.attrName = attrName;
+            this.attrDescription = attrDescription;
+            this.hashCode = Objects.hash(domain, beanProperties, attrKeys, attrName, attrDescription);
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+
+            if (!(object instanceof SamplePlanKey)) {
+                return false;
+            }
+
+            SamplePlanKey samplePlanKey = (SamplePlanKey) object;
+
+            return (hashCode == samplePlanKey.hashCode)
+                    && domain.equals(samplePlanKey.domain)
+                    && attrName.equals(samplePlanKey.attrName)
+                    && Objects.equals(attrDescription, samplePlanKey.attrDescription)
+                    && attrKeys.equals(samplePlanKey.attrKeys)
+                    && beanProperties.equals(samplePlanKey.beanProperties);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Class to hold the sample plan for an MBean attribute value
+     * <p>
+     * Compiled once per MBean attribute (ObjectName, composite/tabular keys, and attribute name), so a collection
+     * only extracts the value, instead of building and sanitizing the name and labels for every sample
+     */
+    private class SamplePlan {
+
+        private final SamplePlanKey samplePlanKey;
+        private final String name;
+        private final String snakeCaseName;
+        private final String matchName;
+        private final String snakeCaseMatchName;
+        private final List<String> labelNames;
+        private final List<String> labelValues;
+        private final Class<?> valueClass;
+        private final ValueExtractor valueExtractor;
+
+        /**
+         * Constructor
+         *
+         * @param samplePlanKey
+         * @param beanValue
+         */
+        private SamplePlan(SamplePlanKey samplePlanKey, Object beanValue) {
+            LinkedHashMap<String, String> beanProperties = samplePlanKey.beanProperties;
+            String attrNameSnakeCase = isAttrNameSnakeCaseUsed ? toSnakeAndLowerCase(samplePlanKey.attrName) : null;
+
+            this.samplePlanKey = samplePlanKey;
+            this.name = getName(samplePlanKey.domain, beanProperties, samplePlanKey.attrKeys, samplePlanKey.attrName);
+            this.snakeCaseName =
+                    isAttrNameSnakeCaseUsed ? getName(samplePlanKey.domain, beanProperties, samplePlanKey.attrKeys, attrNameSnakeCase) : null;
+
+            // Only rules with a pattern match on the bean name
+            String beanName = isPatternUsed ? getBeanName(samplePlanKey) : null;
+            this.matchName = isPatternUsed ? beanName + samplePlanKey.attrName : null;
+            this.snakeCaseMatchName = (isPatternUsed && isAttrNameSnakeCaseUsed) ? beanName + attrNameSnakeCase : null;
+
+            if (beanProperties.size() > 1) {
+                List<String> labelNames = new ArrayList<>(beanProperties.size() - 1);
+                List<String> labelValues = new ArrayList<>(beanProperties.size() - 1);
+
+                boolean first = true;
+                for (Map.Entry<String, String> entry : beanProperties.entrySet()) {
+                    // Skip the first property, it's been used in the name
+                    if (first) {
+                        first = false;
+                        continue;
+                    }
+
+                    labelNames.add(getLabelName(entry.getKey()));
+                    labelValues.add(entry.getValue());
+                }
+
+                // Shared by every sample of the plan, so immutable
+                this.labelNames = Collections.unmodifiableList(labelNames);
+                this.labelValues = Collections.unmodifiableList(labelValues);
+            } else {
+                this.labelNames = Collections.emptyList();
+                this.labelValues = Collections.emptyList();
+            }
+
+            this.valueClass = beanValue.getClass();
+            this.valueExtractor = DefaultExport.getValueExtractor(beanValue);
+        }
+
+        /**
+         * Method to get the ValueExtractor for a value, null if the value type isn't supported
+         *
+         * @param beanValue
+         * @return
+         */
+        private ValueExtractor getValueExtractor(Object beanValue) {
+            // An attribute's value type rarely changes, so the ValueExtractor is selected once
+            if (beanValue.getClass() == valueClass) {
+                return valueExtractor;
+            }
+
+            return DefaultExport.getValueExtractor(beanValue);
+        }
+
+        /**
+         * Method to get the help
+         *
+         * @return
+         */
+        private String getHelp() {
+            // attrDescription tends not to be useful, so give the fully qualified name too
+            return samplePlanKey.attrDescription + " (" + getBeanName(samplePlanKey) + samplePlanKey.attrName + ")";
+        }
+    }
+
+    /**
+     * Interface to extract a sample value from an MBean attribute value
+     */
+    private interface ValueExtractor {
+
+        /**
+         * Method to get the sample value
+         *
+         * @param value
+         * @param valueFactor
+         * @return
+         */
+        double getValue(Object value, double valueFactor);
+    }
+
+    /**
+     * Class to implement MetricFamilySamples that tracks the label names and label values of its samples
+     * <p>
+     * Detects duplicate samples without scanning the samples, which is quadratic for large families
+     */
+    private static class DefaultExportMetricFamilySamples extends Collector.MetricFamilySamples {
+
+        private final Set<List<List<String>>> sampleKeySet;
+
+        /**
+         * Constructor
+         *
+         * @param name
+         * @param type
+         * @param help
+         */
+        private DefaultExportMetricFamilySamples(String name, Collector.Type type, String help) {
+            super(name, type, help, new ArrayList<>());
+
+            this.sampleKeySet = new HashSet<>();
+        }
+    }
+
+    /**
+     * Class to hold a default export rule
+     */
+    private static class Rule {
+
+        private Pattern pattern;
+        private double valueFactor = 1.0;
+        private boolean attrNameSnakeCase;
+        private Collector.Type type = Collector.Type.UNKNOWN;
+    }
+}
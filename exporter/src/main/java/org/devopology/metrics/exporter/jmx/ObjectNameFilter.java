@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.jmx;
+
+import org.devopology.common.precondition.Precondition;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to filter ObjectNames using the JMX exporter include / exclude configuration
+ * <p>
+ * Supports "whitelistObjectNames" / "includeObjectNames" and "blacklistObjectNames" / "excludeObjectNames"
+ */
+public class ObjectNameFilter {
+
+    private final List<ObjectName> includeObjectNameList;
+    private final List<ObjectName> excludeObjectNameList;
+
+    /**
+     * Constructor
+     *
+     * @param jmxConfigurationMap
+     * @throws MalformedObjectNameException
+     */
+    public ObjectNameFilter(Map<String, Object> jmxConfigurationMap) throws MalformedObjectNameException {
+        Precondition.notNull(jmxConfigurationMap, "jmxConfigurationMap is null");
+
+        this.includeObjectNameList = new ArrayList<>();
+        this.excludeObjectNameList = new ArrayList<>();
+
+        addObjectNames(jmxConfigurationMap.get("whitelistObjectNames"), includeObjectNameList);
+        addObjectNames(jmxConfigurationMap.get("includeObjectNames"), includeObjectNameList);
+        addObjectNames(jmxConfigurationMap.get("blacklistObjectNames"), excludeObjectNameList);
+        addObjectNames(jmxConfigurationMap.get("excludeObjectNames"), excludeObjectNameList);
+    }
+
+    /**
+     * Method to determine whether an ObjectName is included
+     *
+     * @param objectName
+     * @return
+     */
+    public boolean isIncluded(ObjectName objectName) {
+        boolean isIncluded = includeObjectNameList.isEmpty();
+
+        for (ObjectName includeObjectName : includeObjectNameList) {
+            if (includeObjectName.apply(objectName)) {
+                isIncluded = true;
+                break;
+            }
+        }
+
+        if (!isIncluded) {
+            return false;
+        }
+
+        for (ObjectName excludeObjectName : excludeObjectNameList) {
+            if (excludeObjectName.apply(objectName)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void addObjectNames(Object objectNames, List<ObjectName> objectNameList) throws MalformedObjectNameException {
+        if (objectNames instanceof List) {
+            for (Object objectName : (List<?>) objectNames) {
+                objectNameList.add(new ObjectName(String.valueOf(objectName)));
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.target;
+
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Class to discover local JVMs using the Attach API (standalone mode)
+ * <p>
+ * Matching JVMs are added as targets named "local-<pid>", collected using their local
+ * connector address, so no JMX port is required. JVMs that exit are removed.
+ * <p>
+ * JVMs that definitively don't match (main class or system property) aren't checked again. Attach,
+ * management agent, and target creation failures may be transient (for example a JVM that is still
+ * starting), so are retried using exponential backoff.
+ * <p>
+ * The Attach API ("jdk.attach" module, or "tools.jar" on Java 8) is accessed using reflection
+ */
+public class AttachDiscovery implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AttachDiscovery.class);
+
+    private static final String VIRTUAL_MACHINE_CLASS_NAME = "com.sun.tools.attach.VirtualMachine";
+    private static final String VIRTUAL_MACHINE_DESCRIPTOR_CLASS_NAME = "com.sun.tools.attach.VirtualMachineDescriptor";
+    private static final String LOCAL_CONNECTOR_ADDRESS = "com.sun.management.jmxremote.localConnectorAddress";
+    private static final String TARGET_NAME_PREFIX = "local-";
+
+    private final Map<String, Target> targetMap;
+    private final TargetFactory targetFactory;
+    private final Pattern mainClassPattern;
+    private final String systemPropertyName;
+    private final Pattern systemPropertyValuePattern;
+    private final int maximumTargets;
+    private final Backoff backoff;
+    private final String pid;
+    private final Map<String, Target> discoveredTargetMap;
+    private final Set<String> unmatchedIdSet;
+    private final Map<String, Retry> retryMap;
+
+    private final Method listMethod;
+    private final Method attachMethod;
+    private final Method idMethod;
+    private final Method displayNameMethod;
+    private final Method getSystemPropertiesMethod;
+    private final Method getAgentPropertiesMethod;
+    private final Method startLocalManagementAgentMethod;
+    private final Method detachMethod;
+
+    /**
+     * Constructor
+     *
+     * @param targetMap the target Map to add discovered targets to
+     * @param targetFactory
+     * @param mainClassPattern optional, may be null
+     * @param systemPropertyName optional, may be null
+     * @param systemPropertyValuePattern required if systemPropertyName is not null
+     * @param maximumTargets
+     * @param backoffMinimumMilliseconds
+     * @param backoffMaximumMilliseconds
+     * @throws ReflectiveOperationException if the Attach API isn't available
+     */
+    public AttachDiscovery(
+            Map<String, Target> targetMap,
+            TargetFactory targetFactory,
+            Pattern mainClassPattern,
+            String systemPropertyName,
+            Pattern systemPropertyValuePattern,
+            int maximumTargets,
+            long backoffMinimumMilliseconds,
+            long backoffMaximumMilliseconds) throws ReflectiveOperationException {
+        Precondition.notNull(targetMap, "targetMap is null");
+        Precondition.notNull(targetFactory, "targetFactory is null");
+        Precondition.isTrue((mainClassPattern != null) || (systemPropertyName != null), "mainClassPattern and systemPropertyName are null");
+        Precondition.isTrue((systemPropertyName == null) || (systemPropertyValuePattern != null), "systemPropertyValuePattern is null");
+        Precondition.inRange(maximumTargets, 1, Integer.MAX_VALUE, "maximumTargets is outside range (1 - " + Integer.MAX_VALUE + ")");
+        Precondition.inRange(backoffMinimumMilliseconds, 1, Long.MAX_VALUE / 1000000, "backoffMinimumMilliseconds is outside range (1 - " + (Long.MAX_VALUE / 1000000) + ")");
+        Precondition.inRange(backoffMaximumMilliseconds, backoffMinimumMilliseconds, Long.MAX_VALUE / 1000000, "backoffMaximumMilliseconds is outside range (" + backoffMinimumMilliseconds + " - " + (Long.MAX_VALUE / 1000000) + ")");
+
+        Class<?> virtualMachineClass = Class.forName(VIRTUAL_MACHINE_CLASS_NAME);
+        Class<?> virtualMachineDescriptorClass = Class.forName(VIRTUAL_MACHINE_DESCRIPTOR_CLASS_NAME);
+
+        this.listMethod = virtualMachineClass.getMethod("list");
+        this.attachMethod = virtualMachineClass.getMethod("attach", String.class);
+        this.idMethod = virtualMachineDescriptorClass.getMethod("id");
+        this.displayNameMethod = virtualMachineDescriptorClass.getMethod("displayName");
+        this.getSystemPropertiesMethod = virtualMachineClass.getMethod("getSystemProperties");
+        this.getAgentPropertiesMethod = virtualMachineClass.getMethod("getAgentProperties");
+        this.startLocalManagementAgentMethod = virtualMachineClass.getMethod("startLocalManagementAgent");
+        this.detachMethod = virtualMachineClass.getMethod("detach");
+
+        this.targetMap = targetMap;
+        this.targetFactory = targetFactory;
+        this.mainClassPattern = mainClassPattern;
+        this.systemPropertyName = systemPropertyName;
+        this.systemPropertyValuePattern = systemPropertyValuePattern;
+        this.maximumTargets = maximumTargets;
+        this.backoff = new Backoff(backoffMinimumMilliseconds, backoffMaximumMilliseconds);
+        this.pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+        this.discoveredTargetMap = new HashMap<>();
+        this.unmatchedIdSet = new HashSet<>();
+        this.retryMap = new HashMap<>();
+    }
+
+    /**
+     * Method to discover local JVMs (scheduled)
+     */
+    @Override
+    public synchronized void run() {
+        try {
+            Map<String, String> displayNameMap = new HashMap<>();
+            for (Object virtualMachineDescriptor : (List<?>) listMethod.invoke(null)) {
+                String id = (String) idMethod.invoke(virtualMachineDescriptor);
+                if (!pid.equals(id)) {
+                    displayNameMap.put(id, (String) displayNameMethod.invoke(virtualMachineDescriptor));
+                }
+            }
+
+            // Remove targets for JVMs that have exited
+            unmatchedIdSet.retainAll(displayNameMap.keySet());
+            retryMap.keySet().retainAll(displayNameMap.keySet());
+            discoveredTargetMap.entrySet().removeIf(entry -> {
+                if (displayNameMap.containsKey(entry.getKey())) {
+                    return false;
+                }
+
+                Target target = entry.getValue();
+                targetMap.remove(target.getName(), target);
+                target.close();
+
+                LOGGER.info(String.format("target [%s] removed, JVM exited", target.getName()));
+                return true;
+            });
+
+            long nowNanoseconds = System.nanoTime();
+
+            for (Map.Entry<String, String> entry : displayNameMap.entrySet()) {
+                String id = entry.getKey();
+                if (discoveredTargetMap.containsKey(id) || unmatchedIdSet.contains(id)) {
+                    continue;
+                }
+
+                Retry retry = retryMap.get(id);
+                if ((retry != null) && ((nowNanoseconds - retry.nextAttemptNanoseconds) < 0)) {
+                    continue;
+                }
+
+                if (discoveredTargetMap.size() >= maximumTargets) {
+                    LOGGER.warn(String.format("discovery maximum targets [%d] reached", maximumTargets));
+                    break;
+                }
+
+                discover(id, entry.getValue());
+            }
+        } catch (Throwable t) {
+            LOGGER.warn(String.format("discovery failed [%s]", getMessage(t)));
+        }
+    }
+
+    /**
+     * Method to close all discovered targets
+     */
+    public synchronized void close() {
+        for (Target target : discoveredTargetMap.values()) {
+            targetMap.remove(target.getName(), target);
+            target.close();
+        }
+
+        discoveredTargetMap.clear();
+    }
+
+    /**
+     * Method to match a JVM, attaching if required, and add it as a target
+     *
+     * @param id
+     * @param displayName
+     */
+    private void discover(String id, String displayName) {
+        String mainClass = getMainClass(displayName);
+        if (!isMainClassMatch(mainClass)) {
+            unmatchedIdSet.add(id);
+            return;
+        }
+
+        String localConnectorAddress;
+
+        try {
+            Object virtualMachine = attachMethod.invoke(null, id);
+
+            try {
+                if ((systemPropertyName != null) && !isSystemPropertyMatch((Properties) getSystemPropertiesMethod.invoke(virtualMachine))) {
+                    unmatchedIdSet.add(id);
+                    return;
+                }
+
+                Properties agentProperties = (Properties) getAgentPropertiesMethod.invoke(virtualMachine);
+                localConnectorAddress = agentProperties.getProperty(LOCAL_CONNECTOR_ADDRESS);
+                if (localConnectorAddress == null) {
+                    localConnectorAddress = (String) startLocalManagementAgentMethod.invoke(virtualMachine);
+                }
+            } finally {
+                detachMethod.invoke(virtualMachine);
+            }
+        } catch (Throwable t) {
+            // The JVM may be starting, have exited, or may not allow attach (different user, -XX:+DisableAttachMechanism)
+            retry(id, String.format("discovery attach to JVM [%s] [%s] failed [%s]", id, mainClass, getMessage(t)));
+            return;
+        }
+
+        String name = TARGET_NAME_PREFIX + id;
+
+        try {
+            Target target = targetFactory.createTarget(name, localConnectorAddress, null, null, false, 1, null);
+            if (targetMap.putIfAbsent(name, target) != null) {
+                // A configured target has the same name
+                target.close();
+                unmatchedIdSet.add(id);
+                return;
+            }
+
+            discoveredTargetMap.put(id, target);
+            retryMap.remove(id);
+            target.getJmxConnectionManager().start();
+
+            LOGGER.info(String.format("target [%s] discovered [%s]", name, mainClass));
+        } catch (Throwable t) {
+            retry(id, String.format("discovery of JVM [%s] [%s] failed [%s]", id, mainClass, getMessage(t)));
+        }
+    }
+
+    /**
+     * Method to match a JVM's main class (checked before attaching)
+     *
+     * @param mainClass
+     * @return true if there is no main class pattern, or the main class matches
+     */
+    boolean isMainClassMatch(String mainClass) {
+        return (mainClassPattern == null) || mainClassPattern.matcher(mainClass).matches();
+    }
+
+    /**
+     * Method to match a JVM's system properties (checked after attaching)
+     *
+     * @param systemProperties
+     * @return true if there is no system property name, or the system property exists and its value matches
+     */
+    boolean isSystemPropertyMatch(Properties systemProperties) {
+        if (systemPropertyName == null) {
+            return true;
+        }
+
+        String value = systemProperties.getProperty(systemPropertyName);
+        return (value != null) && systemPropertyValuePattern.matcher(value).matches();
+    }
+
+    /**
+     * Method to get the main class (or JAR) from a JVM's display name (main class followed by arguments)
+     *
+     * @param displayName
+     * @return
+     */
+    static String getMainClass(String displayName) {
+        return displayName.split(" ", 2)[0];
+    }
+
+    /**
+     * Method to schedule a retry for a JVM using jittered exponential backoff
+     *
+     * @param id
+     * @param message
+     */
+    private void retry(String id, String message) {
+        Retry retry = retryMap.computeIfAbsent(id, k -> new Retry());
+
+        long backoffMilliseconds = backoff.getBackoffMilliseconds(retry.failures);
+
+        retry.failures++;
+        retry.nextAttemptNanoseconds = System.nanoTime() + (backoffMilliseconds * 1000000L);
+
+        LOGGER.warn(String.format("%s, retrying in [%d] ms", message, backoffMilliseconds));
+    }
+
+    /**
+     * Class to hold the retry state of a JVM
+     */
+    private static class Retry {
+
+        private int failures;
+        private long nextAttemptNanoseconds;
+    }
+
+    private static String getMessage(Throwable t) {
+        if ((t instanceof InvocationTargetException) && (t.getCause() != null)) {
+            t = t.getCause();
+        }
+
+        return t.getMessage();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.target;
+
+import org.devopology.common.precondition.Precondition;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Class to implement jittered exponential backoff
+ * <p>
+ * The backoff doubles for each failed attempt, starting at the minimum, up to the maximum. Equal jitter
+ * is applied (half of the backoff plus a random half), so retries don't occur in lockstep
+ */
+class Backoff {
+
+    private final long minimumMilliseconds;
+    private final long maximumMilliseconds;
+
+    /**
+     * Constructor
+     *
+     * @param minimumMilliseconds
+     * @param maximumMilliseconds
+     */
+    Backoff(long minimumMilliseconds, long maximumMilliseconds) {
+        Precondition.inRange(minimumMilliseconds, 1, Long.MAX_VALUE, "minimumMilliseconds is outside range (1 - " + Long.MAX_VALUE + ")");
+        Precondition.inRange(maximumMilliseconds, minimumMilliseconds, Long.MAX_VALUE, "maximumMilliseconds is outside range (" + minimumMilliseconds + " - " + Long.MAX_VALUE + ")");
+
+        this.minimumMilliseconds = minimumMilliseconds;
+        this.maximumMilliseconds = maximumMilliseconds;
+    }
+
+    /**
+     * Method to get the jittered backoff for an attempt
+     *
+     * @param attempt the number of previous failed attempts (0 based)
+     * @return
+     */
+    long getBackoffMilliseconds(int attempt) {
+        long backoffMilliseconds = maximumMilliseconds;
+        if ((attempt >= 0) && (attempt < 62)) {
+            backoffMilliseconds = Math.min(maximumMilliseconds, minimumMilliseconds << attempt);
+            if (backoffMilliseconds < minimumMilliseconds) {
+                // Overflow
+                backoffMilliseconds = maximumMilliseconds;
+            }
+        }
+
+        long halfMilliseconds = backoffMilliseconds / 2;
+        return halfMilliseconds + ThreadLocalRandom.current().nextLong(backoffMilliseconds - halfMilliseconds + 1);
+    }
+}
@@ -0,0 +1,508 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.target;
+
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class to manage a persistent remote JMX connection (standalone mode)
+ * <p>
+ * The connection is opened, health checked, and reopened in the background, using
+ * exponential backoff with jitter. Scrapes never connect, so a dead target fails fast
+ * instead of blocking on RMI timeouts
+ * <p>
+ * The ScheduledExecutorService is only used for timing. Connects, health checks, and closes
+ * (which may block) run on the connection ExecutorService, and connects and health checks
+ * that don't complete within the connect timeout are cancelled and treated as failures
+ */
+public class JmxConnectionManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JmxConnectionManager.class);
+
+    /**
+     * Connection state
+     */
+    public enum State {
+
+        DISCONNECTED,
+        CONNECTING,
+        CONNECTED
+    }
+
+    private final String name;
+    private final JMXServiceURL jmxServiceURL;
+    private final Map<String, ?> environment;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final ExecutorService connectionExecutorService;
+    private final long connectTimeoutMilliseconds;
+    private final long healthCheckMilliseconds;
+    private final Backoff backoff;
+    private final NotificationListener connectionNotificationListener;
+    private final AtomicLong connects;
+    private final AtomicLong connectFailures;
+    private final AtomicLong connectionLosses;
+
+    private volatile State state;
+    private volatile JMXConnector jmxConnector;
+    private volatile MBeanServerConnection mBeanServerConnection;
+    private volatile double lastConnectDurationSeconds;
+    private volatile double lastReconnectDurationSeconds;
+
+    private ScheduledFuture<?> scheduledFuture;
+    private ScheduledFuture<?> timeoutScheduledFuture;
+    private Future<?> connectionFuture;
+    private long attempt;
+    private int consecutiveFailures;
+    private long disconnectedNanoseconds;
+    private boolean isClosed;
+
+    /**
+     * Constructor
+     *
+     * @param name
+     * @param jmxServiceURL
+     * @param environment
+     * @param scheduledExecutorService the ScheduledExecutorService used for timing
+     * @param connectionExecutorService the ExecutorService used to connect, health check, and close
+     * @param connectTimeoutMilliseconds
+     * @param healthCheckMilliseconds
+     * @param backoffMinimumMilliseconds
+     * @param backoffMaximumMilliseconds
+     */
+    public JmxConnectionManager(
+            String name,
+            JMXServiceURL jmxServiceURL,
+            Map<String, ?> environment,
+            ScheduledExecutorService scheduledExecutorService,
+            ExecutorService connectionExecutorService,
+            long connectTimeoutMilliseconds,
+            long healthCheckMilliseconds,
+            long backoffMinimumMilliseconds,
+            long backoffMaximumMilliseconds) {
+        Precondition.notNull(name, "name is null");
+        Precondition.notNull(jmxServiceURL, "jmxServiceURL is null");
+        Precondition.notNull(environment, "environment is null");
+        Precondition.notNull(scheduledExecutorService, "scheduledExecutorService is null");
+        Precondition.notNull(connectionExecutorService, "connectionExecutorService is null");
+        Precondition.inRange(connectTimeoutMilliseconds, 1, Long.MAX_VALUE, "connectTimeoutMilliseconds is outside range (1 - " + Long.MAX_VALUE + ")");
+        Precondition.inRange(healthCheckMilliseconds, 1, Long.MAX_VALUE, "healthCheckMilliseconds is outside range (1 - " + Long.MAX_VALUE + ")");
+        Precondition.inRange(backoffMinimumMilliseconds, 1, Long.MAX_VALUE, "backoffMinimumMilliseconds is outside range (1 - " + Long.MAX_VALUE + ")");
+        Precondition.inRange(backoffMaximumMilliseconds, backoffMinimumMilliseconds, Long.MAX_VALUE, "backoffMaximumMilliseconds is outside range (" + backoffMinimumMilliseconds + " - " + Long.MAX_VALUE + ")");
+
+        this.name = name;
+        this.jmxServiceURL = jmxServiceURL;
+        this.environment = environment;
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.connectionExecutorService = connectionExecutorService;
+        this.connectTimeoutMilliseconds = connectTimeoutMilliseconds;
+        this.healthCheckMilliseconds = healthCheckMilliseconds;
+        this.backoff = new Backoff(backoffMinimumMilliseconds, backoffMaximumMilliseconds);
+        this.connectionNotificationListener = this::handleConnectionNotification;
+        this.connects = new AtomicLong();
+        this.connectFailures = new AtomicLong();
+        this.connectionLosses = new AtomicLong();
+        this.state = State.DISCONNECTED;
+    }
+
+    /**
+     * Method to start connecting
+     */
+    public synchronized void start() {
+        disconnectedNanoseconds = System.nanoTime();
+        schedule(this::startConnect, 0);
+    }
+
+    /**
+     * Method to get the connection state
+     *
+     * @return
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Method to determine whether the target is connected
+     *
+     * @return
+     */
+    public boolean isConnected() {
+        return state == State.CONNECTED;
+    }
+
+    /**
+     * Method to get the current MBeanServerConnection
+     *
+     * @return
+     * @throws IOException if not connected
+     */
+    public MBeanServerConnection getMBeanServerConnection() throws IOException {
+        MBeanServerConnection mBeanServerConnection = this.mBeanServerConnection;
+        if ((state != State.CONNECTED) || (mBeanServerConnection == null)) {
+            throw new IOException(String.format("target [%s] is not connected", name));
+        }
+
+        return mBeanServerConnection;
+    }
+
+    /**
+     * Method to report a failure using the MBeanServerConnection, reconnecting in the background
+     *
+     * @param mBeanServerConnection the connection that failed
+     * @param t
+     */
+    public synchronized void failed(MBeanServerConnection mBeanServerConnection, Throwable t) {
+        if ((state != State.CONNECTED) || (this.mBeanServerConnection != mBeanServerConnection)) {
+            // Already handled
+            return;
+        }
+
+        disconnect(String.format("failed [%s]", t.getMessage()));
+        schedule(this::startConnect, 0);
+    }
+
+    /**
+     * Method to close the connection, stopping reconnection
+     */
+    public synchronized void close() {
+        isClosed = true;
+
+        if (connectionFuture != null) {
+            connectionFuture.cancel(true);
+        }
+
+        cancel();
+
+        if (jmxConnector != null) {
+            closeQuietly(jmxConnector);
+            jmxConnector = null;
+        }
+
+        mBeanServerConnection = null;
+        state = State.DISCONNECTED;
+    }
+
+    public long getConnects() {
+        return connects.get();
+    }
+
+    public long getConnectFailures() {
+        return connectFailures.get();
+    }
+
+    public long getConnectionLosses() {
+        return connectionLosses.get();
+    }
+
+    public double getLastConnectDurationSeconds() {
+        return lastConnectDurationSeconds;
+    }
+
+    public double getLastReconnectDurationSeconds() {
+        return lastReconnectDurationSeconds;
+    }
+
+    /**
+     * Method to start a connect on the connection ExecutorService, bounded by the connect timeout (scheduled)
+     */
+    private synchronized void startConnect() {
+        if (isClosed || (state != State.DISCONNECTED)) {
+            return;
+        }
+
+        state = State.CONNECTING;
+        long attempt = ++this.attempt;
+
+        try {
+            connectionFuture = connectionExecutorService.submit(() -> connect(attempt));
+        } catch (RejectedExecutionException e) {
+            // The ExecutorService has been shutdown
+            state = State.DISCONNECTED;
+            return;
+        }
+
+        timeoutScheduledFuture = scheduledExecutorService.schedule(
+                () -> connectTimedOut(attempt),
+                connectTimeoutMilliseconds,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to connect (connection ExecutorService)
+     *
+     * @param attempt
+     */
+    private void connect(long attempt) {
+        long startNanoseconds = System.nanoTime();
+        JMXConnector jmxConnector = null;
+
+        try {
+            jmxConnector = JMXConnectorFactory.connect(jmxServiceURL, environment);
+            MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
+            jmxConnector.addConnectionNotificationListener(connectionNotificationListener, null, jmxConnector);
+
+            long nowNanoseconds = System.nanoTime();
+
+            synchronized (this) {
+                if (isClosed || (attempt != this.attempt) || (state != State.CONNECTING)) {
+                    // Closed, or the connect timed out
+                    closeQuietly(jmxConnector);
+                    return;
+                }
+
+                cancel();
+
+                this.jmxConnector = jmxConnector;
+                this.mBeanServerConnection = mBeanServerConnection;
+
+                lastConnectDurationSeconds = (nowNanoseconds - startNanoseconds) / 1e9;
+                if (connects.get() > 0) {
+                    lastReconnectDurationSeconds = (nowNanoseconds - disconnectedNanoseconds) / 1e9;
+                }
+
+                connects.incrementAndGet();
+                consecutiveFailures = 0;
+                state = State.CONNECTED;
+
+                schedule(this::startHealthCheck, healthCheckMilliseconds);
+            }
+
+            LOGGER.info(String.format("target [%s] connected in [%d] ms", name, (nowNanoseconds - startNanoseconds) / 1000000));
+        } catch (Throwable t) {
+            if (jmxConnector != null) {
+                closeQuietly(jmxConnector);
+            }
+
+            synchronized (this) {
+                if (isClosed || (attempt != this.attempt) || (state != State.CONNECTING)) {
+                    // Closed, or the connect timed out (already counted as a failure)
+                    return;
+                }
+
+                cancel();
+                connectFailed(t.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Method to fail a connect that didn't complete within the connect timeout (scheduled)
+     *
+     * @param attempt
+     */
+    private synchronized void connectTimedOut(long attempt) {
+        if (isClosed || (attempt != this.attempt) || (state != State.CONNECTING)) {
+            return;
+        }
+
+        // Invalidate the attempt, so a late connect is closed
+        this.attempt++;
+
+        if (connectionFuture != null) {
+            connectionFuture.cancel(true);
+            connectionFuture = null;
+        }
+
+        timeoutScheduledFuture = null;
+
+        connectFailed(String.format("timed out after [%d] ms", connectTimeoutMilliseconds));
+    }
+
+    /**
+     * Method to record a failed connect and schedule a reconnect (called while synchronized)
+     *
+     * @param reason
+     */
+    private void connectFailed(String reason) {
+        connectFailures.incrementAndGet();
+        state = State.DISCONNECTED;
+
+        long backoffMilliseconds = backoff.getBackoffMilliseconds(consecutiveFailures++);
+        schedule(this::startConnect, backoffMilliseconds);
+
+        LOGGER.warn(String.format("target [%s] connect failed [%s], retrying in [%d] ms", name, reason, backoffMilliseconds));
+    }
+
+    /**
+     * Method to start a health check on the connection ExecutorService, bounded by the connect timeout (scheduled)
+     */
+    private synchronized void startHealthCheck() {
+        MBeanServerConnection mBeanServerConnection = this.mBeanServerConnection;
+        if (isClosed || (state != State.CONNECTED) || (mBeanServerConnection == null)) {
+            return;
+        }
+
+        try {
+            connectionFuture = connectionExecutorService.submit(() -> healthCheck(mBeanServerConnection));
+        } catch (RejectedExecutionException e) {
+            // The ExecutorService has been shutdown
+            return;
+        }
+
+        Future<?> healthCheckFuture = connectionFuture;
+
+        timeoutScheduledFuture = scheduledExecutorService.schedule(
+                () -> {
+                    if (!healthCheckFuture.isDone()) {
+                        healthCheckFuture.cancel(true);
+                        failed(mBeanServerConnection, new IOException(String.format("health check timed out after [%d] ms", connectTimeoutMilliseconds)));
+                    }
+                },
+                connectTimeoutMilliseconds,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to health check the connection (connection ExecutorService)
+     *
+     * @param mBeanServerConnection
+     */
+    private void healthCheck(MBeanServerConnection mBeanServerConnection) {
+        try {
+            mBeanServerConnection.getMBeanCount();
+
+            synchronized (this) {
+                if (!isClosed && (this.mBeanServerConnection == mBeanServerConnection)) {
+                    cancel();
+                    schedule(this::startHealthCheck, healthCheckMilliseconds);
+                }
+            }
+        } catch (Throwable t) {
+            failed(mBeanServerConnection, t);
+        }
+    }
+
+    /**
+     * Method to handle JMXConnectionNotifications
+     *
+     * @param notification
+     * @param handback the JMXConnector
+     */
+    private void handleConnectionNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (!JMXConnectionNotification.FAILED.equals(type) && !JMXConnectionNotification.CLOSED.equals(type)) {
+            return;
+        }
+
+        synchronized (this) {
+            if ((state == State.CONNECTED) && (jmxConnector == handback)) {
+                disconnect(String.format("connection notification [%s]", type));
+                schedule(this::startConnect, 0);
+            }
+        }
+    }
+
+    /**
+     * Method to disconnect (called while synchronized)
+     *
+     * @param reason
+     */
+    private void disconnect(String reason) {
+        LOGGER.warn(String.format("target [%s] disconnected, %s", name, reason));
+
+        JMXConnector jmxConnector = this.jmxConnector;
+
+        this.jmxConnector = null;
+        this.mBeanServerConnection = null;
+        this.state = State.DISCONNECTED;
+        this.disconnectedNanoseconds = System.nanoTime();
+
+        connectionLosses.incrementAndGet();
+
+        cancel();
+
+        if (jmxConnector != null) {
+            // Closing may block on a dead connection, so close in the background
+            try {
+                connectionExecutorService.execute(() -> closeQuietly(jmxConnector));
+            } catch (RejectedExecutionException e) {
+                // DO NOTHING, the ExecutorService has been shutdown
+            }
+        }
+    }
+
+    /**
+     * Method to cancel the scheduled task, timeout, and connection task (called while synchronized)
+     * <p>
+     * Called from the connection task itself once it's done, so a running connection task isn't interrupted
+     */
+    private void cancel() {
+        if (scheduledFuture != null) {
+            scheduledFuture.cancel(false);
+            scheduledFuture = null;
+        }
+
+        if (timeoutScheduledFuture != null) {
+            timeoutScheduledFuture.cancel(false);
+            timeoutScheduledFuture = null;
+        }
+
+        connectionFuture = null;
+    }
+
+    /**
+     * Method to schedule a task (called while synchronized)
+     *
+     * @param runnable
+     * @param delayMilliseconds
+     */
+    private void schedule(Runnable runnable, long delayMilliseconds) {
+        if (isClosed) {
+            return;
+        }
+
+        scheduledFuture = scheduledExecutorService.schedule(runnable, delayMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Method to close a JMXConnector, ignoring errors
+     *
+     * @param jmxConnector
+     */
+    private void closeQuietly(JMXConnector jmxConnector) {
+        try {
+            jmxConnector.removeConnectionNotificationListener(connectionNotificationListener);
+        } catch (Throwable t) {
+            // DO NOTHING
+        }
+
+        try {
+            jmxConnector.close();
+        } catch (Throwable t) {
+            // DO NOTHING
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.target;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.undertow.server.HttpHandler;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.undertow.handler.MetricsHttpHandler;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class to hold a remote JMX target (standalone mode)
+ * <p>
+ * Each target has its own CollectorRegistry, JMX connection, response cache, and concurrent scrape limit
+ */
+public class Target {
+
+    private final String name;
+    private final Collector collector;
+    private final JmxConnectionManager jmxConnectionManager;
+    private final HttpHandler metricsHttpHandler;
+    private final Semaphore semaphore;
+    private final AtomicLong scrapes;
+    private final AtomicLong failures;
+    private final AtomicLong rejections;
+
+    private volatile double lastScrapeDurationSeconds;
+    private volatile boolean lastScrapeSuccess;
+
+    /**
+     * Constructor
+     *
+     * @param name
+     * @param collector
+     * @param jmxConnectionManager
+     * @param maximumConcurrentScrapes
+     * @param cacheMilliseconds optional, may be null
+     */
+    public Target(String name, Collector collector, JmxConnectionManager jmxConnectionManager, int maximumConcurrentScrapes, Long cacheMilliseconds) {
+        Precondition.notNull(name, "name is null");
+        Precondition.notEmpty(name, "name is empty");
+        Precondition.notNull(collector, "collector is null");
+        Precondition.notNull(jmxConnectionManager, "jmxConnectionManager is null");
+        Precondition.inRange(maximumConcurrentScrapes, 1, Integer.MAX_VALUE, "maximumConcurrentScrapes is outside range (1 - " + Integer.MAX_VALUE + ")");
+
+        CollectorRegistry collectorRegistry = new CollectorRegistry();
+        collectorRegistry.register(collector);
+
+        this.name = name;
+        this.collector = collector;
+        this.jmxConnectionManager = jmxConnectionManager;
+        this.metricsHttpHandler = new MetricsHttpHandler(collectorRegistry, cacheMilliseconds != null, cacheMilliseconds);
+        this.semaphore = new Semaphore(maximumConcurrentScrapes);
+        this.scrapes = new AtomicLong();
+        this.failures = new AtomicLong();
+        this.rejections = new AtomicLong();
+    }
+
+    /**
+     * Method to get the target name
+     *
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Method to get the target collector
+     *
+     * @return
+     */
+    public Collector getCollector() {
+        return collector;
+    }
+
+    /**
+     * Method to get the target JmxConnectionManager
+     *
+     * @return
+     */
+    public JmxConnectionManager getJmxConnectionManager() {
+        return jmxConnectionManager;
+    }
+
+    /**
+     * Method to determine whether the target is available (connected)
+     *
+     * @return
+     */
+    public boolean isAvailable() {
+        return jmxConnectionManager.isConnected();
+    }
+
+    /**
+     * Method to get the HttpHandler that renders the target metrics
+     *
+     * @return
+     */
+    public HttpHandler getMetricsHttpHandler() {
+        return metricsHttpHandler;
+    }
+
+    /**
+     * Method to acquire a scrape permit
+     *
+     * @return true if a permit was acquired, else false (and the scrape is rejected)
+     */
+    public boolean tryAcquire() {
+        if (semaphore.tryAcquire()) {
+            return true;
+        }
+
+        rejections.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Method to release a scrape permit
+     */
+    public void release() {
+        semaphore.release();
+    }
+
+    /**
+     * Method to record a scrape
+     *
+     * @param durationNanoseconds
+     * @param success
+     */
+    public void record(long durationNanoseconds, boolean success) {
+        scrapes.incrementAndGet();
+        if (!success) {
+            failures.incrementAndGet();
+        }
+
+        lastScrapeDurationSeconds = durationNanoseconds / Collector.NANOSECONDS_PER_SECOND;
+        lastScrapeSuccess = success;
+    }
+
+    /**
+     * Method to close the target, closing the JMX connection
+     */
+    public void close() {
+        jmxConnectionManager.close();
+    }
+
+    public long getScrapes() {
+        return scrapes.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public double getLastScrapeDurationSeconds() {
+        return lastScrapeDurationSeconds;
+    }
+
+    public boolean isLastScrapeSuccess() {
+        return lastScrapeSuccess;
+    }
+}
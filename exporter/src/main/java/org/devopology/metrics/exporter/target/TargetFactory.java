@@ -0,0 +1,182 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.target;
+
+import io.prometheus.client.Collector;
+import io.prometheus.jmx.JmxCollector;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.collector.RemoteJmxCollector;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.devopology.metrics.exporter.jmx.ObjectNameFilter;
+import org.yaml.snakeyaml.Yaml;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXServiceURL;
+import javax.management.remote.rmi.RMIConnectorServer;
+import javax.naming.Context;
+import javax.rmi.ssl.SslRMIClientSocketFactory;
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Class to create targets (standalone mode)
+ */
+public class TargetFactory {
+
+    private final Map<String, Object> jmxConfigurationMap;
+    private final DefaultExport defaultExport;
+    private final ObjectNameFilter objectNameFilter;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final ExecutorService connectionExecutorService;
+    private final long connectTimeoutMilliseconds;
+    private final long healthCheckMilliseconds;
+    private final long backoffMinimumMilliseconds;
+    private final long backoffMaximumMilliseconds;
+
+    /**
+     * Constructor
+     *
+     * @param jmxConfigurationMap the JMX exporter configuration (rules, etc.) shared by all targets
+     * @param scheduledExecutorService
+     * @param connectionExecutorService
+     * @param connectTimeoutMilliseconds
+     * @param healthCheckMilliseconds
+     * @param backoffMinimumMilliseconds
+     * @param backoffMaximumMilliseconds
+     * @throws MalformedObjectNameException
+     */
+    public TargetFactory(
+            Map<String, Object> jmxConfigurationMap,
+            ScheduledExecutorService scheduledExecutorService,
+            ExecutorService connectionExecutorService,
+            long connectTimeoutMilliseconds,
+            long healthCheckMilliseconds,
+            long backoffMinimumMilliseconds,
+            long backoffMaximumMilliseconds) throws MalformedObjectNameException {
+        Precondition.notNull(jmxConfigurationMap, "jmxConfigurationMap is null");
+        Precondition.notNull(scheduledExecutorService, "scheduledExecutorService is null");
+        Precondition.notNull(connectionExecutorService, "connectionExecutorService is null");
+
+        this.jmxConfigurationMap = new LinkedHashMap<>(jmxConfigurationMap);
+        this.jmxConfigurationMap.remove("exporter");
+        this.jmxConfigurationMap.remove("hostPort");
+        this.jmxConfigurationMap.remove("jmxUrl");
+        this.jmxConfigurationMap.remove("username");
+        this.jmxConfigurationMap.remove("password");
+        this.jmxConfigurationMap.remove("ssl");
+        this.jmxConfigurationMap.remove("startDelaySeconds");
+
+        this.defaultExport = new DefaultExport(this.jmxConfigurationMap);
+        this.objectNameFilter = new ObjectNameFilter(this.jmxConfigurationMap);
+        this.scheduledExecutorService = scheduledExecutorService;
+        this.connectionExecutorService = connectionExecutorService;
+        this.connectTimeoutMilliseconds = connectTimeoutMilliseconds;
+        this.healthCheckMilliseconds = healthCheckMilliseconds;
+        this.backoffMinimumMilliseconds = backoffMinimumMilliseconds;
+        this.backoffMaximumMilliseconds = backoffMaximumMilliseconds;
+    }
+
+    /**
+     * Method to determine whether targets are collected using their persistent connection
+     * (all rules use the default export format)
+     *
+     * @return
+     */
+    public boolean isPersistentConnectionCollection() {
+        return defaultExport.isDefaultExportOnly();
+    }
+
+    /**
+     * Method to create a target, the JMX connection isn't started
+     *
+     * @param name
+     * @param jmxUrl
+     * @param username optional, may be null
+     * @param password optional, may be null
+     * @param isSSLEnabled
+     * @param maximumConcurrentScrapes
+     * @param cacheMilliseconds optional, may be null
+     * @return
+     * @throws MalformedURLException
+     * @throws MalformedObjectNameException
+     */
+    public Target createTarget(
+            String name,
+            String jmxUrl,
+            String username,
+            String password,
+            boolean isSSLEnabled,
+            int maximumConcurrentScrapes,
+            Long cacheMilliseconds) throws MalformedURLException, MalformedObjectNameException {
+        Precondition.notNull(name, "name is null");
+        Precondition.notNull(jmxUrl, "jmxUrl is null");
+
+        JMXServiceURL jmxServiceURL = new JMXServiceURL(jmxUrl);
+
+        Map<String, Object> environment = new HashMap<>();
+        if (username != null) {
+            environment.put(JMXConnector.CREDENTIALS, new String[] { username, password });
+        }
+
+        if (isSSLEnabled) {
+            // Matches the JMX exporter
+            environment.put(Context.SECURITY_PROTOCOL, "ssl");
+            SslRMIClientSocketFactory sslRMIClientSocketFactory = new SslRMIClientSocketFactory();
+            environment.put(RMIConnectorServer.RMI_CLIENT_SOCKET_FACTORY_ATTRIBUTE, sslRMIClientSocketFactory);
+            environment.put("com.sun.jndi.rmi.factory.socket", sslRMIClientSocketFactory);
+        }
+
+        JmxConnectionManager jmxConnectionManager = new JmxConnectionManager(
+                name,
+                jmxServiceURL,
+                environment,
+                scheduledExecutorService,
+                connectionExecutorService,
+                connectTimeoutMilliseconds,
+                healthCheckMilliseconds,
+                backoffMinimumMilliseconds,
+                backoffMaximumMilliseconds);
+
+        Collector collector;
+        if (defaultExport.isDefaultExportOnly()) {
+            collector = new RemoteJmxCollector(jmxConnectionManager, objectNameFilter, defaultExport);
+        } else {
+            // The JmxCollector connects per scrape, the connection is only used to fail fast
+            Map<String, Object> targetJmxConfigurationMap = new LinkedHashMap<>(jmxConfigurationMap);
+            targetJmxConfigurationMap.put("jmxUrl", jmxUrl);
+
+            if (username != null) {
+                targetJmxConfigurationMap.put("username", username);
+            }
+
+            if (password != null) {
+                targetJmxConfigurationMap.put("password", password);
+            }
+
+            targetJmxConfigurationMap.put("ssl", isSSLEnabled);
+
+            collector = new JmxCollector(new Yaml().dump(targetJmxConfigurationMap));
+        }
+
+        return new Target(name, collector, jmxConnectionManager, maximumConcurrentScrapes, cacheMilliseconds);
+    }
+}
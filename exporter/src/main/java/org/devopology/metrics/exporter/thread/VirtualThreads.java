@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.thread;
+
+import org.devopology.common.precondition.Precondition;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class to create virtual threads (Java 21+), or platform threads on Java 8 - 20
+ * <p>
+ * The Java 21 APIs are accessed using reflection, so the exporter still runs on Java 8
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL_METHOD;
+    private static final Method NAME_METHOD;
+    private static final Method FACTORY_METHOD;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR_METHOD;
+
+    static {
+        Method ofVirtualMethod = null;
+        Method nameMethod = null;
+        Method factoryMethod = null;
+        Method newThreadPerTaskExecutorMethod = null;
+
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+            nameMethod = builderClass.getMethod("name", String.class, long.class);
+            factoryMethod = builderClass.getMethod("factory");
+            newThreadPerTaskExecutorMethod = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+            // Java 19 / 20 require --enable-preview, ofVirtual() throws UnsupportedOperationException without it
+            ofVirtualMethod.invoke(null);
+        } catch (Throwable t) {
+            ofVirtualMethod = null;
+        }
+
+        OF_VIRTUAL_METHOD = ofVirtualMethod;
+        NAME_METHOD = nameMethod;
+        FACTORY_METHOD = factoryMethod;
+        NEW_THREAD_PER_TASK_EXECUTOR_METHOD = newThreadPerTaskExecutorMethod;
+    }
+
+    /**
+     * Constructor
+     */
+    private VirtualThreads() {
+        // DO NOTHING
+    }
+
+    /**
+     * Method to check if virtual threads are supported (Java 21+)
+     *
+     * @return true if virtual threads are supported
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL_METHOD != null;
+    }
+
+    /**
+     * Method to create a ThreadFactory. Threads are named "<prefix><index>" and use the
+     * exporter classloader as the context classloader. Platform threads are daemon threads.
+     *
+     * @param prefix
+     * @param isVirtual create virtual threads, ignored if virtual threads are not supported
+     * @return the ThreadFactory
+     */
+    public static ThreadFactory newThreadFactory(String prefix, boolean isVirtual) {
+        Precondition.notNull(prefix, "prefix is null");
+
+        ClassLoader classLoader = VirtualThreads.class.getClassLoader();
+
+        if (isVirtual && isSupported()) {
+            ThreadFactory threadFactory = newVirtualThreadFactory(prefix);
+
+            return runnable -> {
+                Thread thread = threadFactory.newThread(runnable);
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            };
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        };
+    }
+
+    /**
+     * Method to create an ExecutorService that runs each task on a new virtual thread
+     *
+     * @param prefix
+     * @return the ExecutorService
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        Precondition.notNull(prefix, "prefix is null");
+
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("virtual threads require Java 21+");
+        }
+
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR_METHOD.invoke(null, newThreadFactory(prefix, true));
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("virtual threads require Java 21+", e);
+        }
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String prefix) {
+        try {
+            Object builder = OF_VIRTUAL_METHOD.invoke(null);
+            builder = NAME_METHOD.invoke(builder, prefix, 0L);
+            return (ThreadFactory) FACTORY_METHOD.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("virtual threads require Java 21+", e);
+        }
+    }
+}
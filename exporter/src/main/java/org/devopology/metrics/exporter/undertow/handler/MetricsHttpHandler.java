@@ -22,21 +22,36 @@ import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.HeaderValues;
 import io.undertow.util.Headers;
+import io.undertow.util.SameThreadExecutor;
 import net.jodah.expiringmap.ExpiringMap;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
 import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.collector.CollectionExecutor;
 
 import java.io.StringWriter;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Class to handle a metrics request
+ * <p>
+ * If a CollectionExecutor is set, collection and rendering are dispatched off the IO thread to the CollectionExecutor,
+ * so a slow collection doesn't block other requests (e.g. "/-/healthy") handled by the IO thread. Requests
+ * shed by the CollectionExecutor are handled by the shed HttpHandler
  */
 public class MetricsHttpHandler implements HttpHandler {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsHttpHandler.class);
+
+    private CollectorRegistry collectorRegistry;
     private Boolean isCachingEnabled;
     private Long cacheMilliseconds;
     private Map<String, String> responseMap;
+    private CollectionExecutor collectionExecutor;
+    private HttpHandler shedHttpHandler;
+    private InternalServerErrorHttpHandler internalServerErrorHttpHandler;
 
     /**
      * Constructor
@@ -45,6 +60,18 @@ public class MetricsHttpHandler implements HttpHandler {
      * @param cacheMilliseconds
      */
     public MetricsHttpHandler(Boolean isCachingEnabled, Long cacheMilliseconds) {
+        this(CollectorRegistry.defaultRegistry, isCachingEnabled, cacheMilliseconds);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param collectorRegistry
+     * @param isCachingEnabled
+     * @param cacheMilliseconds
+     */
+    public MetricsHttpHandler(CollectorRegistry collectorRegistry, Boolean isCachingEnabled, Long cacheMilliseconds) {
+        Precondition.notNull(collectorRegistry, "collectorRegistry is null");
         Precondition.notNull(isCachingEnabled, "isCachingEnabled is null");
 
         if (isCachingEnabled) {
@@ -52,6 +79,7 @@ public class MetricsHttpHandler implements HttpHandler {
             Precondition.inRange(cacheMilliseconds, 1, Long.MAX_VALUE, "cacheMilliseconds is outside range (1 - " + Long.MAX_VALUE + ")");
         }
 
+        this.collectorRegistry = collectorRegistry;
         this.isCachingEnabled = isCachingEnabled;
         this.cacheMilliseconds = cacheMilliseconds;
 
@@ -60,6 +88,21 @@ public class MetricsHttpHandler implements HttpHandler {
         }
     }
 
+    /**
+     * Method to set the CollectionExecutor used for collection. If not set, collection runs on the calling thread
+     *
+     * @param collectionExecutor
+     * @param shedHttpHandler
+     */
+    public void setCollectionExecutor(CollectionExecutor collectionExecutor, HttpHandler shedHttpHandler) {
+        Precondition.notNull(collectionExecutor, "collectionExecutor is null");
+        Precondition.notNull(shedHttpHandler, "shedHttpHandler is null");
+
+        this.collectionExecutor = collectionExecutor;
+        this.shedHttpHandler = shedHttpHandler;
+        this.internalServerErrorHttpHandler = new InternalServerErrorHttpHandler();
+    }
+
     /**
      * Method to handle the HttpServerExchange
      *
@@ -68,6 +111,48 @@ public class MetricsHttpHandler implements HttpHandler {
      */
     @Override
     public void handleRequest(HttpServerExchange httpServerExchange) throws Exception {
+        if ((collectionExecutor == null) || !httpServerExchange.isInIoThread()) {
+            collect(httpServerExchange);
+            return;
+        }
+
+        // Hand off to the Executor once the IO thread has returned from the handler
+        httpServerExchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+            try {
+                collectionExecutor.execute(() -> {
+                    try {
+                        collect(httpServerExchange);
+                    } catch (Throwable t) {
+                        LOGGER.warn(String.format("collection failed [%s]", t.getMessage()));
+                        internalServerErrorHttpHandler.handleRequest(httpServerExchange);
+                    }
+                }, () -> shed(httpServerExchange));
+            } catch (RejectedExecutionException e) {
+                shed(httpServerExchange);
+            }
+        });
+    }
+
+    /**
+     * Method to respond to a shed request
+     *
+     * @param httpServerExchange
+     */
+    private void shed(HttpServerExchange httpServerExchange) {
+        try {
+            shedHttpHandler.handleRequest(httpServerExchange);
+        } catch (Exception e) {
+            // DO NOTHING
+        }
+    }
+
+    /**
+     * Method to collect and send the metrics
+     *
+     * @param httpServerExchange
+     * @throws Exception
+     */
+    private void collect(HttpServerExchange httpServerExchange) throws Exception {
         HeaderValues headerValues = httpServerExchange.getRequestHeaders().get(Headers.ACCEPT);
 
         String acceptHeader = null;
@@ -85,14 +170,14 @@ public class MetricsHttpHandler implements HttpHandler {
                 response = responseMap.get(contentType);
                 if (response == null) {
                     StringWriter stringWriter = new StringWriter(4096);
-                    TextFormat.writeFormat(contentType, stringWriter, CollectorRegistry.defaultRegistry.metricFamilySamples());
+                    TextFormat.writeFormat(contentType, stringWriter, collectorRegistry.metricFamilySamples());
                     response = stringWriter.toString();
                     responseMap.put(contentType, response);
                 }
             }
         } else {
             StringWriter stringWriter = new StringWriter(4096);
-            TextFormat.writeFormat(contentType, stringWriter, CollectorRegistry.defaultRegistry.metricFamilySamples());
+            TextFormat.writeFormat(contentType, stringWriter, collectorRegistry.metricFamilySamples());
             response = stringWriter.toString();
         }
 
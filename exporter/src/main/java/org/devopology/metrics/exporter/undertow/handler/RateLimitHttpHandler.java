@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.undertow.handler;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.common.ratelimit.TokenBucketRateLimiter;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Class to rate limit requests per client (remote address) using a token bucket per endpoint
+ * <p>
+ * Runs before authentication, so a rejected request doesn't cost authentication or collection.
+ * Requests not matching an endpoint aren't rate limited
+ */
+public class RateLimitHttpHandler implements HttpHandler {
+
+    private final HttpHandler httpHandler;
+    private final List<RateLimit> rateLimitList;
+
+    /**
+     * Constructor
+     *
+     * @param httpHandler
+     */
+    public RateLimitHttpHandler(HttpHandler httpHandler) {
+        Precondition.notNull(httpHandler, "httpHandler is null");
+
+        this.httpHandler = httpHandler;
+        this.rateLimitList = new ArrayList<>();
+    }
+
+    /**
+     * Method to add an endpoint rate limit. The first matching endpoint is used
+     *
+     * @param predicate
+     * @param tokenBucketRateLimiter
+     * @param rejectedHttpHandler
+     */
+    public void addRateLimit(
+            Predicate<HttpServerExchange> predicate,
+            TokenBucketRateLimiter<InetAddress> tokenBucketRateLimiter,
+            HttpHandler rejectedHttpHandler) {
+        Precondition.notNull(predicate, "predicate is null");
+        Precondition.notNull(tokenBucketRateLimiter, "tokenBucketRateLimiter is null");
+        Precondition.notNull(rejectedHttpHandler, "rejectedHttpHandler is null");
+
+        rateLimitList.add(new RateLimit(predicate, tokenBucketRateLimiter, rejectedHttpHandler));
+    }
+
+    /**
+     * Method to handle the HttpServerExchange
+     *
+     * @param httpServerExchange
+     * @throws Exception
+     */
+    @Override
+    public void handleRequest(HttpServerExchange httpServerExchange) throws Exception {
+        for (RateLimit rateLimit : rateLimitList) {
+            if (rateLimit.predicate.test(httpServerExchange)) {
+                InetSocketAddress inetSocketAddress = httpServerExchange.getSourceAddress();
+                InetAddress inetAddress = inetSocketAddress != null ? inetSocketAddress.getAddress() : null;
+
+                if ((inetAddress != null) && !rateLimit.tokenBucketRateLimiter.tryAcquire(inetAddress)) {
+                    rateLimit.rejectedHttpHandler.handleRequest(httpServerExchange);
+                    return;
+                }
+
+                break;
+            }
+        }
+
+        httpHandler.handleRequest(httpServerExchange);
+    }
+
+    /**
+     * Class to hold an endpoint rate limit
+     */
+    private static class RateLimit {
+
+        private final Predicate<HttpServerExchange> predicate;
+        private final TokenBucketRateLimiter<InetAddress> tokenBucketRateLimiter;
+        private final HttpHandler rejectedHttpHandler;
+
+        private RateLimit(
+                Predicate<HttpServerExchange> predicate,
+                TokenBucketRateLimiter<InetAddress> tokenBucketRateLimiter,
+                HttpHandler rejectedHttpHandler) {
+            this.predicate = predicate;
+            this.tokenBucketRateLimiter = tokenBucketRateLimiter;
+            this.rejectedHttpHandler = rejectedHttpHandler;
+        }
+    }
+}
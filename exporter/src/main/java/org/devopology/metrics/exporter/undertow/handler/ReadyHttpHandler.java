@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.undertow.handler;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.devopology.common.precondition.Precondition;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Class to handle a "/-/ready" request
+ * <p>
+ * Responds 200 OK once ready, 503 SERVICE UNAVAILABLE while not ready (e.g. waiting for the JMX start delay)
+ */
+public class ReadyHttpHandler implements HttpHandler {
+
+    private final BooleanSupplier readySupplier;
+
+    /**
+     * Constructor
+     *
+     * @param readySupplier
+     */
+    public ReadyHttpHandler(BooleanSupplier readySupplier) {
+        Precondition.notNull(readySupplier, "readySupplier is null");
+
+        this.readySupplier = readySupplier;
+    }
+
+    /**
+     * Method to handle the HttpServerExchange
+     *
+     * @param httpServerExchange
+     * @throws Exception
+     */
+    @Override
+    public void handleRequest(HttpServerExchange httpServerExchange) throws Exception {
+        httpServerExchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
+
+        if (readySupplier.getAsBoolean()) {
+            httpServerExchange.setStatusCode(200);
+            httpServerExchange.getResponseSender().send("Exporter is ready.");
+        } else {
+            httpServerExchange.setStatusCode(503);
+            httpServerExchange.getResponseSender().send("Exporter is not ready.");
+        }
+    }
+}
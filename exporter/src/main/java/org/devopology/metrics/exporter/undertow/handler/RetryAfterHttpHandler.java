@@ -0,0 +1,56 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.undertow.handler;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.devopology.common.precondition.Precondition;
+
+/**
+ * Class to handle a shed request (503 SERVICE UNAVAILABLE or 429 TOO MANY REQUESTS) with a Retry-After header
+ */
+public class RetryAfterHttpHandler extends StaticContentHttpHandler {
+
+    private final String retryAfterSeconds;
+
+    /**
+     * Constructor
+     *
+     * @param statusCode 503 or 429
+     * @param retryAfterSeconds
+     */
+    public RetryAfterHttpHandler(int statusCode, long retryAfterSeconds) {
+        super(statusCode, "text/plain", statusCode == 429 ? "429 TOO MANY REQUESTS" : "503 SERVICE UNAVAILABLE");
+
+        Precondition.isTrue((statusCode == 503) || (statusCode == 429), IllegalArgumentException.class, String.format("invalid status code [%d]", statusCode));
+        Precondition.inRange(retryAfterSeconds, 0, Long.MAX_VALUE, "retryAfterSeconds is outside range (0 - " + Long.MAX_VALUE + ")");
+
+        this.retryAfterSeconds = String.valueOf(retryAfterSeconds);
+    }
+
+    /**
+     * Method to handle the HttpServerExchange
+     *
+     * @param httpServerExchange
+     * @throws Exception
+     */
+    @Override
+    public void handleRequest(HttpServerExchange httpServerExchange) throws Exception {
+        httpServerExchange.getResponseHeaders().put(Headers.RETRY_AFTER, retryAfterSeconds);
+        super.handleRequest(httpServerExchange);
+    }
+}
@@ -38,7 +38,7 @@ public class StaticContentHttpHandler implements HttpHandler {
      * @param content
      */
     public StaticContentHttpHandler(int statusCode, String contentType, String content) {
-        Precondition.inRange(statusCode, 100, 500, String.format("invalid status code [%d]", statusCode));
+        Precondition.inRange(statusCode, 100, 599, String.format("invalid status code [%d]", statusCode));
         Precondition.notNull(contentType, "contentType is null");
         Precondition.notEmpty(contentType, "contentType is empty");
         Precondition.notNull(content, "content is null");
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.undertow.handler;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.SameThreadExecutor;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+import org.devopology.metrics.exporter.target.Target;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Class to handle a target metrics request (standalone mode)
+ * <p>
+ * The target is selected using "/probe?target=<name>" or "/targets/<name>". Collection
+ * is dispatched off the IO thread to a bounded Executor, so a slow target doesn't block
+ * requests for other targets. A disconnected target fails fast on the IO thread
+ */
+public class TargetHttpHandler implements HttpHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TargetHttpHandler.class);
+
+    private static final String TARGET_PARAMETER = "target";
+    private static final String TARGETS_PATH_PREFIX = "/targets/";
+
+    private final Map<String, Target> targetMap;
+    private final Executor executor;
+    private final HttpHandler badRequestHttpHandler;
+    private final HttpHandler notFoundHttpHandler;
+    private final HttpHandler serviceUnavailableHttpHandler;
+    private final InternalServerErrorHttpHandler internalServerErrorHttpHandler;
+
+    /**
+     * Constructor
+     *
+     * @param targetMap
+     * @param executor
+     */
+    public TargetHttpHandler(Map<String, Target> targetMap, Executor executor) {
+        Precondition.notNull(targetMap, "targetMap is null");
+        Precondition.notNull(executor, "executor is null");
+
+        this.targetMap = targetMap;
+        this.executor = executor;
+        this.badRequestHttpHandler = new StaticContentHttpHandler(400, "text/plain", "400 BAD REQUEST");
+        this.notFoundHttpHandler = new NotFoundHttpHandler();
+        this.serviceUnavailableHttpHandler = new StaticContentHttpHandler(503, "text/plain", "503 SERVICE UNAVAILABLE");
+        this.internalServerErrorHttpHandler = new InternalServerErrorHttpHandler();
+    }
+
+    /**
+     * Method to handle the HttpServerExchange
+     *
+     * @param httpServerExchange
+     * @throws Exception
+     */
+    @Override
+    public void handleRequest(HttpServerExchange httpServerExchange) throws Exception {
+        String name = getTargetName(httpServerExchange);
+        if ((name == null) || name.isEmpty()) {
+            badRequestHttpHandler.handleRequest(httpServerExchange);
+            return;
+        }
+
+        Target target = targetMap.get(name);
+        if (target == null) {
+            notFoundHttpHandler.handleRequest(httpServerExchange);
+            return;
+        }
+
+        if (!target.isAvailable()) {
+            target.record(0, false);
+            serviceUnavailableHttpHandler.handleRequest(httpServerExchange);
+            return;
+        }
+
+        if (!target.tryAcquire()) {
+            serviceUnavailableHttpHandler.handleRequest(httpServerExchange);
+            return;
+        }
+
+        // Hand off to the Executor once the IO thread has returned from the handler
+        httpServerExchange.dispatch(SameThreadExecutor.INSTANCE, () -> {
+            try {
+                executor.execute(() -> collect(target, httpServerExchange));
+            } catch (RejectedExecutionException e) {
+                target.release();
+
+                try {
+                    serviceUnavailableHttpHandler.handleRequest(httpServerExchange);
+                } catch (Exception e2) {
+                    // DO NOTHING
+                }
+            }
+        });
+    }
+
+    /**
+     * Method to collect and send the target metrics
+     *
+     * @param target
+     * @param httpServerExchange
+     */
+    private void collect(Target target, HttpServerExchange httpServerExchange) {
+        long startNanoseconds = System.nanoTime();
+        boolean success = false;
+
+        try {
+            target.getMetricsHttpHandler().handleRequest(httpServerExchange);
+            success = true;
+        } catch (Throwable t) {
+            LOGGER.warn(String.format("target [%s] collection failed [%s]", target.getName(), t.getMessage()));
+            internalServerErrorHttpHandler.handleRequest(httpServerExchange);
+        } finally {
+            target.record(System.nanoTime() - startNanoseconds, success);
+            target.release();
+        }
+    }
+
+    /**
+     * Method to get the target name from the query parameter or request path
+     *
+     * @param httpServerExchange
+     * @return the target name, or null if not present
+     */
+    private static String getTargetName(HttpServerExchange httpServerExchange) {
+        String requestPath = httpServerExchange.getRequestPath();
+        if (requestPath.startsWith(TARGETS_PATH_PREFIX)) {
+            return requestPath.substring(TARGETS_PATH_PREFIX.length());
+        }
+
+        Deque<String> deque = httpServerExchange.getQueryParameters().get(TARGET_PARAMETER);
+        if (deque == null) {
+            return null;
+        }
+
+        return deque.peekFirst();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.undertow.security;
+
+import io.undertow.security.idm.Account;
+import io.undertow.security.idm.Credential;
+import io.undertow.security.idm.IdentityManager;
+import io.undertow.security.idm.X509CertificateCredential;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Class to implement a client certificate IdentityManager
+ * <p>
+ * Client certificates are verified (truststore and allowlist) by the {@link ClientCertificateTrustManager}
+ * during the handshake, so any client certificate presented on the connection is accepted. Username / password
+ * verification is delegated to an optional IdentityManager (BASIC authentication)
+ */
+public class ClientCertificateIdentityManager implements IdentityManager {
+
+    private static final Set<String> ROLES = Collections.emptySet();
+
+    private IdentityManager identityManager;
+
+    /**
+     * Constructor
+     *
+     * @param identityManager the username / password IdentityManager, may be null
+     */
+    public ClientCertificateIdentityManager(IdentityManager identityManager) {
+        this.identityManager = identityManager;
+    }
+
+    /**
+     * Method to verify an Account
+     *
+     * @param account
+     * @return
+     */
+    @Override
+    public Account verify(Account account) {
+        return account;
+    }
+
+    /**
+     * Method to verify an id and Credential
+     *
+     * @param id
+     * @param credential
+     * @return
+     */
+    @Override
+    public Account verify(String id, Credential credential) {
+        if (identityManager == null) {
+            return null;
+        }
+
+        return identityManager.verify(id, credential);
+    }
+
+    /**
+     * Method to verify a Credential
+     *
+     * @param credential
+     * @return
+     */
+    @Override
+    public Account verify(Credential credential) {
+        if (credential instanceof X509CertificateCredential) {
+            return new CertificateAccount(((X509CertificateCredential) credential).getCertificate().getSubjectX500Principal());
+        }
+
+        return null;
+    }
+
+    /**
+     * Class to implement a CertificateAccount
+     */
+    private static class CertificateAccount implements Account {
+
+        private static final long serialVersionUID = 1L;
+
+        // Accounts aren't serialized (no session persistence), X500Principal is Serializable but Principal isn't
+        private final transient Principal principal;
+
+        public CertificateAccount(Principal principal) {
+            this.principal = principal;
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return principal;
+        }
+
+        @Override
+        public Set<String> getRoles() {
+            return ROLES;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.undertow.security;
+
+import org.devopology.common.precondition.Precondition;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.security.auth.x500.X500Principal;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Class to implement an X509ExtendedTrustManager that verifies client certificates against a truststore,
+ * then matches the client certificate subject / subject alternative names against an optional allowlist
+ * <p>
+ * Client certificates are only checked during a full handshake, so the result is cached
+ * for the SSL/TLS session (keep-alive requests and resumed sessions aren't checked again)
+ */
+public class ClientCertificateTrustManager extends X509ExtendedTrustManager {
+
+    private X509ExtendedTrustManager x509ExtendedTrustManager;
+    private Set<String> allowedSubjectSet;
+    private Set<String> allowedSubjectAlternativeNameSet;
+
+    /**
+     * Constructor
+     *
+     * @param x509ExtendedTrustManager the truststore X509ExtendedTrustManager
+     * @param allowedSubjects allowed subject distinguished names
+     * @param allowedSubjectAlternativeNames allowed subject alternative names (DNS, IP address, email, URI)
+     */
+    public ClientCertificateTrustManager(
+            X509ExtendedTrustManager x509ExtendedTrustManager,
+            Collection<String> allowedSubjects,
+            Collection<String> allowedSubjectAlternativeNames) {
+        Precondition.notNull(x509ExtendedTrustManager, "x509ExtendedTrustManager is null");
+        Precondition.notNull(allowedSubjects, "allowedSubjects is null");
+        Precondition.notNull(allowedSubjectAlternativeNames, "allowedSubjectAlternativeNames is null");
+
+        this.x509ExtendedTrustManager = x509ExtendedTrustManager;
+        this.allowedSubjectSet = new HashSet<>();
+        this.allowedSubjectAlternativeNameSet = new HashSet<>();
+
+        for (String allowedSubject : allowedSubjects) {
+            // Throws IllegalArgumentException if the distinguished name is invalid
+            allowedSubjectSet.add(new X500Principal(allowedSubject.trim()).getName(X500Principal.CANONICAL));
+        }
+
+        for (String allowedSubjectAlternativeName : allowedSubjectAlternativeNames) {
+            allowedSubjectAlternativeNameSet.add(allowedSubjectAlternativeName.trim().toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] x509Certificates, String authType) throws CertificateException {
+        x509ExtendedTrustManager.checkClientTrusted(x509Certificates, authType);
+        checkAllowed(x509Certificates);
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] x509Certificates, String authType, Socket socket) throws CertificateException {
+        x509ExtendedTrustManager.checkClientTrusted(x509Certificates, authType, socket);
+        checkAllowed(x509Certificates);
+    }
+
+    @Override
+    public void checkClientTrusted(X509Certificate[] x509Certificates, String authType, SSLEngine sslEngine) throws CertificateException {
+        x509ExtendedTrustManager.checkClientTrusted(x509Certificates, authType, sslEngine);
+        checkAllowed(x509Certificates);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] x509Certificates, String authType) throws CertificateException {
+        x509ExtendedTrustManager.checkServerTrusted(x509Certificates, authType);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] x509Certificates, String authType, Socket socket) throws CertificateException {
+        x509ExtendedTrustManager.checkServerTrusted(x509Certificates, authType, socket);
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] x509Certificates, String authType, SSLEngine sslEngine) throws CertificateException {
+        x509ExtendedTrustManager.checkServerTrusted(x509Certificates, authType, sslEngine);
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return x509ExtendedTrustManager.getAcceptedIssuers();
+    }
+
+    /**
+     * Method to check the client certificate subject / subject alternative names against the allowlist
+     *
+     * @param x509Certificates
+     * @throws CertificateException
+     */
+    private void checkAllowed(X509Certificate[] x509Certificates) throws CertificateException {
+        if (allowedSubjectSet.isEmpty() && allowedSubjectAlternativeNameSet.isEmpty()) {
+            return;
+        }
+
+        X509Certificate x509Certificate = x509Certificates[0];
+
+        if (allowedSubjectSet.contains(x509Certificate.getSubjectX500Principal().getName(X500Principal.CANONICAL))) {
+            return;
+        }
+
+        if (!allowedSubjectAlternativeNameSet.isEmpty()) {
+            try {
+                Collection<List<?>> subjectAlternativeNames = x509Certificate.getSubjectAlternativeNames();
+                if (subjectAlternativeNames != null) {
+                    for (List<?> subjectAlternativeName : subjectAlternativeNames) {
+                        // Entry is [type, value], only String values (DNS, IP address, email, URI) are matched
+                        Object value = subjectAlternativeName.get(1);
+                        if ((value instanceof String)
+                                && allowedSubjectAlternativeNameSet.contains(((String) value).toLowerCase(Locale.ENGLISH))) {
+                            return;
+                        }
+                    }
+                }
+            } catch (CertificateParsingException e) {
+                throw new CertificateException("client certificate subject alternative names are invalid", e);
+            }
+        }
+
+        throw new CertificateException(
+                String.format("client certificate [%s] isn't allowed", x509Certificate.getSubjectX500Principal().getName()));
+    }
+}
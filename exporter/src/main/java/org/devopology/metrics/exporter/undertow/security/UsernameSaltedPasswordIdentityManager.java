@@ -23,6 +23,7 @@ import io.undertow.security.idm.PasswordCredential;
 import org.devopology.common.logger.Logger;
 import org.devopology.common.logger.LoggerFactory;
 import org.devopology.common.password.HashedPassword;
+import org.devopology.common.password.VerifiedCredentialCache;
 import org.devopology.common.precondition.Precondition;
 
 import java.security.Principal;
@@ -40,6 +41,7 @@ public class UsernameSaltedPasswordIdentityManager implements IdentityManager {
 
     private String username;
     private HashedPassword hashedPassword;
+    private VerifiedCredentialCache verifiedCredentialCache;
 
     /**
      * Constructor
@@ -48,6 +50,17 @@ public class UsernameSaltedPasswordIdentityManager implements IdentityManager {
      * @param encryptedPassword
      */
     public UsernameSaltedPasswordIdentityManager(String username, String encryptedPassword) {
+        this(username, encryptedPassword, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param username
+     * @param encryptedPassword
+     * @param verifiedCredentialCache cache of verified credentials, may be null
+     */
+    public UsernameSaltedPasswordIdentityManager(String username, String encryptedPassword, VerifiedCredentialCache verifiedCredentialCache) {
         Precondition.notNull(username, "username is null");
         Precondition.notEmpty(username, "username is empty");
         Precondition.notNull(encryptedPassword, "encryptedPassword is null");
@@ -55,6 +68,7 @@ public class UsernameSaltedPasswordIdentityManager implements IdentityManager {
 
         this.username = username.trim();
         this.hashedPassword = new HashedPassword(encryptedPassword);
+        this.verifiedCredentialCache = verifiedCredentialCache;
     }
 
     /**
@@ -86,9 +100,18 @@ public class UsernameSaltedPasswordIdentityManager implements IdentityManager {
             if (passwordCharacters != null) {
                 String password = new String(passwordCharacters).trim();
                 if (password.length() > 0) {
+                    // Skip hashing the password if the credentials were recently verified
+                    if ((verifiedCredentialCache != null) && verifiedCredentialCache.isVerified(username, password)) {
+                        return new SimpleAccount(username, ROLES);
+                    }
+
                     String salt = this.hashedPassword.getSalt();
                     HashedPassword hashedPassword = new HashedPassword(salt, password);
                     if (this.hashedPassword.equals(hashedPassword)) {
+                        if (verifiedCredentialCache != null) {
+                            verifiedCredentialCache.put(username, password);
+                        }
+
                         return new SimpleAccount(username, ROLES);
                     }
                 }
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.undertow;
+
+import org.xnio.ChannelListener;
+import org.xnio.ChannelPipe;
+import org.xnio.IoUtils;
+import org.xnio.StreamConnection;
+import org.xnio.XnioWorker;
+import org.xnio.channels.Channels;
+import org.xnio.channels.StreamSinkChannel;
+import org.xnio.channels.StreamSourceChannel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class to accept HTTP connections on a Unix domain socket (Java 16+)
+ * <p>
+ * XNIO can't wrap a Unix domain SocketChannel (NioSocketStreamConnection uses Socket APIs that
+ * aren't supported for Unix domain sockets), so each accepted connection is bridged to one side of an
+ * XNIO full duplex pipe, and the other side is handled by the Undertow open listener like a TCP connection.
+ * <p>
+ * Each connection uses one thread, blocking on socket reads (requests). Responses are read from the pipe
+ * without blocking by a read listener on the XNIO IO thread, and written to the socket by an XNIO worker task.
+ * <p>
+ * Java 17+ version (multi-release jar), uses the Unix domain socket API directly instead of reflection
+ */
+final class UnixDomainSocketAcceptor implements Closeable {
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private final Path path;
+    private final XnioWorker worker;
+    private final ChannelListener<StreamConnection> openListener;
+    private final Semaphore connectionSemaphore;
+    private final ServerSocketChannel serverSocketChannel;
+    private final ExecutorService executorService;
+    private volatile boolean isClosed;
+
+    /**
+     * Method to check if Unix domain sockets are supported (Java 16+)
+     *
+     * @return true if Unix domain sockets are supported
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param path the socket file, an existing socket file is replaced
+     * @param permissions the socket file POSIX permissions (e.g. "rw-------")
+     * @param maximumConnections
+     * @param worker
+     * @param openListener
+     * @throws IOException
+     */
+    UnixDomainSocketAcceptor(
+            String path,
+            String permissions,
+            int maximumConnections,
+            XnioWorker worker,
+            ChannelListener<StreamConnection> openListener) throws IOException {
+        this.path = Paths.get(path);
+        this.worker = worker;
+        this.openListener = openListener;
+        this.connectionSemaphore = new Semaphore(maximumConnections);
+
+        UnixDomainSocketAddress unixDomainSocketAddress = UnixDomainSocketAddress.of(this.path);
+
+        Files.deleteIfExists(this.path);
+
+        this.serverSocketChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+
+        try {
+            this.serverSocketChannel.bind(unixDomainSocketAddress);
+        } catch (IOException | RuntimeException e) {
+            IoUtils.safeClose(serverSocketChannel);
+            throw e;
+        }
+
+        try {
+            Files.setPosixFilePermissions(this.path, PosixFilePermissions.fromString(permissions));
+        } catch (IOException | RuntimeException e) {
+            IoUtils.safeClose(serverSocketChannel);
+            Files.deleteIfExists(this.path);
+            throw e;
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executorService = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "unix-domain-socket-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.executorService.execute(this::accept);
+    }
+
+    /**
+     * Method to close the acceptor, closing open connections and deleting the socket file
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        IoUtils.safeClose(serverSocketChannel);
+        executorService.shutdownNow();
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // DO NOTHING
+        }
+    }
+
+    /**
+     * Method to accept connections
+     */
+    private void accept() {
+        while (!isClosed) {
+            SocketChannel socketChannel;
+
+            try {
+                socketChannel = serverSocketChannel.accept();
+            } catch (IOException e) {
+                if (isClosed || !serverSocketChannel.isOpen()) {
+                    return;
+                }
+
+                UndertowLogger.ROOT_LOGGER.debugf(e, "Unix domain socket [%s] accept failed", path);
+                continue;
+            }
+
+            if (!connectionSemaphore.tryAcquire()) {
+                // Maximum connections
+                IoUtils.safeClose(socketChannel);
+                continue;
+            }
+
+            try {
+                ChannelPipe<StreamConnection, StreamConnection> channelPipe = worker.createFullDuplexPipeConnection();
+                StreamConnection serverStreamConnection = channelPipe.getLeftSide();
+                StreamConnection bridgeStreamConnection = channelPipe.getRightSide();
+
+                serverStreamConnection.getIoThread().execute(() -> openListener.handleEvent(serverStreamConnection));
+
+                new Connection(socketChannel, bridgeStreamConnection).start();
+            } catch (Throwable t) {
+                UndertowLogger.ROOT_LOGGER.debugf(t, "Unix domain socket [%s] connection failed", path);
+                IoUtils.safeClose(socketChannel);
+                connectionSemaphore.release();
+            }
+        }
+    }
+
+    /**
+     * Class to copy bytes between a Unix domain socket connection and the bridge side of the pipe
+     */
+    private final class Connection {
+
+        private final SocketChannel socketChannel;
+        private final StreamConnection streamConnection;
+        private final ByteBuffer responseByteBuffer;
+        private final AtomicInteger openDirections;
+
+        // A read event queued before reads were suspended can still be delivered while writing
+        private volatile boolean isWriting;
+
+        private Connection(SocketChannel socketChannel, StreamConnection streamConnection) {
+            this.socketChannel = socketChannel;
+            this.streamConnection = streamConnection;
+            this.responseByteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.openDirections = new AtomicInteger(2);
+        }
+
+        /**
+         * Method to start bridging the connection
+         */
+        private void start() {
+            StreamSourceChannel streamSourceChannel = streamConnection.getSourceChannel();
+            streamSourceChannel.getReadSetter().set(channel -> readFromPipe());
+            streamSourceChannel.resumeReads();
+
+            executorService.execute(this::copyFromSocket);
+        }
+
+        /**
+         * Method to copy requests from the socket to the pipe (blocking)
+         */
+        private void copyFromSocket() {
+            ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+            StreamSinkChannel streamSinkChannel = streamConnection.getSinkChannel();
+
+            try {
+                while (socketChannel.read(byteBuffer) >= 0) {
+                    byteBuffer.flip();
+                    Channels.writeBlocking(streamSinkChannel, byteBuffer);
+                    Channels.flushBlocking(streamSinkChannel);
+                    byteBuffer.clear();
+                }
+
+                Channels.shutdownWritesBlocking(streamSinkChannel);
+            } catch (IOException e) {
+                IoUtils.safeClose(streamConnection);
+            } finally {
+                done();
+            }
+        }
+
+        /**
+         * Method to read responses from the pipe (XNIO IO thread, non-blocking), handing off
+         * the socket write to an XNIO worker task so a slow client doesn't block the IO thread
+         */
+        private void readFromPipe() {
+            if (isWriting) {
+                return;
+            }
+
+            StreamSourceChannel streamSourceChannel = streamConnection.getSourceChannel();
+
+            int read;
+            try {
+                read = streamSourceChannel.read(responseByteBuffer);
+            } catch (IOException e) {
+                read = -1;
+            }
+
+            if (read == 0) {
+                return;
+            }
+
+            // Reads are resumed once the response bytes are written
+            streamSourceChannel.suspendReads();
+
+            if (read < 0) {
+                // Undertow closed the connection
+                closeFromPipe();
+                return;
+            }
+
+            responseByteBuffer.flip();
+            isWriting = true;
+
+            try {
+                worker.execute(this::writeToSocket);
+            } catch (RejectedExecutionException e) {
+                closeFromPipe();
+            }
+        }
+
+        /**
+         * Method to write responses to the socket (XNIO worker task, blocking)
+         */
+        private void writeToSocket() {
+            try {
+                while (responseByteBuffer.hasRemaining()) {
+                    socketChannel.write(responseByteBuffer);
+                }
+
+                responseByteBuffer.clear();
+                isWriting = false;
+                streamConnection.getSourceChannel().wakeupReads();
+            } catch (IOException e) {
+                closeFromPipe();
+            }
+        }
+
+        /**
+         * Method to close the socket once responses are complete, unblocking the socket read
+         */
+        private void closeFromPipe() {
+            IoUtils.safeClose(socketChannel);
+            done();
+        }
+
+        private void done() {
+            if (openDirections.decrementAndGet() == 0) {
+                IoUtils.safeClose(socketChannel);
+                IoUtils.safeClose(streamConnection);
+                connectionSemaphore.release();
+            }
+        }
+    }
+}
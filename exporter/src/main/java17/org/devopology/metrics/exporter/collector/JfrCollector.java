@@ -0,0 +1,211 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import org.devopology.common.logger.Logger;
+import org.devopology.common.logger.LoggerFactory;
+import org.devopology.common.precondition.Precondition;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class to collect JDK Flight Recorder events (agent mode, Java 14+)
+ * <p>
+ * A RecordingStream delivers garbage collection, safepoint, monitor enter, and thread park events
+ * on its own thread, which are aggregated into fixed bucket histograms. A scrape only reads the aggregates.
+ * <p>
+ * Java 17+ version (multi-release jar), uses the JFR API directly instead of reflection for each event
+ */
+public class JfrCollector extends Collector implements Collector.Describable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JfrCollector.class);
+
+    private static final String GARBAGE_COLLECTION = "jdk.GarbageCollection";
+    private static final String SAFEPOINT_BEGIN = "jdk.SafepointBegin";
+    private static final String SAFEPOINT_END = "jdk.SafepointEnd";
+    private static final String JAVA_MONITOR_ENTER = "jdk.JavaMonitorEnter";
+    private static final String THREAD_PARK = "jdk.ThreadPark";
+
+    private static final double[] BUCKETS = new double[] {
+            0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    // Safepoint begin events waiting for their end event
+    private static final int MAXIMUM_PENDING_SAFEPOINTS = 64;
+
+    private final RecordingStream recordingStream;
+
+    private final Histogram gcPauseHistogram;
+    private final Histogram safepointHistogram;
+    private final Histogram monitorEnterHistogram;
+    private final Histogram threadParkHistogram;
+    private final Counter eventErrorsCounter;
+    private final Map<Long, Instant> safepointBeginMap;
+
+    /**
+     * Constructor
+     *
+     * @param thresholdMilliseconds the minimum duration of monitor enter and thread park events
+     * @throws ReflectiveOperationException never thrown, declared for compatibility with the Java 8 version
+     */
+    public JfrCollector(long thresholdMilliseconds) throws ReflectiveOperationException {
+        Precondition.inRange(thresholdMilliseconds, 0, Long.MAX_VALUE, "thresholdMilliseconds is outside range (0 - " + Long.MAX_VALUE + ")");
+
+        this.gcPauseHistogram = Histogram.build()
+                .name("jvm_jfr_gc_pause_seconds")
+                .help("Garbage collection pause time (sum of pauses per collection), in seconds")
+                .labelNames("gc")
+                .buckets(BUCKETS)
+                .create();
+
+        this.safepointHistogram = Histogram.build()
+                .name("jvm_jfr_safepoint_seconds")
+                .help("Safepoint time, from the start of synchronization to the end of the safepoint, in seconds")
+                .buckets(BUCKETS)
+                .create();
+
+        this.monitorEnterHistogram = Histogram.build()
+                .name("jvm_jfr_monitor_enter_seconds")
+                .help("Time threads waited to enter a contended monitor, in seconds")
+                .buckets(BUCKETS)
+                .create();
+
+        this.threadParkHistogram = Histogram.build()
+                .name("jvm_jfr_thread_park_seconds")
+                .help("Time threads were parked, in seconds")
+                .buckets(BUCKETS)
+                .create();
+
+        this.eventErrorsCounter = Counter.build()
+                .name("metrics_exporter_jfr_event_errors")
+                .help("Number of JFR events that couldn't be processed")
+                .create();
+
+        this.safepointBeginMap = new LinkedHashMap<Long, Instant>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Instant> eldest) {
+                return size() > MAXIMUM_PENDING_SAFEPOINTS;
+            }
+        };
+
+        Duration threshold = Duration.ofMillis(thresholdMilliseconds);
+
+        RecordingStream recordingStream = new RecordingStream();
+
+        try {
+            recordingStream.enable(GARBAGE_COLLECTION).withoutStackTrace();
+            recordingStream.enable(SAFEPOINT_BEGIN).withoutStackTrace();
+            recordingStream.enable(SAFEPOINT_END).withoutStackTrace();
+            recordingStream.enable(JAVA_MONITOR_ENTER).withoutStackTrace().withThreshold(threshold);
+            recordingStream.enable(THREAD_PARK).withoutStackTrace().withThreshold(threshold);
+
+            recordingStream.onEvent(GARBAGE_COLLECTION, this::onGarbageCollection);
+            recordingStream.onEvent(SAFEPOINT_BEGIN, this::onSafepointBegin);
+            recordingStream.onEvent(SAFEPOINT_END, this::onSafepointEnd);
+            recordingStream.onEvent(JAVA_MONITOR_ENTER, event -> observeDuration(monitorEnterHistogram, event));
+            recordingStream.onEvent(THREAD_PARK, event -> observeDuration(threadParkHistogram, event));
+
+            recordingStream.startAsync();
+        } catch (RuntimeException e) {
+            recordingStream.close();
+            throw e;
+        }
+
+        this.recordingStream = recordingStream;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> metricFamilySamplesList = new ArrayList<>();
+        metricFamilySamplesList.addAll(gcPauseHistogram.collect());
+        metricFamilySamplesList.addAll(safepointHistogram.collect());
+        metricFamilySamplesList.addAll(monitorEnterHistogram.collect());
+        metricFamilySamplesList.addAll(threadParkHistogram.collect());
+        metricFamilySamplesList.addAll(eventErrorsCounter.collect());
+        return metricFamilySamplesList;
+    }
+
+    @Override
+    public List<MetricFamilySamples> describe() {
+        return collect();
+    }
+
+    /**
+     * Method to close the collector, stopping the recording stream
+     */
+    public void close() {
+        try {
+            recordingStream.close();
+        } catch (Throwable t) {
+            LOGGER.warn(String.format("JFR recording stream close failed [%s]", t.getMessage()));
+        }
+    }
+
+    private void onGarbageCollection(RecordedEvent event) {
+        try {
+            String name = event.getString("name");
+            Duration sumOfPauses = event.getDuration("sumOfPauses");
+            gcPauseHistogram.labels(name != null ? name : "unknown").observe(toSeconds(sumOfPauses));
+        } catch (Throwable t) {
+            eventErrorsCounter.inc();
+        }
+    }
+
+    private void onSafepointBegin(RecordedEvent event) {
+        try {
+            long safepointId = event.getLong("safepointId");
+            safepointBeginMap.put(safepointId, event.getStartTime());
+        } catch (Throwable t) {
+            eventErrorsCounter.inc();
+        }
+    }
+
+    private void onSafepointEnd(RecordedEvent event) {
+        try {
+            long safepointId = event.getLong("safepointId");
+            Instant beginInstant = safepointBeginMap.remove(safepointId);
+            if (beginInstant != null) {
+                Instant endInstant = event.getEndTime();
+                safepointHistogram.observe(toSeconds(Duration.between(beginInstant, endInstant)));
+            }
+        } catch (Throwable t) {
+            eventErrorsCounter.inc();
+        }
+    }
+
+    private void observeDuration(Histogram histogram, RecordedEvent event) {
+        try {
+            histogram.observe(toSeconds(event.getDuration()));
+        } catch (Throwable t) {
+            eventErrorsCounter.inc();
+        }
+    }
+
+    private static double toSeconds(Duration duration) {
+        return duration.getSeconds() + (duration.getNano() / NANOSECONDS_PER_SECOND);
+    }
+}
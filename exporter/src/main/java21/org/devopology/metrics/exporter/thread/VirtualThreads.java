@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.thread;
+
+import org.devopology.common.precondition.Precondition;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class to create virtual threads (Java 21+), or platform threads on Java 8 - 20
+ * <p>
+ * Java 21+ version (multi-release jar), uses the virtual thread API directly instead of reflection
+ */
+public final class VirtualThreads {
+
+    /**
+     * Constructor
+     */
+    private VirtualThreads() {
+        // DO NOTHING
+    }
+
+    /**
+     * Method to check if virtual threads are supported (Java 21+)
+     *
+     * @return true if virtual threads are supported
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Method to create a ThreadFactory. Threads are named "<prefix><index>" and use the
+     * exporter classloader as the context classloader. Platform threads are daemon threads.
+     *
+     * @param prefix
+     * @param isVirtual create virtual threads
+     * @return the ThreadFactory
+     */
+    public static ThreadFactory newThreadFactory(String prefix, boolean isVirtual) {
+        Precondition.notNull(prefix, "prefix is null");
+
+        ClassLoader classLoader = VirtualThreads.class.getClassLoader();
+
+        if (isVirtual) {
+            ThreadFactory threadFactory = Thread.ofVirtual().name(prefix, 0).factory();
+
+            return runnable -> {
+                Thread thread = threadFactory.newThread(runnable);
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            };
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        };
+    }
+
+    /**
+     * Method to create an ExecutorService that runs each task on a new virtual thread
+     *
+     * @param prefix
+     * @return the ExecutorService
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String prefix) {
+        Precondition.notNull(prefix, "prefix is null");
+
+        return Executors.newThreadPerTaskExecutor(newThreadFactory(prefix, true));
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prometheus.client.hotspot;
+
+import io.prometheus.client.Collector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.prometheus.client.hotspot.ProcFileTest.getResource;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LinuxProcessExportsTest {
+
+    @TempDir
+    public Path directory;
+
+    private LinuxProcessExports linuxProcessExports;
+
+    @AfterEach
+    public void afterEach() {
+        if (linuxProcessExports != null) {
+            linuxProcessExports.close();
+        }
+    }
+
+    @Test
+    public void testProcess() throws Exception {
+        linuxProcessExports = new LinuxProcessExports(60000, getResource("/linux/proc"), new HashMap<>());
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = linuxProcessExports.collect();
+
+        assertEquals(4563740.0 * 1024, getValue(metricFamilySamplesList, "process_virtual_memory_bytes"));
+        assertEquals(250000.0 * 1024, getValue(metricFamilySamplesList, "process_resident_memory_bytes"));
+        assertEquals(1048576.0, getValue(metricFamilySamplesList, "process_max_fds"));
+
+        // The fixture doesn't have an "fd" directory
+        assertNull(getValue(metricFamilySamplesList, "process_open_fds"));
+
+        // No cgroup directories
+        assertNull(getValue(metricFamilySamplesList, "container_cpu_cfs_periods_total"));
+        assertNull(getValue(metricFamilySamplesList, "container_memory_usage_bytes"));
+    }
+
+    @Test
+    public void testCgroupV1() throws Exception {
+        Map<String, File> cgroupDirectoryMap = new HashMap<>();
+        cgroupDirectoryMap.put("cpu", getResource("/linux/cgroup-v1/cpu"));
+        cgroupDirectoryMap.put("memory", getResource("/linux/cgroup-v1/memory"));
+
+        linuxProcessExports = new LinuxProcessExports(60000, getResource("/linux/proc"), cgroupDirectoryMap);
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = linuxProcessExports.collect();
+
+        assertEquals(1000.0, getValue(metricFamilySamplesList, "container_cpu_cfs_periods_total"));
+        assertEquals(50.0, getValue(metricFamilySamplesList, "container_cpu_cfs_throttled_periods_total"));
+
+        // cgroup v1 "throttled_time" is nanoseconds
+        assertEquals(2.5, getValue(metricFamilySamplesList, "container_cpu_cfs_throttled_seconds_total"));
+
+        assertEquals(1.5, getValue(metricFamilySamplesList, "container_cpu_limit_cores"));
+        assertEquals(314572800.0, getValue(metricFamilySamplesList, "container_memory_usage_bytes"));
+        assertEquals(1073741824.0, getValue(metricFamilySamplesList, "container_memory_limit_bytes"));
+        assertEquals(2.0, getValue(metricFamilySamplesList, "container_oom_events_total"));
+    }
+
+    @Test
+    public void testCgroupV1Unlimited() throws Exception {
+        Path cpuDirectory = copy("/linux/cgroup-v1/cpu", "cpu");
+        Path memoryDirectory = copy("/linux/cgroup-v1/memory", "memory");
+
+        // No quota, and the page aligned "no limit" value
+        write(cpuDirectory.resolve("cpu.cfs_quota_us"), "-1\n");
+        write(memoryDirectory.resolve("memory.limit_in_bytes"), "9223372036854771712\n");
+
+        Map<String, File> cgroupDirectoryMap = new HashMap<>();
+        cgroupDirectoryMap.put("cpu", cpuDirectory.toFile());
+        cgroupDirectoryMap.put("memory", memoryDirectory.toFile());
+
+        linuxProcessExports = new LinuxProcessExports(60000, getResource("/linux/proc"), cgroupDirectoryMap);
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = linuxProcessExports.collect();
+
+        assertNull(getValue(metricFamilySamplesList, "container_cpu_limit_cores"));
+        assertNull(getValue(metricFamilySamplesList, "container_memory_limit_bytes"));
+        assertEquals(314572800.0, getValue(metricFamilySamplesList, "container_memory_usage_bytes"));
+    }
+
+    @Test
+    public void testCgroupV2() throws Exception {
+        Map<String, File> cgroupDirectoryMap = new HashMap<>();
+        cgroupDirectoryMap.put("", getResource("/linux/cgroup-v2"));
+
+        linuxProcessExports = new LinuxProcessExports(60000, getResource("/linux/proc"), cgroupDirectoryMap);
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = linuxProcessExports.collect();
+
+        assertEquals(2000.0, getValue(metricFamilySamplesList, "container_cpu_cfs_periods_total"));
+        assertEquals(75.0, getValue(metricFamilySamplesList, "container_cpu_cfs_throttled_periods_total"));
+
+        // cgroup v2 "throttled_usec" is microseconds
+        assertEquals(1.5, getValue(metricFamilySamplesList, "container_cpu_cfs_throttled_seconds_total"));
+
+        // "max" (no limit) isn't exported
+        assertNull(getValue(metricFamilySamplesList, "container_cpu_limit_cores"));
+        assertNull(getValue(metricFamilySamplesList, "container_memory_limit_bytes"));
+
+        assertEquals(209715200.0, getValue(metricFamilySamplesList, "container_memory_usage_bytes"));
+        assertEquals(1.0, getValue(metricFamilySamplesList, "container_oom_events_total"));
+    }
+
+    @Test
+    public void testCgroupV2Limits() throws Exception {
+        Path cgroupDirectory = copy("/linux/cgroup-v2", "cgroup");
+        write(cgroupDirectory.resolve("cpu.max"), "50000 100000\n");
+        write(cgroupDirectory.resolve("memory.max"), "536870912\n");
+
+        Map<String, File> cgroupDirectoryMap = new HashMap<>();
+        cgroupDirectoryMap.put("", cgroupDirectory.toFile());
+
+        linuxProcessExports = new LinuxProcessExports(60000, getResource("/linux/proc"), cgroupDirectoryMap);
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = linuxProcessExports.collect();
+
+        assertEquals(0.5, getValue(metricFamilySamplesList, "container_cpu_limit_cores"));
+        assertEquals(536870912.0, getValue(metricFamilySamplesList, "container_memory_limit_bytes"));
+
+        // Values are read again on every collection
+        write(cgroupDirectory.resolve("memory.current"), "104857600\n");
+        assertEquals(104857600.0, getValue(linuxProcessExports.collect(), "container_memory_usage_bytes"));
+    }
+
+    @Test
+    public void testCgroupV2MissingAndTruncated() throws Exception {
+        Path cgroupDirectory = copy("/linux/cgroup-v2", "cgroup");
+
+        // Truncated lines, a missing period, and a missing file
+        write(cgroupDirectory.resolve("cpu.stat"), "usage_usec 123456789\nnr_periods 2000\nnr_throttled\nthrottled_us");
+        write(cgroupDirectory.resolve("cpu.max"), "150000");
+        write(cgroupDirectory.resolve("memory.current"), "");
+        Files.delete(cgroupDirectory.resolve("memory.events"));
+
+        Map<String, File> cgroupDirectoryMap = new HashMap<>();
+        cgroupDirectoryMap.put("", cgroupDirectory.toFile());
+
+        linuxProcessExports = new LinuxProcessExports(60000, getResource("/linux/proc"), cgroupDirectoryMap);
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = linuxProcessExports.collect();
+
+        assertEquals(2000.0, getValue(metricFamilySamplesList, "container_cpu_cfs_periods_total"));
+        assertNull(getValue(metricFamilySamplesList, "container_cpu_cfs_throttled_periods_total"));
+        assertNull(getValue(metricFamilySamplesList, "container_cpu_cfs_throttled_seconds_total"));
+        assertNull(getValue(metricFamilySamplesList, "container_cpu_limit_cores"));
+        assertNull(getValue(metricFamilySamplesList, "container_memory_usage_bytes"));
+        assertNull(getValue(metricFamilySamplesList, "container_oom_events_total"));
+    }
+
+    @Test
+    public void testCgroupDirectoriesV1() throws Exception {
+        Map<String, String> cgroupPathMap = LinuxProcessExports.readCgroupPaths(getResource("/linux/proc/cgroup-v1"));
+
+        assertEquals("/kubepods/burstable/pod1234/abcdef", cgroupPathMap.get("cpu"));
+        assertEquals("/kubepods/burstable/pod1234/abcdef", cgroupPathMap.get("cpuacct"));
+        assertEquals("/kubepods/burstable/pod1234/abcdef", cgroupPathMap.get("memory"));
+        assertEquals("/kubepods/burstable/pod1234/abcdef", cgroupPathMap.get("name=systemd"));
+        assertNull(cgroupPathMap.get(""));
+
+        Path cpuMountPoint = Files.createDirectories(directory.resolve("cpu,cpuacct"));
+        Path memoryMountPoint = Files.createDirectories(directory.resolve("memory"));
+        Path memoryDirectory = Files.createDirectories(memoryMountPoint.resolve("kubepods/burstable/pod1234/abcdef"));
+
+        // The cpu cgroup namespace root is the cgroup, the memory mount is the host hierarchy
+        Path mountinfo = write(
+                directory.resolve("mountinfo"),
+                "33 32 0:29 /kubepods/burstable/pod1234/abcdef " + cpuMountPoint + " ro,nosuid - cgroup cgroup rw,cpu,cpuacct\n"
+                        + "36 32 0:32 / " + memoryMountPoint + " ro,nosuid shared:1 - cgroup cgroup rw,memory\n"
+                        + "37 32 0:33 / /sys/fs/cgroup/pids ro,nosuid - cgroup cgroup rw,pids\n"
+                        + "truncated line\n");
+
+        Map<String, File> cgroupDirectoryMap = LinuxProcessExports.readCgroupDirectories(mountinfo.toFile(), cgroupPathMap);
+
+        assertEquals(cpuMountPoint.toFile(), cgroupDirectoryMap.get("cpu"));
+        assertEquals(memoryDirectory.toFile(), cgroupDirectoryMap.get("memory"));
+        assertNull(cgroupDirectoryMap.get("pids"));
+        assertNull(cgroupDirectoryMap.get(""));
+    }
+
+    @Test
+    public void testCgroupDirectoriesV2() throws Exception {
+        Map<String, String> cgroupPathMap = LinuxProcessExports.readCgroupPaths(getResource("/linux/proc/cgroup-v2"));
+
+        assertEquals("/system.slice/application.service", cgroupPathMap.get(""));
+        assertNull(cgroupPathMap.get("cpu"));
+
+        Path mountPoint = Files.createDirectories(directory.resolve("cgroup"));
+        Path cgroupDirectory = Files.createDirectories(mountPoint.resolve("system.slice/application.service"));
+
+        Path mountinfo = write(
+                directory.resolve("mountinfo"),
+                "30 24 0:26 / " + mountPoint + " rw,nosuid,nodev,noexec,relatime shared:4 - cgroup2 cgroup2 rw,nsdelegate\n");
+
+        Map<String, File> cgroupDirectoryMap = LinuxProcessExports.readCgroupDirectories(mountinfo.toFile(), cgroupPathMap);
+
+        assertEquals(cgroupDirectory.toFile(), cgroupDirectoryMap.get(""));
+        assertNull(cgroupDirectoryMap.get("cpu"));
+        assertNull(cgroupDirectoryMap.get("memory"));
+
+        // Missing files
+        assertEquals(0, LinuxProcessExports.readCgroupPaths(directory.resolve("missing").toFile()).size());
+        assertEquals(0, LinuxProcessExports.readCgroupDirectories(directory.resolve("missing").toFile(), cgroupPathMap).size());
+    }
+
+    /**
+     * Method to copy a fixture directory, so files can be changed
+     *
+     * @param resource
+     * @param name
+     * @return
+     * @throws Exception
+     */
+    private Path copy(String resource, String name) throws Exception {
+        Path target = Files.createDirectory(directory.resolve(name));
+
+        File[] files = getResource(resource).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.copy(file.toPath(), target.resolve(file.getName()));
+            }
+        }
+
+        return target;
+    }
+
+    private static Path write(Path path, String content) throws IOException {
+        return Files.write(path, content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Double getValue(List<Collector.MetricFamilySamples> metricFamilySamplesList, String name) {
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                if (sample.name.equals(name)) {
+                    return sample.value;
+                }
+            }
+        }
+
+        return null;
+    }
+}
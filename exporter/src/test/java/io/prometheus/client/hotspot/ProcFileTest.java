@@ -0,0 +1,179 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.prometheus.client.hotspot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProcFileTest {
+
+    @TempDir
+    public Path directory;
+
+    private final List<ProcFile> procFileList = new ArrayList<>();
+
+    @AfterEach
+    public void afterEach() {
+        for (ProcFile procFile : procFileList) {
+            procFile.close();
+        }
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        ProcFile procFile = open(getResource("/linux/cgroup-v2/cpu.stat"));
+        assertTrue(procFile.read());
+
+        assertEquals(2000, procFile.getLong(ProcFile.toBytes("nr_periods")));
+        assertEquals(75, procFile.getLong(ProcFile.toBytes("nr_throttled")));
+        assertEquals(1500000, procFile.getLong(ProcFile.toBytes("throttled_usec")));
+
+        // A cgroup v2 file doesn't have the cgroup v1 key
+        assertEquals(ProcFile.MISSING, procFile.getLong(ProcFile.toBytes("throttled_time")));
+
+        // "Key:" with tabs and units
+        ProcFile statusProcFile = open(getResource("/linux/proc/status"));
+        assertTrue(statusProcFile.read());
+        assertEquals(250000, statusProcFile.getLong(ProcFile.toBytes("VmRSS")));
+        assertEquals(ProcFile.MISSING, statusProcFile.getLong(ProcFile.toBytes("VmSwap")));
+    }
+
+    @Test
+    public void testKeyPrefix() throws Exception {
+        // "oom_kill_disable" isn't "oom_kill"
+        ProcFile procFile = open(getResource("/linux/cgroup-v1/memory/memory.oom_control"));
+        assertTrue(procFile.read());
+
+        assertEquals(2, procFile.getLong(ProcFile.toBytes("oom_kill")));
+        assertEquals(0, procFile.getLong(ProcFile.toBytes("oom_kill_disable")));
+        assertEquals(ProcFile.MISSING, procFile.getLong(ProcFile.toBytes("oom")));
+    }
+
+    @Test
+    public void testFields() throws Exception {
+        ProcFile procFile = open(write("cpu.max", "150000 100000\n"));
+        assertTrue(procFile.read());
+        assertEquals(150000, procFile.getLong(0));
+        assertEquals(100000, procFile.getLong(1));
+        assertEquals(ProcFile.MISSING, procFile.getLong(2));
+
+        // "max" is no limit
+        ProcFile unlimitedProcFile = open(getResource("/linux/cgroup-v2/cpu.max"));
+        assertTrue(unlimitedProcFile.read());
+        assertEquals(ProcFile.UNLIMITED, unlimitedProcFile.getLong(0));
+        assertEquals(100000, unlimitedProcFile.getLong(1));
+
+        ProcFile maxProcFile = open(write("memory.max", "max"));
+        assertTrue(maxProcFile.read());
+        assertEquals(ProcFile.UNLIMITED, maxProcFile.getLong(0));
+
+        // Only the first line is used
+        ProcFile multipleLineProcFile = open(write("multiple", "1\n2 3\n"));
+        assertTrue(multipleLineProcFile.read());
+        assertEquals(1, multipleLineProcFile.getLong(0));
+        assertEquals(ProcFile.MISSING, multipleLineProcFile.getLong(1));
+
+        ProcFile negativeProcFile = open(write("cpu.cfs_quota_us", "-1\n"));
+        assertTrue(negativeProcFile.read());
+        assertEquals(-1, negativeProcFile.getLong(0));
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        ProcFile procFile = open(write("cpu.stat", "nr_periods 2000\nnr_throttled \nthrottled_usec"));
+        assertTrue(procFile.read());
+
+        assertEquals(2000, procFile.getLong(ProcFile.toBytes("nr_periods")));
+        assertEquals(ProcFile.MISSING, procFile.getLong(ProcFile.toBytes("nr_throttled")));
+        assertEquals(ProcFile.MISSING, procFile.getLong(ProcFile.toBytes("throttled_usec")));
+
+        ProcFile emptyProcFile = open(write("memory.current", ""));
+        assertTrue(emptyProcFile.read());
+        assertEquals(ProcFile.MISSING, emptyProcFile.getLong(0));
+        assertEquals(ProcFile.MISSING, emptyProcFile.getLong(ProcFile.toBytes("nr_periods")));
+
+        ProcFile partialProcFile = open(write("cpu.max", "ma"));
+        assertTrue(partialProcFile.read());
+        assertEquals(ProcFile.MISSING, partialProcFile.getLong(0));
+
+        // Content beyond the buffer isn't read
+        StringBuilder stringBuilder = new StringBuilder();
+        while (stringBuilder.length() < 8192) {
+            stringBuilder.append("padding 0\n");
+        }
+
+        ProcFile largeProcFile = open(write("large", stringBuilder.append("nr_periods 1\n").toString()));
+        assertTrue(largeProcFile.read());
+        assertEquals(0, largeProcFile.getLong(ProcFile.toBytes("padding")));
+        assertEquals(ProcFile.MISSING, largeProcFile.getLong(ProcFile.toBytes("nr_periods")));
+    }
+
+    @Test
+    public void testReread() throws Exception {
+        File file = write("memory.current", "100\n");
+        ProcFile procFile = open(file);
+
+        assertTrue(procFile.read());
+        assertEquals(100, procFile.getLong(0));
+
+        // The file is read from the start again
+        Files.write(file.toPath(), "200000\n".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(procFile.read());
+        assertEquals(200000, procFile.getLong(0));
+
+        Files.write(file.toPath(), "3\n".getBytes(StandardCharsets.US_ASCII));
+        assertTrue(procFile.read());
+        assertEquals(3, procFile.getLong(0));
+    }
+
+    @Test
+    public void testMissingFile() {
+        assertNull(ProcFile.open(directory.resolve("missing").toFile()));
+    }
+
+    private ProcFile open(File file) {
+        ProcFile procFile = ProcFile.open(file);
+        assertNotNull(procFile, file.toString());
+        procFileList.add(procFile);
+        return procFile;
+    }
+
+    private File write(String name, String content) throws IOException {
+        Path path = directory.resolve(name);
+        Files.write(path, content.getBytes(StandardCharsets.US_ASCII));
+        return path.toFile();
+    }
+
+    static File getResource(String name) throws URISyntaxException {
+        return new File(ProcFileTest.class.getResource(name).toURI());
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.undertow;
+
+import io.undertow.util.Headers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class UnixDomainSocketAcceptorTest {
+
+    // Larger than the bridge buffer, so a response takes multiple pipe reads and socket writes
+    private static final int BODY_LENGTH = 100000;
+
+    @TempDir
+    Path directory;
+
+    private Path path;
+    private CustomUndertow customUndertow;
+
+    @BeforeEach
+    public void beforeEach() {
+        assumeTrue(CustomUndertow.isUnixDomainSocketSupported());
+
+        char[] body = new char[BODY_LENGTH];
+        Arrays.fill(body, 'x');
+        String content = new String(body);
+
+        path = directory.resolve("exporter.sock");
+
+        customUndertow = CustomUndertow.builder()
+                .setUnixDomainSocketListener(path.toString(), "rw-------", 32)
+                .setHandler(httpServerExchange -> {
+                    httpServerExchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/plain");
+                    httpServerExchange.getResponseSender().send(content);
+                })
+                .build();
+
+        customUndertow.start();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        if (customUndertow != null) {
+            customUndertow.stop();
+            assertFalse(Files.exists(path));
+        }
+    }
+
+    @Test
+    public void testScrape() throws Exception {
+        // Multiple requests on a keep alive connection
+        try (SocketChannel socketChannel = connect(path)) {
+            for (int i = 0; i < 3; i++) {
+                String response = get(socketChannel, false);
+                assertTrue(response.startsWith("HTTP/1.1 200 OK"), response);
+                assertEquals(BODY_LENGTH, getBody(response).length());
+            }
+        }
+    }
+
+    @Test
+    public void testConcurrentScrapes() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<String>> futureList = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futureList.add(executorService.submit(() -> {
+                    try (SocketChannel socketChannel = connect(path)) {
+                        return get(socketChannel, true);
+                    }
+                }));
+            }
+
+            for (Future<String> future : futureList) {
+                String response = future.get();
+                assertTrue(response.startsWith("HTTP/1.1 200 OK"), response);
+                assertEquals(BODY_LENGTH, getBody(response).length());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Method to send a GET request, reading the response
+     *
+     * @param socketChannel
+     * @param close whether to close the connection after the response
+     * @return the response
+     * @throws IOException
+     */
+    private static String get(SocketChannel socketChannel, boolean close) throws IOException {
+        String request = "GET /metrics HTTP/1.1\r\nHost: localhost\r\n" + (close ? "Connection: close\r\n" : "") + "\r\n";
+        ByteBuffer requestByteBuffer = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+        while (requestByteBuffer.hasRemaining()) {
+            socketChannel.write(requestByteBuffer);
+        }
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ByteBuffer byteBuffer = ByteBuffer.allocate(8192);
+        int contentLength = -1;
+        int headerLength = -1;
+
+        while ((headerLength < 0) || (byteArrayOutputStream.size() < headerLength + contentLength)) {
+            byteBuffer.clear();
+            int read = socketChannel.read(byteBuffer);
+            if (read < 0) {
+                break;
+            }
+
+            byteArrayOutputStream.write(byteBuffer.array(), 0, read);
+
+            if (headerLength < 0) {
+                String response = new String(byteArrayOutputStream.toByteArray(), StandardCharsets.US_ASCII);
+                int index = response.indexOf("\r\n\r\n");
+                if (index >= 0) {
+                    headerLength = index + 4;
+                    String headers = response.substring(0, index).toLowerCase();
+                    int contentLengthIndex = headers.indexOf("content-length: ");
+                    contentLength = Integer.parseInt(headers.substring(contentLengthIndex + 16).split("\r\n")[0].trim());
+                }
+            }
+        }
+
+        return new String(byteArrayOutputStream.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static String getBody(String response) {
+        return response.substring(response.indexOf("\r\n\r\n") + 4);
+    }
+
+    /**
+     * Method to connect to a Unix domain socket (Java 16+ APIs, accessed using reflection)
+     *
+     * @param path
+     * @return the SocketChannel
+     * @throws Exception
+     */
+    private static SocketChannel connect(Path path) throws Exception {
+        Method ofMethod = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+        Method openMethod = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+
+        SocketChannel socketChannel = (SocketChannel) openMethod.invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        socketChannel.connect((SocketAddress) ofMethod.invoke(null, path));
+
+        return socketChannel;
+    }
+}
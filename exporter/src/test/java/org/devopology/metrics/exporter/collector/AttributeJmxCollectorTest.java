@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.devopology.metrics.exporter.jmx.ObjectNameFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AttributeJmxCollectorTest {
+
+    private static final String OBJECT_NAME = "attribute.test:type=Test,name=one";
+
+    private MBeanServer mBeanServer;
+    private Quarantine quarantine;
+    private AttributeJmxCollector attributeJmxCollector;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        mBeanServer = MBeanServerFactory.newMBeanServer();
+        mBeanServer.registerMBean(new Attributes(), new ObjectName(OBJECT_NAME));
+        mBeanServer.registerMBean(new Attributes(), new ObjectName("attribute.excluded:type=Test"));
+
+        Map<String, Object> jmxConfigurationMap = new HashMap<>();
+        jmxConfigurationMap.put("excludeObjectNames", Collections.singletonList("attribute.excluded:*"));
+
+        quarantine = new Quarantine("test", AttributeJmxCollector.QUARANTINE_LABEL_NAMES, 20, 2, 60000);
+
+        attributeJmxCollector = new AttributeJmxCollector(
+                mBeanServer,
+                null,
+                new ObjectNameFilter(jmxConfigurationMap),
+                new DefaultExport(jmxConfigurationMap),
+                quarantine);
+    }
+
+    @Test
+    public void testQuarantine() throws Exception {
+        Map<String, Double> sampleMap = getSamples(attributeJmxCollector.collect());
+        assertEquals(1.0, sampleMap.get("attribute_test_Test_Fast"));
+        assertEquals(2.0, sampleMap.get("attribute_test_Test_Slow"));
+        assertEquals(0.0, sampleMap.get("jmx_scrape_error"));
+        assertTrue(sampleMap.containsKey("jmx_scrape_duration_seconds"));
+        assertFalse(sampleMap.containsKey("attribute_excluded_Test_Fast"));
+
+        // The second consecutive slow read quarantines the slow attribute only
+        attributeJmxCollector.collect();
+        assertTrue(quarantine.isQuarantined(Arrays.asList(OBJECT_NAME, "Slow")));
+        assertFalse(quarantine.isQuarantined(Arrays.asList(OBJECT_NAME, "Fast")));
+
+        sampleMap = getSamples(attributeJmxCollector.collect());
+        assertEquals(1.0, sampleMap.get("attribute_test_Test_Fast"));
+        assertFalse(sampleMap.containsKey("attribute_test_Test_Slow"));
+
+        // Quarantine state is removed when the MBean is unregistered
+        mBeanServer.unregisterMBean(new ObjectName(OBJECT_NAME));
+        attributeJmxCollector.collect();
+        assertEquals(0, quarantine.size());
+    }
+
+    private static Map<String, Double> getSamples(List<Collector.MetricFamilySamples> metricFamilySamplesList) {
+        Map<String, Double> sampleMap = new HashMap<>();
+
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                sampleMap.put(sample.name, sample.value);
+            }
+        }
+
+        return sampleMap;
+    }
+
+    public interface AttributesMBean {
+
+        int getFast();
+
+        int getSlow();
+    }
+
+    public static class Attributes implements AttributesMBean {
+
+        @Override
+        public int getFast() {
+            return 1;
+        }
+
+        @Override
+        public int getSlow() {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CollectionExecutorTest {
+
+    private CollectionExecutor collectionExecutor;
+
+    @BeforeEach
+    public void beforeEach() {
+        // One thread, one queued collection, 100 ms queue deadline
+        collectionExecutor = new CollectionExecutor(1, 1, 100, Executors.defaultThreadFactory());
+    }
+
+    @AfterEach
+    public void afterEach() {
+        collectionExecutor.close();
+    }
+
+    @Test
+    public void testCollection() throws Exception {
+        CountDownLatch collectedCountDownLatch = new CountDownLatch(1);
+        AtomicInteger shed = new AtomicInteger();
+
+        collectionExecutor.execute(collectedCountDownLatch::countDown, shed::incrementAndGet);
+
+        assertTrue(collectedCountDownLatch.await(10, TimeUnit.SECONDS));
+
+        // The deadline timer doesn't shed a collection that has already run
+        Thread.sleep(200);
+        assertEquals(0, shed.get());
+        assertEquals(0.0, getValue("metrics_exporter_collection_executor_shed_total", "queue_deadline"));
+    }
+
+    @Test
+    public void testQueueDeadline() throws Exception {
+        CountDownLatch blockingCountDownLatch = new CountDownLatch(1);
+        CountDownLatch shedCountDownLatch = new CountDownLatch(1);
+        AtomicInteger collected = new AtomicInteger();
+
+        try {
+            // Occupy the only thread
+            collectionExecutor.execute(() -> await(blockingCountDownLatch), () -> { });
+
+            long startNanoseconds = System.nanoTime();
+            collectionExecutor.execute(collected::incrementAndGet, shedCountDownLatch::countDown);
+
+            // Shed once the deadline passes, while the thread is still collecting
+            assertTrue(shedCountDownLatch.await(10, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - startNanoseconds >= TimeUnit.MILLISECONDS.toNanos(100));
+            assertEquals(1.0, getValue("metrics_exporter_collection_executor_shed_total", "queue_deadline"));
+            assertEquals(1.0, getValue("metrics_exporter_collection_executor_queued_total", null));
+
+            // The shed collection no longer occupies the queue
+            assertEquals(0.0, getValue("metrics_exporter_collection_executor_queue_depth", null));
+        } finally {
+            blockingCountDownLatch.countDown();
+        }
+
+        // The shed collection never runs
+        CountDownLatch collectedCountDownLatch = new CountDownLatch(1);
+        collectionExecutor.execute(collectedCountDownLatch::countDown, () -> { });
+        assertTrue(collectedCountDownLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(0, collected.get());
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        CountDownLatch blockingCountDownLatch = new CountDownLatch(1);
+
+        try {
+            collectionExecutor.execute(() -> await(blockingCountDownLatch), () -> { });
+            collectionExecutor.execute(() -> { }, () -> { });
+
+            assertThrows(RejectedExecutionException.class, () -> collectionExecutor.execute(() -> { }, () -> { }));
+            assertEquals(1.0, getValue("metrics_exporter_collection_executor_shed_total", "queue_full"));
+        } finally {
+            blockingCountDownLatch.countDown();
+        }
+    }
+
+    @Test
+    public void testRace() throws Exception {
+        CollectionExecutor racingCollectionExecutor = new CollectionExecutor(4, 1000, 1, Executors.defaultThreadFactory());
+
+        try {
+            int collections = 1000;
+            CountDownLatch countDownLatch = new CountDownLatch(collections);
+            AtomicInteger collected = new AtomicInteger();
+            AtomicInteger shed = new AtomicInteger();
+
+            for (int i = 0; i < collections; i++) {
+                racingCollectionExecutor.execute(
+                        () -> {
+                            collected.incrementAndGet();
+                            countDownLatch.countDown();
+                        },
+                        () -> {
+                            shed.incrementAndGet();
+                            countDownLatch.countDown();
+                        });
+            }
+
+            // Each collection is either collected or shed, exactly once
+            assertTrue(countDownLatch.await(10, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(collections, collected.get() + shed.get());
+        } finally {
+            racingCollectionExecutor.close();
+        }
+    }
+
+    private Double getValue(String name, String reason) {
+        for (Collector.MetricFamilySamples metricFamilySamples : collectionExecutor.collect()) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                if (sample.name.equals(name) && ((reason == null) || sample.labelValues.contains(reason))) {
+                    return sample.value;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static void await(CountDownLatch countDownLatch) {
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class HotThreadsCollectorTest {
+
+    private static final long NANOSECONDS_PER_SECOND = 1000000000L;
+    private static final double DELTA = 0.000001;
+
+    private HotThreadsCollector hotThreadsCollector;
+
+    @BeforeEach
+    public void beforeEach() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadCpuTimeSupported(), "thread CPU time not supported");
+        assumeTrue(threadMXBean.isThreadContentionMonitoringSupported(), "thread contention monitoring not supported");
+
+        // No background sampling, samples are synthetic
+        hotThreadsCollector = new HotThreadsCollector(threadMXBean, 2);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        if (hotThreadsCollector != null) {
+            hotThreadsCollector.close();
+        }
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("pool-*-thread-*", hotThreadsCollector.normalize("pool-1-thread-12"));
+        assertEquals("pool-*-thread-*", hotThreadsCollector.normalize("pool-23-thread-4"));
+        assertEquals("main", hotThreadsCollector.normalize("main"));
+        assertEquals("GC Thread#*", hotThreadsCollector.normalize("GC Thread#10"));
+        assertEquals("other", hotThreadsCollector.normalize(null));
+    }
+
+    @Test
+    public void testFirstSample() {
+        // The first sample only establishes the baseline
+        sample(1, new HashMap<>());
+
+        assertTrue(hotThreadsCollector.collect().isEmpty());
+    }
+
+    @Test
+    public void testPoolThreads() {
+        Map<Long, HotThreadsCollector.ThreadSample> threadSampleMap = new HashMap<>();
+        threadSampleMap.put(1L, new HotThreadsCollector.ThreadSample("pool-1-thread-1", 100, 0, 0, 0, 0));
+        threadSampleMap.put(2L, new HotThreadsCollector.ThreadSample("pool-1-thread-2", 100, 0, 0, 0, 0));
+        threadSampleMap.put(3L, new HotThreadsCollector.ThreadSample("pool-2-thread-10", 100, 0, 0, 0, 0));
+        sample(1, threadSampleMap);
+
+        threadSampleMap = new HashMap<>();
+        threadSampleMap.put(1L, new HotThreadsCollector.ThreadSample("pool-1-thread-1", 100 + milliseconds(200), 1, 0, 5, 50));
+        threadSampleMap.put(2L, new HotThreadsCollector.ThreadSample("pool-1-thread-2", 100 + milliseconds(300), 2, 0, 5, 50));
+        threadSampleMap.put(3L, new HotThreadsCollector.ThreadSample("pool-2-thread-10", 100 + milliseconds(100), 3, 0, 5, 50));
+        sample(2, threadSampleMap);
+
+        // Pool numbered threads collapse into one series
+        assertEquals(map("pool-*-thread-*", 3.0, "other", 0.0), getValues("jvm_hot_threads_threads"));
+        assertEquals(map("pool-*-thread-*", 0.6, "other", 0.0), getValues("jvm_hot_threads_cpu_utilization"));
+        assertEquals(map("pool-*-thread-*", 6.0, "other", 0.0), getValues("jvm_hot_threads_blocked"));
+        assertEquals(map("pool-*-thread-*", 15.0, "other", 0.0), getValues("jvm_hot_threads_waited"));
+        assertEquals(map("pool-*-thread-*", 0.15, "other", 0.0), getValues("jvm_hot_threads_waited_seconds"));
+    }
+
+    @Test
+    public void testTopN() {
+        Map<Long, HotThreadsCollector.ThreadSample> threadSampleMap = new HashMap<>();
+        threadSampleMap.put(1L, new HotThreadsCollector.ThreadSample("alpha", 0, 0, 0, 0, 0));
+        threadSampleMap.put(2L, new HotThreadsCollector.ThreadSample("beta", 0, 0, 0, 0, 0));
+        threadSampleMap.put(3L, new HotThreadsCollector.ThreadSample("gamma", 0, 0, 0, 0, 0));
+        threadSampleMap.put(4L, new HotThreadsCollector.ThreadSample("delta", 0, 0, 0, 0, 0));
+        threadSampleMap.put(5L, new HotThreadsCollector.ThreadSample("epsilon", 0, 0, 0, 0, 0));
+        threadSampleMap.put(6L, new HotThreadsCollector.ThreadSample("other", 0, 0, 0, 0, 0));
+        threadSampleMap.put(7L, new HotThreadsCollector.ThreadSample("terminated", 0, 0, 0, 0, 0));
+        sample(10, threadSampleMap);
+
+        threadSampleMap = new HashMap<>();
+        threadSampleMap.put(1L, new HotThreadsCollector.ThreadSample("alpha", milliseconds(500), 0, 0, 0, 0));
+        threadSampleMap.put(2L, new HotThreadsCollector.ThreadSample("beta", milliseconds(400), 0, 0, 0, 0));
+        threadSampleMap.put(3L, new HotThreadsCollector.ThreadSample("gamma", milliseconds(300), 0, 0, 0, 0));
+        // Blocked the longest, without CPU time
+        threadSampleMap.put(4L, new HotThreadsCollector.ThreadSample("delta", 0, 10, 700, 0, 0));
+        // CPU time not supported for the thread
+        threadSampleMap.put(5L, new HotThreadsCollector.ThreadSample("epsilon", -1, 0, 0, 0, 0));
+        // A thread named "other" is always aggregated as "other"
+        threadSampleMap.put(6L, new HotThreadsCollector.ThreadSample("other", milliseconds(900), 0, 0, 0, 0));
+        // A new thread's values accumulated since it started
+        threadSampleMap.put(8L, new HotThreadsCollector.ThreadSample("gamma", milliseconds(50), 0, 0, 0, 0));
+        sample(12, threadSampleMap);
+
+        // Top 2 by CPU time ("other" excluded), top 2 by blocked time (delta), the rest is "other"
+        assertEquals(
+                map("alpha", 1.0, "beta", 1.0, "delta", 1.0, "other", 4.0),
+                getValues("jvm_hot_threads_threads"));
+
+        // Interval of 2 seconds
+        assertEquals(
+                map("alpha", 0.25, "beta", 0.2, "delta", 0.0, "other", 0.625),
+                getValues("jvm_hot_threads_cpu_utilization"));
+
+        assertEquals(
+                map("alpha", 0.0, "beta", 0.0, "delta", 0.7, "other", 0.0),
+                getValues("jvm_hot_threads_blocked_seconds"));
+
+        assertEquals(
+                map("alpha", 0.0, "beta", 0.0, "delta", 10.0, "other", 0.0),
+                getValues("jvm_hot_threads_blocked"));
+
+        assertTrue(getValues("metrics_exporter_hot_threads_sample_duration_seconds").get("").doubleValue() >= 0);
+    }
+
+    @Test
+    public void testIdle() {
+        Map<Long, HotThreadsCollector.ThreadSample> threadSampleMap = new HashMap<>();
+        threadSampleMap.put(1L, new HotThreadsCollector.ThreadSample("alpha", 100, 0, 0, 0, 0));
+        threadSampleMap.put(2L, new HotThreadsCollector.ThreadSample("beta", 100, 0, 0, 0, 0));
+        threadSampleMap.put(3L, new HotThreadsCollector.ThreadSample("gamma", 100, 0, 0, 0, 0));
+        sample(1, threadSampleMap);
+        sample(2, threadSampleMap);
+
+        // Threads without CPU or blocked time are never top N
+        assertEquals(map("other", 3.0), getValues("jvm_hot_threads_threads"));
+        assertEquals(map("other", 0.0), getValues("jvm_hot_threads_cpu_utilization"));
+    }
+
+    private void sample(long seconds, Map<Long, HotThreadsCollector.ThreadSample> threadSampleMap) {
+        hotThreadsCollector.sample(threadSampleMap, seconds * NANOSECONDS_PER_SECOND, System.nanoTime());
+    }
+
+    private static long milliseconds(long milliseconds) {
+        return milliseconds * 1000000L;
+    }
+
+    private Map<String, Double> getValues(String name) {
+        Map<String, Double> values = new TreeMap<>();
+
+        for (Collector.MetricFamilySamples metricFamilySamples : hotThreadsCollector.collect()) {
+            if (metricFamilySamples.name.equals(name)) {
+                for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                    // Round to avoid floating point noise
+                    values.put(
+                            sample.labelValues.isEmpty() ? "" : sample.labelValues.get(0),
+                            Math.round(sample.value / DELTA) * DELTA);
+                }
+            }
+        }
+
+        return values;
+    }
+
+    private static Map<String, Double> map(Object... keyValues) {
+        Map<String, Double> map = new TreeMap<>();
+
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put((String) keyValues[i], Math.round((Double) keyValues[i + 1] / DELTA) * DELTA);
+        }
+
+        return map;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class HsperfdataCollectorTest {
+
+    @TempDir
+    public Path directory;
+
+    private Path hsperfdataDirectory;
+    private HsperfdataCollector hsperfdataCollector;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        hsperfdataDirectory = Files.createDirectory(directory.resolve("hsperfdata_test"));
+    }
+
+    @AfterEach
+    public void afterEach() {
+        if (hsperfdataCollector != null) {
+            hsperfdataCollector.close();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        hsperfdataCollector = new HsperfdataCollector(directory);
+
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = hsperfdataCollector.collect();
+        assertEquals(1, metricFamilySamplesList.size());
+        assertEquals(0, getValue(metricFamilySamplesList, "metrics_exporter_hsperfdata_jvms", null));
+    }
+
+    @Test
+    public void testMissingFile() throws Exception {
+        Path path = hsperfdataDirectory.resolve("12345");
+        Files.write(path, new byte[16]);
+
+        hsperfdataCollector = new HsperfdataCollector(directory);
+
+        // The file is deleted before it's read (the JVM exited)
+        Files.delete(path);
+
+        assertEquals(0, getValue(hsperfdataCollector.collect(), "metrics_exporter_hsperfdata_jvms", null));
+        assertEquals(0, getValue(hsperfdataCollector.collect(), "metrics_exporter_hsperfdata_jvms", null));
+    }
+
+    @Test
+    public void testTruncatedFile() throws Exception {
+        Path perfDataPath = getPerfDataPath();
+        assumeTrue(Files.isRegularFile(perfDataPath), perfDataPath + " doesn't exist");
+
+        // A file that isn't initialized (or is truncated) isn't exported, and is retried
+        byte[] bytes = Files.readAllBytes(perfDataPath);
+        Path path = hsperfdataDirectory.resolve("12345");
+        Files.write(path, Arrays.copyOf(bytes, 64));
+
+        hsperfdataCollector = new HsperfdataCollector(directory);
+        assertEquals(0, getValue(hsperfdataCollector.collect(), "metrics_exporter_hsperfdata_jvms", null));
+
+        // The complete file is exported
+        Path temporaryPath = directory.resolve("12345.tmp");
+        Files.write(temporaryPath, bytes);
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = hsperfdataCollector.collect();
+        assertEquals(1, getValue(metricFamilySamplesList, "metrics_exporter_hsperfdata_jvms", null));
+
+        Double frequency = getValue(metricFamilySamplesList, "hsperfdata_sun_os_hrt_frequency", "12345");
+        assertNotNull(frequency);
+        assertTrue(frequency > 0);
+
+        // The deleted file is removed, once the watcher has seen the deletion
+        Files.delete(path);
+
+        long timeoutNanoseconds = System.nanoTime() + 10000000000L;
+        while ((getValue(metricFamilySamplesList, "metrics_exporter_hsperfdata_jvms", null) != 0) && (System.nanoTime() < timeoutNanoseconds)) {
+            Thread.sleep(10);
+            metricFamilySamplesList = hsperfdataCollector.collect();
+        }
+
+        assertEquals(0, getValue(metricFamilySamplesList, "metrics_exporter_hsperfdata_jvms", null));
+        assertNull(getValue(metricFamilySamplesList, "hsperfdata_sun_os_hrt_frequency", "12345"));
+    }
+
+    /**
+     * Method to get the test JVM's performance data file
+     *
+     * @return
+     */
+    private static Path getPerfDataPath() {
+        String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+
+        return Paths.get(System.getProperty("java.io.tmpdir"), "hsperfdata_" + System.getProperty("user.name"), pid);
+    }
+
+    /**
+     * Method to get a sample value
+     *
+     * @param metricFamilySamplesList
+     * @param name
+     * @param pid the pid label value, null for a sample without labels
+     * @return the value, or null if the sample doesn't exist
+     */
+    private static Double getValue(List<Collector.MetricFamilySamples> metricFamilySamplesList, String name, String pid) {
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                if (sample.name.equals(name) && ((pid == null) || pid.equals(sample.labelValues.get(0)))) {
+                    return sample.value;
+                }
+            }
+        }
+
+        return null;
+    }
+}
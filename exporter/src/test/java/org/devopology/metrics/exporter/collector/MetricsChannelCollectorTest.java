@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import org.devopology.common.channel.MetricsChannel;
+import org.devopology.common.channel.MetricsChannelWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsChannelCollectorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testCollect() throws Exception {
+        try (MetricsChannelWriter metricsChannelWriter =
+                     new MetricsChannelWriter(directory.resolve("application" + MetricsChannel.FILENAME_SUFFIX).toFile())) {
+            metricsChannelWriter.counter("requests", "Number of requests", "method", "GET").inc();
+            metricsChannelWriter.counter("errors_total", "Number of errors").inc(2);
+            metricsChannelWriter.gauge("queue_depth", "Queue depth").set(3);
+
+            MetricsChannelCollector metricsChannelCollector = new MetricsChannelCollector(directory);
+
+            // Counter family names don't include the "_total" suffix, matches the Prometheus client Counter
+            Set<String> familyNameSet = new TreeSet<>();
+            for (Collector.MetricFamilySamples metricFamilySamples : metricsChannelCollector.collect()) {
+                familyNameSet.add(metricFamilySamples.name);
+            }
+
+            assertEquals(new TreeSet<>(Arrays.asList("errors", "metrics_exporter_metrics_channels", "queue_depth", "requests")), familyNameSet);
+
+            CollectorRegistry collectorRegistry = new CollectorRegistry();
+            metricsChannelCollector.register(collectorRegistry);
+
+            StringWriter stringWriter = new StringWriter();
+            TextFormat.write004(stringWriter, collectorRegistry.metricFamilySamples());
+            String text = stringWriter.toString();
+
+            assertTrue(text.contains("requests_total{channel=\"application\",method=\"GET\",} 1.0"), text);
+
+            // A counter name with a "_total" suffix isn't suffixed again
+            assertTrue(text.contains("errors_total{channel=\"application\",} 2.0"), text);
+            assertFalse(text.contains("_total_total"), text);
+
+            assertTrue(text.contains("queue_depth{channel=\"application\",} 3.0"), text);
+            assertTrue(text.contains("metrics_exporter_metrics_channels 1.0"), text);
+        }
+    }
+}
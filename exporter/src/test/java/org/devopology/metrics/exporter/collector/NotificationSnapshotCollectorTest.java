@@ -0,0 +1,220 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.AttributeChangeNotification;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class NotificationSnapshotCollectorTest {
+
+    private static final String OBJECT_NAME = "snapshot.test:type=Test";
+
+    private MBeanServer mBeanServer;
+    private Counters counters;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        mBeanServer = MBeanServerFactory.newMBeanServer();
+        counters = new Counters();
+        mBeanServer.registerMBean(counters, new ObjectName(OBJECT_NAME));
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        if (mBeanServer.isRegistered(new ObjectName(OBJECT_NAME))) {
+            mBeanServer.unregisterMBean(new ObjectName(OBJECT_NAME));
+        }
+    }
+
+    @Test
+    public void testNotification() throws Exception {
+        NotificationSnapshotCollector notificationSnapshotCollector = createNotificationSnapshotCollector(60000);
+
+        Map<String, Double> sampleMap = getSamples(notificationSnapshotCollector.collect());
+        assertEquals(0.0, sampleMap.get("snapshot_test_Test_Notified"));
+        assertEquals(0.0, sampleMap.get("snapshot_test_Test_Silent"));
+
+        // A notified change is visible, a change without a notification isn't (until refreshed)
+        counters.setNotified(1);
+        counters.setSilent(1);
+
+        sampleMap = getSamples(notificationSnapshotCollector.collect());
+        assertEquals(1.0, sampleMap.get("snapshot_test_Test_Notified"));
+        assertEquals(0.0, sampleMap.get("snapshot_test_Test_Silent"));
+        assertEquals(1.0, sampleMap.get("metrics_exporter_jmx_snapshot_notifications_total"));
+
+        notificationSnapshotCollector.close();
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        NotificationSnapshotCollector notificationSnapshotCollector = createNotificationSnapshotCollector(1);
+
+        notificationSnapshotCollector.collect();
+        counters.setSilent(2);
+        Thread.sleep(10);
+
+        Map<String, Double> sampleMap = getSamples(notificationSnapshotCollector.collect());
+        assertEquals(2.0, sampleMap.get("snapshot_test_Test_Silent"));
+
+        // A bean that fails to refresh is removed
+        mBeanServer.unregisterMBean(new ObjectName(OBJECT_NAME));
+        Thread.sleep(10);
+
+        sampleMap = getSamples(notificationSnapshotCollector.collect());
+        assertFalse(sampleMap.containsKey("snapshot_test_Test_Silent"));
+
+        notificationSnapshotCollector.close();
+    }
+
+    @Test
+    public void testConcurrentTrack() throws Exception {
+        NotificationSnapshotCollector notificationSnapshotCollector = createNotificationSnapshotCollector(60000);
+
+        int threads = 8;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        List<Future<?>> futureList = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                futureList.add(executorService.submit(() -> {
+                    countDownLatch.await();
+                    return notificationSnapshotCollector.collect();
+                }));
+            }
+
+            countDownLatch.countDown();
+
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        // Only one listener is subscribed, so a change is counted once
+        counters.setNotified(3);
+
+        Map<String, Double> sampleMap = getSamples(notificationSnapshotCollector.collect());
+        assertEquals(3.0, sampleMap.get("snapshot_test_Test_Notified"));
+        assertEquals(1.0, sampleMap.get("metrics_exporter_jmx_snapshot_notifications_total"));
+
+        notificationSnapshotCollector.close();
+    }
+
+    private NotificationSnapshotCollector createNotificationSnapshotCollector(long refreshMilliseconds) throws Exception {
+        return new NotificationSnapshotCollector(
+                mBeanServer,
+                Collections.singletonList(new ObjectName("snapshot.test:*")),
+                new DefaultExport(new HashMap<>()),
+                refreshMilliseconds);
+    }
+
+    private static Map<String, Double> getSamples(List<Collector.MetricFamilySamples> metricFamilySamplesList) {
+        Map<String, Double> sampleMap = new HashMap<>();
+
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                if (sample.labelNames.isEmpty()) {
+                    sampleMap.put(sample.name, sample.value);
+                }
+            }
+        }
+
+        return sampleMap;
+    }
+
+    public interface CountersMBean {
+
+        long getNotified();
+
+        long getSilent();
+    }
+
+    /**
+     * MBean that only sends AttributeChangeNotifications for the "Notified" attribute
+     */
+    public static class Counters extends NotificationBroadcasterSupport implements CountersMBean {
+
+        private volatile long notified;
+        private volatile long silent;
+        private long sequenceNumber;
+
+        @Override
+        public long getNotified() {
+            return notified;
+        }
+
+        @Override
+        public long getSilent() {
+            return silent;
+        }
+
+        public void setNotified(long notified) {
+            long oldValue = this.notified;
+            this.notified = notified;
+
+            sendNotification(
+                    new AttributeChangeNotification(
+                            this,
+                            ++sequenceNumber,
+                            System.currentTimeMillis(),
+                            "Notified changed",
+                            "Notified",
+                            "long",
+                            oldValue,
+                            notified));
+        }
+
+        public void setSilent(long silent) {
+            this.silent = silent;
+        }
+
+        @Override
+        public MBeanNotificationInfo[] getNotificationInfo() {
+            return new MBeanNotificationInfo[] {
+                    new MBeanNotificationInfo(
+                            new String[] { AttributeChangeNotification.ATTRIBUTE_CHANGE },
+                            AttributeChangeNotification.class.getName(),
+                            "Attribute change")
+            };
+        }
+    }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.jmx.JmxCollector;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PartitionedJmxCollectorTest {
+
+    private static final String[] OBJECT_NAMES = {
+            "partitioned.a:type=Test,name=one",
+            "partitioned.a:type=Test,name=two",
+            "partitioned.b:type=Test,name=one",
+            "partitioned.c:type=Test,name=one"
+    };
+
+    private MBeanServer mBeanServer;
+    private ExecutorService executorService;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        executorService = Executors.newFixedThreadPool(2);
+
+        for (int i = 0; i < OBJECT_NAMES.length; i++) {
+            mBeanServer.registerMBean(new Value(i), new ObjectName(OBJECT_NAMES[i]));
+        }
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        executorService.shutdownNow();
+
+        for (String objectName : OBJECT_NAMES) {
+            mBeanServer.unregisterMBean(new ObjectName(objectName));
+        }
+    }
+
+    @Test
+    public void testCollect() throws Exception {
+        for (PartitionedJmxCollector.Partitioning partitioning : PartitionedJmxCollector.Partitioning.values()) {
+            PartitionedJmxCollector partitionedJmxCollector =
+                    new PartitionedJmxCollector(
+                            getJmxConfigurationMap(), partitioning, 2, executorService, 2, mBeanServer, null, null);
+
+            JmxCollector jmxCollector = new JmxCollector(new Yaml().dump(getJmxConfigurationMap()));
+
+            List<Collector.MetricFamilySamples> metricFamilySamplesList = partitionedJmxCollector.collect();
+
+            // Partitioned collection produces the same samples as a single JmxCollector
+            assertEquals(getSamples(jmxCollector.collect()), getSamples(metricFamilySamplesList));
+
+            // Families are unique
+            Set<String> nameSet = new HashSet<>();
+            for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+                assertTrue(nameSet.add(metricFamilySamples.name), metricFamilySamples.name);
+            }
+
+            Set<String> sampleSet = getSamples(metricFamilySamplesList);
+            assertTrue(sampleSet.contains("partitioned_a_Test_Value{name=one} 0.0"));
+            assertTrue(sampleSet.contains("partitioned_a_Test_Value{name=two} 1.0"));
+            assertTrue(sampleSet.contains("partitioned_c_Test_Value{name=one} 3.0"));
+            assertTrue(sampleSet.contains("jmx_scrape_error{} 0.0"));
+        }
+    }
+
+    @Test
+    public void testQuarantine() throws Exception {
+        // With quarantine enabled, domains are collected attribute by attribute
+        PartitionedJmxCollector partitionedJmxCollector =
+                new PartitionedJmxCollector(
+                        getJmxConfigurationMap(),
+                        PartitionedJmxCollector.Partitioning.DOMAIN,
+                        1,
+                        executorService,
+                        2,
+                        mBeanServer,
+                        new DefaultExport(getJmxConfigurationMap()),
+                        new Quarantine("test", AttributeJmxCollector.QUARANTINE_LABEL_NAMES, 1000, 3, 60000));
+
+        JmxCollector jmxCollector = new JmxCollector(new Yaml().dump(getJmxConfigurationMap()));
+
+        assertEquals(getSamples(jmxCollector.collect()), getSamples(partitionedJmxCollector.collect()));
+    }
+
+    @Test
+    public void testFailedPartition() throws Exception {
+        // Reject the first partition ("partitioned.a"), run the others on the caller
+        AtomicInteger submissions = new AtomicInteger();
+        ExecutorService executorService = new AbstractExecutorService() {
+
+            @Override
+            public void execute(Runnable runnable) {
+                if (submissions.getAndIncrement() == 0) {
+                    throw new RejectedExecutionException();
+                }
+
+                runnable.run();
+            }
+
+            @Override
+            public void shutdown() {
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return false;
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return false;
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) {
+                return true;
+            }
+        };
+
+        PartitionedJmxCollector partitionedJmxCollector =
+                new PartitionedJmxCollector(
+                        getJmxConfigurationMap(), PartitionedJmxCollector.Partitioning.DOMAIN, 1, executorService, 2, mBeanServer, null, null);
+
+        Set<String> sampleSet = getSamples(partitionedJmxCollector.collect());
+
+        // The remaining partitions are returned, the failure is reported as a scrape error
+        assertFalse(sampleSet.contains("partitioned_a_Test_Value{name=one} 0.0"));
+        assertTrue(sampleSet.contains("partitioned_b_Test_Value{name=one} 2.0"));
+        assertTrue(sampleSet.contains("partitioned_c_Test_Value{name=one} 3.0"));
+        assertTrue(sampleSet.contains("jmx_scrape_error{} 1.0"));
+    }
+
+    @Test
+    public void testParallelism() throws Exception {
+        String[] objectNames = {
+                "bounded.a:type=Test",
+                "bounded.b:type=Test",
+                "bounded.c:type=Test",
+                "bounded.d:type=Test"
+        };
+
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maximumConcurrent = new AtomicInteger();
+
+        for (String objectName : objectNames) {
+            mBeanServer.registerMBean(new SlowValue(concurrent, maximumConcurrent), new ObjectName(objectName));
+        }
+
+        // An unbounded ExecutorService, like a virtual thread per task ExecutorService
+        ExecutorService unboundedExecutorService = Executors.newCachedThreadPool();
+
+        try {
+            Map<String, Object> jmxConfigurationMap = new LinkedHashMap<>();
+            jmxConfigurationMap.put("whitelistObjectNames", Collections.singletonList("bounded.*:*"));
+
+            PartitionedJmxCollector partitionedJmxCollector =
+                    new PartitionedJmxCollector(
+                            jmxConfigurationMap, PartitionedJmxCollector.Partitioning.DOMAIN, 1, unboundedExecutorService, 2, mBeanServer, null, null);
+
+            Set<String> sampleSet = getSamples(partitionedJmxCollector.collect());
+
+            // Each domain is a partition, at most 2 are collected concurrently
+            for (String domain : new String[] { "a", "b", "c", "d" }) {
+                assertTrue(sampleSet.contains("bounded_" + domain + "_Test_Value{} 1.0"), sampleSet.toString());
+            }
+
+            assertTrue(maximumConcurrent.get() <= 2, String.valueOf(maximumConcurrent.get()));
+        } finally {
+            unboundedExecutorService.shutdownNow();
+
+            for (String objectName : objectNames) {
+                mBeanServer.unregisterMBean(new ObjectName(objectName));
+            }
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        ObjectName blockingObjectName = new ObjectName("partitioned.b:type=Blocking");
+        BlockingValue blockingValue = new BlockingValue();
+        mBeanServer.registerMBean(blockingValue, blockingObjectName);
+
+        try {
+            PartitionedJmxCollector partitionedJmxCollector =
+                    new PartitionedJmxCollector(
+                            getJmxConfigurationMap(), PartitionedJmxCollector.Partitioning.DOMAIN, 1, executorService, 2, 500, mBeanServer, null, null);
+
+            long startNanoseconds = System.nanoTime();
+            Set<String> sampleSet = getSamples(partitionedJmxCollector.collect());
+            long durationMilliseconds = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanoseconds);
+
+            // The late partition ("partitioned.b") is dropped, the others are returned
+            assertTrue(durationMilliseconds < 5000, String.valueOf(durationMilliseconds));
+            assertTrue(sampleSet.contains("partitioned_a_Test_Value{name=one} 0.0"));
+            assertFalse(sampleSet.contains("partitioned_b_Test_Value{name=one} 2.0"));
+            assertTrue(sampleSet.contains("partitioned_c_Test_Value{name=one} 3.0"));
+            assertTrue(sampleSet.contains("jmx_scrape_error{} 1.0"));
+
+            // The late partition is cancelled
+            assertTrue(blockingValue.interruptedCountDownLatch.await(10, TimeUnit.SECONDS));
+        } finally {
+            mBeanServer.unregisterMBean(blockingObjectName);
+        }
+    }
+
+    @Test
+    public void testInterrupted() throws Exception {
+        ObjectName blockingObjectName = new ObjectName("partitioned.b:type=Blocking");
+        BlockingValue blockingValue = new BlockingValue();
+        mBeanServer.registerMBean(blockingValue, blockingObjectName);
+
+        try {
+            PartitionedJmxCollector partitionedJmxCollector =
+                    new PartitionedJmxCollector(
+                            getJmxConfigurationMap(), PartitionedJmxCollector.Partitioning.DOMAIN, 1, executorService, 2, 60000, mBeanServer, null, null);
+
+            // Interrupt the collecting thread once the blocking partition is being collected
+            Thread thread = Thread.currentThread();
+            Thread interruptThread = new Thread(() -> {
+                try {
+                    if (blockingValue.startedCountDownLatch.await(10, TimeUnit.SECONDS)) {
+                        thread.interrupt();
+                    }
+                } catch (InterruptedException e) {
+                    // DO NOTHING
+                }
+            });
+            interruptThread.start();
+
+            try {
+                assertThrows(RuntimeException.class, partitionedJmxCollector::collect);
+                assertTrue(Thread.interrupted());
+            } finally {
+                interruptThread.join();
+                Thread.interrupted();
+            }
+
+            // Outstanding partitions are cancelled
+            assertTrue(blockingValue.interruptedCountDownLatch.await(10, TimeUnit.SECONDS));
+        } finally {
+            mBeanServer.unregisterMBean(blockingObjectName);
+        }
+    }
+
+    private static Map<String, Object> getJmxConfigurationMap() {
+        Map<String, Object> jmxConfigurationMap = new LinkedHashMap<>();
+        jmxConfigurationMap.put("whitelistObjectNames", Collections.singletonList("partitioned.*:*"));
+        return jmxConfigurationMap;
+    }
+
+    /**
+     * Method to get the samples (excluding the scrape duration) as Strings
+     *
+     * @param metricFamilySamplesList
+     * @return
+     */
+    private static Set<String> getSamples(List<Collector.MetricFamilySamples> metricFamilySamplesList) {
+        Set<String> sampleSet = new HashSet<>();
+
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            if (!metricFamilySamples.name.startsWith("partitioned_")
+                    && !metricFamilySamples.name.startsWith("bounded_")
+                    && !metricFamilySamples.name.startsWith("jmx_scrape_error")) {
+                continue;
+            }
+
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                StringBuilder stringBuilder = new StringBuilder(sample.name).append('{');
+                for (int i = 0; i < sample.labelNames.size(); i++) {
+                    stringBuilder.append(i > 0 ? "," : "").append(sample.labelNames.get(i)).append('=').append(sample.labelValues.get(i));
+                }
+
+                sampleSet.add(stringBuilder.append("} ").append(sample.value).toString());
+            }
+        }
+
+        return sampleSet;
+    }
+
+    public interface ValueMBean {
+
+        long getValue();
+    }
+
+    public static class Value implements ValueMBean {
+
+        private final long value;
+
+        public Value(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public long getValue() {
+            return value;
+        }
+    }
+
+    public interface SlowValueMBean extends ValueMBean {
+    }
+
+    /**
+     * Class to implement an MBean that is slow to read, tracking concurrent reads
+     */
+    public static class SlowValue implements SlowValueMBean {
+
+        private final AtomicInteger concurrent;
+        private final AtomicInteger maximumConcurrent;
+
+        public SlowValue(AtomicInteger concurrent, AtomicInteger maximumConcurrent) {
+            this.concurrent = concurrent;
+            this.maximumConcurrent = maximumConcurrent;
+        }
+
+        @Override
+        public long getValue() {
+            int current = concurrent.incrementAndGet();
+            maximumConcurrent.accumulateAndGet(current, Math::max);
+
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+
+            return 1;
+        }
+    }
+
+    public interface BlockingValueMBean extends ValueMBean {
+    }
+
+    /**
+     * Class to implement an MBean that blocks until interrupted
+     */
+    public static class BlockingValue implements BlockingValueMBean {
+
+        private final CountDownLatch startedCountDownLatch = new CountDownLatch(1);
+        private final CountDownLatch interruptedCountDownLatch = new CountDownLatch(1);
+
+        @Override
+        public long getValue() {
+            startedCountDownLatch.countDown();
+
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                interruptedCountDownLatch.countDown();
+                Thread.currentThread().interrupt();
+            }
+
+            return 1;
+        }
+    }
+}
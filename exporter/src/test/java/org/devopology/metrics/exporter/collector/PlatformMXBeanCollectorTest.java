@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.prometheus.jmx.JmxCollector;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.devopology.metrics.exporter.jmx.ObjectNameFilter;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlatformMXBeanCollectorTest {
+
+    @Test
+    public void testHelp() throws Exception {
+        // Make sure LastGcInfo is available
+        System.gc();
+
+        Map<String, Object> jmxConfigurationMap = new LinkedHashMap<>();
+        jmxConfigurationMap.put("whitelistObjectNames", Collections.singletonList(PlatformMXBeanCollector.DOMAIN_OBJECT_NAME));
+
+        PlatformMXBeanCollector platformMXBeanCollector =
+                new PlatformMXBeanCollector(
+                        ManagementFactory.getPlatformMBeanServer(),
+                        new ObjectNameFilter(jmxConfigurationMap),
+                        new DefaultExport(jmxConfigurationMap));
+
+        JmxCollector jmxCollector = new JmxCollector(new Yaml().dump(jmxConfigurationMap));
+
+        Set<String> familySet = getFamilies(platformMXBeanCollector.collect());
+
+        // The typed reader families (names, types, and help) match the JmxCollector
+        assertEquals(getFamilies(jmxCollector.collect()), familySet);
+
+        assertTrue(
+                familySet.contains(
+                        "java_lang_Memory_HeapMemoryUsage_used UNKNOWN java.lang.management.MemoryUsage (java.lang<...><HeapMemoryUsage>used)"),
+                familySet.toString());
+    }
+
+    /**
+     * Method to get the java.lang MetricFamilySamples names, types, and help as Strings
+     * <p>
+     * Values change between collections, so aren't compared. The MBean key properties in the help
+     * are those of the first MBean of a family, which depends on collection order, so are replaced
+     *
+     * @param metricFamilySamplesList
+     * @return
+     */
+    private static Set<String> getFamilies(List<Collector.MetricFamilySamples> metricFamilySamplesList) {
+        Set<String> familySet = new TreeSet<>();
+
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            if (!metricFamilySamples.name.startsWith("java_lang_")) {
+                continue;
+            }
+
+            familySet.add(
+                    metricFamilySamples.name
+                            + " "
+                            + metricFamilySamples.type
+                            + " "
+                            + metricFamilySamples.help.replaceFirst("\\(java\\.lang<[^>]*>", "(java.lang<...>"));
+        }
+
+        return familySet;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QuarantineTest {
+
+    private static final long FAST_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    public void testQuarantine() {
+        Quarantine quarantine = new Quarantine("test", Arrays.asList("object_name", "attribute"), 100, 2, 60000);
+        List<String> key = Arrays.asList("test:type=Test", "Value");
+
+        // Keys within the budget aren't tracked
+        quarantine.record(key, FAST_NANOSECONDS);
+        assertEquals(0, quarantine.size());
+
+        quarantine.record(key, SLOW_NANOSECONDS);
+        assertFalse(quarantine.isQuarantined(key));
+
+        // A fast collection resets the consecutive count
+        quarantine.record(key, FAST_NANOSECONDS);
+        quarantine.record(key, SLOW_NANOSECONDS);
+        assertFalse(quarantine.isQuarantined(key));
+
+        quarantine.record(key, SLOW_NANOSECONDS);
+        assertTrue(quarantine.isQuarantined(key));
+        assertFalse(quarantine.isQuarantined(Arrays.asList("test:type=Test", "Other")));
+
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = quarantine.collect();
+        assertEquals(3, metricFamilySamplesList.size());
+
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            if ("test_duration_seconds".equals(metricFamilySamples.name)) {
+                // Tracked keys only, the fast collection before the key was tracked isn't observed
+                assertEquals(Collector.Type.SUMMARY, metricFamilySamples.type);
+                assertEquals(4.0, getValue(metricFamilySamples, "test_duration_seconds_count", null));
+                assertEquals(0.2, getValue(metricFamilySamples, "test_duration_seconds", "0.99"), 0.0001);
+                continue;
+            }
+
+            assertEquals(1, metricFamilySamples.samples.size());
+            assertEquals(Arrays.asList("object_name", "attribute"), metricFamilySamples.samples.get(0).labelNames);
+            assertEquals(key, metricFamilySamples.samples.get(0).labelValues);
+
+            if ("test_quarantined".equals(metricFamilySamples.name)) {
+                assertEquals(1.0, metricFamilySamples.samples.get(0).value);
+            } else if ("test_quarantines".equals(metricFamilySamples.name)) {
+                assertEquals(1.0, metricFamilySamples.samples.get(0).value);
+            }
+        }
+
+        quarantine.removeIf(k -> k.get(0).equals("test:type=Test"));
+        assertEquals(0, quarantine.size());
+        assertFalse(quarantine.isQuarantined(key));
+
+        // The series of removed keys are removed
+        for (Collector.MetricFamilySamples metricFamilySamples : quarantine.collect()) {
+            assertTrue(metricFamilySamples.samples.isEmpty(), metricFamilySamples.name);
+        }
+    }
+
+    @Test
+    public void testProbe() throws InterruptedException {
+        Quarantine quarantine = new Quarantine("test", Collections.singletonList("key"), 100, 1, 1);
+        List<String> key = Collections.singletonList("key");
+
+        quarantine.record(key, SLOW_NANOSECONDS);
+        Thread.sleep(10);
+
+        // The cooldown has expired, allowing a probe
+        assertFalse(quarantine.isQuarantined(key));
+
+        // A fast probe releases the key
+        quarantine.record(key, FAST_NANOSECONDS);
+        assertFalse(quarantine.isQuarantined(key));
+    }
+
+    @Test
+    public void testCardinality() {
+        Quarantine quarantine = new Quarantine("test", Collections.singletonList("key"), 100, 1, 60000);
+
+        for (int i = 0; i < 100; i++) {
+            quarantine.record(Collections.singletonList("fast-" + i), FAST_NANOSECONDS);
+        }
+
+        quarantine.record(Collections.singletonList("slow"), SLOW_NANOSECONDS);
+
+        // Only the tracked (slow) key has a duration series
+        for (Collector.MetricFamilySamples metricFamilySamples : quarantine.collect()) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                assertEquals(Collections.singletonList("slow"), sample.labelValues.subList(0, 1));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new Quarantine("test", Collections.emptyList(), 100, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Quarantine("test", Collections.singletonList("key"), 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Quarantine("test", Collections.singletonList("key"), 100, 0, 1));
+    }
+
+    private static Double getValue(Collector.MetricFamilySamples metricFamilySamples, String name, String quantile) {
+        for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+            int index = sample.labelNames.indexOf("quantile");
+            if (sample.name.equals(name) && ((quantile == null) || ((index >= 0) && quantile.equals(sample.labelValues.get(index))))) {
+                return sample.value;
+            }
+        }
+
+        return null;
+    }
+}
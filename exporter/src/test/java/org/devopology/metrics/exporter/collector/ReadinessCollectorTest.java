@@ -0,0 +1,276 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.undertow.Undertow;
+import org.devopology.metrics.exporter.undertow.handler.ReadyHttpHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReadinessCollectorTest {
+
+    private ReadinessCollector readinessCollector;
+    private Undertow undertow;
+    private String readyUrl;
+
+    @AfterEach
+    public void afterEach() {
+        if (undertow != null) {
+            undertow.stop();
+        }
+
+        if (readinessCollector != null) {
+            readinessCollector.close();
+        }
+    }
+
+    @Test
+    public void testStartDelay() throws Exception {
+        TestCollector testCollector = new TestCollector(false);
+        start(testCollector, 500);
+
+        // WAITING, the wrapped collector isn't collected
+        assertEquals(ReadinessCollector.State.WAITING, readinessCollector.getState());
+        assertState("waiting");
+        assertEquals(503, get());
+        assertEquals(0, testCollector.collections.get());
+
+        // WARMING, the warm-up collection is in progress
+        assertTrue(testCollector.warmUpStartedCountDownLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(ReadinessCollector.State.WARMING, readinessCollector.getState());
+        assertState("warming");
+        assertNull(getValue("test_gauge", "a"));
+        assertEquals(503, get());
+
+        // READY, the wrapped collector is collected
+        testCollector.warmUpCountDownLatch.countDown();
+        assertTrue(waitFor(() -> readinessCollector.getState() == ReadinessCollector.State.READY));
+        assertState("ready");
+        assertEquals(200, get());
+        assertEquals(2.0, getValue("metrics_exporter_jmx_warm_up_samples", null));
+        assertTrue(getValue("metrics_exporter_jmx_warm_up_duration_seconds", null) > 0);
+        assertEquals(1.0, getValue("test_gauge", "a"));
+        assertEquals(2.0, getValue("test_gauge", "b"));
+    }
+
+    @Test
+    public void testZeroStartDelay() throws Exception {
+        TestCollector testCollector = new TestCollector(false);
+        start(testCollector, 0);
+
+        // No WAITING state, the warm-up starts immediately
+        assertTrue(testCollector.warmUpStartedCountDownLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(ReadinessCollector.State.WARMING, readinessCollector.getState());
+        assertState("warming");
+        assertEquals(503, get());
+
+        // Only the warm-up collection
+        assertEquals(1, testCollector.collections.get());
+
+        testCollector.warmUpCountDownLatch.countDown();
+        assertTrue(waitFor(() -> readinessCollector.getState() == ReadinessCollector.State.READY));
+        assertState("ready");
+        assertEquals(200, get());
+        assertEquals(1.0, getValue("test_gauge", "a"));
+    }
+
+    @Test
+    public void testWarmUpFailure() throws Exception {
+        TestCollector testCollector = new TestCollector(true);
+        start(testCollector, 0);
+
+        // A failed warm-up still becomes READY, collection errors are reported by scrapes
+        testCollector.warmUpCountDownLatch.countDown();
+        assertTrue(waitFor(() -> readinessCollector.getState() == ReadinessCollector.State.READY));
+        assertState("ready");
+        assertEquals(200, get());
+        assertEquals(0.0, getValue("metrics_exporter_jmx_warm_up_samples", null));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        TestCollector testCollector = new TestCollector(false);
+        start(testCollector, 60000);
+
+        // Closing while WAITING stops the state machine
+        readinessCollector.close();
+        Thread.sleep(100);
+
+        assertEquals(ReadinessCollector.State.WAITING, readinessCollector.getState());
+        assertEquals(503, get());
+        assertEquals(0, testCollector.collections.get());
+    }
+
+    private void start(Collector collector, long startDelayMilliseconds) {
+        readinessCollector = new ReadinessCollector(collector, startDelayMilliseconds);
+
+        // Same readiness as the exporter's "/-/ready" endpoint
+        ReadinessCollector finalReadinessCollector = readinessCollector;
+        undertow = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(new ReadyHttpHandler(() -> finalReadinessCollector.getState() == ReadinessCollector.State.READY))
+                .build();
+
+        undertow.start();
+
+        InetSocketAddress inetSocketAddress = (InetSocketAddress) undertow.getListenerInfo().get(0).getAddress();
+        readyUrl = "http://localhost:" + inetSocketAddress.getPort() + "/-/ready";
+    }
+
+    /**
+     * Method to assert the exported readiness state (exactly one state is 1)
+     *
+     * @param expectedState
+     */
+    private void assertState(String expectedState) {
+        for (ReadinessCollector.State state : ReadinessCollector.State.values()) {
+            String name = state.name().toLowerCase();
+            assertEquals(name.equals(expectedState) ? 1.0 : 0.0, getValue("metrics_exporter_jmx_readiness_state", name), name);
+        }
+    }
+
+    /**
+     * Method to get a sample value from the ReadinessCollector
+     *
+     * @param name
+     * @param labelValue the label value, null for a sample without labels
+     * @return the value, or null if the sample doesn't exist
+     */
+    private Double getValue(String name, String labelValue) {
+        for (Collector.MetricFamilySamples metricFamilySamples : readinessCollector.collect()) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                if (sample.name.equals(name)
+                        && (labelValue == null ? sample.labelValues.isEmpty() : sample.labelValues.equals(Collections.singletonList(labelValue)))) {
+                    return sample.value;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Method to request the readiness endpoint, asserting the response body
+     *
+     * @return the status code
+     * @throws IOException
+     */
+    private int get() throws IOException {
+        HttpURLConnection httpURLConnection = (HttpURLConnection) new URL(readyUrl).openConnection();
+
+        try {
+            int code = httpURLConnection.getResponseCode();
+
+            try (InputStream inputStream = code == 200 ? httpURLConnection.getInputStream() : httpURLConnection.getErrorStream()) {
+                String body = new String(readAll(inputStream), StandardCharsets.UTF_8);
+                assertEquals(code == 200 ? "Exporter is ready." : "Exporter is not ready.", body);
+            }
+
+            return code;
+        } finally {
+            httpURLConnection.disconnect();
+        }
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            byteArrayOutputStream.write(buffer, 0, read);
+        }
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static boolean waitFor(BooleanSupplier booleanSupplier) throws InterruptedException {
+        long deadlineNanoseconds = System.nanoTime() + 10000000000L;
+        while (System.nanoTime() < deadlineNanoseconds) {
+            if (booleanSupplier.getAsBoolean()) {
+                return true;
+            }
+
+            Thread.sleep(10);
+        }
+
+        return false;
+    }
+
+    /**
+     * Class to implement a Collector whose first (warm-up) collection blocks until released
+     */
+    private static class TestCollector extends Collector {
+
+        private final boolean isWarmUpFailure;
+        private final CountDownLatch warmUpStartedCountDownLatch;
+        private final CountDownLatch warmUpCountDownLatch;
+        private final AtomicInteger collections;
+
+        private TestCollector(boolean isWarmUpFailure) {
+            this.isWarmUpFailure = isWarmUpFailure;
+            this.warmUpStartedCountDownLatch = new CountDownLatch(1);
+            this.warmUpCountDownLatch = new CountDownLatch(1);
+            this.collections = new AtomicInteger();
+        }
+
+        @Override
+        public List<MetricFamilySamples> collect() {
+            if (collections.getAndIncrement() == 0) {
+                warmUpStartedCountDownLatch.countDown();
+
+                try {
+                    warmUpCountDownLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                if (isWarmUpFailure) {
+                    throw new IllegalStateException("warm-up failure");
+                }
+            }
+
+            return Collections.singletonList(
+                    new MetricFamilySamples(
+                            "test_gauge",
+                            Type.GAUGE,
+                            "Test gauge",
+                            Arrays.asList(
+                                    new MetricFamilySamples.Sample("test_gauge", Collections.singletonList("name"), Collections.singletonList("a"), 1),
+                                    new MetricFamilySamples.Sample("test_gauge", Collections.singletonList("name"), Collections.singletonList("b"), 2))));
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import io.undertow.CustomUndertow;
+import org.devopology.common.file.FileMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SSLCollectorTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @TempDir
+    public Path directory;
+
+    private CustomUndertow customUndertow;
+    private FileMonitor fileMonitor;
+
+    @AfterEach
+    public void afterEach() {
+        if (fileMonitor != null) {
+            fileMonitor.stop();
+        }
+
+        if (customUndertow != null) {
+            customUndertow.stop();
+        }
+    }
+
+    @Test
+    public void testHandshakes() throws Exception {
+        SSLCollector sslCollector = new SSLCollector();
+        int port = start(createSSLContext(getKeyStore("/server-1.pkcs12")), sslCollector);
+
+        // Session ID resumption (TLS 1.2), the client SSLContext caches the session
+        SSLSocketFactory sslSocketFactory = createClientSSLContext().getSocketFactory();
+
+        SSLSession sslSession = get(sslSocketFactory, port);
+        waitFor(() -> getValue(sslCollector, "metrics_exporter_ssl_handshakes_total", "full") == 1);
+        assertEquals(0, getValue(sslCollector, "metrics_exporter_ssl_handshakes_total", "resumed"));
+
+        // A resumed session keeps the creation time of the original session, which must be before the connection is accepted
+        Thread.sleep(20);
+
+        SSLSession resumedSSLSession = get(sslSocketFactory, port);
+        assertArrayEquals(sslSession.getId(), resumedSSLSession.getId());
+
+        waitFor(() -> getValue(sslCollector, "metrics_exporter_ssl_handshakes_total", "resumed") == 1);
+        assertEquals(1, getValue(sslCollector, "metrics_exporter_ssl_handshakes_total", "full"));
+        assertEquals(0.5, getValue(sslCollector, "metrics_exporter_ssl_handshake_resumption_ratio", null));
+        assertEquals(2, getValue(sslCollector, "metrics_exporter_ssl_handshake_duration_seconds_count", null));
+
+        // A new client (without a cached session) performs a full handshake
+        get(createClientSSLContext().getSocketFactory(), port);
+        waitFor(() -> getValue(sslCollector, "metrics_exporter_ssl_handshakes_total", "full") == 2);
+        assertEquals(1, getValue(sslCollector, "metrics_exporter_ssl_handshakes_total", "resumed"));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        File keyStore = directory.resolve("keystore.pkcs12").toFile();
+        Files.copy(getKeyStore("/server-1.pkcs12").toPath(), keyStore.toPath());
+
+        SSLCollector sslCollector = new SSLCollector();
+        int port = start(createSSLContext(keyStore), sslCollector);
+
+        // Reload the SSLContext when the keystore changes, the same as the Exporter
+        fileMonitor = new FileMonitor(keyStore, 50);
+        fileMonitor.addListener(file -> {
+            try {
+                SSLContext reloadedSSLContext = createSSLContext(file);
+
+                for (CustomUndertow.ListenerInfo listenerInfo : customUndertow.getListenerInfo()) {
+                    listenerInfo.setSslContext(reloadedSSLContext);
+                }
+
+                sslCollector.reloaded(true);
+            } catch (Exception e) {
+                sslCollector.reloaded(false);
+            }
+        });
+        fileMonitor.start();
+
+        assertEquals("CN=localhost, O=Server 1", getSubject(get(createClientSSLContext().getSocketFactory(), port)));
+
+        // An invalid keystore is rejected, the previous keystore is used
+        replace(keyStore, new byte[] { 1, 2, 3, 4 }, 10000);
+        waitFor(() -> getValue(sslCollector, "metrics_exporter_ssl_context_reloads_total", "failure") >= 1);
+        assertEquals(0, getValue(sslCollector, "metrics_exporter_ssl_context_reloads_total", "success"));
+        assertEquals("CN=localhost, O=Server 1", getSubject(get(createClientSSLContext().getSocketFactory(), port)));
+
+        // The new certificate is used for new connections, without a restart
+        replace(keyStore, Files.readAllBytes(getKeyStore("/server-2.pkcs12").toPath()), 20000);
+        waitFor(() -> getValue(sslCollector, "metrics_exporter_ssl_context_reloads_total", "success") >= 1);
+        assertEquals("CN=localhost, O=Server 2", getSubject(get(createClientSSLContext().getSocketFactory(), port)));
+    }
+
+    /**
+     * Method to start an HTTPS server, returning the port
+     *
+     * @param sslContext
+     * @param sslCollector
+     * @return
+     */
+    private int start(SSLContext sslContext, SSLCollector sslCollector) {
+        customUndertow = CustomUndertow.builder()
+                .addHttpsListener(0, "localhost", sslContext)
+                .setSslConnectionListener(sslCollector)
+                .setHandler(httpServerExchange -> httpServerExchange.getResponseSender().send("ok"))
+                .build();
+
+        customUndertow.start();
+
+        return ((InetSocketAddress) customUndertow.getListenerInfo().get(0).getAddress()).getPort();
+    }
+
+    /**
+     * Method to perform a request on a new connection, returning the SSLSession
+     *
+     * @param sslSocketFactory
+     * @param port
+     * @return
+     * @throws IOException
+     */
+    private static SSLSession get(SSLSocketFactory sslSocketFactory, int port) throws IOException {
+        try (SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket("localhost", port)) {
+            sslSocket.setEnabledProtocols(new String[] { "TLSv1.2" });
+            sslSocket.startHandshake();
+
+            OutputStream outputStream = sslSocket.getOutputStream();
+            outputStream.write("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            outputStream.flush();
+
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            InputStream inputStream = sslSocket.getInputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                byteArrayOutputStream.write(buffer, 0, read);
+            }
+
+            String response = new String(byteArrayOutputStream.toByteArray(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 200 OK"), response);
+
+            return sslSocket.getSession();
+        }
+    }
+
+    /**
+     * Method to replace a file atomically, with a last modified time
+     *
+     * @param file
+     * @param bytes
+     * @param lastModifiedOffsetMilliseconds
+     * @throws IOException
+     */
+    private void replace(File file, byte[] bytes, long lastModifiedOffsetMilliseconds) throws IOException {
+        File temporaryFile = directory.resolve(file.getName() + ".tmp").toFile();
+        Files.write(temporaryFile.toPath(), bytes);
+        assertTrue(temporaryFile.setLastModified(System.currentTimeMillis() + lastModifiedOffsetMilliseconds));
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static SSLContext createSSLContext(File file) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            keyStore.load(inputStream, PASSWORD);
+        }
+
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, PASSWORD);
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, new SecureRandom());
+
+        return sslContext;
+    }
+
+    private static SSLContext createClientSSLContext() throws Exception {
+        SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+        sslContext.init(null, new TrustManager[] { new TrustAllTrustManager() }, new SecureRandom());
+
+        return sslContext;
+    }
+
+    private static File getKeyStore(String name) throws Exception {
+        return new File(SSLCollectorTest.class.getResource(name).toURI());
+    }
+
+    private static String getSubject(SSLSession sslSession) throws IOException {
+        return ((X509Certificate) sslSession.getPeerCertificates()[0]).getSubjectX500Principal().getName("RFC1779");
+    }
+
+    private static double getValue(SSLCollector sslCollector, String name, String labelValue) {
+        List<Collector.MetricFamilySamples> metricFamilySamplesList = sslCollector.collect();
+
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                if (sample.name.equals(name) && ((labelValue == null) || sample.labelValues.equals(Arrays.asList(labelValue)))) {
+                    return sample.value;
+                }
+            }
+        }
+
+        throw new IllegalStateException("sample [" + name + "] doesn't exist");
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long timeoutNanoseconds = System.nanoTime() + 10000000000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < timeoutNanoseconds, "timeout");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Class to implement a client X509TrustManager that trusts every server certificate
+     */
+    private static class TrustAllTrustManager implements X509TrustManager {
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] x509Certificates, String authType) {
+            // DO NOTHING
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] x509Certificates, String authType) {
+            // DO NOTHING
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
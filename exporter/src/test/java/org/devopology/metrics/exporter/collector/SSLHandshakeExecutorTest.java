@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.collector;
+
+import io.prometheus.client.Collector;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SSLHandshakeExecutorTest {
+
+    @Test
+    public void testFallback() throws Exception {
+        SSLHandshakeExecutor sslHandshakeExecutor = new SSLHandshakeExecutor(1, 1, Executors.defaultThreadFactory());
+        ExecutorService fallbackExecutorService = Executors.newSingleThreadExecutor();
+        sslHandshakeExecutor.setFallbackExecutor(fallbackExecutorService);
+
+        CountDownLatch blockingCountDownLatch = new CountDownLatch(1);
+
+        try {
+            // Occupy the only thread and the queue
+            sslHandshakeExecutor.execute(() -> await(blockingCountDownLatch));
+            sslHandshakeExecutor.execute(() -> { });
+
+            // The queue is full, so the task runs on the fallback Executor, not the calling thread
+            Thread[] threads = new Thread[1];
+            CountDownLatch countDownLatch = new CountDownLatch(1);
+            sslHandshakeExecutor.execute(() -> {
+                threads[0] = Thread.currentThread();
+                countDownLatch.countDown();
+            });
+
+            assertTrue(countDownLatch.await(10, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), threads[0]);
+            assertEquals(1.0, getValue(sslHandshakeExecutor.collect(), "metrics_exporter_ssl_handshake_executor_fallback_runs_total"));
+        } finally {
+            blockingCountDownLatch.countDown();
+            sslHandshakeExecutor.close();
+            fallbackExecutorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        SSLHandshakeExecutor sslHandshakeExecutor = new SSLHandshakeExecutor(1, 2, Executors.defaultThreadFactory());
+
+        CountDownLatch blockingCountDownLatch = new CountDownLatch(1);
+        CountDownLatch countDownLatch = new CountDownLatch(2);
+
+        sslHandshakeExecutor.execute(() -> await(blockingCountDownLatch));
+        sslHandshakeExecutor.execute(countDownLatch::countDown);
+
+        sslHandshakeExecutor.close();
+
+        // Without a fallback Executor, tasks executed after close run on the calling thread
+        Thread[] threads = new Thread[1];
+        sslHandshakeExecutor.execute(() -> {
+            threads[0] = Thread.currentThread();
+            countDownLatch.countDown();
+        });
+
+        assertSame(Thread.currentThread(), threads[0]);
+
+        // Queued tasks still run
+        blockingCountDownLatch.countDown();
+        assertTrue(countDownLatch.await(10, TimeUnit.SECONDS));
+
+        // A fallback Executor that rejects the task falls back to the calling thread
+        ExecutorService fallbackExecutorService = Executors.newSingleThreadExecutor();
+        fallbackExecutorService.shutdown();
+        sslHandshakeExecutor.setFallbackExecutor(fallbackExecutorService);
+
+        threads[0] = null;
+        sslHandshakeExecutor.execute(() -> threads[0] = Thread.currentThread());
+        assertSame(Thread.currentThread(), threads[0]);
+    }
+
+    private static Double getValue(List<Collector.MetricFamilySamples> metricFamilySamplesList, String name) {
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                if (sample.name.equals(name)) {
+                    return sample.value;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static void await(CountDownLatch countDownLatch) {
+        try {
+            countDownLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.hsperfdata;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class PerfDataFileTest {
+
+    @TempDir
+    public Path directory;
+
+    private Path path;
+
+    @BeforeEach
+    public void beforeEach() {
+        path = getPath();
+
+        // The test JVM's performance data file doesn't exist with -XX:-UsePerfData
+        assumeTrue(Files.isRegularFile(path), path + " doesn't exist");
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        PerfDataFile perfDataFile = new PerfDataFile(path);
+
+        assertEquals(path, perfDataFile.getPath());
+        assertFalse(perfDataFile.getCounterList().isEmpty());
+        assertFalse(perfDataFile.isModified());
+
+        // String counters
+        assertEquals(System.getProperty("java.version"), perfDataFile.getString("java.property.java.version"));
+        assertNull(perfDataFile.getString("does.not.exist"));
+
+        // Long counters
+        PerfDataFile.Counter frequencyCounter = getCounter(perfDataFile, "sun.os.hrt.frequency");
+        assertNotNull(frequencyCounter);
+        assertEquals(PerfDataFile.Units.HERTZ, frequencyCounter.getUnits());
+        assertEquals(PerfDataFile.Variability.CONSTANT, frequencyCounter.getVariability());
+        assertTrue(perfDataFile.getLong(frequencyCounter) > 0);
+
+        PerfDataFile.Counter ticksCounter = getCounter(perfDataFile, "sun.os.hrt.ticks");
+        assertNotNull(ticksCounter);
+        assertEquals(PerfDataFile.Units.TICKS, ticksCounter.getUnits());
+        assertTrue(perfDataFile.getLong(ticksCounter) > 0);
+
+        // Values are read from the mapped file, so they change without parsing the file again
+        PerfDataFile.Counter threadsCounter = getCounter(perfDataFile, "java.threads.started");
+        assertNotNull(threadsCounter);
+
+        long threadsStarted = perfDataFile.getLong(threadsCounter);
+        Thread thread = new Thread(() -> { });
+        thread.start();
+
+        long timeoutNanoseconds = System.nanoTime() + 10000000000L;
+        while ((perfDataFile.getLong(threadsCounter) == threadsStarted) && (System.nanoTime() < timeoutNanoseconds)) {
+            Thread.yield();
+        }
+
+        assertTrue(perfDataFile.getLong(threadsCounter) > threadsStarted);
+    }
+
+    @Test
+    public void testInvalid() throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+
+        // Too small
+        Path tooSmallPath = directory.resolve("too-small");
+        Files.write(tooSmallPath, Arrays.copyOf(bytes, 16));
+        assertThrows(IOException.class, () -> new PerfDataFile(tooSmallPath));
+
+        // Not a performance data file
+        Path invalidPath = directory.resolve("invalid");
+        Files.write(invalidPath, new byte[bytes.length]);
+        assertThrows(IOException.class, () -> new PerfDataFile(invalidPath));
+
+        // Truncated in the counter directory
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes).order(bytes[4] == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        int entryOffset = byteBuffer.getInt(24);
+
+        Path truncatedPath = directory.resolve("truncated");
+        Files.write(truncatedPath, Arrays.copyOf(bytes, entryOffset + 10));
+        assertThrows(IOException.class, () -> new PerfDataFile(truncatedPath));
+
+        // A complete copy is valid
+        Path copyPath = directory.resolve("copy");
+        Files.write(copyPath, bytes);
+        assertNotNull(getCounter(new PerfDataFile(copyPath), "sun.os.hrt.frequency"));
+    }
+
+    /**
+     * Method to get the test JVM's performance data file
+     *
+     * @return
+     */
+    private static Path getPath() {
+        String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+
+        return Paths.get(System.getProperty("java.io.tmpdir"), "hsperfdata_" + System.getProperty("user.name"), pid);
+    }
+
+    private static PerfDataFile.Counter getCounter(PerfDataFile perfDataFile, String name) {
+        for (PerfDataFile.Counter counter : perfDataFile.getCounterList()) {
+            if (counter.getName().equals(name)) {
+                return counter;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.jmx;
+
+import io.prometheus.client.Collector;
+import io.prometheus.jmx.JmxCollector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import javax.management.Attribute;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DefaultExportTest {
+
+    private static final String[] OBJECT_NAMES = {
+            "defaultexport.test:type=Data,name=one",
+            // The "key" property collides with the TabularData index name
+            "defaultexport.test:type=Data,key=two"
+    };
+
+    private MBeanServer mBeanServer;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        for (String objectName : OBJECT_NAMES) {
+            mBeanServer.registerMBean(new Data(), new ObjectName(objectName));
+        }
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        for (String objectName : OBJECT_NAMES) {
+            mBeanServer.unregisterMBean(new ObjectName(objectName));
+        }
+    }
+
+    @Test
+    public void testDefaultExport() throws Exception {
+        Map<String, Object> jmxConfigurationMap = new LinkedHashMap<>();
+        jmxConfigurationMap.put("whitelistObjectNames", Collections.singletonList("defaultexport.test:*"));
+
+        JmxCollector jmxCollector = new JmxCollector(new Yaml().dump(jmxConfigurationMap));
+        DefaultExport defaultExport = new DefaultExport(jmxConfigurationMap);
+
+        Set<String> expectedSampleSet = getSamples(jmxCollector.collect());
+        Set<String> sampleSet = getSamples(collect(defaultExport, new ObjectName("defaultexport.test:*")));
+
+        // DefaultExport produces the same names, labels, values, help, and types as the JmxCollector
+        assertEquals(expectedSampleSet, sampleSet);
+
+        assertTrue(
+                sampleSet.contains(
+                        "defaultexport_test_Data_Usage_used{name=one} 1.0 UNKNOWN "
+                                + Usage.class.getName()
+                                + " (defaultexport.test<type=Data, name=one><Usage>used)"),
+                sampleSet.toString());
+
+        // Nested TabularData index names are suffixed until unique ("key__" is output as "key_", matches the JMX exporter)
+        assertTrue(
+                sampleSet.contains(
+                        "defaultexport_test_Data_Nested{name=one,key=a,key_=b} 3.0 UNKNOWN "
+                                + "java.util.Map<java.lang.String, java.lang.Long> (defaultexport.test<type=Data, name=one, key=a, key_=b><>Nested)"),
+                sampleSet.toString());
+
+        assertTrue(
+                sampleSet.stream().anyMatch(sample -> sample.startsWith("defaultexport_test_Data_Nested{key=two,key_=a,key_=b} 3.0 ")),
+                sampleSet.toString());
+    }
+
+    @Test
+    public void testDefaultExportRules() throws Exception {
+        Map<String, Object> snakeCaseRuleMap = new LinkedHashMap<>();
+        snakeCaseRuleMap.put("pattern", "defaultexport.test<type=Data, name=one><(?:Usage)?>(?:used|enabled)");
+        snakeCaseRuleMap.put("attrNameSnakeCase", true);
+        snakeCaseRuleMap.put("valueFactor", 0.5);
+        snakeCaseRuleMap.put("type", "GAUGE");
+
+        Map<String, Object> ruleMap = new LinkedHashMap<>();
+        ruleMap.put("pattern", "defaultexport.test<type=Data, .*><>Value");
+        ruleMap.put("type", "COUNTER");
+
+        Map<String, Object> jmxConfigurationMap = new LinkedHashMap<>();
+        jmxConfigurationMap.put("whitelistObjectNames", Collections.singletonList("defaultexport.test:*"));
+        jmxConfigurationMap.put("lowercaseOutputName", true);
+        jmxConfigurationMap.put("lowercaseOutputLabelNames", true);
+        jmxConfigurationMap.put("rules", Arrays.asList(snakeCaseRuleMap, ruleMap));
+
+        JmxCollector jmxCollector = new JmxCollector(new Yaml().dump(jmxConfigurationMap));
+        DefaultExport defaultExport = new DefaultExport(jmxConfigurationMap);
+
+        Set<String> expectedSampleSet = getSamples(jmxCollector.collect());
+        Set<String> sampleSet = getSamples(collect(defaultExport, new ObjectName("defaultexport.test:*")));
+
+        assertEquals(expectedSampleSet, sampleSet);
+
+        // Collect again, using the cached sample plans
+        assertEquals(expectedSampleSet, getSamples(collect(defaultExport, new ObjectName("defaultexport.test:*"))));
+
+        assertTrue(
+                sampleSet.stream().anyMatch(sample -> sample.startsWith("defaultexport_test_data_usage_used{name=one} 0.5 GAUGE ")),
+                sampleSet.toString());
+
+        assertTrue(
+                sampleSet.stream().anyMatch(sample -> sample.startsWith("defaultexport_test_data_value{key=two} 1.0 COUNTER ")),
+                sampleSet.toString());
+    }
+
+    @Test
+    public void testDuplicateSamples() throws Exception {
+        DefaultExport defaultExport = new DefaultExport(new LinkedHashMap<>());
+        Map<String, Collector.MetricFamilySamples> metricFamilySamplesMap = new TreeMap<>();
+        ObjectName objectName = new ObjectName("defaultexport.test:type=Data,name=one");
+
+        // "Request-Count" and "Request.Count" are both sanitized to "Request_Count"
+        for (String attrName : new String[] { "Request-Count", "Request.Count", "Request_Count" }) {
+            defaultExport.processBeanValue(
+                    objectName.getDomain(),
+                    DefaultExport.getKeyPropertyList(objectName),
+                    new LinkedList<>(),
+                    attrName,
+                    "description",
+                    attrName.length() + attrName.indexOf('C'),
+                    metricFamilySamplesMap);
+        }
+
+        // A different label value isn't a duplicate
+        ObjectName otherObjectName = new ObjectName("defaultexport.test:type=Data,name=two");
+        defaultExport.processBeanValue(
+                otherObjectName.getDomain(),
+                DefaultExport.getKeyPropertyList(otherObjectName),
+                new LinkedList<>(),
+                "Request.Count",
+                "description",
+                100,
+                metricFamilySamplesMap);
+
+        Collector.MetricFamilySamples metricFamilySamples = metricFamilySamplesMap.get("defaultexport_test_Data_Request_Count");
+        assertEquals(1, metricFamilySamplesMap.size());
+        assertEquals(2, metricFamilySamples.samples.size());
+
+        // The first occurrence is kept, matches the JMX exporter
+        assertEquals(Collections.singletonList("one"), metricFamilySamples.samples.get(0).labelValues);
+        assertEquals(21.0, metricFamilySamples.samples.get(0).value);
+        assertEquals(Collections.singletonList("two"), metricFamilySamples.samples.get(1).labelValues);
+        assertEquals(100.0, metricFamilySamples.samples.get(1).value);
+    }
+
+    /**
+     * Method to collect MBeans using DefaultExport
+     *
+     * @param defaultExport
+     * @param objectName
+     * @return
+     * @throws Exception
+     */
+    private List<Collector.MetricFamilySamples> collect(DefaultExport defaultExport, ObjectName objectName) throws Exception {
+        Map<String, Collector.MetricFamilySamples> metricFamilySamplesMap = new TreeMap<>();
+
+        // Iterate in HashSet order, matches the JMX exporter, so the first MBean of a family (providing the help) is the same
+        for (ObjectName name : new HashSet<>(mBeanServer.queryNames(objectName, null))) {
+            MBeanInfo mBeanInfo = mBeanServer.getMBeanInfo(name);
+            Map<String, String> descriptionMap = new HashMap<>();
+            List<String> attributeNameList = new ArrayList<>();
+
+            for (MBeanAttributeInfo mBeanAttributeInfo : mBeanInfo.getAttributes()) {
+                attributeNameList.add(mBeanAttributeInfo.getName());
+                descriptionMap.put(mBeanAttributeInfo.getName(), mBeanAttributeInfo.getDescription());
+            }
+
+            for (Attribute attribute : mBeanServer.getAttributes(name, attributeNameList.toArray(new String[0])).asList()) {
+                defaultExport.processBeanValue(
+                        name.getDomain(),
+                        DefaultExport.getKeyPropertyList(name),
+                        new LinkedList<>(),
+                        attribute.getName(),
+                        descriptionMap.get(attribute.getName()),
+                        attribute.getValue(),
+                        metricFamilySamplesMap);
+            }
+        }
+
+        return new ArrayList<>(metricFamilySamplesMap.values());
+    }
+
+    /**
+     * Method to get the samples (excluding the scrape metrics) as Strings, including the help and type
+     *
+     * @param metricFamilySamplesList
+     * @return
+     */
+    private static Set<String> getSamples(List<Collector.MetricFamilySamples> metricFamilySamplesList) {
+        Set<String> sampleSet = new TreeSet<>();
+
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            if (!metricFamilySamples.name.startsWith("defaultexport_")) {
+                continue;
+            }
+
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                StringBuilder stringBuilder = new StringBuilder(sample.name).append('{');
+                for (int i = 0; i < sample.labelNames.size(); i++) {
+                    stringBuilder.append(i > 0 ? "," : "").append(sample.labelNames.get(i)).append('=').append(sample.labelValues.get(i));
+                }
+
+                sampleSet.add(
+                        stringBuilder
+                                .append("} ")
+                                .append(sample.value)
+                                .append(' ')
+                                .append(metricFamilySamples.type)
+                                .append(' ')
+                                .append(metricFamilySamples.help)
+                                .toString());
+            }
+        }
+
+        return sampleSet;
+    }
+
+    public interface DataMXBean {
+
+        long getValue();
+
+        boolean isEnabled();
+
+        String getName();
+
+        Date getStarted();
+
+        Usage getUsage();
+
+        Map<String, Long> getCounts();
+
+        Map<String, Map<String, Long>> getNested();
+    }
+
+    public static class Data implements DataMXBean {
+
+        @Override
+        public long getValue() {
+            return 1;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public String getName() {
+            return "name";
+        }
+
+        @Override
+        public Date getStarted() {
+            return new Date(1000);
+        }
+
+        @Override
+        public Usage getUsage() {
+            return new Usage(1, 2);
+        }
+
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            counts.put("a", 1L);
+            counts.put("b", 2L);
+            return counts;
+        }
+
+        @Override
+        public Map<String, Map<String, Long>> getNested() {
+            Map<String, Long> inner = new TreeMap<>();
+            inner.put("b", 3L);
+
+            Map<String, Map<String, Long>> nested = new TreeMap<>();
+            nested.put("a", inner);
+            return nested;
+        }
+    }
+
+    public static class Usage {
+
+        private final long used;
+        private final long max;
+
+        public Usage(long used, long max) {
+            this.used = used;
+            this.max = max;
+        }
+
+        public long getUsed() {
+            return used;
+        }
+
+        public long getMax() {
+            return max;
+        }
+    }
+}
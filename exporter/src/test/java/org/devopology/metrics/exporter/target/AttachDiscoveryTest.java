@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.target;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class AttachDiscoveryTest {
+
+    private ScheduledExecutorService scheduledExecutorService;
+    private ExecutorService connectionExecutorService;
+    private TargetFactory targetFactory;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        connectionExecutorService = Executors.newCachedThreadPool();
+        targetFactory = new TargetFactory(new HashMap<>(), scheduledExecutorService, connectionExecutorService, 1000, 1000, 100, 1000);
+    }
+
+    @AfterEach
+    public void afterEach() {
+        scheduledExecutorService.shutdownNow();
+        connectionExecutorService.shutdownNow();
+    }
+
+    @Test
+    public void testGetMainClass() {
+        assertEquals("com.example.Main", AttachDiscovery.getMainClass("com.example.Main --port 8080"));
+        assertEquals("/opt/app/app.jar", AttachDiscovery.getMainClass("/opt/app/app.jar"));
+        assertEquals("", AttachDiscovery.getMainClass(""));
+    }
+
+    @Test
+    public void testMainClass() throws Exception {
+        AttachDiscovery attachDiscovery = createAttachDiscovery(Pattern.compile("com\\.example\\..*|.*/app\\.jar"), null, null);
+
+        assertTrue(attachDiscovery.isMainClassMatch("com.example.Main"));
+        assertTrue(attachDiscovery.isMainClassMatch(AttachDiscovery.getMainClass("/opt/app/app.jar --verbose")));
+        assertFalse(attachDiscovery.isMainClassMatch("org.example.Main"));
+        assertFalse(attachDiscovery.isMainClassMatch("com.example"));
+        assertFalse(attachDiscovery.isMainClassMatch(""));
+
+        // Without a system property, any system properties match
+        assertTrue(attachDiscovery.isSystemPropertyMatch(new Properties()));
+    }
+
+    @Test
+    public void testSystemProperty() throws Exception {
+        AttachDiscovery attachDiscovery = createAttachDiscovery(null, "app.name", Pattern.compile("orders-.*"));
+
+        // Without a main class pattern, any main class matches
+        assertTrue(attachDiscovery.isMainClassMatch("org.example.Main"));
+        assertTrue(attachDiscovery.isMainClassMatch(""));
+
+        assertTrue(attachDiscovery.isSystemPropertyMatch(properties("app.name", "orders-1")));
+        assertFalse(attachDiscovery.isSystemPropertyMatch(properties("app.name", "billing-1")));
+        assertFalse(attachDiscovery.isSystemPropertyMatch(properties("app.name", "legacy-orders-1")));
+        assertFalse(attachDiscovery.isSystemPropertyMatch(properties("app.id", "orders-1")));
+        assertFalse(attachDiscovery.isSystemPropertyMatch(new Properties()));
+    }
+
+    @Test
+    public void testMainClassAndSystemProperty() throws Exception {
+        AttachDiscovery attachDiscovery = createAttachDiscovery(Pattern.compile("com\\.example\\..*"), "app.name", Pattern.compile("orders-.*"));
+
+        // Both must match, the main class is matched before attaching
+        assertTrue(attachDiscovery.isMainClassMatch("com.example.Main"));
+        assertTrue(attachDiscovery.isSystemPropertyMatch(properties("app.name", "orders-1")));
+        assertFalse(attachDiscovery.isMainClassMatch("org.example.Main"));
+        assertFalse(attachDiscovery.isSystemPropertyMatch(properties("app.name", "billing-1")));
+    }
+
+    @Test
+    public void testInvalid() {
+        assumeAttachApi();
+
+        assertThrows(IllegalStateException.class, () -> createAttachDiscovery(null, null, null));
+        assertThrows(IllegalStateException.class, () -> createAttachDiscovery(null, "app.name", null));
+    }
+
+    private AttachDiscovery createAttachDiscovery(Pattern mainClassPattern, String systemPropertyName, Pattern systemPropertyValuePattern) throws Exception {
+        assumeAttachApi();
+
+        return new AttachDiscovery(new HashMap<>(), targetFactory, mainClassPattern, systemPropertyName, systemPropertyValuePattern, 10, 100, 1000);
+    }
+
+    private static void assumeAttachApi() {
+        boolean isAttachApiAvailable;
+
+        try {
+            Class.forName("com.sun.tools.attach.VirtualMachine");
+            isAttachApiAvailable = true;
+        } catch (ClassNotFoundException e) {
+            isAttachApiAvailable = false;
+        }
+
+        assumeTrue(isAttachApiAvailable, "Attach API not available");
+    }
+
+    private static Properties properties(String name, String value) {
+        Properties properties = new Properties();
+        properties.setProperty(name, value);
+        return properties;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.target;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BackoffTest {
+
+    @Test
+    public void testBackoff() {
+        Backoff backoff = new Backoff(100, 1000);
+
+        for (int i = 0; i < 100; i++) {
+            // Equal jitter, between half and all of the exponential backoff
+            assertRange(backoff.getBackoffMilliseconds(0), 50, 100);
+            assertRange(backoff.getBackoffMilliseconds(1), 100, 200);
+            assertRange(backoff.getBackoffMilliseconds(3), 400, 800);
+
+            // Capped at the maximum
+            assertRange(backoff.getBackoffMilliseconds(4), 500, 1000);
+            assertRange(backoff.getBackoffMilliseconds(62), 500, 1000);
+            assertRange(backoff.getBackoffMilliseconds(Integer.MAX_VALUE), 500, 1000);
+            assertRange(backoff.getBackoffMilliseconds(-1), 500, 1000);
+        }
+    }
+
+    @Test
+    public void testOverflow() {
+        Backoff backoff = new Backoff(Long.MAX_VALUE / 4, Long.MAX_VALUE);
+
+        for (int attempt = 0; attempt < 64; attempt++) {
+            assertRange(backoff.getBackoffMilliseconds(attempt), Long.MAX_VALUE / 8, Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> new Backoff(0, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new Backoff(1000, 100));
+    }
+
+    private static void assertRange(long value, long minimum, long maximum) {
+        assertTrue((value >= minimum) && (value <= maximum), String.format("[%d] is outside range (%d - %d)", value, minimum, maximum));
+    }
+}
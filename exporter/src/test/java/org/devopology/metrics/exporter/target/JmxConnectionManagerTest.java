@@ -0,0 +1,210 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.target;
+
+import io.prometheus.client.Collector;
+import org.devopology.metrics.exporter.collector.RemoteJmxCollector;
+import org.devopology.metrics.exporter.jmx.DefaultExport;
+import org.devopology.metrics.exporter.jmx.ObjectNameFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JmxConnectionManagerTest {
+
+    private ScheduledExecutorService scheduledExecutorService;
+    private ExecutorService connectionExecutorService;
+
+    @BeforeEach
+    public void beforeEach() {
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        connectionExecutorService = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        scheduledExecutorService.shutdownNow();
+        connectionExecutorService.shutdownNow();
+    }
+
+    @Test
+    public void testConnect() throws Exception {
+        JMXConnectorServer jmxConnectorServer = startJMXConnectorServer();
+
+        try {
+            JmxConnectionManager jmxConnectionManager = createJmxConnectionManager(jmxConnectorServer.getAddress(), 10000);
+            jmxConnectionManager.start();
+
+            assertTrue(waitFor(jmxConnectionManager::isConnected));
+            assertEquals(1, jmxConnectionManager.getConnects());
+
+            RemoteJmxCollector remoteJmxCollector =
+                    new RemoteJmxCollector(
+                            jmxConnectionManager,
+                            new ObjectNameFilter(new HashMap<>()),
+                            new DefaultExport(new HashMap<>()));
+
+            List<Collector.MetricFamilySamples> metricFamilySamplesList = remoteJmxCollector.collect();
+            assertEquals(1.0, getValue(metricFamilySamplesList, "remote_test_Value_Value"));
+            assertEquals(0.0, getValue(metricFamilySamplesList, "jmx_scrape_error"));
+            assertTrue(getValue(metricFamilySamplesList, "jmx_scrape_duration_seconds") > 0);
+
+            jmxConnectionManager.close();
+
+            // A disconnected target reports a scrape error, instead of throwing an exception
+            assertEquals(1.0, getValue(remoteJmxCollector.collect(), "jmx_scrape_error"));
+        } finally {
+            jmxConnectorServer.stop();
+        }
+    }
+
+    @Test
+    public void testConnectTimeout() throws Exception {
+        List<Socket> socketList = Collections.synchronizedList(new ArrayList<>());
+
+        // A server that accepts connections, but never responds
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    while (true) {
+                        socketList.add(serverSocket.accept());
+                    }
+                } catch (Exception e) {
+                    // DO NOTHING
+                }
+            });
+
+            thread.setDaemon(true);
+            thread.start();
+
+            JmxConnectionManager jmxConnectionManager =
+                    createJmxConnectionManager(
+                            new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + serverSocket.getLocalPort() + "/jmxrmi"),
+                            100);
+
+            jmxConnectionManager.start();
+
+            // The hung connect is cancelled and retried with backoff
+            assertTrue(waitFor(() -> jmxConnectionManager.getConnectFailures() >= 2));
+            assertFalse(jmxConnectionManager.isConnected());
+
+            jmxConnectionManager.close();
+        } finally {
+            for (Socket socket : socketList) {
+                socket.close();
+            }
+        }
+    }
+
+    private JmxConnectionManager createJmxConnectionManager(JMXServiceURL jmxServiceURL, long connectTimeoutMilliseconds) {
+        return new JmxConnectionManager(
+                "test",
+                jmxServiceURL,
+                new HashMap<>(),
+                scheduledExecutorService,
+                connectionExecutorService,
+                connectTimeoutMilliseconds,
+                10000,
+                10,
+                20);
+    }
+
+    /**
+     * Method to start a JMXConnectorServer on an ephemeral port, without an RMI registry,
+     * with a "remote.test:type=Value" MBean
+     *
+     * @return
+     * @throws Exception
+     */
+    static JMXConnectorServer startJMXConnectorServer() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        mBeanServer.registerMBean(new Value(), new ObjectName("remote.test:type=Value"));
+
+        JMXConnectorServer jmxConnectorServer =
+                JMXConnectorServerFactory.newJMXConnectorServer(
+                        new JMXServiceURL("service:jmx:rmi://localhost"),
+                        null,
+                        mBeanServer);
+
+        jmxConnectorServer.start();
+
+        return jmxConnectorServer;
+    }
+
+    static boolean waitFor(Condition condition) throws InterruptedException {
+        long deadlineNanoseconds = System.nanoTime() + 10000000000L;
+        while (System.nanoTime() < deadlineNanoseconds) {
+            if (condition.isTrue()) {
+                return true;
+            }
+
+            Thread.sleep(10);
+        }
+
+        return false;
+    }
+
+    private static Double getValue(List<Collector.MetricFamilySamples> metricFamilySamplesList, String name) {
+        for (Collector.MetricFamilySamples metricFamilySamples : metricFamilySamplesList) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                if (sample.name.equals(name)) {
+                    return sample.value;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    interface Condition {
+
+        boolean isTrue();
+    }
+
+    public interface ValueMBean {
+
+        long getValue();
+    }
+
+    public static class Value implements ValueMBean {
+
+        @Override
+        public long getValue() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.undertow.handler;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import org.devopology.common.ratelimit.TokenBucketRateLimiter;
+import org.devopology.metrics.exporter.undertow.handler.predicate.RequestPathExact;
+import org.devopology.metrics.exporter.undertow.handler.predicate.RequestPathStartsWith;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RateLimitHttpHandlerTest {
+
+    private Undertow undertow;
+    private String baseUrl;
+
+    @BeforeEach
+    public void beforeEach() {
+        HttpHandler httpHandler = httpServerExchange -> httpServerExchange.getResponseSender().send("OK");
+
+        RateLimitHttpHandler rateLimitHttpHandler = new RateLimitHttpHandler(httpHandler);
+
+        // 1 request per minute, so no permits are added during the test
+        rateLimitHttpHandler.addRateLimit(
+                new RequestPathExact("/probe").or(new RequestPathStartsWith("/targets/")),
+                new TokenBucketRateLimiter<InetAddress>(1 / 60.0, 1, 300000),
+                new RetryAfterHttpHandler(429, 60));
+
+        rateLimitHttpHandler.addRateLimit(
+                new RequestPathExact("/metrics"),
+                new TokenBucketRateLimiter<InetAddress>(1 / 60.0, 2, 300000),
+                new RetryAfterHttpHandler(429, 60));
+
+        undertow = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(rateLimitHttpHandler)
+                .build();
+
+        undertow.start();
+
+        InetSocketAddress inetSocketAddress = (InetSocketAddress) undertow.getListenerInfo().get(0).getAddress();
+        baseUrl = "http://localhost:" + inetSocketAddress.getPort();
+    }
+
+    @AfterEach
+    public void afterEach() {
+        if (undertow != null) {
+            undertow.stop();
+        }
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        // The burst is allowed, then requests are rejected with a Retry-After header
+        assertEquals(200, get("/metrics", null));
+        assertEquals(200, get("/metrics", null));
+        assertEquals(429, get("/metrics", "60"));
+
+        // Each endpoint has its own bucket, the first matching endpoint is used
+        assertEquals(200, get("/probe", null));
+        assertEquals(429, get("/targets/target-0", "60"));
+
+        // Requests not matching an endpoint aren't rate limited
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, get("/-/healthy", null));
+        }
+    }
+
+    /**
+     * Method to send a request, asserting the Retry-After header
+     *
+     * @param path
+     * @param expectedRetryAfter
+     * @return the status code
+     * @throws IOException
+     */
+    private int get(String path, String expectedRetryAfter) throws IOException {
+        HttpURLConnection httpURLConnection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+
+        try {
+            int code = httpURLConnection.getResponseCode();
+            assertEquals(expectedRetryAfter, httpURLConnection.getHeaderField("Retry-After"));
+            return code;
+        } finally {
+            httpURLConnection.disconnect();
+        }
+    }
+}
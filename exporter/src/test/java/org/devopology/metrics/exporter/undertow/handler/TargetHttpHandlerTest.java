@@ -0,0 +1,284 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.undertow.handler;
+
+import io.undertow.Undertow;
+import org.devopology.metrics.exporter.target.Target;
+import org.devopology.metrics.exporter.target.TargetFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TargetHttpHandlerTest {
+
+    private final List<JMXConnectorServer> jmxConnectorServerList = new ArrayList<>();
+
+    private ScheduledExecutorService scheduledExecutorService;
+    private ExecutorService connectionExecutorService;
+    private ExecutorService collectionExecutorService;
+    private Map<String, Target> targetMap;
+    private Undertow undertow;
+    private String baseUrl;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+        connectionExecutorService = Executors.newCachedThreadPool();
+        collectionExecutorService = Executors.newFixedThreadPool(2);
+
+        TargetFactory targetFactory =
+                new TargetFactory(
+                        new HashMap<>(),
+                        scheduledExecutorService,
+                        connectionExecutorService,
+                        10000,
+                        10000,
+                        10,
+                        20);
+
+        targetMap = new ConcurrentSkipListMap<>();
+
+        // Two targets, each with their own JMXConnectorServer on an ephemeral port
+        for (int i = 0; i < 2; i++) {
+            JMXConnectorServer jmxConnectorServer = startJMXConnectorServer(i);
+            jmxConnectorServerList.add(jmxConnectorServer);
+
+            String name = "target-" + i;
+            targetMap.put(name, targetFactory.createTarget(name, jmxConnectorServer.getAddress().toString(), null, null, false, 1, null));
+        }
+
+        // A target that is never connected
+        targetMap.put(
+                "disconnected",
+                targetFactory.createTarget("disconnected", "service:jmx:rmi:///jndi/rmi://localhost:1/jmxrmi", null, null, false, 1, null));
+
+        for (Map.Entry<String, Target> entry : targetMap.entrySet()) {
+            if (!entry.getKey().equals("disconnected")) {
+                entry.getValue().getJmxConnectionManager().start();
+            }
+        }
+
+        for (Target target : targetMap.values()) {
+            if (!target.getName().equals("disconnected")) {
+                assertTrue(waitFor(target::isAvailable));
+            }
+        }
+
+        undertow = Undertow.builder()
+                .addHttpListener(0, "localhost")
+                .setHandler(new TargetHttpHandler(targetMap, collectionExecutorService))
+                .build();
+
+        undertow.start();
+
+        InetSocketAddress inetSocketAddress = (InetSocketAddress) undertow.getListenerInfo().get(0).getAddress();
+        baseUrl = "http://localhost:" + inetSocketAddress.getPort();
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception {
+        if (undertow != null) {
+            undertow.stop();
+        }
+
+        for (Target target : targetMap.values()) {
+            target.close();
+        }
+
+        for (JMXConnectorServer jmxConnectorServer : jmxConnectorServerList) {
+            jmxConnectorServer.stop();
+        }
+
+        scheduledExecutorService.shutdownNow();
+        connectionExecutorService.shutdownNow();
+        collectionExecutorService.shutdownNow();
+    }
+
+    @Test
+    public void testTargets() throws Exception {
+        // Each target is collected from its own MBeanServer, using either path format
+        Response response = get("/probe?target=target-0");
+        assertEquals(200, response.code);
+        assertTrue(response.body.contains("target_test_Value_Value 0.0"), response.body);
+        assertFalse(response.body.contains("target_test_Value_Value 1.0"), response.body);
+
+        response = get("/targets/target-1");
+        assertEquals(200, response.code);
+        assertTrue(response.body.contains("target_test_Value_Value 1.0"), response.body);
+        assertTrue(response.body.contains("jmx_scrape_error 0.0"), response.body);
+
+        // Scrapes are recorded once the response has been sent
+        assertTrue(waitFor(() -> targetMap.get("target-0").getScrapes() == 1));
+        assertTrue(waitFor(() -> targetMap.get("target-1").getScrapes() == 1));
+    }
+
+    @Test
+    public void testBadRequestAndNotFound() throws Exception {
+        assertEquals(400, get("/probe").code);
+        assertEquals(404, get("/probe?target=unknown").code);
+        assertEquals(404, get("/targets/unknown").code);
+    }
+
+    @Test
+    public void testServiceUnavailable() throws Exception {
+        // A disconnected target fails fast
+        assertEquals(503, get("/targets/disconnected").code);
+        assertEquals(1, targetMap.get("disconnected").getFailures());
+
+        // A target that was connected fails fast once disconnected, other targets aren't affected
+        targetMap.get("target-0").getJmxConnectionManager().close();
+        assertEquals(503, get("/targets/target-0").code);
+        assertEquals(200, get("/targets/target-1").code);
+    }
+
+    @Test
+    public void testMaximumConcurrentScrapes() throws Exception {
+        Target target = targetMap.get("target-0");
+
+        // Hold the only scrape permit
+        assertTrue(target.tryAcquire());
+
+        try {
+            assertEquals(503, get("/targets/target-0").code);
+            assertEquals(1, target.getRejections());
+
+            // Other targets have their own permits
+            assertEquals(200, get("/targets/target-1").code);
+        } finally {
+            target.release();
+        }
+
+        assertEquals(200, get("/targets/target-0").code);
+    }
+
+    private Response get(String path) throws IOException {
+        HttpURLConnection httpURLConnection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+
+        try {
+            int code = httpURLConnection.getResponseCode();
+            InputStream inputStream = code < 400 ? httpURLConnection.getInputStream() : httpURLConnection.getErrorStream();
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+            if (inputStream != null) {
+                try (InputStream autoCloseInputStream = inputStream) {
+                    byte[] bytes = new byte[8192];
+                    int read;
+                    while ((read = autoCloseInputStream.read(bytes)) != -1) {
+                        byteArrayOutputStream.write(bytes, 0, read);
+                    }
+                }
+            }
+
+            return new Response(code, new String(byteArrayOutputStream.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            httpURLConnection.disconnect();
+        }
+    }
+
+    /**
+     * Method to start a JMXConnectorServer on an ephemeral port, without an RMI registry,
+     * with a "target.test:type=Value" MBean
+     *
+     * @param value
+     * @return
+     * @throws Exception
+     */
+    private static JMXConnectorServer startJMXConnectorServer(long value) throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        mBeanServer.registerMBean(new Value(value), new ObjectName("target.test:type=Value"));
+
+        JMXConnectorServer jmxConnectorServer =
+                JMXConnectorServerFactory.newJMXConnectorServer(
+                        new JMXServiceURL("service:jmx:rmi://localhost"),
+                        null,
+                        mBeanServer);
+
+        jmxConnectorServer.start();
+
+        return jmxConnectorServer;
+    }
+
+    private static boolean waitFor(BooleanSupplier booleanSupplier) throws InterruptedException {
+        long deadlineNanoseconds = System.nanoTime() + 10000000000L;
+        while (System.nanoTime() < deadlineNanoseconds) {
+            if (booleanSupplier.getAsBoolean()) {
+                return true;
+            }
+
+            Thread.sleep(10);
+        }
+
+        return false;
+    }
+
+    private static class Response {
+
+        private final int code;
+        private final String body;
+
+        private Response(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+
+    public interface ValueMBean {
+
+        long getValue();
+    }
+
+    public static class Value implements ValueMBean {
+
+        private final long value;
+
+        public Value(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public long getValue() {
+            return value;
+        }
+    }
+}
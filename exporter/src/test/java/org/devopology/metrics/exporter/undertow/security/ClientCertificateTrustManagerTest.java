@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.devopology.metrics.exporter.undertow.security;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.InputStream;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ClientCertificateTrustManagerTest {
+
+    // CN=client, O=Example
+    private static X509Certificate[] subjectCertificates;
+
+    // CN=other, O=Example, subject alternative names DNS:Client.Example.com, IP:127.0.0.1
+    private static X509Certificate[] subjectAlternativeNameCertificates;
+
+    // CN=denied, O=Example
+    private static X509Certificate[] deniedCertificates;
+
+    @BeforeAll
+    public static void beforeAll() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream inputStream = ClientCertificateTrustManagerTest.class.getResourceAsStream("/client-certificates.pkcs12")) {
+            keyStore.load(inputStream, "changeit".toCharArray());
+        }
+
+        subjectCertificates = new X509Certificate[] { (X509Certificate) keyStore.getCertificate("subject") };
+        subjectAlternativeNameCertificates = new X509Certificate[] { (X509Certificate) keyStore.getCertificate("san") };
+        deniedCertificates = new X509Certificate[] { (X509Certificate) keyStore.getCertificate("denied") };
+    }
+
+    @Test
+    public void testNoAllowlist() {
+        // Without an allowlist, any certificate trusted by the truststore is allowed
+        ClientCertificateTrustManager clientCertificateTrustManager =
+                new ClientCertificateTrustManager(new TestTrustManager(true), Collections.emptyList(), Collections.emptyList());
+
+        assertDoesNotThrow(() -> clientCertificateTrustManager.checkClientTrusted(deniedCertificates, "EC"));
+    }
+
+    @Test
+    public void testAllowedSubjects() {
+        // Subjects are compared in canonical form (case and whitespace insensitive)
+        ClientCertificateTrustManager clientCertificateTrustManager =
+                new ClientCertificateTrustManager(
+                        new TestTrustManager(true),
+                        Collections.singletonList(" cn=Client,o=example "),
+                        Collections.emptyList());
+
+        assertDoesNotThrow(() -> clientCertificateTrustManager.checkClientTrusted(subjectCertificates, "EC"));
+        assertDoesNotThrow(() -> clientCertificateTrustManager.checkClientTrusted(subjectCertificates, "EC", (SSLEngine) null));
+        assertDoesNotThrow(() -> clientCertificateTrustManager.checkClientTrusted(subjectCertificates, "EC", (Socket) null));
+        assertThrows(CertificateException.class, () -> clientCertificateTrustManager.checkClientTrusted(deniedCertificates, "EC"));
+        assertThrows(CertificateException.class, () -> clientCertificateTrustManager.checkClientTrusted(subjectAlternativeNameCertificates, "EC"));
+    }
+
+    @Test
+    public void testAllowedSubjectAlternativeNames() {
+        ClientCertificateTrustManager clientCertificateTrustManager =
+                new ClientCertificateTrustManager(
+                        new TestTrustManager(true),
+                        Collections.emptyList(),
+                        Collections.singletonList("client.example.com"));
+
+        // DNS names are compared case insensitively
+        assertDoesNotThrow(() -> clientCertificateTrustManager.checkClientTrusted(subjectAlternativeNameCertificates, "EC", (SSLEngine) null));
+        assertThrows(CertificateException.class, () -> clientCertificateTrustManager.checkClientTrusted(subjectCertificates, "EC", (SSLEngine) null));
+
+        ClientCertificateTrustManager ipAddressClientCertificateTrustManager =
+                new ClientCertificateTrustManager(
+                        new TestTrustManager(true),
+                        Collections.emptyList(),
+                        Collections.singletonList("127.0.0.1"));
+
+        assertDoesNotThrow(() -> ipAddressClientCertificateTrustManager.checkClientTrusted(subjectAlternativeNameCertificates, "EC", (SSLEngine) null));
+    }
+
+    @Test
+    public void testAllowedSubjectsOrSubjectAlternativeNames() {
+        ClientCertificateTrustManager clientCertificateTrustManager =
+                new ClientCertificateTrustManager(
+                        new TestTrustManager(true),
+                        Collections.singletonList("CN=client, O=Example"),
+                        Arrays.asList("client.example.com", "https://client.example.com"));
+
+        assertDoesNotThrow(() -> clientCertificateTrustManager.checkClientTrusted(subjectCertificates, "EC", (SSLEngine) null));
+        assertDoesNotThrow(() -> clientCertificateTrustManager.checkClientTrusted(subjectAlternativeNameCertificates, "EC", (SSLEngine) null));
+        assertThrows(CertificateException.class, () -> clientCertificateTrustManager.checkClientTrusted(deniedCertificates, "EC", (SSLEngine) null));
+    }
+
+    @Test
+    public void testUntrusted() {
+        // A certificate not trusted by the truststore is rejected, even if it's allowed
+        ClientCertificateTrustManager clientCertificateTrustManager =
+                new ClientCertificateTrustManager(
+                        new TestTrustManager(false),
+                        Collections.singletonList("CN=client, O=Example"),
+                        Collections.emptyList());
+
+        assertThrows(CertificateException.class, () -> clientCertificateTrustManager.checkClientTrusted(subjectCertificates, "EC", (SSLEngine) null));
+    }
+
+    @Test
+    public void testInvalidSubject() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> new ClientCertificateTrustManager(
+                        new TestTrustManager(true), Collections.singletonList("not a distinguished name"), Collections.emptyList()));
+    }
+
+    /**
+     * Class to implement a truststore X509ExtendedTrustManager that trusts (or doesn't trust) every certificate
+     */
+    private static class TestTrustManager extends X509ExtendedTrustManager {
+
+        private final boolean isTrusted;
+
+        private TestTrustManager(boolean isTrusted) {
+            this.isTrusted = isTrusted;
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] x509Certificates, String authType) throws CertificateException {
+            check();
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] x509Certificates, String authType, Socket socket) throws CertificateException {
+            check();
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] x509Certificates, String authType, SSLEngine sslEngine) throws CertificateException {
+            check();
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] x509Certificates, String authType) throws CertificateException {
+            check();
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] x509Certificates, String authType, Socket socket) throws CertificateException {
+            check();
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] x509Certificates, String authType, SSLEngine sslEngine) throws CertificateException {
+            check();
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+
+        private void check() throws CertificateException {
+            if (!isTrusted) {
+                throw new CertificateException("untrusted");
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+#!/bin/bash
+
+source version.env
+
+java -javaagent:target/metrics-exporter-javaagent-${VERSION}.jar=test-application/configuration/benchmark.yml -cp test-application/target/test-application-${VERSION}-jar-with-dependencies.jar SyntheticMBeanBenchmark "$@"
@@ -0,0 +1,5 @@
+#!/bin/bash
+
+source version.env
+
+java -cp test-application/target/test-application-${VERSION}-jar-with-dependencies.jar MetricsChannelBenchmark "$@"
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import io.prometheus.client.CollectorRegistry;
+import io.prometheus.client.Counter;
+import org.devopology.common.channel.MetricsChannelWriter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Class to implement a benchmark that measures the MetricsChannelWriter update cost
+ * in nanoseconds, compared to a Prometheus client Counter
+ * <p>
+ * Usage: MetricsChannelBenchmark [threads] [operations] [rounds]
+ */
+public class MetricsChannelBenchmark {
+
+    private static final int DEFAULT_THREADS = 1;
+    private static final int DEFAULT_OPERATIONS = 10000000;
+    private static final int DEFAULT_ROUNDS = 10;
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static volatile double sink;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_OPERATIONS;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROUNDS;
+
+        File directory = Files.createTempDirectory("metrics-channel-benchmark").toFile();
+        File file = new File(directory, "benchmark.metrics");
+
+        try (MetricsChannelWriter metricsChannelWriter = new MetricsChannelWriter(file)) {
+            MetricsChannelWriter.Counter counter = metricsChannelWriter.counter("benchmark_operations", "Number of operations");
+            MetricsChannelWriter.Gauge gauge = metricsChannelWriter.gauge("benchmark_value", "Last value");
+            Counter prometheusCounter = Counter.build().name("benchmark_operations").help("Number of operations").register(new CollectorRegistry());
+
+            System.out.println("threads [" + threads + "] operations per thread [" + operations + "] rounds [" + rounds + "]");
+
+            run("metrics channel counter inc", threads, operations, rounds, () -> counter.inc());
+            run("metrics channel gauge set  ", threads, operations, rounds, () -> gauge.set(sink));
+            run("prometheus counter inc     ", threads, operations, rounds, () -> prometheusCounter.inc());
+
+            sink = counter.get() + gauge.get();
+        } finally {
+            directory.delete();
+        }
+    }
+
+    /**
+     * Method to warm up and measure an operation
+     *
+     * @param name
+     * @param threads
+     * @param operations
+     * @param rounds
+     * @param runnable
+     * @throws InterruptedException
+     */
+    private static void run(String name, int threads, int operations, int rounds, Runnable runnable) throws InterruptedException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            measure(threads, operations, runnable);
+        }
+
+        double[] nanosecondsPerOperation = new double[rounds];
+        for (int i = 0; i < rounds; i++) {
+            nanosecondsPerOperation[i] = measure(threads, operations, runnable);
+        }
+
+        Arrays.sort(nanosecondsPerOperation);
+
+        System.out.println(
+                name
+                + " min [" + String.format("%.2f", nanosecondsPerOperation[0]) + "] ns/op"
+                + " p50 [" + String.format("%.2f", nanosecondsPerOperation[rounds / 2]) + "] ns/op"
+                + " max [" + String.format("%.2f", nanosecondsPerOperation[rounds - 1]) + "] ns/op");
+    }
+
+    /**
+     * Method to measure one round
+     *
+     * @param threads
+     * @param operations
+     * @param runnable
+     * @return the mean nanoseconds per operation, per thread
+     * @throws InterruptedException
+     */
+    private static double measure(int threads, int operations, Runnable runnable) throws InterruptedException {
+        CountDownLatch startCountDownLatch = new CountDownLatch(1);
+        Thread[] threadArray = new Thread[threads];
+
+        for (int i = 0; i < threads; i++) {
+            threadArray[i] = new Thread(() -> {
+                try {
+                    startCountDownLatch.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int j = 0; j < operations; j++) {
+                    runnable.run();
+                }
+            });
+
+            threadArray[i].start();
+        }
+
+        long startNanoseconds = System.nanoTime();
+        startCountDownLatch.countDown();
+
+        for (Thread thread : threadArray) {
+            thread.join();
+        }
+
+        return (System.nanoTime() - startNanoseconds) / (double) operations;
+    }
+}
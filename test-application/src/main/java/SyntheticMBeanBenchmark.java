@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022 Douglas Hoard
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Class to implement a benchmark that registers composite-heavy synthetic MBeans
+ * and measures the exporter scrape latency
+ * <p>
+ * Each MBean has a CompositeData attribute (Statistics) and a TabularData attribute (Table),
+ * converted from typed values by the MXBean framework on every read
+ * <p>
+ * Usage: SyntheticMBeanBenchmark [url] [mbeans] [rows] [iterations]
+ */
+public class SyntheticMBeanBenchmark {
+
+    private static final String DEFAULT_URL = "http://localhost:12345/metrics";
+    private static final int DEFAULT_MBEANS = 100;
+    private static final int DEFAULT_ROWS = 32;
+    private static final int DEFAULT_ITERATIONS = 100;
+    private static final int WARMUP_ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception {
+        String url = args.length > 0 ? args[0] : DEFAULT_URL;
+        int mBeans = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MBEANS;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ROWS;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_ITERATIONS;
+
+        System.out.println("registering [" + mBeans + "] synthetic MBeans with [" + rows + "] rows");
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        for (int i = 0; i < mBeans; i++) {
+            mBeanServer.registerMBean(new Synthetic(rows), new ObjectName("benchmark:type=Synthetic,name=synthetic-" + i));
+        }
+
+        System.out.println("warming up [" + WARMUP_ITERATIONS + "] iterations");
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            scrape(url);
+        }
+
+        System.out.println("scraping [" + url + "] [" + iterations + "] iterations");
+
+        long[] durations = new long[iterations];
+        long bytes = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            long startNanoseconds = System.nanoTime();
+            bytes = scrape(url);
+            durations[i] = System.nanoTime() - startNanoseconds;
+        }
+
+        Arrays.sort(durations);
+
+        long total = 0;
+        for (long duration : durations) {
+            total += duration;
+        }
+
+        System.out.println("response bytes [" + bytes + "]");
+        System.out.println("min  [" + toMilliseconds(durations[0]) + "] ms");
+        System.out.println("mean [" + toMilliseconds(total / durations.length) + "] ms");
+        System.out.println("p50  [" + toMilliseconds(durations[(int) (durations.length * 0.50)]) + "] ms");
+        System.out.println("p90  [" + toMilliseconds(durations[(int) (durations.length * 0.90)]) + "] ms");
+        System.out.println("p99  [" + toMilliseconds(durations[(int) (durations.length * 0.99)]) + "] ms");
+        System.out.println("max  [" + toMilliseconds(durations[durations.length - 1]) + "] ms");
+    }
+
+    /**
+     * Method to scrape the exporter, reading the full response
+     *
+     * @param url
+     * @return the number of bytes read
+     * @throws Exception
+     */
+    private static long scrape(String url) throws Exception {
+        HttpURLConnection httpURLConnection = (HttpURLConnection) new URL(url).openConnection();
+
+        try {
+            int responseCode = httpURLConnection.getResponseCode();
+            if (responseCode != 200) {
+                throw new IllegalStateException("scrape failed, response code [" + responseCode + "]");
+            }
+
+            long bytes = 0;
+            byte[] buffer = new byte[65536];
+
+            try (InputStream inputStream = httpURLConnection.getInputStream()) {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    bytes += read;
+                }
+            }
+
+            return bytes;
+        } finally {
+            httpURLConnection.disconnect();
+        }
+    }
+
+    private static String toMilliseconds(long nanoseconds) {
+        return String.format("%.3f", nanoseconds / 1000000.0);
+    }
+
+    /**
+     * Interface to define the synthetic MXBean
+     */
+    public interface SyntheticMXBean {
+
+        Statistics getStatistics();
+
+        Map<String, Statistics> getTable();
+
+        long getCount();
+    }
+
+    /**
+     * Class to implement the synthetic MXBean, values change on every read
+     */
+    public static class Synthetic implements SyntheticMXBean {
+
+        private final int rows;
+
+        public Synthetic(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Statistics getStatistics() {
+            return Statistics.random();
+        }
+
+        @Override
+        public Map<String, Statistics> getTable() {
+            Map<String, Statistics> table = new LinkedHashMap<>();
+            for (int i = 0; i < rows; i++) {
+                table.put("row-" + i, Statistics.random());
+            }
+
+            return table;
+        }
+
+        @Override
+        public long getCount() {
+            return ThreadLocalRandom.current().nextLong(1000000);
+        }
+    }
+
+    /**
+     * Class to implement a composite value (CompositeData)
+     */
+    public static class Statistics {
+
+        private final long count;
+        private final long sum;
+        private final long minimum;
+        private final long maximum;
+        private final double mean;
+        private final double p50;
+        private final double p90;
+        private final double p99;
+
+        @ConstructorProperties({ "count", "sum", "minimum", "maximum", "mean", "p50", "p90", "p99" })
+        public Statistics(long count, long sum, long minimum, long maximum, double mean, double p50, double p90, double p99) {
+            this.count = count;
+            this.sum = sum;
+            this.minimum = minimum;
+            this.maximum = maximum;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMinimum() {
+            return minimum;
+        }
+
+        public long getMaximum() {
+            return maximum;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP90() {
+            return p90;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        private static Statistics random() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long count = random.nextLong(1, 1000000);
+            long minimum = random.nextLong(1000);
+            long maximum = minimum + random.nextLong(1000000);
+            double mean = (minimum + maximum) / 2.0;
+
+            return new Statistics(count, (long) (count * mean), minimum, maximum, mean, mean, maximum * 0.9, maximum * 0.99);
+        }
+    }
+}